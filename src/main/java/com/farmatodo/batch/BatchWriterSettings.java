@@ -0,0 +1,27 @@
+package com.farmatodo.batch;
+
+import java.time.Duration;
+
+/**
+ * @param capacity      maximum buffered items
+ * @param batchSize     maximum items handed to the sink at once
+ * @param flushInterval how long the drain thread waits for the first item of a batch
+ * @param overflowPolicy behaviour under pressure
+ * @param sampleRate    keep 1 in {@code sampleRate} items under {@link OverflowPolicy#SAMPLE}
+ * @param blockTimeout  maximum producer wait under {@link OverflowPolicy#BLOCK}
+ */
+public record BatchWriterSettings(
+        int capacity,
+        int batchSize,
+        Duration flushInterval,
+        OverflowPolicy overflowPolicy,
+        int sampleRate,
+        Duration blockTimeout
+) {
+
+    public BatchWriterSettings {
+        if (capacity < 1 || batchSize < 1 || sampleRate < 1) {
+            throw new IllegalArgumentException("capacity, batchSize and sampleRate must be positive");
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.farmatodo.batch;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Bounded, array-backed buffer drained by a single thread that hands items to a sink in
+ * batches. Producers never wait on the sink: when the buffer is under pressure the
+ * {@link OverflowPolicy} decides whether an item is dropped, sampled or briefly waited on.
+ *
+ * <p>Publishes {@code <name>.queue.depth}, {@code <name>.dropped}, {@code <name>.written}
+ * and {@code <name>.failed} meters.
+ */
+public class BoundedBatchWriter<T> implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(BoundedBatchWriter.class);
+
+    private final String name;
+    private final BatchWriterSettings settings;
+    private final Consumer<List<T>> sink;
+    private final ArrayBlockingQueue<T> queue;
+    private final Thread drainer;
+    private final AtomicLong sampleCounter = new AtomicLong();
+
+    private final Counter dropped;
+    private final Counter written;
+    private final Counter failed;
+
+    private volatile boolean running = true;
+
+    public BoundedBatchWriter(String name, BatchWriterSettings settings, Consumer<List<T>> sink,
+                              MeterRegistry meterRegistry) {
+        this.name = name;
+        this.settings = settings;
+        this.sink = sink;
+        this.queue = new ArrayBlockingQueue<>(settings.capacity());
+
+        Gauge.builder(name + ".queue.depth", queue, ArrayBlockingQueue::size).register(meterRegistry);
+        this.dropped = Counter.builder(name + ".dropped").register(meterRegistry);
+        this.written = Counter.builder(name + ".written").register(meterRegistry);
+        this.failed = Counter.builder(name + ".failed").register(meterRegistry);
+
+        this.drainer = new Thread(this::drainLoop, name + "-writer");
+        this.drainer.setDaemon(true);
+        this.drainer.start();
+    }
+
+    /**
+     * Enqueues an item for the next batch.
+     *
+     * @return false when the item was dropped by the overflow policy or the writer is closed
+     */
+    public boolean offer(T item) {
+        if (!running) {
+            dropped.increment();
+            return false;
+        }
+        boolean accepted = switch (settings.overflowPolicy()) {
+            case DROP -> queue.offer(item);
+            case SAMPLE -> queue.size() * 2 < settings.capacity()
+                    ? queue.offer(item)
+                    : sampleCounter.incrementAndGet() % settings.sampleRate() == 0 && queue.offer(item);
+            case BLOCK -> offerWithTimeout(item);
+        };
+        if (!accepted) {
+            dropped.increment();
+        }
+        return accepted;
+    }
+
+    public int depth() {
+        return queue.size();
+    }
+
+    private boolean offerWithTimeout(T item) {
+        try {
+            return queue.offer(item, settings.blockTimeout().toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void drainLoop() {
+        long pollNanos = settings.flushInterval().toNanos();
+        var batch = new ArrayList<T>(settings.batchSize());
+        while (running || !queue.isEmpty()) {
+            try {
+                T first = queue.poll(pollNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, settings.batchSize() - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                if (running) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<T> batch) {
+        try {
+            sink.accept(batch);
+            written.increment(batch.size());
+        } catch (Exception e) {
+            failed.increment(batch.size());
+            log.warn("{}: failed to write batch of {} items", name, batch.size(), e);
+        }
+    }
+
+    /** Stops accepting items and waits (bounded) for the buffer to be written out. */
+    @Override
+    public void close() {
+        running = false;
+        drainer.interrupt();
+        try {
+            drainer.join(Duration.ofSeconds(10).toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.farmatodo.batch;
+
+/**
+ * What a {@link BoundedBatchWriter} does with new items when its buffer is under pressure.
+ */
+public enum OverflowPolicy {
+    /** Reject new items while the buffer is full. */
+    DROP,
+    /** Keep 1 in N items once the buffer is half full; reject while it is full. */
+    SAMPLE,
+    /** Wait up to the configured block timeout for space, then reject. */
+    BLOCK
+}
@@ -0,0 +1,93 @@
+package com.farmatodo.bloom;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Bloom filter that grows instead of saturating (Almeida et al., "Scalable Bloom Filters").
+ * Values go to the newest {@link BloomFilter} stage; once that stage holds as many values as it
+ * was sized for, a new stage with {@link #GROWTH} times the capacity and {@link #TIGHTENING}
+ * times the false-positive rate takes over. The first stage gets {@code p * (1 - TIGHTENING)},
+ * so the rates of all stages add up to at most the configured {@code p}, however many there are.
+ *
+ * <p>A value the filter already reports is not added again, so re-reading the same rows (a
+ * catch-up overlap) does not use up capacity. Stages are only appended, and concurrent puts may
+ * overfill a stage by a few values before the next one exists; readers need no locking.
+ */
+public final class ScalableBloomFilter {
+
+    static final int GROWTH = 2;
+    static final double TIGHTENING = 0.5;
+
+    private final double falsePositiveRate;
+    private final List<BloomFilter> stages = new CopyOnWriteArrayList<>();
+    private volatile BloomFilter current;
+
+    public ScalableBloomFilter(long initialCapacity, double falsePositiveRate) {
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("falsePositiveRate must be in (0, 1)");
+        }
+        this.falsePositiveRate = falsePositiveRate;
+        this.current = new BloomFilter(initialCapacity, stageRate(0));
+        stages.add(current);
+    }
+
+    /** @return false when the value was (or looked) already present */
+    public boolean put(String value) {
+        if (mightContain(value)) {
+            return false;
+        }
+        var stage = current;
+        if (stage.insertions() >= stage.expectedInsertions()) {
+            stage = grow(stage);
+        }
+        stage.put(value);
+        return true;
+    }
+
+    public boolean mightContain(String value) {
+        for (var stage : stages) {
+            if (stage.mightContain(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Values added, across all stages. */
+    public long insertions() {
+        long total = 0;
+        for (var stage : stages) {
+            total += stage.insertions();
+        }
+        return total;
+    }
+
+    /** Values the current stages were sized for; the filter keeps accepting values past it. */
+    public long capacity() {
+        long total = 0;
+        for (var stage : stages) {
+            total += stage.expectedInsertions();
+        }
+        return total;
+    }
+
+    public int stageCount() {
+        return stages.size();
+    }
+
+    private synchronized BloomFilter grow(BloomFilter full) {
+        if (current != full) {
+            return current;
+        }
+        var next = new BloomFilter(full.expectedInsertions() * GROWTH, stageRate(stages.size()));
+        stages.add(next);
+        current = next;
+        return next;
+    }
+
+    /** {@code p * (1 - r) * r^i}: a geometric series that sums to {@code p}. */
+    double stageRate(int stage) {
+        return falsePositiveRate * (1 - TIGHTENING) * Math.pow(TIGHTENING, stage);
+    }
+}
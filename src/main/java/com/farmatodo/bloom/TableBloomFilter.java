@@ -0,0 +1,156 @@
+package com.farmatodo.bloom;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * {@link ScalableBloomFilter} of the keys of a table whose rows are only ever inserted, kept in
+ * step with rows inserted by other instances. {@link #load()} reads every key; {@link #sync()},
+ * run on a schedule every {@code syncInterval}, reads the rows created since the last load (an
+ * index range scan on {@code created_at}, re-reading {@link #SYNC_OVERLAP} for commit lag and
+ * clock skew). Loads never run on the caller of {@link #mightContain}.
+ *
+ * <p>A filter is only published once it is loaded and caught up, so a published filter always
+ * has a load time. {@link #mightContain} answers true while nothing is published, and also while
+ * the last load is older than two intervals (the catch-up is failing or late), so callers fall
+ * back to the database instead of trusting a stale rejection. A key inserted on another instance
+ * can be rejected for up to about one interval, unless the key itself tells when it was created
+ * (a version 7 UUID): then a rejected key created inside the window the next catch-up re-reads
+ * is answered true, and the caller's database lookup sees the row.
+ */
+public final class TableBloomFilter {
+
+    /** Re-read window for rows whose commit landed after their {@code created_at} (commit lag, clock skew). */
+    public static final Duration SYNC_OVERLAP = Duration.ofSeconds(5);
+
+    private final JdbcTemplate jdbc;
+    private final String loadAll;
+    private final String loadSince;
+    private final int sinceParameters;
+    private final UnaryOperator<String> key;
+    private final Function<String, Instant> createdAt;
+    private final long initialCapacity;
+    private final double falsePositiveRate;
+    private final Duration maxStaleness;
+    private final Clock clock;
+
+    private final ReentrantLock loadLock = new ReentrantLock();
+    private volatile ScalableBloomFilter filter;
+    private volatile Instant loadedFrom;
+    private volatile Instant lastLoad;
+
+    /**
+     * @param loadAll   selects every key in its first column
+     * @param loadSince selects the keys created since a time; every {@code ?} is bound to it
+     * @param key       canonical form of a key read from the table
+     * @param createdAt creation time carried by a key, or null when the key does not carry one
+     */
+    public TableBloomFilter(JdbcTemplate jdbc, String loadAll, String loadSince, UnaryOperator<String> key,
+                            Function<String, Instant> createdAt, long initialCapacity, double falsePositiveRate,
+                            Duration syncInterval, Clock clock) {
+        if (syncInterval.isNegative() || syncInterval.isZero()) {
+            throw new IllegalArgumentException("syncInterval must be positive");
+        }
+        this.jdbc = jdbc;
+        this.loadAll = loadAll;
+        this.loadSince = loadSince;
+        this.sinceParameters = (int) loadSince.chars().filter(c -> c == '?').count();
+        this.key = key;
+        this.createdAt = createdAt;
+        this.initialCapacity = initialCapacity;
+        this.falsePositiveRate = falsePositiveRate;
+        this.maxStaleness = syncInterval.multipliedBy(2);
+        this.clock = clock;
+    }
+
+    /** Reads every key into a new filter and publishes it. */
+    public void load() {
+        loadLock.lock();
+        try {
+            loadLocked();
+        } finally {
+            loadLock.unlock();
+        }
+    }
+
+    /** Catches up with the rows created since the last load, or loads the filter if none was published. */
+    public void sync() {
+        loadLock.lock();
+        try {
+            var current = filter;
+            if (current == null) {
+                loadLocked();
+            } else {
+                catchUp(current, loadedFrom);
+            }
+        } finally {
+            loadLock.unlock();
+        }
+    }
+
+    private void loadLocked() {
+        Instant start = clock.instant();
+        var next = new ScalableBloomFilter(initialCapacity, falsePositiveRate);
+        jdbc.query(loadAll, (RowCallbackHandler) rs -> next.put(key.apply(rs.getString(1))));
+        // Rows committed while the full load ran are not in it; pick them up before publishing.
+        catchUp(next, start);
+        filter = next;
+    }
+
+    private void catchUp(ScalableBloomFilter target, Instant from) {
+        Instant start = clock.instant();
+        var args = new Object[sinceParameters];
+        Arrays.fill(args, Timestamp.from(from.minus(SYNC_OVERLAP)));
+        jdbc.query(loadSince, (RowCallbackHandler) rs -> target.put(key.apply(rs.getString(1))), args);
+        loadedFrom = start;
+        lastLoad = start;
+    }
+
+    /** Adds a key inserted here; ignored until a filter is published, whose catch-up covers it. */
+    public void put(String value) {
+        var current = filter;
+        if (current != null) {
+            current.put(value);
+        }
+    }
+
+    /**
+     * False only when the key is definitely not in the table as of about one sync interval ago,
+     * and was not created since the last catch-up began.
+     */
+    public boolean mightContain(String value) {
+        var current = filter;
+        if (current == null || current.mightContain(value)) {
+            return true;
+        }
+        var loaded = lastLoad;
+        if (loaded == null || !loaded.isAfter(clock.instant().minus(maxStaleness))) {
+            return true;
+        }
+        var created = createdAt.apply(value);
+        return created != null && !created.isBefore(loaded.minus(SYNC_OVERLAP));
+    }
+
+    public boolean isLoaded() {
+        return filter != null;
+    }
+
+    public long insertions() {
+        var current = filter;
+        return current == null ? 0 : current.insertions();
+    }
+
+    public int stageCount() {
+        var current = filter;
+        return current == null ? 0 : current.stageCount();
+    }
+}
@@ -1,8 +1,12 @@
 package com.farmatodo.cart;
 
+import com.farmatodo.id.TimeOrderedId;
+import com.farmatodo.money.Money;
+import com.farmatodo.money.MoneyConverter;
 import jakarta.persistence.*;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 
@@ -11,7 +15,7 @@ import java.util.UUID;
 public class Cart {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @TimeOrderedId
     private UUID id;
 
     @Column(nullable = false, name = "customer_id")
@@ -24,6 +28,15 @@ public class Cart {
     @Column(nullable = false, name = "created_at")
     private Instant createdAt;
 
+    /**
+     * Sum of the line subtotals. Kept by the database for every writer (statement triggers on
+     * {@code cart_items}, V5) and mirrored here by the line methods below, so reading the total
+     * never iterates the lines.
+     */
+    @Convert(converter = MoneyConverter.class)
+    @Column(nullable = false, insertable = false, updatable = false, precision = 19, scale = 2)
+    private Money total = Money.ZERO;
+
     @OneToMany(mappedBy = "cart", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<CartItem> items = new ArrayList<>();
 
@@ -44,7 +57,29 @@ public class Cart {
     public UUID getCustomerId() { return customerId; }
     public CartStatus getStatus() { return status; }
     public Instant getCreatedAt() { return createdAt; }
-    public List<CartItem> getItems() { return items; }
+    public Money getTotal() { return total; }
+    /** Read-only; change the lines with {@link #addItem}, {@link #updateItem} and {@link #removeItem}. */
+    public List<CartItem> getItems() { return Collections.unmodifiableList(items); }
 
     public void setStatus(CartStatus status) { this.status = status; }
+
+    public CartItem addItem(UUID productId, int quantity, Money unitPrice) {
+        var item = new CartItem(this, productId, quantity, unitPrice);
+        items.add(item);
+        total = total.plus(item.getSubtotal());
+        return item;
+    }
+
+    public void updateItem(CartItem item, int quantity, Money unitPrice) {
+        total = total.minus(item.getSubtotal());
+        item.setQuantity(quantity);
+        item.setUnitPriceSnapshot(unitPrice);
+        total = total.plus(item.getSubtotal());
+    }
+
+    public void removeItem(CartItem item) {
+        if (items.remove(item)) {
+            total = total.minus(item.getSubtotal());
+        }
+    }
 }
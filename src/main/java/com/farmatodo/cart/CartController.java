@@ -1,6 +1,7 @@
 package com.farmatodo.cart;
 
 import com.farmatodo.cart.dto.AddCartItemRequest;
+import com.farmatodo.cart.dto.BatchCartItemsRequest;
 import com.farmatodo.cart.dto.CartResponse;
 import jakarta.validation.Valid;
 import org.springframework.http.ResponseEntity;
@@ -24,8 +25,13 @@ public class CartController {
     @PostMapping("/items")
     public ResponseEntity<CartResponse> addItem(@Valid @RequestBody AddCartItemRequest req) {
         var cart = cartService.addItem(req);
-        var response = cartService.getCart(req.getCustomerId());
-        return ResponseEntity.created(URI.create("/carts/" + cart.getId())).body(response);
+        return ResponseEntity.created(URI.create("/carts/" + cart.cartId())).body(cart);
+    }
+
+    /** Adds, sets or removes up to {@value BatchCartItemsRequest#MAX_ITEMS} lines in one transaction. */
+    @PostMapping("/items/batch")
+    public ResponseEntity<CartResponse> applyBatch(@Valid @RequestBody BatchCartItemsRequest req) {
+        return ResponseEntity.ok(cartService.applyBatch(req));
     }
 
     @GetMapping
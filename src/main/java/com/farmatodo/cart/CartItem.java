@@ -1,15 +1,18 @@
 package com.farmatodo.cart;
 
+import com.farmatodo.id.TimeOrderedId;
+import com.farmatodo.money.Money;
+import com.farmatodo.money.MoneyConverter;
 import jakarta.persistence.*;
-import java.math.BigDecimal;
 import java.util.UUID;
 
 @Entity
-@Table(name = "cart_items")
+@Table(name = "cart_items",
+        uniqueConstraints = @UniqueConstraint(name = "uk_cart_items_cart_product", columnNames = {"cart_id", "product_id"}))
 public class CartItem {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @TimeOrderedId
     private UUID id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -22,12 +25,14 @@ public class CartItem {
     @Column(nullable = false)
     private int quantity;
 
+    @Convert(converter = MoneyConverter.class)
     @Column(nullable = false, name = "unit_price_snapshot", precision = 19, scale = 2)
-    private BigDecimal unitPriceSnapshot;
+    private Money unitPriceSnapshot;
 
     public CartItem() {}
 
-    public CartItem(Cart cart, UUID productId, int quantity, BigDecimal unitPriceSnapshot) {
+    /** Lines are created by {@link Cart#addItem}, which keeps the cart total. */
+    CartItem(Cart cart, UUID productId, int quantity, Money unitPriceSnapshot) {
         this.cart = cart;
         this.productId = productId;
         this.quantity = quantity;
@@ -38,9 +43,9 @@ public class CartItem {
     public Cart getCart() { return cart; }
     public UUID getProductId() { return productId; }
     public int getQuantity() { return quantity; }
-    public BigDecimal getUnitPriceSnapshot() { return unitPriceSnapshot; }
-    public BigDecimal getSubtotal() { return unitPriceSnapshot.multiply(BigDecimal.valueOf(quantity)); }
+    public Money getUnitPriceSnapshot() { return unitPriceSnapshot; }
+    public Money getSubtotal() { return unitPriceSnapshot.times(quantity); }
 
-    public void setQuantity(int quantity) { this.quantity = quantity; }
-    public void setUnitPriceSnapshot(BigDecimal unitPriceSnapshot) { this.unitPriceSnapshot = unitPriceSnapshot; }
+    void setQuantity(int quantity) { this.quantity = quantity; }
+    void setUnitPriceSnapshot(Money unitPriceSnapshot) { this.unitPriceSnapshot = unitPriceSnapshot; }
 }
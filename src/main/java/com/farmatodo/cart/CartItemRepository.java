@@ -3,6 +3,7 @@ package com.farmatodo.cart;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -10,4 +11,10 @@ public interface CartItemRepository extends JpaRepository<CartItem, UUID> {
 
     @Query("SELECT i FROM CartItem i WHERE i.cart.id = :cartId AND i.productId = :productId")
     Optional<CartItem> findByCartIdAndProductId(UUID cartId, UUID productId);
+
+    /** Every line of the cart whose product is missing or has less stock than requested, in one query. */
+    @Query("SELECT new com.farmatodo.cart.CartStockShortage(i.productId, p.name, i.quantity, p.stock)"
+            + " FROM CartItem i LEFT JOIN Product p ON p.id = i.productId"
+            + " WHERE i.cart.id = :cartId AND (p.id IS NULL OR p.stock < i.quantity)")
+    List<CartStockShortage> findStockShortages(UUID cartId);
 }
@@ -0,0 +1,113 @@
+package com.farmatodo.cart;
+
+import com.farmatodo.id.Ids;
+import com.farmatodo.money.Money;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Add-to-cart as one statement: checks the customer and the product, finds or creates the
+ * active cart, inserts the line or adds to its quantity if the product has the stock for the
+ * new total, and returns every line of the cart. Concurrent adds are safe without locks in
+ * Java: the cart and the line are keyed by unique indexes ({@code uk_carts_customer_active},
+ * {@code uk_cart_items_cart_product}), so a racing first add lands on the same cart and racing
+ * adds of one product sum their quantities. The active cart row is locked, so an add waits for a
+ * batch update of the same cart ({@link CartService#applyBatch}) instead of being overwritten by it,
+ * and the cart's running total is updated by the {@code cart_items} triggers after the statement.
+ */
+@Component
+class CartItemUpsert {
+
+    private static final String ADD = """
+            WITH input AS (
+                SELECT CAST(? AS uuid) AS customer_id, CAST(? AS uuid) AS product_id, CAST(? AS integer) AS quantity,
+                       CAST(? AS uuid) AS new_cart_id, CAST(? AS uuid) AS new_item_id
+            ),
+            customer AS (
+                SELECT c.id FROM customers c JOIN input ON c.id = input.customer_id
+            ),
+            product AS (
+                SELECT p.id, p.price, p.stock FROM products p JOIN input ON p.id = input.product_id
+            ),
+            existing_cart AS (
+                -- adds to one cart queue behind each other and behind a batch rewriting it: each one
+                -- updates the cart's total (V5 trigger), and two share locks could not both upgrade
+                SELECT c.id FROM carts c JOIN input ON c.customer_id = input.customer_id WHERE c.status = 'ACTIVE'
+                FOR NO KEY UPDATE OF c
+            ),
+            new_cart AS (
+                INSERT INTO carts (id, customer_id, status, created_at)
+                SELECT input.new_cart_id, customer.id, 'ACTIVE', now()
+                FROM input, customer, product
+                WHERE NOT EXISTS (SELECT 1 FROM existing_cart)
+                -- another first add committed the cart after this statement started: use that one
+                ON CONFLICT (customer_id) WHERE status = 'ACTIVE' DO UPDATE SET status = EXCLUDED.status
+                RETURNING id
+            ),
+            cart AS (
+                SELECT id FROM existing_cart UNION ALL SELECT id FROM new_cart
+            ),
+            item AS (
+                INSERT INTO cart_items AS i (id, cart_id, product_id, quantity, unit_price_snapshot)
+                SELECT input.new_item_id, cart.id, product.id, input.quantity, product.price
+                FROM input, cart, product
+                WHERE product.stock >= input.quantity
+                ON CONFLICT (cart_id, product_id) DO UPDATE
+                    SET quantity = i.quantity + EXCLUDED.quantity, unit_price_snapshot = EXCLUDED.unit_price_snapshot
+                    WHERE (SELECT stock FROM products WHERE id = EXCLUDED.product_id) >= i.quantity + EXCLUDED.quantity
+                RETURNING i.id, i.product_id, i.quantity, i.unit_price_snapshot
+            )
+            SELECT EXISTS (SELECT 1 FROM customer), (SELECT stock FROM product), (SELECT id FROM cart),
+                   line.product_id, line.quantity, line.unit_price_snapshot
+            FROM (SELECT 1) AS one
+            LEFT JOIN (
+                SELECT id, product_id, quantity, unit_price_snapshot FROM item
+                UNION ALL
+                SELECT i.id, i.product_id, i.quantity, i.unit_price_snapshot
+                FROM cart_items i JOIN cart ON i.cart_id = cart.id JOIN input ON i.product_id <> input.product_id
+            ) AS line ON EXISTS (SELECT 1 FROM item)
+            ORDER BY line.id
+            """;
+
+    record Line(UUID productId, int quantity, Money unitPrice) {
+    }
+
+    /**
+     * What the statement saw. {@code stock} is null when the product does not exist; {@code lines}
+     * is empty when nothing was added, in which case the caller must roll back (the cart may have
+     * been created).
+     */
+    record Result(boolean customerFound, Integer stock, UUID cartId, List<Line> lines) {
+
+        boolean added() {
+            return !lines.isEmpty();
+        }
+    }
+
+    private final JdbcTemplate jdbc;
+
+    CartItemUpsert(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    Result add(UUID customerId, UUID productId, int quantity) {
+        return jdbc.query(ADD, rs -> {
+            rs.next();
+            boolean customerFound = rs.getBoolean(1);
+            Integer stock = rs.getObject(2, Integer.class);
+            UUID cartId = rs.getObject(3, UUID.class);
+            var lines = new ArrayList<Line>();
+            do {
+                var product = rs.getObject(4, UUID.class);
+                if (product != null) {
+                    lines.add(new Line(product, rs.getInt(5), Money.of(rs.getBigDecimal(6))));
+                }
+            } while (rs.next());
+            return new Result(customerFound, stock, cartId, lines);
+        }, customerId, productId, quantity, Ids.next(), Ids.next());
+    }
+}
@@ -1,6 +1,8 @@
 package com.farmatodo.cart;
 
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 
 import java.util.Optional;
 import java.util.UUID;
@@ -8,4 +10,8 @@ import java.util.UUID;
 public interface CartRepository extends JpaRepository<Cart, UUID> {
 
     Optional<Cart> findByCustomerIdAndStatus(UUID customerId, Cart.CartStatus status);
+
+    /** The cart, locked until the transaction ends so that its lines can be rewritten safely. */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<Cart> findForUpdateByCustomerIdAndStatus(UUID customerId, Cart.CartStatus status);
 }
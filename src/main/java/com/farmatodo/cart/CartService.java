@@ -1,97 +1,257 @@
 package com.farmatodo.cart;
 
 import com.farmatodo.cart.dto.AddCartItemRequest;
+import com.farmatodo.cart.dto.BatchCartItemsRequest;
+import com.farmatodo.cart.dto.CartItemChange;
 import com.farmatodo.cart.dto.CartItemResponse;
 import com.farmatodo.cart.dto.CartResponse;
-import com.farmatodo.client.CustomerRepository;
+import com.farmatodo.client.CustomerLookup;
+import com.farmatodo.money.Money;
 import com.farmatodo.product.Product;
+import com.farmatodo.product.ProductCatalog;
 import com.farmatodo.product.ProductRepository;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
 
 @Service
 public class CartService {
 
     private final CartRepository cartRepo;
-    private final CartItemRepository cartItemRepo;
+    private final CartItemUpsert upsert;
     private final ProductRepository productRepo;
-    private final CustomerRepository customerRepo;
+    private final CustomerLookup customers;
+    private final ProductCatalog catalog;
+    private final WriteBehindCartStore memoryStore;
+    private final CartService self;
 
     public CartService(CartRepository cartRepo,
-                       CartItemRepository cartItemRepo,
+                       CartItemUpsert upsert,
                        ProductRepository productRepo,
-                       CustomerRepository customerRepo) {
+                       CustomerLookup customers,
+                       ProductCatalog catalog,
+                       WriteBehindCartStore memoryStore,
+                       @Lazy CartService self) {
         this.cartRepo = cartRepo;
-        this.cartItemRepo = cartItemRepo;
+        this.upsert = upsert;
         this.productRepo = productRepo;
-        this.customerRepo = customerRepo;
+        this.customers = customers;
+        this.catalog = catalog;
+        this.memoryStore = memoryStore;
+        this.self = self;
     }
 
     /**
-     * Light validation at add: product exists, stock available.
-     * Definitive stock validation happens at order creation.
+     * Light validation at add: customer and product exist, stock covers the cart quantity.
+     * Definitive stock validation happens at order creation. In {@link CartStoreMode#MEMORY} the
+     * cart is changed in {@link WriteBehindCartStore} and the product comes from the catalog
+     * snapshot, so an add to a cached cart does not touch the database (nor take a connection).
+     */
+    public CartResponse addItem(AddCartItemRequest req) {
+        if (!memoryStore.isEnabled()) {
+            return self.addItemInDatabase(req);
+        }
+        return memoryStore.update(req.getCustomerId(), cart -> {
+            Product product = catalogProduct(req.getProductId())
+                    .orElseThrow(() -> new CartException("Product not found"));
+            if (product.getStock() < 1) {
+                throw new CartException("Product out of stock");
+            }
+            int quantity = cart.quantity(req.getProductId()) + req.getQuantity();
+            if (product.getStock() < quantity) {
+                throw new CartException("Insufficient stock: available " + product.getStock());
+            }
+            cart.put(req.getProductId(), quantity, Money.of(product.getPrice()));
+        });
+    }
+
+    /**
+     * {@link #addItem} in {@link CartStoreMode#DATABASE}: one statement ({@link CartItemUpsert});
+     * when nothing was added the exception rolls back a cart the statement may have created.
      */
     @Transactional
-    public Cart addItem(AddCartItemRequest req) {
-        if (!customerRepo.existsById(req.getCustomerId())) {
-            throw new CartException("Customer not found");
+    public CartResponse addItemInDatabase(AddCartItemRequest req) {
+        var result = upsert.add(req.getCustomerId(), req.getProductId(), req.getQuantity());
+
+        if (!result.added()) {
+            if (!result.customerFound()) {
+                throw new CartException("Customer not found");
+            }
+            if (result.stock() == null) {
+                throw new CartException("Product not found");
+            }
+            if (result.stock() < 1) {
+                throw new CartException("Product out of stock");
+            }
+            throw new CartException("Insufficient stock: available " + result.stock());
         }
 
-        Product product = productRepo.findById(req.getProductId())
-                .orElseThrow(() -> new CartException("Product not found"));
+        // The lines are listed anyway; the cart's total column is updated after the statement.
+        var items = new ArrayList<CartItemResponse>(result.lines().size());
+        var total = Money.ZERO;
+        for (var line : result.lines()) {
+            var subtotal = line.unitPrice().times(line.quantity());
+            items.add(new CartItemResponse(line.productId(), line.quantity(), line.unitPrice().toBigDecimal(),
+                    subtotal.toBigDecimal()));
+            total = total.plus(subtotal);
+        }
+
+        return new CartResponse(result.cartId(), req.getCustomerId(), items, total.toBigDecimal());
+    }
 
-        if (product.getStock() < 1) {
-            throw new CartException("Product out of stock");
+    /**
+     * Applies every change in order and answers with the resulting cart. Every changed line is
+     * checked against stock; all shortages are reported together and nothing is changed.
+     */
+    public CartResponse applyBatch(BatchCartItemsRequest req) {
+        if (!memoryStore.isEnabled()) {
+            return self.applyBatchInDatabase(req);
         }
+        return memoryStore.update(req.getCustomerId(), cart -> {
+            var quantities = quantitiesAfter(req.getItems(), cart::quantity);
+            var products = catalogProducts(quantities.keySet());
+            checkStock(quantities, products);
+            quantities.forEach((productId, quantity) -> cart.put(productId, quantity,
+                    quantity == 0 ? null : Money.of(products.get(productId).getPrice())));
+        });
+    }
 
-        Cart cart = cartRepo.findByCustomerIdAndStatus(req.getCustomerId(), Cart.CartStatus.ACTIVE)
-                .orElseGet(() -> cartRepo.save(new Cart(req.getCustomerId(), Cart.CartStatus.ACTIVE, Instant.now())));
+    /**
+     * {@link #applyBatch} in {@link CartStoreMode#DATABASE}. The products are read with one query,
+     * the active cart is locked while its lines are rewritten, and the new, changed and removed
+     * lines are flushed as JDBC batches at commit, so the statement count does not grow with the
+     * number of changes.
+     */
+    @Transactional
+    public CartResponse applyBatchInDatabase(BatchCartItemsRequest req) {
+        var productIds = req.getItems().stream()
+                .map(CartItemChange::getProductId)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        Map<UUID, Product> products = productRepo.findAllById(productIds).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
 
-        var existing = cartItemRepo.findByCartIdAndProductId(cart.getId(), req.getProductId());
+        Cart cart = cartRepo.findForUpdateByCustomerIdAndStatus(req.getCustomerId(), Cart.CartStatus.ACTIVE)
+                .orElseGet(() -> {
+                    if (!customers.exists(req.getCustomerId())) {
+                        throw new CartException("Customer not found");
+                    }
+                    return cartRepo.save(new Cart(req.getCustomerId(), Cart.CartStatus.ACTIVE, Instant.now()));
+                });
 
-        if (existing.isPresent()) {
-            var item = existing.get();
-            int newQty = item.getQuantity() + req.getQuantity();
-            if (product.getStock() < newQty) {
-                throw new CartException("Insufficient stock: available " + product.getStock());
+        Map<UUID, CartItem> lines = new LinkedHashMap<>();
+        cart.getItems().forEach(i -> lines.put(i.getProductId(), i));
+        var quantities = quantitiesAfter(req.getItems(), productId -> quantity(lines.get(productId)));
+        checkStock(quantities, products);
+
+        quantities.forEach((productId, quantity) -> {
+            var line = lines.get(productId);
+            if (quantity == 0) {
+                if (line != null) {
+                    cart.removeItem(line);
+                }
+            } else if (line == null) {
+                cart.addItem(productId, quantity, Money.of(products.get(productId).getPrice()));
+            } else {
+                cart.updateItem(line, quantity, Money.of(products.get(productId).getPrice()));
             }
-            item.setQuantity(newQty);
-            item.setUnitPriceSnapshot(product.getPrice());
-            cartItemRepo.save(item);
-        } else {
-            if (product.getStock() < req.getQuantity()) {
-                throw new CartException("Insufficient stock: available " + product.getStock());
+        });
+
+        return toResponse(cart);
+    }
+
+    /** Final quantity of every product the changes touch, 0 meaning no line, in first-touched order. */
+    private static Map<UUID, Integer> quantitiesAfter(List<CartItemChange> changes, ToIntFunction<UUID> current) {
+        Map<UUID, Integer> quantities = new LinkedHashMap<>();
+        for (var change : changes) {
+            var productId = change.getProductId();
+            int before = quantities.containsKey(productId) ? quantities.get(productId) : current.applyAsInt(productId);
+            int after = switch (change.getOperation()) {
+                case ADD -> before + change.getQuantity();
+                case SET -> change.getQuantity();
+                case REMOVE -> 0;
+            };
+            quantities.put(productId, after);
+        }
+        return quantities;
+    }
+
+    private static void checkStock(Map<UUID, Integer> quantities, Map<UUID, Product> products) {
+        var problems = new ArrayList<String>();
+        quantities.forEach((productId, quantity) -> {
+            var product = products.get(productId);
+            if (quantity == 0) {
+                return;
+            }
+            if (product == null) {
+                problems.add("Product not found: " + productId);
+            } else if (product.getStock() < quantity) {
+                problems.add("Insufficient stock for product " + product.getName() + ": required " + quantity
+                        + ", available " + product.getStock());
             }
-            var item = new CartItem(cart, req.getProductId(), req.getQuantity(), product.getPrice());
-            cartItemRepo.save(item);
+        });
+        if (!problems.isEmpty()) {
+            throw new CartException(String.join("; ", problems));
         }
+    }
 
-        return cartRepo.findById(cart.getId()).orElse(cart);
+    /** From the catalog snapshot; products created after it was loaded are read from the database. */
+    private Optional<Product> catalogProduct(UUID productId) {
+        return catalog.find(productId).or(() -> productRepo.findById(productId));
+    }
+
+    private Map<UUID, Product> catalogProducts(Collection<UUID> productIds) {
+        Map<UUID, Product> products = new HashMap<>();
+        var missing = new ArrayList<UUID>();
+        for (var productId : productIds) {
+            catalog.find(productId).ifPresentOrElse(p -> products.put(productId, p), () -> missing.add(productId));
+        }
+        if (!missing.isEmpty()) {
+            productRepo.findAllById(missing).forEach(p -> products.put(p.getId(), p));
+        }
+        return products;
+    }
+
+    private static int quantity(CartItem line) {
+        return line == null ? 0 : line.getQuantity();
     }
 
-    @Transactional(readOnly = true)
     public CartResponse getCart(UUID customerId) {
+        return memoryStore.isEnabled() ? memoryStore.read(customerId) : self.getCartFromDatabase(customerId);
+    }
+
+    /** {@link #getCart} in {@link CartStoreMode#DATABASE}. */
+    @Transactional(readOnly = true)
+    public CartResponse getCartFromDatabase(UUID customerId) {
         Cart cart = cartRepo.findByCustomerIdAndStatus(customerId, Cart.CartStatus.ACTIVE)
                 .orElseThrow(() -> new CartException("No active cart for customer"));
 
+        return toResponse(cart);
+    }
+
+    private static CartResponse toResponse(Cart cart) {
         var items = cart.getItems().stream()
                 .map(i -> new CartItemResponse(
                         i.getProductId(),
                         i.getQuantity(),
-                        i.getUnitPriceSnapshot(),
-                        i.getSubtotal()
+                        i.getUnitPriceSnapshot().toBigDecimal(),
+                        i.getSubtotal().toBigDecimal()
                 ))
                 .toList();
 
-        BigDecimal total = cart.getItems().stream()
-                .map(CartItem::getSubtotal)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        return new CartResponse(cart.getId(), cart.getCustomerId(), items, total);
+        return new CartResponse(cart.getId(), cart.getCustomerId(), items, cart.getTotal().toBigDecimal());
     }
 }
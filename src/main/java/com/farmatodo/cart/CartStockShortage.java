@@ -0,0 +1,14 @@
+package com.farmatodo.cart;
+
+import java.util.UUID;
+
+/**
+ * A cart line that cannot be fulfilled. {@code productName} and {@code available} are null
+ * when the product no longer exists.
+ */
+public record CartStockShortage(UUID productId, String productName, int requested, Integer available) {
+
+    public boolean productMissing() {
+        return available == null;
+    }
+}
@@ -0,0 +1,10 @@
+package com.farmatodo.cart;
+
+/**
+ * Where active carts are read and written: {@code DATABASE} on every request (one upsert per add),
+ * {@code MEMORY} in this instance's {@link WriteBehindCartStore}, written to Postgres in batches.
+ */
+public enum CartStoreMode {
+    DATABASE,
+    MEMORY
+}
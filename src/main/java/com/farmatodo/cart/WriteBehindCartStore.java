@@ -0,0 +1,476 @@
+package com.farmatodo.cart;
+
+import com.farmatodo.cart.dto.CartItemResponse;
+import com.farmatodo.cart.dto.CartResponse;
+import com.farmatodo.client.CustomerLookup;
+import com.farmatodo.id.Ids;
+import com.farmatodo.money.Money;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Active carts kept in memory for {@code app.cart.store=memory}, keyed by customer id. Reads and
+ * changes of a cart run under one of {@code app.cart.memory.lock-stripes} locks and touch the
+ * database only on a miss, when the active cart is loaded without holding the lock and then
+ * installed unless another thread got there first. Changed carts are written back every
+ * {@code app.cart.memory.flush-interval}, up to {@code app.cart.memory.flush-batch-size} carts per
+ * transaction with a constant number of batched statements. Checkout calls {@link #flush(UUID)}
+ * first, so the order sees every line.
+ *
+ * <p>At most {@code app.cart.memory.max-carts} carts are cached. An evicted cart that was not
+ * written yet stays pending until the next flush, and more pending carts than that make the
+ * writer flush on the caller's thread. A cart that is no longer active when written (checked
+ * out, or replaced by one created elsewhere) is dropped with its pending changes and reloaded on
+ * the next access, so each customer's cart should be served by one instance; at checkout
+ * {@link #flush(UUID)} fails instead, so no order is placed without those changes. Publishes
+ * {@code cart.store.pending}, {@code cart.store.flushed}, {@code cart.store.flush.failed},
+ * {@code cart.store.discarded} and {@code cache.*} meters tagged {@code cache=carts}.
+ */
+@Component
+public class WriteBehindCartStore implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindCartStore.class);
+
+    private static final String LOAD = """
+            SELECT c.id, c.created_at, i.product_id, i.quantity, i.unit_price_snapshot
+            FROM carts c LEFT JOIN cart_items i ON i.cart_id = c.id
+            WHERE c.customer_id = ? AND c.status = 'ACTIVE'
+            ORDER BY i.id
+            """;
+    private static final String INSERT_CART = """
+            INSERT INTO carts (id, customer_id, status, created_at) VALUES (?, ?, 'ACTIVE', ?)
+            ON CONFLICT DO NOTHING
+            """;
+    private static final String DELETE_REMOVED_LINES = """
+            DELETE FROM cart_items i USING carts c
+            WHERE i.cart_id = ? AND c.id = i.cart_id AND c.status = 'ACTIVE' AND i.product_id <> ALL (?)
+            """;
+    private static final String UPSERT_LINE = """
+            INSERT INTO cart_items AS i (id, cart_id, product_id, quantity, unit_price_snapshot)
+            SELECT ?, c.id, ?, ?, ? FROM carts c WHERE c.id = ? AND c.status = 'ACTIVE'
+            ON CONFLICT (cart_id, product_id) DO UPDATE
+                SET quantity = EXCLUDED.quantity, unit_price_snapshot = EXCLUDED.unit_price_snapshot
+            """;
+    private static final String NOT_ACTIVE = """
+            SELECT ids.id FROM unnest(CAST(? AS uuid[])) AS ids(id)
+            WHERE NOT EXISTS (SELECT 1 FROM carts c WHERE c.id = ids.id AND c.status = 'ACTIVE')
+            """;
+
+    /**
+     * A customer's active cart. Guarded by the customer's stripe lock; {@code persisted} is
+     * whether its {@code carts} row is known to exist. The total is kept as lines change, like
+     * the {@code carts.total} column the written lines update.
+     */
+    static final class MemoryCart {
+        private final UUID id;
+        private final UUID customerId;
+        private final Instant createdAt;
+        private final Map<UUID, Line> lines = new LinkedHashMap<>();
+        private Money total = Money.ZERO;
+        private boolean persisted;
+
+        private record Line(int quantity, Money unitPrice) {
+
+            Money subtotal() {
+                return unitPrice.times(quantity);
+            }
+        }
+
+        MemoryCart(UUID id, UUID customerId, Instant createdAt, boolean persisted) {
+            this.id = id;
+            this.customerId = customerId;
+            this.createdAt = createdAt;
+            this.persisted = persisted;
+        }
+
+        int quantity(UUID productId) {
+            var line = lines.get(productId);
+            return line == null ? 0 : line.quantity();
+        }
+
+        /** Sets the line; a quantity of 0 removes it. */
+        void put(UUID productId, int quantity, Money unitPrice) {
+            var previous = quantity == 0 ? lines.remove(productId) : lines.put(productId, new Line(quantity, unitPrice));
+            if (previous != null) {
+                total = total.minus(previous.subtotal());
+            }
+            if (quantity != 0) {
+                total = total.plus(unitPrice.times(quantity));
+            }
+        }
+
+        CartResponse toResponse() {
+            var items = lines.entrySet().stream()
+                    .map(e -> new CartItemResponse(
+                            e.getKey(),
+                            e.getValue().quantity(),
+                            e.getValue().unitPrice().toBigDecimal(),
+                            e.getValue().subtotal().toBigDecimal()
+                    ))
+                    .toList();
+            return new CartResponse(id, customerId, items, total.toBigDecimal());
+        }
+    }
+
+    /** What a flush writes for one cart, copied under its lock. */
+    private record Snapshot(MemoryCart cart, boolean persisted, Map<UUID, MemoryCart.Line> lines) {
+    }
+
+    private final JdbcTemplate jdbc;
+    private final CustomerLookup customers;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int flushBatchSize;
+    private final long maxPending;
+
+    private final Cache<UUID, MemoryCart> carts;
+    private final ConcurrentHashMap<UUID, MemoryCart> pending = new ConcurrentHashMap<>();
+    private final ReentrantLock[] stripes;
+    /** Serializes writes, so an older copy of a cart never lands after a newer one. */
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private final Counter flushed;
+    private final Counter flushFailed;
+    private final Counter discarded;
+
+    public WriteBehindCartStore(JdbcTemplate jdbc,
+                                PlatformTransactionManager transactionManager,
+                                CustomerLookup customers,
+                                MeterRegistry meterRegistry,
+                                @Value("${app.cart.store:database}") CartStoreMode mode,
+                                @Value("${app.cart.memory.max-carts:100000}") long maxCarts,
+                                @Value("${app.cart.memory.lock-stripes:64}") int lockStripes,
+                                @Value("${app.cart.memory.flush-batch-size:500}") int flushBatchSize) {
+        if (maxCarts < 1 || lockStripes < 1 || flushBatchSize < 1) {
+            throw new IllegalArgumentException("max-carts, lock-stripes and flush-batch-size must be positive");
+        }
+        this.jdbc = jdbc;
+        this.customers = customers;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = mode == CartStoreMode.MEMORY;
+        this.flushBatchSize = flushBatchSize;
+        this.maxPending = maxCarts;
+        this.carts = Caffeine.newBuilder()
+                .maximumSize(maxCarts)
+                .recordStats()
+                .build();
+        int stripeCount = 1;
+        while (stripeCount < lockStripes) {
+            stripeCount <<= 1;
+        }
+        this.stripes = new ReentrantLock[stripeCount];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        CaffeineCacheMetrics.monitor(meterRegistry, carts, "carts");
+        Gauge.builder("cart.store.pending", pending, Map::size).register(meterRegistry);
+        this.flushed = Counter.builder("cart.store.flushed").register(meterRegistry);
+        this.flushFailed = Counter.builder("cart.store.flush.failed").register(meterRegistry);
+        this.discarded = Counter.builder("cart.store.discarded").register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    private ReentrantLock stripe(UUID customerId) {
+        int h = customerId.hashCode();
+        return stripes[(h ^ (h >>> 16)) & (stripes.length - 1)];
+    }
+
+    /**
+     * Applies {@code change} to the customer's active cart, creating it if there is none, and
+     * schedules the cart for writing. {@code change} runs under the cart's lock and must throw
+     * before it modifies the cart, if at all.
+     *
+     * @throws CartException when there is no cart and the customer does not exist
+     */
+    CartResponse update(UUID customerId, Consumer<MemoryCart> change) {
+        CartResponse response = null;
+        MemoryCart loaded = null;
+        var lock = stripe(customerId);
+        while (response == null) {
+            lock.lock();
+            try {
+                var cart = install(customerId, loaded);
+                if (cart != null) {
+                    change.accept(cart);
+                    pending.put(customerId, cart);
+                    response = cart.toResponse();
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (response == null) {
+                loaded = load(customerId);
+                if (loaded == null) {
+                    if (!customers.exists(customerId)) {
+                        throw new CartException("Customer not found");
+                    }
+                    loaded = new MemoryCart(Ids.next(), customerId, Instant.now(), false);
+                }
+            }
+        }
+        if (pending.size() > maxPending) {
+            flushPending();
+        }
+        return response;
+    }
+
+    /** @throws CartException when the customer has no active cart */
+    CartResponse read(UUID customerId) {
+        MemoryCart loaded = null;
+        var lock = stripe(customerId);
+        while (true) {
+            lock.lock();
+            try {
+                var cart = install(customerId, loaded);
+                if (cart != null) {
+                    return cart.toResponse();
+                }
+            } finally {
+                lock.unlock();
+            }
+            loaded = load(customerId);
+            if (loaded == null) {
+                throw new CartException("No active cart for customer");
+            }
+        }
+    }
+
+    /** The cached cart, or one evicted before it was written. Caller holds the stripe lock. */
+    private MemoryCart cached(UUID customerId) {
+        var cart = carts.getIfPresent(customerId);
+        return cart != null ? cart : pending.get(customerId);
+    }
+
+    /**
+     * The cached cart, else {@code loaded} (read without the lock) cached in its place; null when
+     * there is neither. Caller holds the stripe lock.
+     */
+    private MemoryCart install(UUID customerId, MemoryCart loaded) {
+        var cart = cached(customerId);
+        if (cart != null || loaded == null) {
+            return cart;
+        }
+        var raced = carts.asMap().putIfAbsent(customerId, loaded);
+        return raced != null ? raced : loaded;
+    }
+
+    private MemoryCart load(UUID customerId) {
+        return jdbc.query(LOAD, rs -> {
+            if (!rs.next()) {
+                return null;
+            }
+            var cart = new MemoryCart(rs.getObject(1, UUID.class), customerId,
+                    rs.getTimestamp(2).toInstant(), true);
+            do {
+                var productId = rs.getObject(3, UUID.class);
+                if (productId != null) {
+                    cart.put(productId, rs.getInt(4), Money.of(rs.getBigDecimal(5)));
+                }
+            } while (rs.next());
+            return cart;
+        }, customerId);
+    }
+
+    /**
+     * Writes the customer's cart now and hands it over to the database: the next access loads
+     * it again. Called before checkout, which reads the cart from the database and closes it.
+     *
+     * @throws CartException when the cart was no longer active (checked out, or replaced by one
+     *                       created elsewhere), so its unwritten changes were dropped
+     */
+    public void flush(UUID customerId) {
+        if (!enabled) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            var lock = stripe(customerId);
+            lock.lock();
+            try {
+                var cart = pending.remove(customerId);
+                if (cart != null) {
+                    Set<UUID> notActive;
+                    try {
+                        notActive = write(List.of(snapshot(cart)));
+                    } catch (RuntimeException e) {
+                        pending.putIfAbsent(customerId, cart);
+                        flushFailed.increment();
+                        throw e;
+                    }
+                    if (notActive.contains(cart.id)) {
+                        carts.invalidate(customerId);
+                        discarded.increment();
+                        log.warn("Cart {} of customer {} is no longer active; checkout refused, its changes were dropped",
+                                cart.id, customerId);
+                        throw new CartException("Cart changed elsewhere; review it and retry the checkout");
+                    }
+                    cart.persisted = true;
+                }
+                carts.invalidate(customerId);
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /** Writes every pending cart, a batch per transaction; a failed batch is retried on the next run. */
+    @Scheduled(fixedDelayString = "${app.cart.memory.flush-interval:PT0.5S}")
+    public void flushPending() {
+        if (!enabled || pending.isEmpty()) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            while (!pending.isEmpty()) {
+                var batch = new ArrayList<Snapshot>(Math.min(flushBatchSize, pending.size()));
+                for (var customerId : pending.keySet()) {
+                    if (batch.size() == flushBatchSize) {
+                        break;
+                    }
+                    var lock = stripe(customerId);
+                    lock.lock();
+                    try {
+                        var cart = pending.remove(customerId);
+                        if (cart != null) {
+                            batch.add(snapshot(cart));
+                        }
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+                if (!writeBatch(batch)) {
+                    return;
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private static Snapshot snapshot(MemoryCart cart) {
+        return new Snapshot(cart, cart.persisted, new LinkedHashMap<>(cart.lines));
+    }
+
+    private boolean writeBatch(List<Snapshot> batch) {
+        Set<UUID> notActive;
+        try {
+            notActive = write(batch);
+        } catch (DataAccessException e) {
+            flushFailed.increment();
+            log.warn("Could not write {} carts; retrying on the next flush", batch.size(), e);
+            for (var snapshot : batch) {
+                pending.putIfAbsent(snapshot.cart().customerId, snapshot.cart());
+            }
+            return false;
+        }
+        for (var snapshot : batch) {
+            var cart = snapshot.cart();
+            var lock = stripe(cart.customerId);
+            lock.lock();
+            try {
+                if (notActive.contains(cart.id)) {
+                    // Checked out or superseded: the database has the cart that counts now.
+                    pending.remove(cart.customerId, cart);
+                    carts.asMap().remove(cart.customerId, cart);
+                    discarded.increment();
+                    log.warn("Cart {} of customer {} is no longer active; dropped its unwritten changes",
+                            cart.id, cart.customerId);
+                } else {
+                    cart.persisted = true;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Four statements whatever the batch size: new carts, removed lines, upserted lines, and the
+     * carts that turned out not to be active (none of their lines were written).
+     *
+     * @return ids of the carts that are not active
+     */
+    private Set<UUID> write(List<Snapshot> batch) {
+        var result = transactionTemplate.execute(status -> {
+            var created = batch.stream().filter(s -> !s.persisted()).toList();
+            if (!created.isEmpty()) {
+                jdbc.batchUpdate(INSERT_CART, created.stream()
+                        .map(s -> new Object[]{s.cart().id, s.cart().customerId, Timestamp.from(s.cart().createdAt)})
+                        .toList());
+            }
+            var persisted = batch.stream().filter(Snapshot::persisted).toList();
+            if (!persisted.isEmpty()) {
+                jdbc.batchUpdate(DELETE_REMOVED_LINES, new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        var snapshot = persisted.get(i);
+                        ps.setObject(1, snapshot.cart().id);
+                        ps.setArray(2, ps.getConnection().createArrayOf("uuid", snapshot.lines().keySet().toArray()));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return persisted.size();
+                    }
+                });
+            }
+            var lines = new ArrayList<Object[]>();
+            for (var snapshot : batch) {
+                snapshot.lines().forEach((productId, line) -> lines.add(new Object[]{
+                        Ids.next(), productId, line.quantity(), line.unitPrice().toBigDecimal(), snapshot.cart().id}));
+            }
+            if (!lines.isEmpty()) {
+                jdbc.batchUpdate(UPSERT_LINE, lines);
+            }
+            return jdbc.query(con -> {
+                var ps = con.prepareStatement(NOT_ACTIVE);
+                ps.setArray(1, con.createArrayOf("uuid", batch.stream().map(s -> s.cart().id).toArray()));
+                return ps;
+            }, (rs, n) -> rs.getObject(1, UUID.class));
+        });
+        flushed.increment(batch.size());
+        return result == null ? Set.of() : result.stream().collect(Collectors.toSet());
+    }
+
+    /** Writes whatever is still pending, so a shutdown does not lose carts. */
+    @Override
+    public void destroy() {
+        flushPending();
+    }
+}
@@ -0,0 +1,28 @@
+package com.farmatodo.cart.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+import java.util.UUID;
+
+/** Changes are applied in order, so a later change to the same product sees the earlier ones. */
+public class BatchCartItemsRequest {
+
+    public static final int MAX_ITEMS = 200;
+
+    @NotNull
+    private UUID customerId;
+
+    @NotEmpty
+    @Size(max = MAX_ITEMS, message = "at most " + MAX_ITEMS + " items per batch")
+    private List<@Valid @NotNull CartItemChange> items;
+
+    public UUID getCustomerId() { return customerId; }
+    public List<CartItemChange> getItems() { return items; }
+
+    public void setCustomerId(UUID customerId) { this.customerId = customerId; }
+    public void setItems(List<CartItemChange> items) { this.items = items; }
+}
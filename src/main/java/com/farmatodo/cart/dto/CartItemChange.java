@@ -0,0 +1,42 @@
+package com.farmatodo.cart.dto;
+
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+import java.util.UUID;
+
+/**
+ * One line of a batch: {@code ADD} adds {@code quantity} to the line, {@code SET} makes it the
+ * line quantity (0 removes the line) and {@code REMOVE} drops the line, ignoring the quantity.
+ */
+public class CartItemChange {
+
+    public enum Operation {
+        ADD,
+        SET,
+        REMOVE
+    }
+
+    @NotNull
+    private UUID productId;
+
+    @NotNull
+    private Operation operation = Operation.ADD;
+
+    @Min(0)
+    private int quantity = 1;
+
+    @AssertTrue(message = "quantity must be at least 1 to add")
+    public boolean isAddingSomething() {
+        return operation != Operation.ADD || quantity >= 1;
+    }
+
+    public UUID getProductId() { return productId; }
+    public Operation getOperation() { return operation; }
+    public int getQuantity() { return quantity; }
+
+    public void setProductId(UUID productId) { this.productId = productId; }
+    public void setOperation(Operation operation) { this.operation = operation; }
+    public void setQuantity(int quantity) { this.quantity = quantity; }
+}
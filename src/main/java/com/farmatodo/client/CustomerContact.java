@@ -0,0 +1,11 @@
+package com.farmatodo.client;
+
+import java.util.UUID;
+
+/** The part of a customer that notifications need, as cached by {@link CustomerLookup}. */
+public record CustomerContact(UUID id, String email, String name) {
+
+    static CustomerContact of(Customer customer) {
+        return new CustomerContact(customer.getId(), customer.getEmail(), customer.getName());
+    }
+}
@@ -0,0 +1,211 @@
+package com.farmatodo.client;
+
+import com.farmatodo.bloom.TableBloomFilter;
+import com.farmatodo.id.UuidV7Generator;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+/**
+ * Customer existence and contact lookups without a query per call. Customers are rarely changed,
+ * so their {@link CustomerContact} (what notifications need) is kept in a bounded cache, and a
+ * {@link TableBloomFilter} of every customer id, built at startup and grown as customers are
+ * created, answers "no such customer" without a primary-key lookup. A contact loaded to confirm
+ * that a customer exists is the one later used for its notifications.
+ *
+ * <p>{@link #sync()} runs the filter's catch-up every {@code app.customer.cache.sync-interval}; see
+ * {@link TableBloomFilter} for how stale it can be. Customer ids are version 7 UUIDs, so a
+ * rejected id minted since the last catch-up is still looked up in the database: a customer
+ * created on another instance can be used here at once.
+ *
+ * <p>Profile changes must call {@link #invalidate}; other instances drop their copy after
+ * {@code app.customer.cache.ttl}.
+ *
+ * <p>Publishes {@code customer.existence} (tagged {@code result=cache_hit|bloom_reject|db_found|db_missing}),
+ * {@code customer.bloom.insertions}, {@code customer.bloom.stages} and {@code cache.*} meters
+ * tagged {@code cache=customer-contacts}.
+ */
+@Component
+public class CustomerLookup {
+
+    private static final Logger log = LoggerFactory.getLogger(CustomerLookup.class);
+
+    private static final String LOAD_ALL = "SELECT id FROM customers";
+    private static final String LOAD_SINCE = "SELECT id FROM customers WHERE created_at >= ?";
+    private static final String LOAD_CONTACT = "SELECT id, email, name FROM customers WHERE id = ?";
+
+    private final JdbcTemplate jdbc;
+    private final boolean enabled;
+    private final Cache<UUID, CustomerContact> contacts;
+    private final TableBloomFilter bloom;
+
+    private final Counter cacheHits;
+    private final Counter bloomRejects;
+    private final Counter dbFound;
+    private final Counter dbMissing;
+
+    @Autowired
+    public CustomerLookup(JdbcTemplate jdbc,
+                          MeterRegistry meterRegistry,
+                          @Value("${app.customer.cache.enabled:true}") boolean enabled,
+                          @Value("${app.customer.cache.max-size:100000}") long maxSize,
+                          @Value("${app.customer.cache.ttl:PT10M}") Duration ttl,
+                          @Value("${app.customer.cache.expected-customers:1000000}") long expectedCustomers,
+                          @Value("${app.customer.cache.false-positive-rate:0.01}") double falsePositiveRate,
+                          @Value("${app.customer.cache.sync-interval:PT1S}") Duration syncInterval) {
+        this(jdbc, meterRegistry, enabled, maxSize, ttl, expectedCustomers, falsePositiveRate, syncInterval,
+                Clock.systemUTC());
+    }
+
+    CustomerLookup(JdbcTemplate jdbc, MeterRegistry meterRegistry, boolean enabled, long maxSize, Duration ttl,
+                   long expectedCustomers, double falsePositiveRate, Duration syncInterval, Clock clock) {
+        this.jdbc = jdbc;
+        this.enabled = enabled;
+        this.bloom = new TableBloomFilter(jdbc, LOAD_ALL, LOAD_SINCE, UnaryOperator.identity(),
+                CustomerLookup::createdAt, expectedCustomers, falsePositiveRate, syncInterval, clock);
+        this.contacts = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .ticker(() -> TimeUnit.MILLISECONDS.toNanos(clock.millis()))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, contacts, "customer-contacts");
+        Gauge.builder("customer.bloom.insertions", bloom, TableBloomFilter::insertions).register(meterRegistry);
+        Gauge.builder("customer.bloom.stages", bloom, TableBloomFilter::stageCount).register(meterRegistry);
+        this.cacheHits = counter(meterRegistry, "cache_hit");
+        this.bloomRejects = counter(meterRegistry, "bloom_reject");
+        this.dbFound = counter(meterRegistry, "db_found");
+        this.dbMissing = counter(meterRegistry, "db_missing");
+    }
+
+    private static Counter counter(MeterRegistry registry, String result) {
+        return Counter.builder("customer.existence").tag("result", result).register(registry);
+    }
+
+    public boolean exists(UUID customerId) {
+        return contact(customerId).isPresent();
+    }
+
+    /** The customer's contact, or empty when there is no such customer. */
+    public Optional<CustomerContact> contact(UUID customerId) {
+        if (!enabled) {
+            return load(customerId);
+        }
+        var cached = contacts.getIfPresent(customerId);
+        if (cached != null) {
+            cacheHits.increment();
+            return Optional.of(cached);
+        }
+        if (!bloom.mightContain(customerId.toString())) {
+            bloomRejects.increment();
+            return Optional.empty();
+        }
+        var found = load(customerId);
+        if (found.isPresent()) {
+            dbFound.increment();
+            contacts.put(customerId, found.get());
+        } else {
+            dbMissing.increment();
+        }
+        return found;
+    }
+
+    private Optional<CustomerContact> load(UUID customerId) {
+        return jdbc.query(LOAD_CONTACT, (rs, n) -> new CustomerContact(
+                        rs.getObject(1, UUID.class), rs.getString(2), rs.getString(3)), customerId)
+                .stream().findFirst();
+    }
+
+    /** Records a new customer once the surrounding transaction commits (immediately when there is none). */
+    public void recordCreated(Customer customer) {
+        if (!enabled) {
+            return;
+        }
+        var contact = CustomerContact.of(customer);
+        afterCommit(() -> {
+            contacts.put(contact.id(), contact);
+            bloom.put(contact.id().toString());
+        });
+    }
+
+    /**
+     * Drops the cached contact once the surrounding transaction commits, so the next lookup reads
+     * the committed profile. Call it from every write that changes a customer's email or name.
+     */
+    public void invalidate(UUID customerId) {
+        if (!enabled) {
+            return;
+        }
+        afterCommit(() -> contacts.invalidate(customerId));
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /** Creation time of a version 7 id; ids minted with {@code app.ids.uuid-version=4} carry none. */
+    private static Instant createdAt(String key) {
+        UUID id = UUID.fromString(key);
+        return id.version() == 7 ? Instant.ofEpochMilli(UuidV7Generator.timestamp(id)) : null;
+    }
+
+    /** Builds the filter from the customers table; until it exists every lookup goes to the database. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            bloom.load();
+            log.info("Customer existence filter built with {} customers ({} stages)", bloom.insertions(),
+                    bloom.stageCount());
+        } catch (DataAccessException e) {
+            log.warn("Customer existence filter could not be built; lookups go to the database", e);
+        }
+    }
+
+    /** Picks up customers created on other instances, or builds the filter if the startup build failed. */
+    @Scheduled(fixedDelayString = "${app.customer.cache.sync-interval:PT1S}")
+    public void sync() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            bloom.sync();
+        } catch (DataAccessException e) {
+            log.warn("Customer existence catch-up failed; rejections go to the database until it succeeds", e);
+        }
+    }
+}
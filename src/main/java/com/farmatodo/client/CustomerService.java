@@ -19,10 +19,12 @@ public class CustomerService {
 
     private final CustomerRepository repo;
     private final LogService logService;
+    private final CustomerLookup lookup;
 
-    public CustomerService(CustomerRepository repo, LogService logService) {
+    public CustomerService(CustomerRepository repo, LogService logService, CustomerLookup lookup) {
         this.repo = repo;
         this.logService = logService;
+        this.lookup = lookup;
     }
 
     @Transactional
@@ -53,6 +55,7 @@ public class CustomerService {
         );
 
         customer = repo.save(customer);
+        lookup.recordCreated(customer);
 
         logService.log("customer_created", "INFO", "Customer registered successfully",
                 Map.of("customerId", customer.getId().toString(), "email", customer.getEmail()));
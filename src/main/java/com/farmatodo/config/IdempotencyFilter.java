@@ -0,0 +1,164 @@
+package com.farmatodo.config;
+
+import com.farmatodo.exception.ApiError;
+import com.farmatodo.idempotency.IdempotencyConflictException;
+import com.farmatodo.idempotency.IdempotencyService;
+import com.farmatodo.idempotency.IdempotentResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.MDC;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Set;
+
+/**
+ * Makes {@code POST /orders}, {@code POST /tokens}, {@code POST /tokens/batch} and
+ * {@code POST /carts/items/batch} safe to retry: a request carrying an {@code Idempotency-Key}
+ * header runs once, and retries with the same key and body get the stored response back with
+ * {@code Idempotent-Replayed: true}. Requests without the header pass through untouched.
+ */
+@Component
+@Order(4)
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    public static final String REPLAYED = "Idempotent-Replayed";
+
+    static final int MAX_KEY_LENGTH = 255;
+    private static final Set<String> PATHS = Set.of("/orders", "/tokens", "/tokens/batch", "/carts/items/batch");
+
+    private final IdempotencyService idempotency;
+    private final ObjectMapper objectMapper;
+
+    public IdempotencyFilter(IdempotencyService idempotency, ObjectMapper objectMapper) {
+        this.idempotency = idempotency;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) throws ServletException {
+        return !"POST".equals(request.getMethod()) || !PATHS.contains(request.getRequestURI())
+                || request.getHeader(IDEMPOTENCY_KEY) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String key = request.getHeader(IDEMPOTENCY_KEY).trim();
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            writeError(response, 400, "Invalid Idempotency-Key",
+                    "Idempotency-Key must be 1 to " + MAX_KEY_LENGTH + " characters");
+            return;
+        }
+        var cached = new CachedBodyRequest(request);
+        String scopedKey = request.getMethod() + " " + request.getRequestURI() + ":" + key;
+        String requestHash = hash(request.getMethod(), request.getRequestURI(), cached.body);
+
+        IdempotencyService.Outcome outcome;
+        try {
+            outcome = idempotency.execute(scopedKey, requestHash, () -> {
+                var captured = new ContentCachingResponseWrapper(response);
+                filterChain.doFilter(cached, captured);
+                var result = new IdempotentResponse(requestHash, captured.getStatus(), captured.getContentType(),
+                        captured.getHeader(HttpHeaders.LOCATION), captured.getContentAsByteArray());
+                captured.copyBodyToResponse();
+                return result;
+            });
+        } catch (IdempotencyConflictException e) {
+            int status = e.getReason() == IdempotencyConflictException.Reason.KEY_REUSED ? 422 : 409;
+            writeError(response, status, "Idempotency conflict", e.getMessage());
+            return;
+        } catch (IOException | ServletException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ServletException(e);
+        }
+
+        if (outcome.replayed()) {
+            replay(response, outcome.response());
+        }
+    }
+
+    private static void replay(HttpServletResponse response, IdempotentResponse stored) throws IOException {
+        response.setStatus(stored.status());
+        response.setHeader(REPLAYED, "true");
+        if (stored.contentType() != null) {
+            response.setContentType(stored.contentType());
+        }
+        if (stored.location() != null) {
+            response.setHeader(HttpHeaders.LOCATION, stored.location());
+        }
+        if (stored.body() != null) {
+            response.setContentLength(stored.body().length);
+            response.getOutputStream().write(stored.body());
+        }
+    }
+
+    private void writeError(HttpServletResponse response, int status, String message, String detail) throws IOException {
+        response.setStatus(status);
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        var err = new ApiError(MDC.get(TxFilter.TX_ID), message, detail, Instant.now());
+        response.getWriter().write(objectMapper.writeValueAsString(err));
+    }
+
+    static String hash(String method, String path, byte[] body) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            digest.update((method + " " + path + "\n").getBytes(StandardCharsets.UTF_8));
+            digest.update(body);
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Reads the body up front so it can be hashed before the controller consumes it. */
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest request) throws IOException {
+            super(request);
+            this.body = request.getInputStream().readAllBytes();
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            var in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override public int read() { return in.read(); }
+                @Override public int read(byte[] b, int off, int len) { return in.read(b, off, len); }
+                @Override public boolean isFinished() { return in.available() == 0; }
+                @Override public boolean isReady() { return true; }
+                @Override public void setReadListener(ReadListener listener) { throw new UnsupportedOperationException(); }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            var charset = getCharacterEncoding() != null ? getCharacterEncoding() : StandardCharsets.UTF_8.name();
+            return new BufferedReader(new InputStreamReader(getInputStream(), Charset.forName(charset)));
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.farmatodo.config;
 
+import com.farmatodo.ratelimit.ClusterRateLimiter;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import io.github.bucket4j.Bandwidth;
@@ -9,28 +10,43 @@ import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
 import java.time.Duration;
 
+/**
+ * Per-client request limit. With {@code app.rate-limit.mode=local} every instance keeps its own
+ * Bucket4j buckets; with {@code cluster} the limit is shared through {@link ClusterRateLimiter},
+ * and the local buckets only decide while the shared store cannot be reached.
+ */
 @Component
 @Order(2)
 public class RateLimitFilter extends OncePerRequestFilter {
 
+    private static final Logger log = LoggerFactory.getLogger(RateLimitFilter.class);
+
     private static final Duration BUCKET_TTL = Duration.ofMinutes(15);
 
     private final int requestsPerMinute;
     private final Cache<String, Bucket> bucketCache;
+    private final ClusterRateLimiter cluster;
 
-    public RateLimitFilter(@Value("${app.rate-limit.requests-per-minute:60}") int requestsPerMinute) {
+    public RateLimitFilter(@Value("${app.rate-limit.requests-per-minute:60}") int requestsPerMinute,
+                           ObjectProvider<ClusterRateLimiter> clusterRateLimiter) {
         this.requestsPerMinute = requestsPerMinute;
         this.bucketCache = Caffeine.newBuilder()
                 .expireAfterAccess(BUCKET_TTL)
                 .build();
+        var limiter = clusterRateLimiter.getIfAvailable();
+        this.cluster = limiter != null && limiter.isEnabled() ? limiter : null;
     }
 
     @Override
@@ -45,9 +61,8 @@ public class RateLimitFilter extends OncePerRequestFilter {
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
         String key = resolveClientKey(request);
-        Bucket bucket = bucketCache.get(key, k -> createBucket());
 
-        if (!bucket.tryConsume(1)) {
+        if (!tryAcquire(key)) {
             response.setStatus(429);
             response.setContentType("application/json");
             response.setCharacterEncoding("UTF-8");
@@ -58,6 +73,17 @@ public class RateLimitFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    private boolean tryAcquire(String key) {
+        if (cluster != null) {
+            try {
+                return cluster.tryAcquire(key);
+            } catch (DataAccessException e) {
+                log.debug("Shared rate limit unavailable, using the local bucket: {}", e.getMessage());
+            }
+        }
+        return bucketCache.get(key, k -> createBucket()).tryConsume(1);
+    }
+
     private Bucket createBucket() {
         Bandwidth limit = Bandwidth.classic(requestsPerMinute, Refill.greedy(requestsPerMinute, Duration.ofMinutes(1)));
         return Bucket.builder().addLimit(limit).build();
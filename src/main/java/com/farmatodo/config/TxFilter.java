@@ -1,5 +1,7 @@
 package com.farmatodo.config;
 
+import com.farmatodo.id.Ids;
+import com.farmatodo.log.LogFlushScope;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -10,7 +12,6 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.util.UUID;
 
 @Component
 @Order(1)
@@ -20,12 +21,14 @@ public class TxFilter extends OncePerRequestFilter {
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
-        String tx = UUID.randomUUID().toString();
+        String tx = Ids.next().toString();
         MDC.put(TX_ID, tx);
         response.addHeader("X-Transaction-Id", tx);
+        LogFlushScope.open();
         try {
             filterChain.doFilter(request, response);
         } finally {
+            LogFlushScope.close();
             MDC.clear();
         }
     }
@@ -4,14 +4,22 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.Cipher;
+import javax.crypto.NoSuchPaddingException;
 import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import java.util.Arrays;
 import java.util.Base64;
 
 /**
  * AES-256-GCM implementation of EncryptionService.
  * IV is 12 bytes, auth tag 128 bits. One IV per encryption.
+ *
+ * <p>Each thread keeps its own {@link Cipher} (re-initialised with a fresh IV per call) and its
+ * own DRBG {@link SecureRandom} for IVs, so concurrent tokenizations share no locks.
  */
 @Service
 public class AesEncryptionService implements EncryptionService {
@@ -21,8 +29,12 @@ public class AesEncryptionService implements EncryptionService {
     private static final int IV_LENGTH = 12;
     private static final int TAG_LENGTH = 128;
     private static final int AUTH_TAG_BYTES = 16;
+    private static final int SCRATCH_BYTES = 256;
 
-    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final ThreadLocal<Cipher> CIPHER = ThreadLocal.withInitial(AesEncryptionService::newCipher);
+    private static final ThreadLocal<SecureRandom> RANDOM = ThreadLocal.withInitial(AesEncryptionService::newRandom);
+    /** Output buffer for {@link #encrypt(String)}; card numbers fit, longer input falls back to allocating. */
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[SCRATCH_BYTES]);
 
     private final SecretKeySpec key;
 
@@ -33,7 +45,7 @@ public class AesEncryptionService implements EncryptionService {
         String trimmed = keyBase64.trim().replaceAll("\\s+", "");
         byte[] decoded = Base64.getDecoder().decode(trimmed);
         byte[] keyBytes = decoded.length == 32 ? decoded
-                : decoded.length > 32 ? java.util.Arrays.copyOf(decoded, 32)
+                : decoded.length > 32 ? Arrays.copyOf(decoded, 32)
                 : decoded.length == 24 ? decoded
                 : decoded.length == 16 ? decoded
                 : null;
@@ -46,29 +58,56 @@ public class AesEncryptionService implements EncryptionService {
 
     @Override
     public EncryptionResult encrypt(String plainText) {
-        try {
-            byte[] iv = randomIv();
-            byte[] plainBytes = plainText.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+        byte[] plainBytes = plainText.getBytes(StandardCharsets.UTF_8);
+        byte[] iv = new byte[IV_LENGTH];
+        int needed = plainBytes.length + AUTH_TAG_BYTES;
+        byte[] out = needed <= SCRATCH_BYTES ? SCRATCH.get() : new byte[needed];
 
-            Cipher cipher = Cipher.getInstance(TRANSFORM);
-            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH, iv));
-            byte[] cipherWithTag = cipher.doFinal(plainBytes);
+        int written = encrypt(plainBytes, 0, plainBytes.length, iv, out, 0);
 
-            int ctLen = cipherWithTag.length - AUTH_TAG_BYTES;
-            byte[] ciphertext = new byte[ctLen];
-            byte[] authTag = new byte[AUTH_TAG_BYTES];
-            System.arraycopy(cipherWithTag, 0, ciphertext, 0, ctLen);
-            System.arraycopy(cipherWithTag, ctLen, authTag, 0, AUTH_TAG_BYTES);
+        int ctLen = written - AUTH_TAG_BYTES;
+        return new EncryptionResult(Arrays.copyOfRange(out, 0, ctLen), iv, Arrays.copyOfRange(out, ctLen, written));
+    }
 
-            return new EncryptionResult(ciphertext, iv, authTag);
-        } catch (Exception e) {
+    @Override
+    public int encrypt(byte[] plain, int offset, int length, byte[] iv, byte[] out, int outOffset) {
+        if (iv.length != IV_LENGTH) {
+            throw new IllegalArgumentException("iv must be " + IV_LENGTH + " bytes");
+        }
+        try {
+            RANDOM.get().nextBytes(iv);
+            Cipher cipher = CIPHER.get();
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH, iv));
+            return cipher.doFinal(plain, offset, length, out, outOffset);
+        } catch (GeneralSecurityException e) {
             throw new RuntimeException("Encryption failed", e);
         }
     }
 
-    private static byte[] randomIv() {
-        byte[] iv = new byte[IV_LENGTH];
-        RANDOM.nextBytes(iv);
-        return iv;
+    @Override
+    public int ivLength() {
+        return IV_LENGTH;
+    }
+
+    @Override
+    public int tagLength() {
+        return AUTH_TAG_BYTES;
+    }
+
+    private static Cipher newCipher() {
+        try {
+            return Cipher.getInstance(TRANSFORM);
+        } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
+            throw new IllegalStateException(TRANSFORM + " not available", e);
+        }
+    }
+
+    /** DRBG instances lock only themselves, unlike NativePRNG which serialises every reader. */
+    private static SecureRandom newRandom() {
+        try {
+            return SecureRandom.getInstance("DRBG");
+        } catch (NoSuchAlgorithmException e) {
+            return new SecureRandom();
+        }
     }
 }
@@ -14,4 +14,18 @@ public interface EncryptionService {
      * @return result containing ciphertext, IV, and auth tag
      */
     EncryptionResult encrypt(String plainText);
+
+    /**
+     * Allocation-free variant for hot paths: generates a fresh IV into {@code iv} and writes the
+     * ciphertext followed by the auth tag into {@code out} starting at {@code outOffset}.
+     *
+     * @param iv  receives the IV; must be {@link #ivLength()} bytes
+     * @param out must have room for {@code length + }{@link #tagLength()} bytes after {@code outOffset}
+     * @return number of bytes written to {@code out}
+     */
+    int encrypt(byte[] plain, int offset, int length, byte[] iv, byte[] out, int outOffset);
+
+    int ivLength();
+
+    int tagLength();
 }
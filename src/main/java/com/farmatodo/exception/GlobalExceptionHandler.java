@@ -61,6 +61,13 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(err);
     }
 
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<ApiError> handleInvalidCursor(InvalidCursorException ex) {
+        String tx = MDC.get(TxFilter.TX_ID);
+        ApiError err = new ApiError(tx, "Bad Request", ex.getMessage(), Instant.now());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(err);
+    }
+
     @ExceptionHandler(CustomerConflictException.class)
     public ResponseEntity<ApiError> handleCustomerConflict(CustomerConflictException ex) {
         String tx = MDC.get(TxFilter.TX_ID);
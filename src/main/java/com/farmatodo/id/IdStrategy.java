@@ -0,0 +1,22 @@
+package com.farmatodo.id;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/** Installs the id generator selected by {@code app.ids.uuid-version} (7, the default, or 4). */
+@Component
+public class IdStrategy {
+
+    private static final Logger log = LoggerFactory.getLogger(IdStrategy.class);
+
+    public IdStrategy(@Value("${app.ids.uuid-version:7}") int version) {
+        Ids.use(switch (version) {
+            case 7 -> new UuidV7Generator();
+            case 4 -> Ids.RANDOM;
+            default -> throw new IllegalArgumentException("app.ids.uuid-version must be 4 or 7, was " + version);
+        });
+        log.info("Generating version {} UUIDs for ids", version);
+    }
+}
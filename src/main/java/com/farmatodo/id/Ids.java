@@ -0,0 +1,32 @@
+package com.farmatodo.id;
+
+import java.util.UUID;
+
+/**
+ * The application's id source: entity ids ({@link TimeOrderedId}), rows written through JDBC and
+ * transaction ids. Time-ordered (v7) by default, so new rows land at the right edge of their
+ * primary-key index instead of at random pages. The strategy is chosen once at startup by
+ * {@link IdStrategy}; it is static because Hibernate instantiates id generators itself.
+ */
+public final class Ids {
+
+    /** Random version 4 ids, as {@link UUID#randomUUID()}. */
+    public static final UuidGenerator RANDOM = UUID::randomUUID;
+
+    private static volatile UuidGenerator generator = new UuidV7Generator();
+
+    private Ids() {
+    }
+
+    public static UUID next() {
+        return generator.next();
+    }
+
+    static void use(UuidGenerator generator) {
+        Ids.generator = generator;
+    }
+
+    static UuidGenerator current() {
+        return generator;
+    }
+}
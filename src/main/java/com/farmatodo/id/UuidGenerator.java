@@ -0,0 +1,10 @@
+package com.farmatodo.id;
+
+import java.util.UUID;
+
+/** Source of new identifiers; see {@link Ids} for the one the application uses. */
+@FunctionalInterface
+public interface UuidGenerator {
+
+    UUID next();
+}
@@ -0,0 +1,20 @@
+package com.farmatodo.idempotency;
+
+public class IdempotencyConflictException extends RuntimeException {
+
+    public enum Reason {
+        /** Same key, same request, still running elsewhere. */
+        IN_PROGRESS,
+        /** Same key sent with a different request body. */
+        KEY_REUSED
+    }
+
+    private final Reason reason;
+
+    public IdempotencyConflictException(Reason reason, String message) {
+        super(message);
+        this.reason = reason;
+    }
+
+    public Reason getReason() { return reason; }
+}
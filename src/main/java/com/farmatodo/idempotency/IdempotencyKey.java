@@ -0,0 +1,60 @@
+package com.farmatodo.idempotency;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+/**
+ * Row of the durable idempotency tier. Read and written by {@link IdempotencyKeyStore}
+ * with plain SQL; mapped here so the schema is managed with the rest of the entities.
+ */
+@Entity
+@Table(name = "idempotency_keys", indexes = @Index(name = "idx_idempotency_expires_at", columnList = "expires_at"))
+public class IdempotencyKey {
+
+    public enum State {
+        IN_PROGRESS,
+        COMPLETED
+    }
+
+    @Id
+    @Column(name = "idem_key", length = 320)
+    private String key;
+
+    @Column(nullable = false, name = "request_hash", length = 64)
+    private String requestHash;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private State state;
+
+    @Column(name = "status")
+    private Integer status;
+
+    @Column(name = "content_type")
+    private String contentType;
+
+    @Column(name = "location", length = 1024)
+    private String location;
+
+    @Column(name = "body")
+    private byte[] body;
+
+    @Column(nullable = false, name = "created_at")
+    private Instant createdAt;
+
+    @Column(nullable = false, name = "expires_at")
+    private Instant expiresAt;
+
+    public IdempotencyKey() {}
+
+    public String getKey() { return key; }
+    public String getRequestHash() { return requestHash; }
+    public State getState() { return state; }
+    public Integer getStatus() { return status; }
+    public String getContentType() { return contentType; }
+    public String getLocation() { return location; }
+    public byte[] getBody() { return body; }
+    public Instant getCreatedAt() { return createdAt; }
+    public Instant getExpiresAt() { return expiresAt; }
+}
@@ -0,0 +1,106 @@
+package com.farmatodo.idempotency;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Optional;
+
+/**
+ * Durable tier of the idempotency store: one {@code idempotency_keys} row per key. A key is
+ * claimed with a single upsert that only takes over rows that are absent or expired, so two
+ * instances can never both run the same request while its row is live.
+ */
+@Component
+class IdempotencyKeyStore {
+
+    private static final String CLAIM = """
+            INSERT INTO idempotency_keys (idem_key, request_hash, state, created_at, expires_at)
+            VALUES (?, ?, 'IN_PROGRESS', ?, ?)
+            ON CONFLICT (idem_key) DO UPDATE SET
+              request_hash = EXCLUDED.request_hash, state = 'IN_PROGRESS', status = NULL,
+              content_type = NULL, location = NULL, body = NULL,
+              created_at = EXCLUDED.created_at, expires_at = EXCLUDED.expires_at
+            WHERE idempotency_keys.expires_at < EXCLUDED.created_at
+            """;
+
+    private static final String FIND = """
+            SELECT request_hash, state, status, content_type, location, body
+            FROM idempotency_keys WHERE idem_key = ?
+            """;
+
+    private static final String COMPLETE = """
+            UPDATE idempotency_keys SET state = 'COMPLETED', status = ?, content_type = ?, location = ?,
+              body = ?, expires_at = ?
+            WHERE idem_key = ?
+            """;
+
+    private static final String EXTEND = """
+            UPDATE idempotency_keys SET expires_at = ?
+            WHERE idem_key = ? AND state = 'IN_PROGRESS'
+            """;
+
+    /** Existing row for a key that could not be claimed; {@code response} is null while in progress. */
+    record Existing(String requestHash, IdempotentResponse response) {
+    }
+
+    private final JdbcTemplate jdbc;
+    private final Clock clock;
+
+    @Autowired
+    IdempotencyKeyStore(JdbcTemplate jdbc) {
+        this(jdbc, Clock.systemUTC());
+    }
+
+    IdempotencyKeyStore(JdbcTemplate jdbc, Clock clock) {
+        this.jdbc = jdbc;
+        this.clock = clock;
+    }
+
+    /**
+     * @return empty when this caller now owns the key, otherwise the live row found instead
+     */
+    Optional<Existing> claim(String key, String requestHash, Duration inProgressTtl) {
+        var now = clock.instant();
+        int claimed = jdbc.update(CLAIM, key, requestHash, Timestamp.from(now), Timestamp.from(now.plus(inProgressTtl)));
+        if (claimed > 0) {
+            return Optional.empty();
+        }
+        return jdbc.query(FIND, rs -> {
+            if (!rs.next()) {
+                return Optional.of(new Existing(requestHash, null));
+            }
+            String hash = rs.getString("request_hash");
+            if (!IdempotencyKey.State.COMPLETED.name().equals(rs.getString("state"))) {
+                return Optional.of(new Existing(hash, null));
+            }
+            return Optional.of(new Existing(hash, new IdempotentResponse(hash, rs.getInt("status"),
+                    rs.getString("content_type"), rs.getString("location"), rs.getBytes("body"))));
+        }, key);
+    }
+
+    void complete(String key, IdempotentResponse response, Duration ttl) {
+        jdbc.update(COMPLETE, response.status(), response.contentType(), response.location(), response.body(),
+                Timestamp.from(clock.instant().plus(ttl)), key);
+    }
+
+    /** Pushes the expiry of claims that are still in progress to {@code inProgressTtl} from now. */
+    void extend(Collection<String> keys, Duration inProgressTtl) {
+        var expiresAt = Timestamp.from(clock.instant().plus(inProgressTtl));
+        jdbc.batchUpdate(EXTEND, keys.stream().map(key -> new Object[]{expiresAt, key}).toList());
+    }
+
+    void release(String key) {
+        jdbc.update("DELETE FROM idempotency_keys WHERE idem_key = ?", key);
+    }
+
+    @Scheduled(fixedDelayString = "${app.idempotency.purge-interval:PT10M}")
+    public void purgeExpired() {
+        jdbc.update("DELETE FROM idempotency_keys WHERE expires_at < ?", Timestamp.from(clock.instant()));
+    }
+}
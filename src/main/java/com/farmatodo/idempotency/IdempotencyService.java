@@ -0,0 +1,242 @@
+package com.farmatodo.idempotency;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs a keyed request at most once. The local tier maps each key to the future of its single
+ * in-flight computation, so concurrent duplicates on this instance wait for that result instead
+ * of racing; the durable tier ({@link IdempotencyKeyStore}) carries completed responses across
+ * instances and restarts. 5xx responses and exceptions are not stored: the key is released and
+ * the next attempt runs the request again.
+ *
+ * <p>A claim expires after {@code app.idempotency.in-progress-ttl} so a crashed instance does
+ * not hold its keys forever; while the request runs, {@link #heartbeat()} pushes the expiry
+ * forward every {@code app.idempotency.heartbeat-interval}, so a slow request (a checkout
+ * waiting out payment retries) is never taken over by a duplicate. A key already in use for a
+ * different request is answered {@link IdempotencyConflictException.Reason#KEY_REUSED} whether
+ * or not that request has finished.
+ *
+ * <p>If the response cannot be stored once the request has run, the caller still gets it and
+ * local duplicates replay it; the key stays claimed, and {@link #heartbeat()} stores it later,
+ * so no other instance runs the request again in the meantime.
+ *
+ * <p>Publishes {@code cache.*} meters tagged {@code cache=idempotency}.
+ */
+@Service
+public class IdempotencyService {
+
+    /** {@code replayed} is true when the response comes from an earlier execution. */
+    public record Outcome(IdempotentResponse response, boolean replayed) {
+    }
+
+    /** Local execution of a key: the request it runs and its eventual response. */
+    private record InFlight(String requestHash, CompletableFuture<IdempotentResponse> future) {
+    }
+
+    /** Completes a waiter's future when the owner gave the key up; waiters then try again. */
+    private static final class Released extends RuntimeException {
+        Released() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyService.class);
+
+    private final IdempotencyKeyStore store;
+    private final Cache<String, InFlight> inFlight;
+    private final Set<String> claimed = ConcurrentHashMap.newKeySet();
+    /** Responses whose {@link IdempotencyKeyStore#complete} failed; their keys stay in {@link #claimed}. */
+    private final Map<String, IdempotentResponse> uncommitted = new ConcurrentHashMap<>();
+    private final Duration ttl;
+    private final Duration inProgressTtl;
+    private final Duration waitTimeout;
+
+    public IdempotencyService(IdempotencyKeyStore store,
+                              @Value("${app.idempotency.ttl:24h}") Duration ttl,
+                              @Value("${app.idempotency.in-progress-ttl:1m}") Duration inProgressTtl,
+                              @Value("${app.idempotency.heartbeat-interval:PT20S}") Duration heartbeatInterval,
+                              @Value("${app.idempotency.wait-timeout:30s}") Duration waitTimeout,
+                              @Value("${app.idempotency.local.max-size:10000}") long localMaxSize,
+                              @Value("${app.idempotency.local.ttl:10m}") Duration localTtl,
+                              MeterRegistry meterRegistry) {
+        if (heartbeatInterval.compareTo(inProgressTtl) >= 0) {
+            throw new IllegalArgumentException("app.idempotency.heartbeat-interval must be shorter than in-progress-ttl");
+        }
+        this.store = store;
+        this.ttl = ttl;
+        this.inProgressTtl = inProgressTtl;
+        this.waitTimeout = waitTimeout;
+        this.inFlight = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(localTtl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, inFlight, "idempotency");
+    }
+
+    /**
+     * Runs {@code action} unless {@code key} already has a response, in which case that response
+     * is returned without running anything.
+     *
+     * @throws IdempotencyConflictException when the key was used for a different request, or the
+     *                                      same request is still running on another instance
+     */
+    public Outcome execute(String key, String requestHash, Callable<IdempotentResponse> action) throws Exception {
+        while (true) {
+            var mine = new InFlight(requestHash, new CompletableFuture<>());
+            var existing = inFlight.asMap().putIfAbsent(key, mine);
+            if (existing == null) {
+                return run(key, requestHash, action, mine);
+            }
+            if (!existing.requestHash().equals(requestHash)) {
+                throw keyReused();
+            }
+            var response = await(existing.future());
+            if (response != null) {
+                return replay(response, requestHash);
+            }
+        }
+    }
+
+    private Outcome run(String key, String requestHash, Callable<IdempotentResponse> action,
+                        InFlight mine) throws Exception {
+        IdempotencyKeyStore.Existing existing;
+        try {
+            existing = store.claim(key, requestHash, inProgressTtl).orElse(null);
+        } catch (RuntimeException e) {
+            giveUp(key, mine);
+            throw e;
+        }
+        if (existing != null) {
+            if (!existing.requestHash().equals(requestHash)) {
+                throw fail(key, mine, keyReused());
+            }
+            if (existing.response() == null) {
+                throw fail(key, mine, new IdempotencyConflictException(IdempotencyConflictException.Reason.IN_PROGRESS,
+                        "A request with this Idempotency-Key is still in progress"));
+            }
+            mine.future().complete(existing.response());
+            return replay(existing.response(), requestHash);
+        }
+
+        claimed.add(key);
+        IdempotentResponse response;
+        try {
+            try {
+                response = action.call();
+            } catch (Exception e) {
+                store.release(key);
+                giveUp(key, mine);
+                throw e;
+            }
+            if (response.status() >= 500) {
+                store.release(key);
+                giveUp(key, mine);
+            } else {
+                commit(key, response);
+                mine.future().complete(response);
+            }
+        } finally {
+            if (!uncommitted.containsKey(key)) {
+                claimed.remove(key);
+            }
+        }
+        return new Outcome(response, false);
+    }
+
+    /** Stores {@code response}; on failure keeps it for {@link #heartbeat()} to store later. */
+    private void commit(String key, IdempotentResponse response) {
+        try {
+            store.complete(key, response, ttl);
+        } catch (RuntimeException e) {
+            log.error("Could not store the response for idempotency key {}; keeping it claimed and retrying", key, e);
+            uncommitted.put(key, response);
+        }
+    }
+
+    /**
+     * Stores the responses that could not be stored when their request finished, then extends
+     * the claims still held here, so none expires while its owner is alive however long the
+     * request takes.
+     */
+    @Scheduled(fixedDelayString = "${app.idempotency.heartbeat-interval:PT20S}")
+    public void heartbeat() {
+        uncommitted.forEach((key, response) -> {
+            try {
+                store.complete(key, response, ttl);
+                uncommitted.remove(key, response);
+                claimed.remove(key);
+            } catch (RuntimeException e) {
+                log.warn("Could not store the response for idempotency key {}; retrying next interval", key, e);
+            }
+        });
+        var keys = List.copyOf(claimed);
+        if (keys.isEmpty()) {
+            return;
+        }
+        try {
+            store.extend(keys, inProgressTtl);
+        } catch (DataAccessException e) {
+            log.warn("Could not extend {} idempotency claims; retrying next interval", keys.size(), e);
+        }
+    }
+
+    private void giveUp(String key, InFlight mine) {
+        inFlight.asMap().remove(key, mine);
+        mine.future().completeExceptionally(new Released());
+    }
+
+    /** Removes {@code mine} and hands {@code conflict} to its waiters. */
+    private IdempotencyConflictException fail(String key, InFlight mine, IdempotencyConflictException conflict) {
+        inFlight.asMap().remove(key, mine);
+        mine.future().completeExceptionally(conflict);
+        return conflict;
+    }
+
+    /** @return the owner's response, or null when the owner gave the key up */
+    private IdempotentResponse await(CompletableFuture<IdempotentResponse> future) throws InterruptedException {
+        try {
+            return future.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new IdempotencyConflictException(IdempotencyConflictException.Reason.IN_PROGRESS,
+                    "A request with this Idempotency-Key is still in progress");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IdempotencyConflictException conflict) {
+                throw conflict;
+            }
+            return null;
+        }
+    }
+
+    private static Outcome replay(IdempotentResponse response, String requestHash) {
+        if (!response.requestHash().equals(requestHash)) {
+            throw keyReused();
+        }
+        return new Outcome(response, true);
+    }
+
+    private static IdempotencyConflictException keyReused() {
+        return new IdempotencyConflictException(IdempotencyConflictException.Reason.KEY_REUSED,
+                "Idempotency-Key was already used for a different request");
+    }
+}
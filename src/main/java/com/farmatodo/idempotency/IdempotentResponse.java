@@ -0,0 +1,5 @@
+package com.farmatodo.idempotency;
+
+/** Response captured the first time a keyed request ran, replayed verbatim on retries. */
+public record IdempotentResponse(String requestHash, int status, String contentType, String location, byte[] body) {
+}
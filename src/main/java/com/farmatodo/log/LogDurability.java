@@ -0,0 +1,13 @@
+package com.farmatodo.log;
+
+/** How long {@link LogService#log} callers wait for their entry to reach {@code transaction_logs}. */
+public enum LogDurability {
+    /** Enqueue and return; the entry is written with the next batch. */
+    FIRE_AND_FORGET,
+    /**
+     * Enqueue and wait, bounded, until the entry is written: if the caller is in a transaction, at
+     * the end of the request, or as the transaction completes on threads that serve no request;
+     * otherwise before returning.
+     */
+    FLUSH_ON_COMMIT
+}
@@ -0,0 +1,42 @@
+package com.farmatodo.log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Per-thread list of {@link LogDurability#FLUSH_ON_COMMIT} waits that {@link LogService} moved out
+ * of the caller's transaction: waiting in the transaction's completion callback would keep its
+ * connection checked out. {@link com.farmatodo.config.TxFilter} opens a scope around each request
+ * and runs the waits once the handler has returned, before the response is sent. Threads without
+ * a scope wait in the completion callback after all.
+ */
+public final class LogFlushScope {
+
+    private static final ThreadLocal<List<Runnable>> PENDING = new ThreadLocal<>();
+
+    private LogFlushScope() {
+    }
+
+    public static void open() {
+        PENDING.set(new ArrayList<>());
+    }
+
+    /** Runs the waits deferred since {@link #open()} and ends the scope. */
+    public static void close() {
+        var pending = PENDING.get();
+        PENDING.remove();
+        if (pending != null) {
+            pending.forEach(Runnable::run);
+        }
+    }
+
+    /** @return false when this thread has no open scope */
+    static boolean defer(Runnable await) {
+        var pending = PENDING.get();
+        if (pending == null) {
+            return false;
+        }
+        pending.add(await);
+        return true;
+    }
+}
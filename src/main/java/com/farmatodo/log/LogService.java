@@ -1,34 +1,82 @@
 package com.farmatodo.log;
 
 import com.farmatodo.config.TxFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Propagation;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+/**
+ * Appends audit events to {@code transaction_logs} through {@link TransactionLogWriter}. Logging
+ * never joins, suspends or opens a transaction; {@link LogDurability} decides whether the caller
+ * waits for the row to be written. Inside a transaction the wait is deferred to the end of the
+ * request ({@link LogFlushScope}), once the transaction has released its connection. Threads that
+ * serve no request (payment retries, the checkout pool, the outbox relay, the migrator) wait as
+ * their transaction completes instead, holding its connection for at most the flush timeout.
+ */
 @Service
 public class LogService {
 
-    private final TransactionLogRepository repository;
+    private static final Logger log = LoggerFactory.getLogger(LogService.class);
 
-    public LogService(TransactionLogRepository repository) {
-        this.repository = repository;
+    private final TransactionLogWriter writer;
+    private final LogDurability durability;
+    private final Duration flushTimeout;
+
+    public LogService(TransactionLogWriter writer,
+                      @Value("${app.transaction-log.durability:FLUSH_ON_COMMIT}") LogDurability durability,
+                      @Value("${app.transaction-log.flush-timeout:2s}") Duration flushTimeout) {
+        this.writer = writer;
+        this.durability = durability;
+        this.flushTimeout = flushTimeout;
     }
 
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
     public void log(String eventType, String level, String message, Map<String, Object> payload) {
         String txId = MDC.get(TxFilter.TX_ID);
         if (txId == null) {
             txId = "unknown";
         }
-        TransactionLog log = new TransactionLog(txId, eventType, level, message, payload, Instant.now());
-        repository.save(log);
+        var written = writer.append(new TransactionLog(txId, eventType, level, message, payload, Instant.now()));
+        if (durability == LogDurability.FIRE_AND_FORGET) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // the row is written whatever the outcome, as with the former REQUIRES_NEW insert
+            if (!LogFlushScope.defer(() -> await(written, eventType))) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        await(written, eventType);
+                    }
+                });
+            }
+        } else {
+            await(written, eventType);
+        }
     }
 
     public void log(String eventType, String level, String message) {
         log(eventType, level, message, null);
     }
+
+    private void await(CompletableFuture<Void> written, String eventType) {
+        try {
+            written.get(flushTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("Transaction log entry {} not confirmed as written", eventType, e);
+        }
+    }
 }
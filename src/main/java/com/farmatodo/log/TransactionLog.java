@@ -1,5 +1,6 @@
 package com.farmatodo.log;
 
+import com.farmatodo.id.TimeOrderedId;
 import jakarta.persistence.*;
 import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.type.SqlTypes;
@@ -13,7 +14,7 @@ import java.util.UUID;
 public class TransactionLog {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @TimeOrderedId
     private UUID id;
 
     @Column(nullable = false, name = "tx_id")
@@ -2,7 +2,11 @@ package com.farmatodo.log;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.List;
 import java.util.UUID;
 
 public interface TransactionLogRepository extends JpaRepository<TransactionLog, UUID> {
+
+    /** Everything logged for one request, oldest first. */
+    List<TransactionLog> findByTxIdOrderByCreatedAtAsc(String txId);
 }
@@ -0,0 +1,118 @@
+package com.farmatodo.log;
+
+import com.farmatodo.batch.BatchWriterSettings;
+import com.farmatodo.batch.BoundedBatchWriter;
+import com.farmatodo.batch.OverflowPolicy;
+import com.farmatodo.id.Ids;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.UncheckedIOException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Audit-log pipeline: entries are buffered in a bounded ring buffer and a single drain thread
+ * writes them to {@code transaction_logs} with one multi-row INSERT per batch, on its own
+ * connection, so callers never suspend their transaction to log.
+ *
+ * <p>Besides the {@code transaction_log.queue.depth/dropped/written/failed} meters of the
+ * underlying writer, publishes {@code transaction_log.lag}: time from an entry's creation to
+ * its batch being written.
+ */
+@Component
+public class TransactionLogWriter implements DisposableBean {
+
+    private static final String INSERT_PREFIX =
+            "INSERT INTO transaction_logs (id, tx_id, event_type, level, message, payload, created_at) VALUES ";
+    private static final String ROW = "(?, ?, ?, ?, ?, ?::jsonb, ?)";
+    private static final int COLUMNS = 7;
+
+    record Entry(TransactionLog log, CompletableFuture<Void> written) {
+    }
+
+    private final JdbcTemplate jdbc;
+    private final ObjectMapper objectMapper;
+    private final BoundedBatchWriter<Entry> writer;
+    private final Timer lag;
+
+    public TransactionLogWriter(JdbcTemplate jdbc,
+                                ObjectMapper objectMapper,
+                                MeterRegistry meterRegistry,
+                                @Value("${app.transaction-log.capacity:10000}") int capacity,
+                                @Value("${app.transaction-log.batch-size:200}") int batchSize,
+                                @Value("${app.transaction-log.flush-interval:200ms}") Duration flushInterval,
+                                @Value("${app.transaction-log.overflow-policy:BLOCK}") OverflowPolicy overflowPolicy,
+                                @Value("${app.transaction-log.sample-rate:10}") int sampleRate,
+                                @Value("${app.transaction-log.block-timeout:100ms}") Duration blockTimeout) {
+        this.jdbc = jdbc;
+        this.objectMapper = objectMapper;
+        var settings = new BatchWriterSettings(capacity, batchSize, flushInterval, overflowPolicy, sampleRate, blockTimeout);
+        this.writer = new BoundedBatchWriter<>("transaction_log", settings, this::insert, meterRegistry);
+        this.lag = Timer.builder("transaction_log.lag").register(meterRegistry);
+    }
+
+    /**
+     * @return completes once the entry's batch is written; fails if the entry was dropped by
+     *         the overflow policy or its batch could not be written
+     */
+    public CompletableFuture<Void> append(TransactionLog log) {
+        var entry = new Entry(log, new CompletableFuture<>());
+        if (!writer.offer(entry)) {
+            entry.written().completeExceptionally(new IllegalStateException("transaction log buffer is full"));
+        }
+        return entry.written();
+    }
+
+    void insert(List<Entry> batch) {
+        var sql = new StringBuilder(INSERT_PREFIX.length() + batch.size() * (ROW.length() + 2)).append(INSERT_PREFIX);
+        var args = new Object[batch.size() * COLUMNS];
+        int i = 0;
+        try {
+            for (Entry entry : batch) {
+                var log = entry.log();
+                if (i > 0) {
+                    sql.append(", ");
+                }
+                sql.append(ROW);
+                args[i++] = Ids.next();
+                args[i++] = log.getTxId();
+                args[i++] = log.getEventType();
+                args[i++] = log.getLevel();
+                args[i++] = log.getMessage();
+                args[i++] = log.getPayload() != null ? objectMapper.writeValueAsString(log.getPayload()) : null;
+                args[i++] = Timestamp.from(log.getCreatedAt());
+            }
+            jdbc.update(sql.toString(), args);
+        } catch (JsonProcessingException e) {
+            fail(batch, e);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            fail(batch, e);
+            throw e;
+        }
+        var now = Instant.now();
+        for (Entry entry : batch) {
+            lag.record(Duration.between(entry.log().getCreatedAt(), now));
+            entry.written().complete(null);
+        }
+    }
+
+    private static void fail(List<Entry> batch, Exception cause) {
+        batch.forEach(e -> e.written().completeExceptionally(cause));
+    }
+
+    @Override
+    public void destroy() {
+        writer.close();
+    }
+}
@@ -4,52 +4,56 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.CompletableFuture;
+
 @Service
 public class EmailService {
 
     private static final Logger log = LoggerFactory.getLogger(EmailService.class);
 
-    private final JavaMailSender mailSender;
+    private final MailDeliveryPipeline pipeline;
     private final String fromAddress;
 
-    public EmailService(JavaMailSender mailSender,
+    public EmailService(MailDeliveryPipeline pipeline,
                         @Value("${spring.mail.from:}") String fromAddress) {
-        this.mailSender = mailSender;
+        this.pipeline = pipeline;
         this.fromAddress = (fromAddress != null && !fromAddress.isBlank()) ? fromAddress.trim() : null;
     }
 
-    public void sendPaymentFailed(String toEmail, String orderId, String message) {
-        try {
-            var msg = new SimpleMailMessage();
-            if (fromAddress != null) {
-                msg.setFrom(fromAddress);
-            }
-            msg.setTo(toEmail);
-            msg.setSubject("Pago rechazado - Pedido " + orderId);
-            msg.setText("Su pedido " + orderId + " no pudo ser procesado.\n\nMotivo: " + message + "\n\nPor favor intente nuevamente con otro método de pago.");
-            mailSender.send(msg);
-            log.info("Payment failure email sent to {}", toEmail);
-        } catch (Exception e) {
-            log.warn("Failed to send payment failure email to {}: {}", toEmail, e.getMessage());
+    /** @return completes once the mail server accepted the message, fails when it could not be delivered */
+    public CompletableFuture<Void> sendPaymentFailed(String toEmail, String orderId, String message) {
+        var msg = message(toEmail);
+        msg.setSubject("Pago rechazado - Pedido " + orderId);
+        msg.setText("Su pedido " + orderId + " no pudo ser procesado.\n\nMotivo: " + message + "\n\nPor favor intente nuevamente con otro método de pago.");
+        return send(msg, "payment failure", toEmail);
+    }
+
+    /** @return completes once the mail server accepted the message, fails when it could not be delivered */
+    public CompletableFuture<Void> sendPaymentSuccess(String toEmail, String orderId, String totalAmount) {
+        var msg = message(toEmail);
+        msg.setSubject("Pago exitoso - Pedido " + orderId);
+        msg.setText("Su pedido " + orderId + " ha sido pagado exitosamente.\n\nTotal: " + totalAmount);
+        return send(msg, "payment success", toEmail);
+    }
+
+    private SimpleMailMessage message(String toEmail) {
+        var msg = new SimpleMailMessage();
+        if (fromAddress != null) {
+            msg.setFrom(fromAddress);
         }
+        msg.setTo(toEmail);
+        return msg;
     }
 
-    public void sendPaymentSuccess(String toEmail, String orderId, String totalAmount) {
-        try {
-            var msg = new SimpleMailMessage();
-            if (fromAddress != null) {
-                msg.setFrom(fromAddress);
+    private CompletableFuture<Void> send(SimpleMailMessage msg, String kind, String toEmail) {
+        return pipeline.submit(msg).whenComplete((ok, e) -> {
+            if (e == null) {
+                log.info("Payment {} email sent to {}", kind, toEmail);
+            } else {
+                log.warn("Failed to send {} email to {}: {}", kind, toEmail, e.getMessage());
             }
-            msg.setTo(toEmail);
-            msg.setSubject("Pago exitoso - Pedido " + orderId);
-            msg.setText("Su pedido " + orderId + " ha sido pagado exitosamente.\n\nTotal: " + totalAmount);
-            mailSender.send(msg);
-            log.info("Payment success email sent to {}", toEmail);
-        } catch (Exception e) {
-            log.warn("Failed to send payment success email to {}: {}", toEmail, e.getMessage());
-        }
+        });
     }
 }
@@ -0,0 +1,324 @@
+package com.farmatodo.mail;
+
+import com.farmatodo.timer.HashedWheelTimer;
+import com.sun.mail.smtp.SMTPAddressFailedException;
+import com.sun.mail.smtp.SMTPSendFailedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.AddressException;
+import jakarta.mail.internet.MimeMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMailMessage;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends mail over a fixed set of persistent SMTP connections, one per worker thread, instead
+ * of opening a session per message. Queued messages are grouped by recipient domain; a worker
+ * takes up to {@code app.mail.batch-size} messages of one domain and sends them back to back
+ * on its connection. At most {@code app.mail.per-domain-concurrency} workers serve the same
+ * domain at once, so one slow or throttling provider cannot occupy every connection.
+ *
+ * <p>Transient failures (lost connections, 4xx replies) close the connection and retry the
+ * unsent messages with exponential backoff, up to {@code app.mail.max-attempts}; 5xx
+ * rejections fail the message immediately. Publishes {@code mail.queue.depth}, {@code mail.sent}, {@code mail.failed},
+ * {@code mail.retried}, {@code mail.connections.opened} and {@code mail.batch}.
+ */
+@Component
+public class MailDeliveryPipeline implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(MailDeliveryPipeline.class);
+
+    private record Delivery(SimpleMailMessage message, String domain, CompletableFuture<Void> sent, int attempt) {
+        Delivery retry() {
+            return new Delivery(message, domain, sent, attempt + 1);
+        }
+    }
+
+    /** Per-domain queue; each entry in {@code ready} is one granted worker slot for a lane. */
+    private static final class Lane {
+        final String domain;
+        final Queue<Delivery> queue = new ConcurrentLinkedQueue<>();
+        final AtomicInteger active = new AtomicInteger();
+
+        Lane(String domain) {
+            this.domain = domain;
+        }
+    }
+
+    private final JavaMailSenderImpl mailSender;
+    private final int batchSize;
+    private final int perDomainConcurrency;
+    private final int maxAttempts;
+    private final Duration retryBackoff;
+
+    private final Map<String, Lane> lanes = new ConcurrentHashMap<>();
+    private final LinkedBlockingQueue<Lane> ready = new LinkedBlockingQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final HashedWheelTimer retryTimer;
+    private final List<Worker> workers = new ArrayList<>();
+
+    private final Counter sentCounter;
+    private final Counter failedCounter;
+    private final Counter retriedCounter;
+    private final Counter connectionsOpened;
+    private final Timer batchTimer;
+
+    private volatile boolean running = true;
+
+    public MailDeliveryPipeline(JavaMailSenderImpl mailSender,
+                                MeterRegistry meterRegistry,
+                                @Value("${app.mail.connections:4}") int connections,
+                                @Value("${app.mail.batch-size:20}") int batchSize,
+                                @Value("${app.mail.per-domain-concurrency:2}") int perDomainConcurrency,
+                                @Value("${app.mail.max-attempts:3}") int maxAttempts,
+                                @Value("${app.mail.retry-backoff:500ms}") Duration retryBackoff) {
+        if (connections < 1 || batchSize < 1 || perDomainConcurrency < 1 || maxAttempts < 1) {
+            throw new IllegalArgumentException("connections, batch-size, per-domain-concurrency and max-attempts must be positive");
+        }
+        this.mailSender = mailSender;
+        this.batchSize = batchSize;
+        this.perDomainConcurrency = perDomainConcurrency;
+        this.maxAttempts = maxAttempts;
+        this.retryBackoff = retryBackoff;
+        this.retryTimer = new HashedWheelTimer("mail-retry", Duration.ofMillis(50), 256);
+
+        Gauge.builder("mail.queue.depth", queued, AtomicInteger::get).register(meterRegistry);
+        this.sentCounter = Counter.builder("mail.sent").register(meterRegistry);
+        this.failedCounter = Counter.builder("mail.failed").register(meterRegistry);
+        this.retriedCounter = Counter.builder("mail.retried").register(meterRegistry);
+        this.connectionsOpened = Counter.builder("mail.connections.opened").register(meterRegistry);
+        this.batchTimer = Timer.builder("mail.batch").register(meterRegistry);
+
+        for (int i = 0; i < connections; i++) {
+            var worker = new Worker("mail-sender-" + i);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    /**
+     * Queues {@code message} for delivery.
+     *
+     * @return completes when the server accepted the message; fails when it was rejected, ran
+     *         out of attempts, or the pipeline is shut down
+     */
+    public CompletableFuture<Void> submit(SimpleMailMessage message) {
+        var sent = new CompletableFuture<Void>();
+        if (!running) {
+            sent.completeExceptionally(new IllegalStateException("Mail pipeline is shut down"));
+            return sent;
+        }
+        enqueue(new Delivery(message, domainOf(message), sent, 1));
+        return sent;
+    }
+
+    static String domainOf(SimpleMailMessage message) {
+        String[] to = message.getTo();
+        if (to == null || to.length == 0) {
+            return "";
+        }
+        int at = to[0].lastIndexOf('@');
+        return at < 0 ? "" : to[0].substring(at + 1).trim().toLowerCase(Locale.ROOT);
+    }
+
+    private void enqueue(Delivery delivery) {
+        var lane = lanes.computeIfAbsent(delivery.domain(), Lane::new);
+        queued.incrementAndGet();
+        lane.queue.add(delivery);
+        grant(lane);
+    }
+
+    /** Hands the lane to a worker if it has work and is below its concurrency limit. */
+    private void grant(Lane lane) {
+        while (!lane.queue.isEmpty()) {
+            int active = lane.active.get();
+            if (active >= perDomainConcurrency) {
+                return;
+            }
+            if (lane.active.compareAndSet(active, active + 1)) {
+                ready.add(lane);
+                return;
+            }
+        }
+    }
+
+    private List<Delivery> drain(Lane lane) {
+        var batch = new ArrayList<Delivery>(batchSize);
+        Delivery next;
+        while (batch.size() < batchSize && (next = lane.queue.poll()) != null) {
+            batch.add(next);
+        }
+        queued.addAndGet(-batch.size());
+        return batch;
+    }
+
+    private void retryOrFail(Delivery delivery, Exception cause) {
+        if (running && delivery.attempt() < maxAttempts) {
+            retriedCounter.increment();
+            long factor = 1L << Math.min(delivery.attempt() - 1, 16);
+            retryTimer.schedule(() -> enqueue(delivery.retry()), retryBackoff.multipliedBy(factor));
+        } else {
+            fail(delivery, cause);
+        }
+    }
+
+    private void fail(Delivery delivery, Exception cause) {
+        failedCounter.increment();
+        delivery.sent().completeExceptionally(cause);
+    }
+
+    private final class Worker extends Thread {
+
+        private Transport transport;
+
+        Worker(String name) {
+            super(name);
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                Lane lane;
+                try {
+                    lane = ready.poll(200, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    break;
+                }
+                if (lane == null) {
+                    continue;
+                }
+                try {
+                    var batch = drain(lane);
+                    if (!batch.isEmpty()) {
+                        batchTimer.record(() -> send(batch));
+                    }
+                } finally {
+                    lane.active.decrementAndGet();
+                    grant(lane);
+                }
+            }
+            disconnect();
+        }
+
+        private void send(List<Delivery> batch) {
+            for (int i = 0; i < batch.size(); i++) {
+                var delivery = batch.get(i);
+                try {
+                    MimeMessage mime = toMime(delivery.message());
+                    connection().sendMessage(mime, mime.getAllRecipients());
+                    sentCounter.increment();
+                    delivery.sent().complete(null);
+                } catch (MessagingException | RuntimeException e) {
+                    if (e instanceof MessagingException me && !isTransient(me)) {
+                        log.warn("Mail to {} rejected: {}", delivery.domain(), e.getMessage());
+                        fail(delivery, e);
+                        continue;
+                    }
+                    log.warn("Mail to {} failed, will retry: {}", delivery.domain(), e.getMessage());
+                    disconnect();
+                    retryOrFail(delivery, e);
+                    // The rest of the batch was never attempted; requeue it for the next free connection.
+                    batch.subList(i + 1, batch.size()).forEach(MailDeliveryPipeline.this::enqueue);
+                    return;
+                }
+            }
+        }
+
+        private Transport connection() throws MessagingException {
+            if (transport != null && transport.isConnected()) {
+                return transport;
+            }
+            disconnect();
+            var session = mailSender.getSession();
+            var t = session.getTransport(mailSender.getProtocol() != null ? mailSender.getProtocol() : "smtp");
+            String username = mailSender.getUsername();
+            String password = mailSender.getPassword();
+            t.connect(mailSender.getHost(), mailSender.getPort(),
+                    username != null && !username.isEmpty() ? username : null,
+                    password != null && !password.isEmpty() ? password : null);
+            connectionsOpened.increment();
+            transport = t;
+            return t;
+        }
+
+        private void disconnect() {
+            if (transport != null) {
+                try {
+                    transport.close();
+                } catch (MessagingException e) {
+                    log.debug("Error closing mail connection", e);
+                }
+                transport = null;
+            }
+        }
+    }
+
+    /** 4xx replies and connection errors are worth retrying; 5xx replies are final. */
+    static boolean isTransient(MessagingException e) {
+        for (Exception cause = e; cause != null;
+             cause = cause instanceof MessagingException m ? m.getNextException() : null) {
+            if (cause instanceof SMTPSendFailedException failed) {
+                return failed.getReturnCode() / 100 == 4;
+            }
+            if (cause instanceof SMTPAddressFailedException failed) {
+                return failed.getReturnCode() / 100 == 4;
+            }
+        }
+        return !(e instanceof SendFailedException || e instanceof AddressException);
+    }
+
+    private MimeMessage toMime(SimpleMailMessage message) throws MessagingException {
+        var mime = mailSender.createMimeMessage();
+        message.copyTo(new MimeMailMessage(mime));
+        mime.saveChanges();
+        return mime;
+    }
+
+    /** Stops the workers after their current batch and fails whatever is still queued. */
+    @Override
+    public void destroy() {
+        running = false;
+        for (var worker : workers) {
+            try {
+                worker.join(Duration.ofSeconds(10).toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (var task : retryTimer.stop()) {
+            task.run();
+        }
+        var shutdown = new IllegalStateException("Mail pipeline is shut down");
+        for (var lane : lanes.values()) {
+            Delivery d;
+            while ((d = lane.queue.poll()) != null) {
+                queued.decrementAndGet();
+                fail(d, shutdown);
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.farmatodo.money;
+
+import java.math.BigDecimal;
+
+/**
+ * An amount of money as a count of minor units (hundredths, the scale of every money column),
+ * so sums and line subtotals are {@code long} arithmetic instead of {@link BigDecimal}
+ * allocations. COP prices are whole pesos, far inside the range. Arithmetic throws
+ * {@link ArithmeticException} on overflow rather than wrapping; {@link BigDecimal} is only used
+ * at the edges: the database ({@link MoneyConverter}) and the API responses.
+ */
+public record Money(long minorUnits) implements Comparable<Money> {
+
+    public static final int SCALE = 2;
+    public static final Money ZERO = new Money(0);
+
+    /** @throws ArithmeticException when {@code amount} has more than {@link #SCALE} decimals or does not fit */
+    public static Money of(BigDecimal amount) {
+        return new Money(amount.movePointRight(SCALE).longValueExact());
+    }
+
+    public static Money ofMinor(long minorUnits) {
+        return new Money(minorUnits);
+    }
+
+    public Money plus(Money other) {
+        return new Money(Math.addExact(minorUnits, other.minorUnits));
+    }
+
+    public Money minus(Money other) {
+        return new Money(Math.subtractExact(minorUnits, other.minorUnits));
+    }
+
+    public Money times(int quantity) {
+        return new Money(Math.multiplyExact(minorUnits, quantity));
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    /** Plain decimal, e.g. {@code 3500.00}. */
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+}
@@ -0,0 +1,10 @@
+package com.farmatodo.order;
+
+/**
+ * How {@code POST /orders} runs the payment: {@code SYNC} on the request thread (201 with the
+ * final status), {@code ASYNC} on the {@link CheckoutWorkerPool} (202, poll {@code GET /orders/{id}}).
+ */
+public enum CheckoutMode {
+    SYNC,
+    ASYNC
+}
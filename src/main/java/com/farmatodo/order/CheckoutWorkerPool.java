@@ -0,0 +1,119 @@
+package com.farmatodo.order;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fixed-size worker pool for payment attempts in {@link CheckoutMode#ASYNC}. The queue is
+ * bounded; when it is full {@link #submit} runs the task on the submitting request thread, which
+ * slows intake instead of dropping paid orders. Threads that must not run a payment themselves,
+ * such as the retry timer, use {@link #trySubmit} and keep the task when the queue is full. The
+ * caller's MDC (tx id) is carried to the worker.
+ *
+ * <p>Deliberately not an {@link java.util.concurrent.Executor} bean, so it never replaces the
+ * application task executor used by {@code @Async}. Publishes {@code executor.*} meters
+ * tagged {@code name=checkout}.
+ */
+@Component
+public class CheckoutWorkerPool implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(CheckoutWorkerPool.class);
+
+    private final ThreadPoolExecutor executor;
+    private final ExecutorService monitored;
+
+    public CheckoutWorkerPool(@Value("${app.checkout.pool.size:8}") int poolSize,
+                              @Value("${app.checkout.pool.queue-capacity:500}") int queueCapacity,
+                              MeterRegistry meterRegistry) {
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory(), new ThreadPoolExecutor.AbortPolicy());
+        this.monitored = ExecutorServiceMetrics.monitor(meterRegistry, executor, "checkout", List.of());
+    }
+
+    /** Runs the task on a worker, or on the calling thread when the queue is full. Dropped after shutdown. */
+    public void submit(Runnable task) {
+        var wrapped = withCallerMdc(task);
+        try {
+            monitored.execute(wrapped);
+        } catch (RejectedExecutionException e) {
+            if (executor.isShutdown()) {
+                log.warn("Checkout pool is shut down; task dropped");
+                return;
+            }
+            wrapped.run();
+        }
+    }
+
+    /**
+     * Runs the task on a worker unless the queue is full.
+     *
+     * @return false, without running the task, when the queue is full
+     * @throws IllegalStateException after shutdown
+     */
+    public boolean trySubmit(Runnable task) {
+        try {
+            monitored.execute(withCallerMdc(task));
+            return true;
+        } catch (RejectedExecutionException e) {
+            if (executor.isShutdown()) {
+                throw new IllegalStateException("Checkout pool is shut down", e);
+            }
+            return false;
+        }
+    }
+
+    private static Runnable withCallerMdc(Runnable task) {
+        var mdc = MDC.getCopyOfContextMap();
+        return () -> {
+            var previous = MDC.getCopyOfContextMap();
+            if (mdc != null) {
+                MDC.setContextMap(mdc);
+            }
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                log.error("Checkout task failed", e);
+            } finally {
+                if (previous != null) {
+                    MDC.setContextMap(previous);
+                } else {
+                    MDC.clear();
+                }
+            }
+        };
+    }
+
+    /** Stops taking work and gives in-flight payments a bounded time to finish. */
+    @Override
+    public void destroy() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("Checkout pool did not drain in time; {} payments left pending", executor.getQueue().size());
+            executor.shutdownNow();
+        }
+    }
+
+    private static ThreadFactory threadFactory() {
+        var counter = new AtomicInteger();
+        return r -> {
+            var t = new Thread(r, "checkout-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
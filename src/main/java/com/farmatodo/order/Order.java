@@ -1,7 +1,9 @@
 package com.farmatodo.order;
 
+import com.farmatodo.id.TimeOrderedId;
+import com.farmatodo.money.Money;
+import com.farmatodo.money.MoneyConverter;
 import jakarta.persistence.*;
-import java.math.BigDecimal;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
@@ -12,7 +14,7 @@ import java.util.UUID;
 public class Order {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @TimeOrderedId
     private UUID id;
 
     @Column(nullable = false, name = "customer_id")
@@ -25,8 +27,9 @@ public class Order {
     @Column(nullable = false, length = 30)
     private OrderStatus status;
 
+    @Convert(converter = MoneyConverter.class)
     @Column(nullable = false, name = "total_amount", precision = 19, scale = 2)
-    private BigDecimal totalAmount;
+    private Money totalAmount;
 
     @Column(nullable = false, name = "delivery_address", length = 500)
     private String deliveryAddress;
@@ -53,7 +56,7 @@ public class Order {
 
     public Order() {}
 
-    public Order(UUID customerId, UUID cartId, OrderStatus status, BigDecimal totalAmount,
+    public Order(UUID customerId, UUID cartId, OrderStatus status, Money totalAmount,
                  String deliveryAddress, String tokenId, Instant createdAt, String txId) {
         this.customerId = customerId;
         this.cartId = cartId;
@@ -69,7 +72,7 @@ public class Order {
     public UUID getCustomerId() { return customerId; }
     public UUID getCartId() { return cartId; }
     public OrderStatus getStatus() { return status; }
-    public BigDecimal getTotalAmount() { return totalAmount; }
+    public Money getTotalAmount() { return totalAmount; }
     public String getDeliveryAddress() { return deliveryAddress; }
     public String getTokenId() { return tokenId; }
     public Instant getCreatedAt() { return createdAt; }
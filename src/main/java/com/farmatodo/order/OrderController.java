@@ -1,16 +1,22 @@
 package com.farmatodo.order;
 
 import com.farmatodo.order.dto.CreateOrderRequest;
+import com.farmatodo.order.dto.OrderPage;
 import com.farmatodo.order.dto.OrderResponse;
 import jakarta.validation.Valid;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.net.URI;
+import java.util.UUID;
 
 @RestController
 @RequestMapping("/orders")
@@ -23,10 +29,27 @@ public class OrderController {
         this.orderService = orderService;
     }
 
+    /** 201 with the final status in sync checkout; 202 with the pending order in async checkout. */
     @PostMapping
     public ResponseEntity<OrderResponse> create(@Valid @RequestBody CreateOrderRequest req) {
         var order = orderService.create(req);
         var response = orderService.toResponse(order);
-        return ResponseEntity.created(URI.create("/orders/" + order.getId())).body(response);
+        var status = orderService.checkoutMode() == CheckoutMode.ASYNC ? HttpStatus.ACCEPTED : HttpStatus.CREATED;
+        return ResponseEntity.status(status).location(URI.create("/orders/" + order.getId())).body(response);
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<OrderResponse> get(@PathVariable UUID id) {
+        return ResponseEntity.ok(orderService.get(id));
+    }
+
+    /** Customer order history, newest first; pass {@code nextCursor} back as {@code after}. */
+    @GetMapping(params = "customerId")
+    public ResponseEntity<OrderPage> history(
+            @RequestParam UUID customerId,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) String after) {
+        var cursor = after != null && !after.isBlank() ? OrderCursor.decode(after) : null;
+        return ResponseEntity.ok(orderService.history(customerId, cursor, limit));
     }
 }
@@ -0,0 +1,35 @@
+package com.farmatodo.order;
+
+import com.farmatodo.exception.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Keyset position in a customer's order history, ordered by (createdAt, id) descending.
+ * Serialized as an opaque URL-safe token so clients pass it back verbatim in {@code after}.
+ */
+public record OrderCursor(Instant createdAt, UUID id) {
+
+    public static OrderCursor of(Order order) {
+        return new OrderCursor(order.getCreatedAt(), order.getId());
+    }
+
+    public String encode() {
+        byte[] raw = (id + "|" + createdAt).getBytes(StandardCharsets.UTF_8);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw);
+    }
+
+    public static OrderCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int sep = raw.indexOf('|');
+            return new OrderCursor(Instant.parse(raw.substring(sep + 1)), UUID.fromString(raw.substring(0, sep)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new InvalidCursorException("Invalid cursor: " + token);
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package com.farmatodo.order;
 
+import com.farmatodo.id.TimeOrderedId;
+import com.farmatodo.money.Money;
+import com.farmatodo.money.MoneyConverter;
 import jakarta.persistence.*;
-import java.math.BigDecimal;
 import java.util.UUID;
 
 @Entity
@@ -9,7 +11,7 @@ import java.util.UUID;
 public class OrderItem {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @TimeOrderedId
     private UUID id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -22,12 +24,13 @@ public class OrderItem {
     @Column(nullable = false)
     private int quantity;
 
+    @Convert(converter = MoneyConverter.class)
     @Column(nullable = false, name = "unit_price_snapshot", precision = 19, scale = 2)
-    private BigDecimal unitPriceSnapshot;
+    private Money unitPriceSnapshot;
 
     public OrderItem() {}
 
-    public OrderItem(Order order, UUID productId, int quantity, BigDecimal unitPriceSnapshot) {
+    public OrderItem(Order order, UUID productId, int quantity, Money unitPriceSnapshot) {
         this.order = order;
         this.productId = productId;
         this.quantity = quantity;
@@ -38,6 +41,6 @@ public class OrderItem {
     public Order getOrder() { return order; }
     public UUID getProductId() { return productId; }
     public int getQuantity() { return quantity; }
-    public BigDecimal getUnitPriceSnapshot() { return unitPriceSnapshot; }
-    public BigDecimal getSubtotal() { return unitPriceSnapshot.multiply(BigDecimal.valueOf(quantity)); }
+    public Money getUnitPriceSnapshot() { return unitPriceSnapshot; }
+    public Money getSubtotal() { return unitPriceSnapshot.times(quantity); }
 }
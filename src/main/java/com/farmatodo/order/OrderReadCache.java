@@ -0,0 +1,51 @@
+package com.farmatodo.order;
+
+import com.farmatodo.order.dto.OrderResponse;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Bounded cache of order responses in a terminal state. Those orders never change again, so
+ * entries need no invalidation; pending orders are always read from the database. Publishes
+ * {@code cache.*} meters tagged {@code cache=orders}.
+ */
+@Component
+public class OrderReadCache {
+
+    static final Set<Order.OrderStatus> TERMINAL = EnumSet.of(
+            Order.OrderStatus.PAID, Order.OrderStatus.PAYMENT_FAILED, Order.OrderStatus.CANCELLED);
+
+    private final Cache<UUID, OrderResponse> cache;
+
+    public OrderReadCache(@Value("${app.order.cache.max-size:10000}") long maxSize,
+                          @Value("${app.order.cache.ttl:30m}") Duration ttl,
+                          MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterAccess(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "orders");
+    }
+
+    public Optional<OrderResponse> get(UUID orderId) {
+        return Optional.ofNullable(cache.getIfPresent(orderId));
+    }
+
+    /** Caches the response only when the order can no longer change. */
+    public void putIfTerminal(OrderResponse response) {
+        if (TERMINAL.contains(response.status())) {
+            cache.put(response.orderId(), response);
+        }
+    }
+}
@@ -1,8 +1,33 @@
 package com.farmatodo.order;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 public interface OrderRepository extends JpaRepository<Order, UUID> {
+
+    @EntityGraph(attributePaths = "items")
+    Optional<Order> findWithItemsById(UUID id);
+
+    @EntityGraph(attributePaths = "items")
+    List<Order> findWithItemsByIdIn(Collection<UUID> ids);
+
+    /**
+     * First history page: ids only, so the limit is applied in SQL rather than in memory as it
+     * would be with a collection fetch.
+     */
+    @Query("SELECT o.id FROM Order o WHERE o.customerId = :customerId ORDER BY o.createdAt DESC, o.id DESC")
+    List<UUID> findHistoryIds(UUID customerId, Pageable pageable);
+
+    @Query("SELECT o.id FROM Order o WHERE o.customerId = :customerId"
+            + " AND (o.createdAt < :createdAt OR (o.createdAt = :createdAt AND o.id < :id))"
+            + " ORDER BY o.createdAt DESC, o.id DESC")
+    List<UUID> findHistoryIdsAfter(UUID customerId, Instant createdAt, UUID id, Pageable pageable);
 }
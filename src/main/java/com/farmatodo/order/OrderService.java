@@ -1,28 +1,40 @@
 package com.farmatodo.order;
 
 import com.farmatodo.cart.Cart;
+import com.farmatodo.cart.CartItemRepository;
 import com.farmatodo.cart.CartRepository;
+import com.farmatodo.cart.CartStockShortage;
+import com.farmatodo.cart.WriteBehindCartStore;
 import com.farmatodo.config.TxFilter;
 import com.farmatodo.log.LogService;
 import com.farmatodo.order.dto.CreateOrderRequest;
 import com.farmatodo.order.dto.OrderItemResponse;
+import com.farmatodo.order.dto.OrderPage;
 import com.farmatodo.order.dto.OrderResponse;
-import com.farmatodo.payment.PaymentService;
-import com.farmatodo.product.Product;
-import com.farmatodo.product.ProductRepository;
-import com.farmatodo.token.CardTokenRepository;
+import com.farmatodo.payment.PaymentRetryScheduler;
+import com.farmatodo.token.CardTokenStore;
+import jakarta.persistence.EntityManager;
 import org.slf4j.MDC;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class OrderService {
@@ -30,37 +42,126 @@ public class OrderService {
     private static final Logger log = LoggerFactory.getLogger(OrderService.class);
 
     private final OrderRepository orderRepo;
-    private final OrderItemRepository orderItemRepo;
     private final CartRepository cartRepo;
-    private final ProductRepository productRepo;
-    private final CardTokenRepository tokenRepo;
+    private final CartItemRepository cartItemRepo;
+    private final WriteBehindCartStore cartStore;
+    private final CardTokenStore tokenStore;
     private final LogService logService;
-    private final PaymentService paymentService;
+    private final PaymentRetryScheduler paymentScheduler;
+    private final CheckoutWorkerPool checkoutPool;
+    private final CheckoutMode checkoutMode;
+    private final OrderReadCache readCache;
+    private final EntityManager entityManager;
+    private final int maxHistoryPageSize;
+    private final Duration syncWaitMargin;
     private final OrderService self;
 
     public OrderService(OrderRepository orderRepo,
-                        OrderItemRepository orderItemRepo,
                         CartRepository cartRepo,
-                        ProductRepository productRepo,
-                        CardTokenRepository tokenRepo,
+                        CartItemRepository cartItemRepo,
+                        WriteBehindCartStore cartStore,
+                        CardTokenStore tokenStore,
                         LogService logService,
-                        PaymentService paymentService,
+                        PaymentRetryScheduler paymentScheduler,
+                        CheckoutWorkerPool checkoutPool,
+                        @Value("${app.checkout.mode:sync}") CheckoutMode checkoutMode,
+                        OrderReadCache readCache,
+                        EntityManager entityManager,
+                        @Value("${app.order.history.max-page-size:100}") int maxHistoryPageSize,
+                        @Value("${app.checkout.sync-wait-margin:PT10S}") Duration syncWaitMargin,
                         @Lazy OrderService self) {
         this.orderRepo = orderRepo;
-        this.orderItemRepo = orderItemRepo;
         this.cartRepo = cartRepo;
-        this.productRepo = productRepo;
-        this.tokenRepo = tokenRepo;
+        this.cartItemRepo = cartItemRepo;
+        this.cartStore = cartStore;
+        this.tokenStore = tokenStore;
         this.logService = logService;
-        this.paymentService = paymentService;
+        this.paymentScheduler = paymentScheduler;
+        this.checkoutPool = checkoutPool;
+        this.checkoutMode = checkoutMode;
+        this.readCache = readCache;
+        this.entityManager = entityManager;
+        this.maxHistoryPageSize = maxHistoryPageSize;
+        this.syncWaitMargin = syncWaitMargin;
         this.self = self;
     }
 
-    @Transactional
+    /**
+     * Persists the order as {@code PAYMENT_PENDING} and charges it. In {@link CheckoutMode#ASYNC}
+     * the first attempt is handed to the checkout pool and the pending order is returned right
+     * away; no request thread or connection is held while retries back off. In
+     * {@link CheckoutMode#SYNC} (the default) the request thread waits for the final outcome, so
+     * it stays busy for the whole retry window; the wait is bounded by
+     * {@link PaymentRetryScheduler#retryWindow()} plus {@code app.checkout.sync-wait-margin}, and
+     * past that the order is returned as it stands while the retries carry on. A cart kept in
+     * memory ({@code app.cart.store=memory}) is written first, so the order sees all of its lines.
+     */
     public Order create(CreateOrderRequest req) {
+        cartStore.flush(req.getCustomerId());
         Order order = self.createOrderAndCart(req);
-        paymentService.process(order.getId());
-        return orderRepo.findById(order.getId()).orElse(order);
+        UUID orderId = order.getId();
+        if (checkoutMode == CheckoutMode.ASYNC) {
+            checkoutPool.submit(() -> paymentScheduler.process(orderId));
+            return order;
+        }
+        var limit = paymentScheduler.retryWindow().plus(syncWaitMargin);
+        try {
+            paymentScheduler.process(orderId).get(limit.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            log.warn("Payment for order {} still running after {}; returning it as it stands", orderId, limit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while waiting for the payment of order {}", orderId);
+        }
+        // retries commit on other threads; drop the copy held by this request's persistence context
+        entityManager.detach(order);
+        return orderRepo.findWithItemsById(orderId).orElse(order);
+    }
+
+    public CheckoutMode checkoutMode() {
+        return checkoutMode;
+    }
+
+    /** Order with its items in one query; terminal orders are served from {@link OrderReadCache}. */
+    public OrderResponse get(UUID orderId) {
+        return readCache.get(orderId).orElseGet(() -> {
+            var response = orderRepo.findWithItemsById(orderId)
+                    .map(this::toResponse)
+                    .orElseThrow(() -> new OrderNotFoundException(orderId));
+            readCache.putIfTerminal(response);
+            return response;
+        });
+    }
+
+    /**
+     * Keyset page of a customer's orders, newest first. The page of ids is selected with the
+     * limit in SQL, then the orders and their items are loaded with one entity-graph query.
+     * {@code limit} is clamped to [1, app.order.history.max-page-size].
+     */
+    public OrderPage history(UUID customerId, OrderCursor after, int limit) {
+        int size = Math.max(1, Math.min(limit, maxHistoryPageSize));
+        var pageable = PageRequest.ofSize(size + 1);
+        var ids = after == null
+                ? orderRepo.findHistoryIds(customerId, pageable)
+                : orderRepo.findHistoryIdsAfter(customerId, after.createdAt(), after.id(), pageable);
+        boolean hasNext = ids.size() > size;
+        var pageIds = hasNext ? ids.subList(0, size) : ids;
+        if (pageIds.isEmpty()) {
+            return new OrderPage(List.of(), null);
+        }
+
+        Map<UUID, Order> byId = orderRepo.findWithItemsByIdIn(pageIds).stream()
+                .collect(Collectors.toMap(Order::getId, Function.identity()));
+        var orders = pageIds.stream().map(byId::get).filter(Objects::nonNull).toList();
+        String nextCursor = hasNext && !orders.isEmpty()
+                ? OrderCursor.of(orders.get(orders.size() - 1)).encode()
+                : null;
+        return new OrderPage(orders.stream().map(this::toResponse).toList(), nextCursor);
     }
 
     @Transactional(propagation = Propagation.REQUIRES_NEW)
@@ -74,23 +175,18 @@ public class OrderService {
             throw new OrderException("Cart is empty");
         }
 
-        if (!tokenRepo.existsById(req.getToken().trim())) {
+        if (!tokenStore.exists(req.getToken().trim())) {
             throw new OrderException("Invalid token");
         }
 
-        for (var cartItem : cart.getItems()) {
-            Product product = productRepo.findById(cartItem.getProductId())
-                    .orElseThrow(() -> new OrderException("Product not found: " + cartItem.getProductId()));
-            if (product.getStock() < cartItem.getQuantity()) {
-                throw new OrderException(
-                        "Insufficient stock for product " + product.getName() + ": required " + cartItem.getQuantity()
-                                + ", available " + product.getStock());
-            }
+        var shortages = cartItemRepo.findStockShortages(cart.getId());
+        if (!shortages.isEmpty()) {
+            throw new OrderException(shortages.stream()
+                    .map(OrderService::describe)
+                    .collect(Collectors.joining("; ")));
         }
 
-        BigDecimal total = cart.getItems().stream()
-                .map(i -> i.getUnitPriceSnapshot().multiply(BigDecimal.valueOf(i.getQuantity())))
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        var total = cart.getTotal();
 
         Order order = new Order(
                 req.getCustomerId(),
@@ -102,18 +198,16 @@ public class OrderService {
                 Instant.now(),
                 tx
         );
-        order = orderRepo.save(order);
-
         for (var cartItem : cart.getItems()) {
-            var orderItem = new OrderItem(
+            order.getItems().add(new OrderItem(
                     order,
                     cartItem.getProductId(),
                     cartItem.getQuantity(),
                     cartItem.getUnitPriceSnapshot()
-            );
-            orderItemRepo.save(orderItem);
-            order.getItems().add(orderItem);
+            ));
         }
+        // Items are cascaded from the order and flushed as one JDBC batch at commit.
+        order = orderRepo.save(order);
 
         cart.setStatus(Cart.CartStatus.ORDERED);
         cartRepo.save(cart);
@@ -126,13 +220,21 @@ public class OrderService {
         return order;
     }
 
+    private static String describe(CartStockShortage shortage) {
+        if (shortage.productMissing()) {
+            return "Product not found: " + shortage.productId();
+        }
+        return "Insufficient stock for product " + shortage.productName() + ": required " + shortage.requested()
+                + ", available " + shortage.available();
+    }
+
     public OrderResponse toResponse(Order order) {
         var items = order.getItems().stream()
                 .map(i -> new OrderItemResponse(
                         i.getProductId(),
                         i.getQuantity(),
-                        i.getUnitPriceSnapshot(),
-                        i.getSubtotal()
+                        i.getUnitPriceSnapshot().toBigDecimal(),
+                        i.getSubtotal().toBigDecimal()
                 ))
                 .toList();
 
@@ -142,9 +244,10 @@ public class OrderService {
                 order.getCartId(),
                 order.getStatus(),
                 items,
-                order.getTotalAmount(),
+                order.getTotalAmount().toBigDecimal(),
                 order.getDeliveryAddress(),
-                order.getTokenId()
+                order.getTokenId(),
+                order.getCreatedAt()
         );
     }
 }
@@ -0,0 +1,6 @@
+package com.farmatodo.order.dto;
+
+import java.util.List;
+
+public record OrderPage(List<OrderResponse> items, String nextCursor) {
+}
@@ -2,6 +2,7 @@ package com.farmatodo.order.dto;
 
 import com.farmatodo.order.Order;
 import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.List;
 import java.util.UUID;
 
@@ -13,6 +14,7 @@ public record OrderResponse(
         List<OrderItemResponse> items,
         BigDecimal totalAmount,
         String deliveryAddress,
-        String tokenId
+        String tokenId,
+        Instant createdAt
 ) {
 }
@@ -0,0 +1,26 @@
+package com.farmatodo.outbox;
+
+import com.farmatodo.config.TxFilter;
+import org.slf4j.MDC;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Map;
+
+/** Records outbox events; must be called inside the transaction whose commit should trigger them. */
+@Component
+public class Outbox {
+
+    private final OutboxEventRepository repository;
+
+    public Outbox(OutboxEventRepository repository) {
+        this.repository = repository;
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueue(OutboxEventType type, Map<String, Object> payload) {
+        repository.save(new OutboxEvent(type, payload, MDC.get(TxFilter.TX_ID), Instant.now()));
+    }
+}
@@ -0,0 +1,87 @@
+package com.farmatodo.outbox;
+
+import com.farmatodo.id.TimeOrderedId;
+import jakarta.persistence.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Side effect recorded in the same transaction as the state change that caused it, and
+ * delivered later by {@link OutboxRelay}. Delivered events are deleted; events that exhaust
+ * their attempts stay as {@code FAILED} for inspection.
+ */
+@Entity
+@Table(name = "outbox_events", indexes = @Index(name = "idx_outbox_status_available_at", columnList = "status, available_at"))
+public class OutboxEvent {
+
+    public enum Status {
+        PENDING,
+        FAILED
+    }
+
+    @Id
+    @TimeOrderedId
+    private UUID id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 64)
+    private OutboxEventType type;
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(nullable = false, columnDefinition = "jsonb")
+    private Map<String, Object> payload;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Status status;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "last_error", length = 1024)
+    private String lastError;
+
+    @Column(name = "tx_id")
+    private String txId;
+
+    @Column(nullable = false, name = "created_at")
+    private Instant createdAt;
+
+    @Column(nullable = false, name = "available_at")
+    private Instant availableAt;
+
+    public OutboxEvent() {}
+
+    public OutboxEvent(OutboxEventType type, Map<String, Object> payload, String txId, Instant createdAt) {
+        this.type = type;
+        this.payload = payload;
+        this.status = Status.PENDING;
+        this.txId = txId;
+        this.createdAt = createdAt;
+        this.availableAt = createdAt;
+    }
+
+    public UUID getId() { return id; }
+    public OutboxEventType getType() { return type; }
+    public Map<String, Object> getPayload() { return payload; }
+    public Status getStatus() { return status; }
+    public int getAttempts() { return attempts; }
+    public String getLastError() { return lastError; }
+    public String getTxId() { return txId; }
+    public Instant getCreatedAt() { return createdAt; }
+    public Instant getAvailableAt() { return availableAt; }
+
+    /** Records a failed delivery; the event is retried at {@code retryAt} or, when {@code dead}, given up on. */
+    public void failed(String error, Instant retryAt, boolean dead) {
+        this.attempts++;
+        this.lastError = error != null && error.length() > 1024 ? error.substring(0, 1024) : error;
+        this.availableAt = retryAt;
+        if (dead) {
+            this.status = Status.FAILED;
+        }
+    }
+}
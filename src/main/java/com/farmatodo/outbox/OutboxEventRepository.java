@@ -0,0 +1,36 @@
+package com.farmatodo.outbox;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, UUID> {
+
+    /**
+     * Locks up to {@code limit} due events for the current transaction. Rows already locked by
+     * another relay are skipped rather than waited on, so instances work on disjoint batches.
+     */
+    @Query(value = """
+            SELECT * FROM outbox_events
+            WHERE status = 'PENDING' AND available_at <= :now
+            ORDER BY created_at
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+            """, nativeQuery = true)
+    List<OutboxEvent> claimDue(@Param("now") Instant now, @Param("limit") int limit);
+
+    /**
+     * Leases claimed events to the current relay until {@code until}: once the claiming
+     * transaction commits, other relays skip them as not yet due, without a row lock being held
+     * while they are delivered.
+     */
+    @Modifying
+    @Query(value = "UPDATE outbox_events SET available_at = :until WHERE id IN (:ids)", nativeQuery = true)
+    int lease(@Param("ids") Collection<UUID> ids, @Param("until") Instant until);
+}
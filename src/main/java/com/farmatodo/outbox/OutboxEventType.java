@@ -0,0 +1,9 @@
+package com.farmatodo.outbox;
+
+/** What the relay does with an event; stored by name in {@code outbox_events.type}. */
+public enum OutboxEventType {
+    /** Payload: {@code to}, {@code orderId}, {@code totalAmount}. */
+    PAYMENT_SUCCESS_EMAIL,
+    /** Payload: {@code to}, {@code orderId}, {@code reason}. */
+    PAYMENT_FAILED_EMAIL
+}
@@ -0,0 +1,199 @@
+package com.farmatodo.outbox;
+
+import com.farmatodo.config.TxFilter;
+import com.farmatodo.log.LogService;
+import com.farmatodo.mail.EmailService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Delivers {@link OutboxEvent}s after the transaction that recorded them has committed. A batch
+ * is claimed with {@code FOR UPDATE SKIP LOCKED} and leased in one short transaction: its
+ * {@code available_at} moves past the delivery timeout, so other relays skip it once the claim
+ * commits. Messages are then sent with no transaction, row lock or connection held, and the
+ * results are recorded in a second short transaction. Any number of instances can run the relay
+ * at once without delivering an event twice concurrently. Delivery is at-least-once: a crash
+ * between sending and recording resends the batch once its lease runs out. The whole batch is
+ * handed to the mail pipeline before waiting, so its messages share pooled SMTP connections
+ * instead of being sent one round trip at a time.
+ *
+ * <p>Only emails go through the outbox. Audit events are already written off the caller's
+ * transaction by {@link LogService}'s batched appender; routing them here as well would write
+ * every audit row twice. The relay logs the {@code email_sent_*} audit event once a message was
+ * actually delivered.
+ *
+ * <p>Failed deliveries back off exponentially from {@code app.outbox.retry-delay}; after
+ * {@code app.outbox.max-attempts} the event is marked {@code FAILED}. Publishes
+ * {@code outbox.delivered}, {@code outbox.failed} and {@code outbox.lag}.
+ */
+@Component
+public class OutboxRelay {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxRelay.class);
+
+    private final OutboxEventRepository repository;
+    private final EmailService emailService;
+    private final LogService logService;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final int maxBatchesPerPoll;
+    private final int maxAttempts;
+    private final Duration retryDelay;
+    private final Duration deliveryTimeout;
+
+    private final Counter delivered;
+    private final Counter failed;
+    private final Timer lag;
+
+    public OutboxRelay(OutboxEventRepository repository,
+                       EmailService emailService,
+                       LogService logService,
+                       PlatformTransactionManager transactionManager,
+                       MeterRegistry meterRegistry,
+                       @Value("${app.outbox.batch-size:50}") int batchSize,
+                       @Value("${app.outbox.max-batches-per-poll:20}") int maxBatchesPerPoll,
+                       @Value("${app.outbox.max-attempts:5}") int maxAttempts,
+                       @Value("${app.outbox.retry-delay:10s}") Duration retryDelay,
+                       @Value("${app.outbox.delivery-timeout:30s}") Duration deliveryTimeout) {
+        this.repository = repository;
+        this.emailService = emailService;
+        this.logService = logService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.maxBatchesPerPoll = maxBatchesPerPoll;
+        this.maxAttempts = maxAttempts;
+        this.retryDelay = retryDelay;
+        this.deliveryTimeout = deliveryTimeout;
+        this.delivered = Counter.builder("outbox.delivered").register(meterRegistry);
+        this.failed = Counter.builder("outbox.failed").register(meterRegistry);
+        this.lag = Timer.builder("outbox.lag").register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.outbox.poll-interval:PT1S}")
+    public void poll() {
+        for (int i = 0; i < maxBatchesPerPoll; i++) {
+            if (relayBatch() < batchSize) {
+                return;
+            }
+        }
+    }
+
+    /** @return how many events were claimed */
+    int relayBatch() {
+        var now = Instant.now();
+        var batch = transactionTemplate.execute(status -> claim(now));
+        if (batch == null || batch.isEmpty()) {
+            return 0;
+        }
+        var sends = new ArrayList<CompletableFuture<Void>>(batch.size());
+        for (OutboxEvent event : batch) {
+            sends.add(send(event));
+        }
+        long deadline = System.nanoTime() + deliveryTimeout.toNanos();
+        var sent = new ArrayList<OutboxEvent>(batch.size());
+        var failures = new ArrayList<OutboxEvent>();
+        for (int i = 0; i < batch.size(); i++) {
+            var event = batch.get(i);
+            try {
+                if (event.getTxId() != null) {
+                    MDC.put(TxFilter.TX_ID, event.getTxId());
+                }
+                await(sends.get(i), deadline);
+                logSent(event);
+                sent.add(event);
+            } catch (RuntimeException e) {
+                boolean dead = event.getAttempts() + 1 >= maxAttempts;
+                event.failed(e.getMessage(), now.plus(backoff(event.getAttempts() + 1)), dead);
+                failures.add(event);
+                log.warn("Outbox event {} ({}) failed, attempt {}{}", event.getId(), event.getType(),
+                        event.getAttempts(), dead ? ", giving up" : "", e);
+            } finally {
+                MDC.remove(TxFilter.TX_ID);
+            }
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            repository.deleteAll(sent);
+            repository.saveAll(failures);
+        });
+        for (OutboxEvent event : sent) {
+            delivered.increment();
+            lag.record(Duration.between(event.getCreatedAt(), Instant.now()));
+        }
+        failed.increment(failures.size());
+        return batch.size();
+    }
+
+    /** Claims and leases due events; the row locks are released when this returns. */
+    private List<OutboxEvent> claim(Instant now) {
+        var batch = repository.claimDue(now, batchSize);
+        if (!batch.isEmpty()) {
+            repository.lease(batch.stream().map(OutboxEvent::getId).toList(), now.plus(lease()));
+        }
+        return batch;
+    }
+
+    /** Long enough for a batch to be sent and recorded before another relay may claim it again. */
+    Duration lease() {
+        return deliveryTimeout.multipliedBy(2);
+    }
+
+    Duration backoff(int attempt) {
+        return retryDelay.multipliedBy(1L << Math.min(attempt - 1, 16));
+    }
+
+    private CompletableFuture<Void> send(OutboxEvent event) {
+        Map<String, Object> p = event.getPayload();
+        String to = (String) p.get("to");
+        String orderId = (String) p.get("orderId");
+        try {
+            return switch (event.getType()) {
+                case PAYMENT_SUCCESS_EMAIL -> emailService.sendPaymentSuccess(to, orderId, (String) p.get("totalAmount"));
+                case PAYMENT_FAILED_EMAIL -> emailService.sendPaymentFailed(to, orderId, (String) p.get("reason"));
+            };
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static void await(CompletableFuture<Void> send, long deadline) {
+        try {
+            send.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("email not sent: " + e.getCause().getMessage(), e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("email not sent: timed out", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("email not sent: interrupted", e);
+        }
+    }
+
+    private void logSent(OutboxEvent event) {
+        var details = Map.<String, Object>of("orderId", event.getPayload().get("orderId"));
+        switch (event.getType()) {
+            case PAYMENT_SUCCESS_EMAIL ->
+                    logService.log("email_sent_payment_success", "INFO", "Success notification sent", details);
+            case PAYMENT_FAILED_EMAIL ->
+                    logService.log("email_sent_payment_failed", "INFO", "Failure notification sent", details);
+        }
+    }
+}
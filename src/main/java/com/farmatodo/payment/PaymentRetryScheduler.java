@@ -0,0 +1,146 @@
+package com.farmatodo.payment;
+
+import com.farmatodo.order.CheckoutWorkerPool;
+import com.farmatodo.timer.HashedWheelTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Runs payment attempts for an order with exponential backoff. Waiting between attempts is a
+ * {@link HashedWheelTimer} timeout, not a sleeping thread; when it fires, the next attempt is
+ * handed to the {@link CheckoutWorkerPool}. The timer thread never runs an attempt itself: when
+ * the pool's queue is full the attempt goes back on the wheel for {@link #REQUEUE_DELAY}, so
+ * one slow payment cannot hold up every other retry. After the last failed attempt
+ * {@link PaymentService#recover} runs, as {@code @Recover} used to.
+ *
+ * <p>Publishes a {@code payment.retry.pending} gauge with the retries waiting on the wheel.
+ */
+@Component
+public class PaymentRetryScheduler implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentRetryScheduler.class);
+
+    /** Wait before handing an attempt to the pool again when its queue was full. */
+    static final Duration REQUEUE_DELAY = Duration.ofMillis(100);
+
+    private final PaymentService paymentService;
+    private final CheckoutWorkerPool workers;
+    private final HashedWheelTimer timer;
+    private final int maxAttempts;
+    private final long delayMillis;
+    private final double multiplier;
+
+    public PaymentRetryScheduler(PaymentService paymentService,
+                                 CheckoutWorkerPool workers,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${payment.retry.max-attempts:3}") int maxAttempts,
+                                 @Value("${payment.retry.delay:1000}") long delayMillis,
+                                 @Value("${payment.retry.multiplier:2}") double multiplier,
+                                 @Value("${payment.retry.tick:20ms}") Duration tick,
+                                 @Value("${payment.retry.wheel-size:512}") int wheelSize) {
+        this.paymentService = paymentService;
+        this.workers = workers;
+        this.timer = new HashedWheelTimer("payment-retry", tick, wheelSize);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.delayMillis = delayMillis;
+        this.multiplier = multiplier;
+        Gauge.builder("payment.retry.pending", timer, HashedWheelTimer::pending).register(meterRegistry);
+    }
+
+    /**
+     * Runs the first attempt on the calling thread and schedules any retries.
+     *
+     * @return completes once the order is paid, failed for good or skipped
+     */
+    public CompletableFuture<Void> process(UUID orderId) {
+        var result = new CompletableFuture<Void>();
+        attempt(orderId, 1, result);
+        return result;
+    }
+
+    private void attempt(UUID orderId, int attempt, CompletableFuture<Void> result) {
+        try {
+            paymentService.process(orderId);
+            result.complete(null);
+        } catch (PaymentFailedException e) {
+            if (attempt >= maxAttempts) {
+                recover(orderId, e, result);
+            } else {
+                scheduleRetry(orderId, attempt + 1, result);
+            }
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    private void recover(UUID orderId, PaymentFailedException failure, CompletableFuture<Void> result) {
+        try {
+            paymentService.recover(failure, orderId);
+            result.complete(null);
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    private void scheduleRetry(UUID orderId, int nextAttempt, CompletableFuture<Void> result) {
+        var delay = backoff(nextAttempt);
+        schedule(orderId, nextAttempt, result, delay, MDC.getCopyOfContextMap());
+        log.debug("Payment attempt {} for order {} scheduled in {}", nextAttempt, orderId, delay);
+    }
+
+    private void schedule(UUID orderId, int attempt, CompletableFuture<Void> result, Duration delay,
+                          Map<String, String> mdc) {
+        try {
+            timer.schedule(() -> {
+                if (mdc != null) {
+                    MDC.setContextMap(mdc);
+                }
+                try {
+                    if (!workers.trySubmit(() -> attempt(orderId, attempt, result))) {
+                        log.debug("Checkout pool full; payment attempt {} for order {} requeued", attempt, orderId);
+                        schedule(orderId, attempt, result, REQUEUE_DELAY, mdc);
+                    }
+                } catch (IllegalStateException e) {
+                    result.completeExceptionally(e);
+                } finally {
+                    MDC.clear();
+                }
+            }, delay);
+        } catch (IllegalStateException e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    /** Sum of the backoffs between the first attempt and the last one, excluding the attempts themselves. */
+    public Duration retryWindow() {
+        var total = Duration.ZERO;
+        for (int attempt = 2; attempt <= maxAttempts; attempt++) {
+            total = total.plus(backoff(attempt));
+        }
+        return total;
+    }
+
+    /** Delay before {@code attempt} (2..n): delay × multiplier^(attempt - 2). */
+    Duration backoff(int attempt) {
+        return Duration.ofMillis(Math.round(delayMillis * Math.pow(multiplier, attempt - 2)));
+    }
+
+    @Override
+    public void destroy() {
+        int dropped = timer.stop().size();
+        if (dropped > 0) {
+            log.warn("{} payment retries were pending at shutdown; their orders stay PAYMENT_PENDING", dropped);
+        }
+    }
+}
@@ -1,22 +1,19 @@
 package com.farmatodo.payment;
 
-import com.farmatodo.client.Customer;
-import com.farmatodo.client.CustomerRepository;
+import com.farmatodo.client.CustomerLookup;
 import com.farmatodo.config.TxFilter;
 import com.farmatodo.log.LogService;
-import com.farmatodo.mail.EmailService;
 import com.farmatodo.order.Order;
 import com.farmatodo.order.OrderNotFoundException;
 import com.farmatodo.order.OrderRepository;
-import com.farmatodo.product.Product;
-import com.farmatodo.product.ProductRepository;
+import com.farmatodo.outbox.Outbox;
+import com.farmatodo.outbox.OutboxEventType;
+import com.farmatodo.product.StockDecrementEngine;
+import com.farmatodo.product.StockLine;
 import org.slf4j.MDC;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.retry.annotation.Backoff;
-import org.springframework.retry.annotation.Recover;
-import org.springframework.retry.annotation.Retryable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -32,38 +29,34 @@ public class PaymentService {
 
     private final OrderRepository orderRepo;
     private final PaymentRepository paymentRepo;
-    private final ProductRepository productRepo;
-    private final CustomerRepository customerRepo;
+    private final StockDecrementEngine stockEngine;
+    private final CustomerLookup customers;
     private final LogService logService;
-    private final EmailService emailService;
+    private final Outbox outbox;
 
     private final double approveProbability;
 
     public PaymentService(OrderRepository orderRepo,
                           PaymentRepository paymentRepo,
-                          ProductRepository productRepo,
-                          CustomerRepository customerRepo,
+                          StockDecrementEngine stockEngine,
+                          CustomerLookup customers,
                           LogService logService,
-                          EmailService emailService,
+                          Outbox outbox,
                           @Value("${payment.approve-probability:0.7}") double approveProbability) {
         this.orderRepo = orderRepo;
         this.paymentRepo = paymentRepo;
-        this.productRepo = productRepo;
-        this.customerRepo = customerRepo;
+        this.stockEngine = stockEngine;
+        this.customers = customers;
         this.logService = logService;
-        this.emailService = emailService;
+        this.outbox = outbox;
         this.approveProbability = approveProbability;
     }
 
-    @Retryable(
-            value = PaymentFailedException.class,
-            maxAttemptsExpression = "${payment.retry.max-attempts:3}",
-            backoff = @Backoff(
-                    delayExpression = "${payment.retry.delay:1000}",
-                    multiplierExpression = "${payment.retry.multiplier:2}"
-            )
-    )
-    @Transactional
+    /**
+     * One payment attempt. Throws {@link PaymentFailedException} when the simulator rejects it;
+     * retries and the final {@link #recover} are driven by {@link PaymentRetryScheduler}.
+     */
+    @Transactional(noRollbackFor = PaymentFailedException.class)
     public void process(UUID orderId) {
         Order order = orderRepo.findById(orderId)
                 .orElseThrow(() -> new OrderNotFoundException(orderId));
@@ -96,29 +89,51 @@ public class PaymentService {
             throw new PaymentFailedException(errorMsg);
         }
 
+        var stock = stockEngine.decrementAll(order.getItems().stream()
+                .map(i -> new StockLine(i.getProductId(), i.getQuantity()))
+                .toList());
+        if (!stock.allApplied()) {
+            failForStock(order, payment, stock.rejectedProductIds().toString(), tx);
+            return;
+        }
+
         order.setStatus(Order.OrderStatus.PAID);
         orderRepo.save(order);
 
         payment.setStatus(Payment.PaymentStatus.SUCCESS);
         paymentRepo.save(payment);
 
-        for (var item : order.getItems()) {
-            Product product = productRepo.findById(item.getProductId()).orElseThrow();
-            product.setStock(product.getStock() - item.getQuantity());
-            productRepo.save(product);
-        }
-
         logService.log("payment_success", "INFO", "Payment successful",
                 Map.of("orderId", orderId.toString(), "attempts", attempts));
         log.info("Payment successful for order {} [tx={}]", orderId, tx);
 
-        Customer customer = customerRepo.findById(order.getCustomerId()).orElse(null);
-        if (customer != null) {
-            emailService.sendPaymentSuccess(customer.getEmail(), orderId.toString(), order.getTotalAmount().toString());
-        }
+        customers.contact(order.getCustomerId()).ifPresent(customer ->
+                outbox.enqueue(OutboxEventType.PAYMENT_SUCCESS_EMAIL, Map.of("to", customer.email(),
+                        "orderId", orderId.toString(), "totalAmount", order.getTotalAmount().toString())));
+    }
+
+    /**
+     * Stock ran out between order creation and payment approval. Retrying cannot help, so the
+     * order fails right away instead of going through the retry/recover path.
+     */
+    private void failForStock(Order order, Payment payment, String productIds, String tx) {
+        String errorMsg = "Insufficient stock for products " + productIds;
+        payment.setLastError(errorMsg);
+        payment.setStatus(Payment.PaymentStatus.FAILED);
+        paymentRepo.save(payment);
+
+        order.setStatus(Order.OrderStatus.PAYMENT_FAILED);
+        orderRepo.save(order);
+
+        logService.log("payment_failed", "WARN", "Insufficient stock at payment time",
+                Map.of("orderId", order.getId().toString(), "error", errorMsg));
+        log.warn("Order {} failed: {} [tx={}]", order.getId(), errorMsg, tx);
+
+        customers.contact(order.getCustomerId()).ifPresent(customer ->
+                outbox.enqueue(OutboxEventType.PAYMENT_FAILED_EMAIL, Map.of("to", customer.email(),
+                        "orderId", order.getId().toString(), "reason", errorMsg)));
     }
 
-    @Recover
     @Transactional
     public void recover(PaymentFailedException ex, UUID orderId) {
         String tx = MDC.get(TxFilter.TX_ID);
@@ -134,12 +149,9 @@ public class PaymentService {
 
         logService.log("payment_failed", "WARN", "Payment failed after all retries",
                 Map.of("orderId", orderId.toString(), "error", ex.getMessage()));
-        logService.log("email_sent_payment_failed", "INFO", "Failure notification sent",
-                Map.of("orderId", orderId.toString()));
 
-        Customer customer = customerRepo.findById(order.getCustomerId()).orElse(null);
-        if (customer != null) {
-            emailService.sendPaymentFailed(customer.getEmail(), orderId.toString(), ex.getMessage());
-        }
+        customers.contact(order.getCustomerId()).ifPresent(customer ->
+                outbox.enqueue(OutboxEventType.PAYMENT_FAILED_EMAIL, Map.of("to", customer.email(),
+                        "orderId", orderId.toString(), "reason", ex.getMessage())));
     }
 }
@@ -0,0 +1,152 @@
+package com.farmatodo.product;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Immutable, versioned view of the catalog. Products are held in the order they were loaded,
+ * (name, id) as the database sorts them, so the catalog lists them like the repository queries
+ * and cursors are valid in both catalog and database mode. A secondary index orders their
+ * positions by stock descending, so a minStock filter is a binary search over the index plus a
+ * sort of the matching name positions. A hash index maps ids to positions, for lookups and
+ * cursors. The products are read-only copies of the loaded entities, shared by every reader.
+ */
+public final class CatalogSnapshot {
+
+    private final long version;
+    private final long generation;
+    private final Instant loadedAt;
+    private final List<Product> byName;
+    private final Map<UUID, Integer> positionById;
+    private final int[] positionsByStockDesc;
+    private final int[] stocksDesc;
+
+    /** @param products sorted by (name, id) as the database orders them */
+    CatalogSnapshot(long version, long generation, Instant loadedAt, List<Product> products) {
+        this.version = version;
+        this.generation = generation;
+        this.loadedAt = loadedAt;
+        int n = products.size();
+        var copies = new ArrayList<Product>(n);
+        this.positionById = new HashMap<>(n * 4 / 3 + 1);
+        for (Product p : products) {
+            positionById.put(p.getId(), copies.size());
+            copies.add(p.readOnlyCopy());
+        }
+        this.byName = Collections.unmodifiableList(copies);
+
+        Integer[] positions = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            positions[i] = i;
+        }
+        Arrays.sort(positions, Comparator.comparingInt((Integer i) -> byName.get(i).getStock()).reversed());
+
+        this.positionsByStockDesc = new int[n];
+        this.stocksDesc = new int[n];
+        for (int i = 0; i < n; i++) {
+            positionsByStockDesc[i] = positions[i];
+            stocksDesc[i] = byName.get(positions[i]).getStock();
+        }
+    }
+
+    public long version() { return version; }
+    long generation() { return generation; }
+    public Instant loadedAt() { return loadedAt; }
+    public int size() { return byName.size(); }
+
+    /** The product as of this snapshot, if it existed when the snapshot was loaded. */
+    public Optional<Product> find(UUID id) {
+        Integer position = positionById.get(id);
+        return position != null ? Optional.of(byName.get(position)) : Optional.empty();
+    }
+
+    /**
+     * Products with stock >= minStock, sorted by (name, id). Same rows and order as
+     * {@link ProductRepository#findByStockGreaterThanEqualOrderByNameAscIdAsc(int)}.
+     */
+    public List<Product> search(int minStock) {
+        int matches = countWithStockAtLeast(minStock);
+        if (matches == byName.size()) {
+            return byName;
+        }
+        if (matches == 0) {
+            return List.of();
+        }
+        int[] positions = Arrays.copyOf(positionsByStockDesc, matches);
+        Arrays.sort(positions);
+        var result = new ArrayList<Product>(matches);
+        for (int position : positions) {
+            result.add(byName.get(position));
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Keyset page: up to {@code limit} products with stock >= minStock that sort after
+     * {@code after} (or from the start when null).
+     */
+    public Slice<Product> page(int minStock, ProductCursor after, int limit) {
+        var content = new ArrayList<Product>(limit);
+        int i = after != null ? firstPositionAfter(after) : 0;
+        for (; i < byName.size() && content.size() < limit; i++) {
+            Product p = byName.get(i);
+            if (p.getStock() >= minStock) {
+                content.add(p);
+            }
+        }
+        boolean hasNext = false;
+        for (; i < byName.size() && !hasNext; i++) {
+            hasNext = byName.get(i).getStock() >= minStock;
+        }
+        return new SliceImpl<>(content, PageRequest.ofSize(limit), hasNext);
+    }
+
+    /**
+     * Position after the cursor's product. When that product has since been deleted or renamed,
+     * the position is found by comparing names, which approximates the database's collation.
+     */
+    private int firstPositionAfter(ProductCursor cursor) {
+        Integer position = positionById.get(cursor.id());
+        if (position != null && byName.get(position).getName().equals(cursor.name())) {
+            return position + 1;
+        }
+        int lo = 0;
+        int hi = byName.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (cursor.isBefore(byName.get(mid))) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        return lo;
+    }
+
+    /** Number of leading entries in the stock-descending index with stock >= minStock. */
+    private int countWithStockAtLeast(int minStock) {
+        int lo = 0;
+        int hi = stocksDesc.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (stocksDesc[mid] >= minStock) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
@@ -1,5 +1,6 @@
 package com.farmatodo.product;
 
+import com.farmatodo.id.TimeOrderedId;
 import jakarta.persistence.*;
 import java.math.BigDecimal;
 import java.time.Instant;
@@ -10,7 +11,7 @@ import java.util.UUID;
 public class Product {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @TimeOrderedId
     private UUID id;
 
     @Column(nullable = false, length = 255)
@@ -28,6 +29,10 @@ public class Product {
     @Column(nullable = false, name = "created_at")
     private Instant createdAt;
 
+    /** Set on the copies a {@link CatalogSnapshot} shares between readers. */
+    @Transient
+    private boolean readOnly;
+
     public Product() {}
 
     public Product(String name, String description, BigDecimal price, int stock, Instant createdAt) {
@@ -45,5 +50,18 @@ public class Product {
     public int getStock() { return stock; }
     public Instant getCreatedAt() { return createdAt; }
 
-    public void setStock(int stock) { this.stock = stock; }
+    public void setStock(int stock) {
+        if (readOnly) {
+            throw new UnsupportedOperationException("Catalog snapshot products are read-only");
+        }
+        this.stock = stock;
+    }
+
+    /** Detached copy that rejects changes, safe to hand to every reader of a snapshot. */
+    Product readOnlyCopy() {
+        var copy = new Product(name, description, price, stock, createdAt);
+        copy.id = id;
+        copy.readOnly = true;
+        return copy;
+    }
 }
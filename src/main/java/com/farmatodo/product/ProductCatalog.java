@@ -0,0 +1,121 @@
+package com.farmatodo.product;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Slice;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-process catalog used by GET /products. Readers always get a consistent
+ * {@link CatalogSnapshot}; a new one is loaded after stock changes and whenever the
+ * current one is older than {@code app.product.catalog.max-staleness}.
+ * While a reload is in flight, concurrent readers keep serving the previous snapshot.
+ */
+@Component
+public class ProductCatalog {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductCatalog.class);
+
+    private final ProductRepository repo;
+    private final Duration maxStaleness;
+    private final Clock clock;
+
+    private final ReentrantLock reloadLock = new ReentrantLock();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong versions = new AtomicLong();
+    private volatile CatalogSnapshot snapshot;
+
+    @Autowired
+    public ProductCatalog(ProductRepository repo,
+                          @Value("${app.product.catalog.max-staleness:30s}") Duration maxStaleness) {
+        this(repo, maxStaleness, Clock.systemUTC());
+    }
+
+    ProductCatalog(ProductRepository repo, Duration maxStaleness, Clock clock) {
+        this.repo = repo;
+        this.maxStaleness = maxStaleness;
+        this.clock = clock;
+    }
+
+    public List<Product> search(int minStock) {
+        return current().search(minStock);
+    }
+
+    public Slice<Product> page(int minStock, ProductCursor after, int limit) {
+        return current().page(minStock, after, limit);
+    }
+
+    /** Lookup by id in the current snapshot; products created after it was loaded are not found. */
+    public Optional<Product> find(UUID id) {
+        return current().find(id);
+    }
+
+    /**
+     * Returns a snapshot that reflects every invalidation and is within the staleness bound,
+     * unless another thread is already reloading, in which case the previous one is returned.
+     */
+    public CatalogSnapshot current() {
+        CatalogSnapshot s = snapshot;
+        if (s != null && !isStale(s)) {
+            return s;
+        }
+        if (s == null) {
+            reloadLock.lock();
+        } else if (!reloadLock.tryLock()) {
+            return s;
+        }
+        try {
+            CatalogSnapshot latest = snapshot;
+            if (latest != null && !isStale(latest)) {
+                return latest;
+            }
+            return reload();
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    /** Marks the current snapshot stale; the next read (or the async refresh) reloads it. */
+    public void invalidate() {
+        invalidations.incrementAndGet();
+    }
+
+    @Async
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStockChanged(ProductStockChangedEvent event) {
+        invalidate();
+        try {
+            current();
+        } catch (Exception e) {
+            log.warn("Catalog refresh after stock change failed; next read will retry", e);
+        }
+    }
+
+    private boolean isStale(CatalogSnapshot s) {
+        return s.generation() < invalidations.get()
+                || s.loadedAt().plus(maxStaleness).isBefore(clock.instant());
+    }
+
+    private CatalogSnapshot reload() {
+        long generation = invalidations.get();
+        Instant loadedAt = clock.instant();
+        List<Product> products = repo.findAllByOrderByNameAscIdAsc();
+        CatalogSnapshot loaded = new CatalogSnapshot(versions.incrementAndGet(), generation, loadedAt, products);
+        snapshot = loaded;
+        log.debug("Catalog snapshot v{} loaded with {} products", loaded.version(), loaded.size());
+        return loaded;
+    }
+}
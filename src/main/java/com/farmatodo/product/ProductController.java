@@ -1,22 +1,39 @@
 package com.farmatodo.product;
 
+import com.farmatodo.product.dto.ProductPage;
 import com.farmatodo.product.dto.ProductResponse;
+import com.farmatodo.product.dto.SearchStatsResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.MDC;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.UncheckedIOException;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
 
 @RestController
 @RequestMapping("/products")
 public class ProductController {
 
+    static final String NDJSON = "application/x-ndjson";
+
     private final ProductService productService;
+    private final ProductSearchAnalytics searchAnalytics;
+    private final ObjectMapper objectMapper;
 
-    public ProductController(ProductService productService) {
+    public ProductController(ProductService productService, ProductSearchAnalytics searchAnalytics,
+                             ObjectMapper objectMapper) {
         this.productService = productService;
+        this.searchAnalytics = searchAnalytics;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping
@@ -24,8 +41,66 @@ public class ProductController {
             @RequestParam(required = false) Integer minStock) {
         var products = productService.search(minStock);
         var response = products.stream()
-                .map(p -> new ProductResponse(p.getId(), p.getName(), p.getDescription(), p.getPrice(), p.getStock()))
+                .map(this::toResponse)
                 .toList();
         return ResponseEntity.ok(response);
     }
+
+    @GetMapping(params = "limit")
+    public ResponseEntity<ProductPage> page(
+            @RequestParam(required = false) Integer minStock,
+            @RequestParam int limit,
+            @RequestParam(required = false) String after) {
+        var cursor = after != null && !after.isBlank() ? ProductCursor.decode(after) : null;
+        var slice = productService.page(minStock, cursor, limit);
+        var items = slice.getContent().stream()
+                .map(this::toResponse)
+                .toList();
+        String nextCursor = slice.hasNext()
+                ? ProductCursor.of(slice.getContent().get(slice.getNumberOfElements() - 1)).encode()
+                : null;
+        return ResponseEntity.ok(new ProductPage(items, nextCursor));
+    }
+
+    /** NDJSON mode: one product per line, written as rows are read from the database. */
+    @GetMapping(produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> stream(
+            @RequestParam(required = false) Integer minStock) {
+        var mdc = MDC.getCopyOfContextMap();
+        StreamingResponseBody body = out -> {
+            if (mdc != null) {
+                MDC.setContextMap(mdc);
+            }
+            try {
+                productService.streamSearch(minStock, p -> {
+                    try {
+                        out.write(objectMapper.writeValueAsBytes(toResponse(p)));
+                        out.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } finally {
+                MDC.clear();
+            }
+        };
+        return ResponseEntity.ok().header("Content-Type", NDJSON).body(body);
+    }
+
+    /** Per-minute search rollups in [from, to); defaults to the last hour. */
+    @GetMapping("/search-stats")
+    public ResponseEntity<List<SearchStatsResponse>> searchStats(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to) {
+        var end = to != null ? to : Instant.now();
+        var start = from != null ? from : end.minus(Duration.ofHours(1));
+        var response = searchAnalytics.rollups(start, end).stream()
+                .map(r -> new SearchStatsResponse(r.getBucketStart(), r.getMinStock(), r.getSearchCount()))
+                .toList();
+        return ResponseEntity.ok(response);
+    }
+
+    private ProductResponse toResponse(Product p) {
+        return new ProductResponse(p.getId(), p.getName(), p.getDescription(), p.getPrice(), p.getStock());
+    }
 }
@@ -0,0 +1,81 @@
+package com.farmatodo.product;
+
+import com.farmatodo.exception.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.text.Collator;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Keyset position in the (name, id) ordering of the catalog. Serialized as an opaque
+ * URL-safe token so clients pass it back verbatim in {@code after}.
+ */
+public record ProductCursor(String name, UUID id) {
+
+    /**
+     * Names compared the way a Postgres locale collation does: linguistically (accents and case
+     * are secondary and tertiary differences), with byte order breaking ties between names the
+     * collation deems equal. An approximation of the database's locale, used only where the
+     * database's own order is not at hand.
+     */
+    private static final Collator NAMES = Collator.getInstance(Locale.ROOT);
+
+    static {
+        NAMES.setStrength(Collator.TERTIARY);
+    }
+
+    public static ProductCursor of(Product product) {
+        return new ProductCursor(product.getName(), product.getId());
+    }
+
+    public String encode() {
+        byte[] raw = (id + ":" + name).getBytes(StandardCharsets.UTF_8);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw);
+    }
+
+    public static ProductCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int sep = raw.indexOf(':');
+            return new ProductCursor(raw.substring(sep + 1), UUID.fromString(raw.substring(0, sep)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new InvalidCursorException("Invalid cursor: " + token);
+        }
+    }
+
+    /**
+     * Whether the product sorts strictly after this cursor by name, then id. {@link CatalogSnapshot}
+     * positions cursors by id and only asks this when the cursor's product has left the snapshot.
+     */
+    boolean isBefore(Product product) {
+        int byName = compareNames(product.getName(), name);
+        return byName > 0 || (byName == 0 && compareIds(product.getId(), id) > 0);
+    }
+
+    private static int compareNames(String a, String b) {
+        int byCollation = NAMES.compare(a, b);
+        return byCollation != 0 ? byCollation : compareCodePoints(a, b);
+    }
+
+    /** Code point order, the byte order of UTF-8. */
+    private static int compareCodePoints(String a, String b) {
+        int i = 0;
+        while (i < a.length() && i < b.length()) {
+            int ca = a.codePointAt(i);
+            int cb = b.codePointAt(i);
+            if (ca != cb) {
+                return Integer.compare(ca, cb);
+            }
+            i += Character.charCount(ca);
+        }
+        return Integer.compare(a.length(), b.length());
+    }
+
+    /** Unsigned byte order, as Postgres compares {@code uuid}; {@link UUID#compareTo} compares signed halves. */
+    private static int compareIds(UUID a, UUID b) {
+        int high = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+        return high != 0 ? high : Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+    }
+}
@@ -1,11 +1,35 @@
 package com.farmatodo.product;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 public interface ProductRepository extends JpaRepository<Product, UUID> {
 
-    List<Product> findByStockGreaterThanEqualOrderByNameAsc(int minStock);
+    List<Product> findAllByOrderByNameAscIdAsc();
+
+    List<Product> findByStockGreaterThanEqualOrderByNameAscIdAsc(int minStock);
+
+    Slice<Product> findByStockGreaterThanEqualOrderByNameAscIdAsc(int minStock, Pageable pageable);
+
+    @Query("SELECT p FROM Product p WHERE p.stock >= :minStock"
+            + " AND (p.name > :name OR (p.name = :name AND p.id > :id))"
+            + " ORDER BY p.name ASC, p.id ASC")
+    Slice<Product> findPageAfter(int minStock, String name, UUID id, Pageable pageable);
+
+    /** Server-side cursor; must be consumed inside a transaction and closed. */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT p FROM Product p WHERE p.stock >= :minStock ORDER BY p.name ASC, p.id ASC")
+    Stream<Product> streamByMinStock(int minStock);
 }
@@ -0,0 +1,116 @@
+package com.farmatodo.product;
+
+import com.farmatodo.id.Ids;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rolls product searches up into per-minute buckets in memory (searches per minStock value)
+ * and periodically upserts them into {@code product_search_rollups}. A bucket is flushed once
+ * it has been closed for a full minute, so late recorders never race the flush; rows for the
+ * same bucket written by several instances are summed by the upsert. Buckets stay in memory
+ * until the upsert succeeds, so a failed flush is retried by the next one.
+ */
+@Component
+public class ProductSearchAnalytics implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductSearchAnalytics.class);
+
+    private static final String UPSERT = """
+            INSERT INTO product_search_rollups (id, bucket_start, min_stock, search_count)
+            VALUES (?, ?, ?, ?)
+            ON CONFLICT (bucket_start, min_stock) DO UPDATE SET
+              search_count = product_search_rollups.search_count + EXCLUDED.search_count
+            """;
+
+    private final JdbcTemplate jdbc;
+    private final ProductSearchRollupRepository repository;
+    private final Clock clock;
+    private final ConcurrentHashMap<Long, ConcurrentHashMap<Integer, LongAdder>> buckets = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ProductSearchAnalytics(JdbcTemplate jdbc, ProductSearchRollupRepository repository) {
+        this(jdbc, repository, Clock.systemUTC());
+    }
+
+    ProductSearchAnalytics(JdbcTemplate jdbc, ProductSearchRollupRepository repository, Clock clock) {
+        this.jdbc = jdbc;
+        this.repository = repository;
+        this.clock = clock;
+    }
+
+    public void record(int minStock, Instant at) {
+        buckets.computeIfAbsent(minuteOf(at), m -> new ConcurrentHashMap<>())
+                .computeIfAbsent(minStock, s -> new LongAdder())
+                .increment();
+    }
+
+    public List<ProductSearchRollup> rollups(Instant from, Instant to) {
+        return repository.findInRange(from, to);
+    }
+
+    @Scheduled(fixedDelayString = "${app.product.search-analytics.flush-interval:PT30S}")
+    public void flushClosedBuckets() {
+        flushBefore(minuteOf(clock.instant()) - 1);
+    }
+
+    /**
+     * Upserts every bucket whose minute is before {@code minute} and forgets it once written.
+     * If the upsert fails the buckets are merged back, so nothing is lost and nothing is counted
+     * twice.
+     */
+    int flushBefore(long minute) {
+        var flushed = new TreeMap<Long, ConcurrentHashMap<Integer, LongAdder>>();
+        for (Long bucket : List.copyOf(buckets.keySet())) {
+            if (bucket < minute) {
+                flushed.put(bucket, buckets.remove(bucket));
+            }
+        }
+        var rows = new ArrayList<Object[]>();
+        flushed.forEach((bucket, counts) -> {
+            var bucketStart = Timestamp.from(Instant.ofEpochSecond(bucket * 60));
+            counts.forEach((minStock, searches) -> rows.add(new Object[]{Ids.next(), bucketStart, minStock, searches.sum()}));
+        });
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        try {
+            jdbc.batchUpdate(UPSERT, rows);
+        } catch (RuntimeException e) {
+            flushed.forEach(this::restore);
+            throw e;
+        }
+        log.debug("Flushed {} product search rollup rows", rows.size());
+        return rows.size();
+    }
+
+    private void restore(long bucket, Map<Integer, LongAdder> counts) {
+        var current = buckets.computeIfAbsent(bucket, m -> new ConcurrentHashMap<>());
+        counts.forEach((minStock, searches) ->
+                current.computeIfAbsent(minStock, s -> new LongAdder()).add(searches.sum()));
+    }
+
+    @Override
+    public void destroy() {
+        flushBefore(Long.MAX_VALUE);
+    }
+
+    private static long minuteOf(Instant at) {
+        return Math.floorDiv(at.getEpochSecond(), 60);
+    }
+}
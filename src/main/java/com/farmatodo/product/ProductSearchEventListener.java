@@ -2,40 +2,47 @@ package com.farmatodo.product;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.event.EventListener;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
 
 import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Component
 public class ProductSearchEventListener {
 
     private static final Logger log = LoggerFactory.getLogger(ProductSearchEventListener.class);
 
-    private final ProductSearchLogRepository repository;
+    private final ProductSearchAnalytics analytics;
+    private final ProductSearchLogWriter writer;
+    private final int rawSampleRate;
+    private final AtomicLong searches = new AtomicLong();
 
-    public ProductSearchEventListener(ProductSearchLogRepository repository) {
-        this.repository = repository;
+    public ProductSearchEventListener(ProductSearchAnalytics analytics,
+                                      ProductSearchLogWriter writer,
+                                      @Value("${app.product.search-analytics.raw-sample-rate:0}") int rawSampleRate) {
+        this.analytics = analytics;
+        this.writer = writer;
+        this.rawSampleRate = rawSampleRate;
     }
 
     /**
-     * Logs search intention asynchronously. Runs in a different thread (no MDC propagation).
-     * Uses txId from event payload. Represents intent to search, not necessarily successful query.
+     * Counts the search intention in the per-minute rollups and, when raw sampling is enabled,
+     * hands 1 in {@code raw-sample-rate} events to the batched search-log writer. Never touches
+     * the database on the caller's thread. Uses txId from event payload. Represents intent to
+     * search, not necessarily successful query.
      */
-    @Async
     @EventListener
     public void onProductSearch(ProductSearchEvent event) {
-        try {
-            var logEntry = new ProductSearchLog(
-                    event.getMinStock(),
-                    event.getTxId(),
-                    Instant.now()
-            );
-            repository.save(logEntry);
-            log.debug("Product search logged [minStock={}, tx={}]", event.getMinStock(), event.getTxId());
-        } catch (Exception e) {
-            log.warn("Failed to persist product search log [tx={}]", event.getTxId(), e);
+        var now = Instant.now();
+        analytics.record(event.getMinStock(), now);
+
+        if (rawSampleRate > 0 && searches.incrementAndGet() % rawSampleRate == 0) {
+            var logEntry = new ProductSearchLog(event.getMinStock(), event.getTxId(), now);
+            if (!writer.append(logEntry)) {
+                log.debug("Product search log dropped [minStock={}, tx={}]", event.getMinStock(), event.getTxId());
+            }
         }
     }
 }
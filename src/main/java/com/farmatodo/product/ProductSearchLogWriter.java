@@ -0,0 +1,71 @@
+package com.farmatodo.product;
+
+import com.farmatodo.batch.BatchWriterSettings;
+import com.farmatodo.batch.BoundedBatchWriter;
+import com.farmatodo.batch.OverflowPolicy;
+import com.farmatodo.id.Ids;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Search-log pipeline: events are buffered in a bounded ring buffer and a single drain
+ * thread writes them to {@code product_search_logs} with one multi-row INSERT per batch,
+ * so browse spikes never hold pooled connections or grow an executor queue.
+ */
+@Component
+public class ProductSearchLogWriter implements DisposableBean {
+
+    private static final String INSERT_PREFIX =
+            "INSERT INTO product_search_logs (id, min_stock, tx_id, created_at) VALUES ";
+    private static final String ROW = "(?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbc;
+    private final BoundedBatchWriter<ProductSearchLog> writer;
+
+    public ProductSearchLogWriter(JdbcTemplate jdbc,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${app.product.search-log.capacity:10000}") int capacity,
+                                  @Value("${app.product.search-log.batch-size:200}") int batchSize,
+                                  @Value("${app.product.search-log.flush-interval:500ms}") Duration flushInterval,
+                                  @Value("${app.product.search-log.overflow-policy:DROP}") OverflowPolicy overflowPolicy,
+                                  @Value("${app.product.search-log.sample-rate:10}") int sampleRate,
+                                  @Value("${app.product.search-log.block-timeout:50ms}") Duration blockTimeout) {
+        this.jdbc = jdbc;
+        var settings = new BatchWriterSettings(capacity, batchSize, flushInterval, overflowPolicy, sampleRate, blockTimeout);
+        this.writer = new BoundedBatchWriter<>("product.search_log", settings, this::insert, meterRegistry);
+    }
+
+    /** @return false if the entry was dropped by the overflow policy */
+    public boolean append(ProductSearchLog entry) {
+        return writer.offer(entry);
+    }
+
+    void insert(List<ProductSearchLog> batch) {
+        var sql = new StringBuilder(INSERT_PREFIX.length() + batch.size() * (ROW.length() + 2)).append(INSERT_PREFIX);
+        var args = new Object[batch.size() * 4];
+        int i = 0;
+        for (ProductSearchLog entry : batch) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(ROW);
+            args[i++] = Ids.next();
+            args[i++] = entry.getMinStock();
+            args[i++] = entry.getTxId();
+            args[i++] = Timestamp.from(entry.getCreatedAt());
+        }
+        jdbc.update(sql.toString(), args);
+    }
+
+    @Override
+    public void destroy() {
+        writer.close();
+    }
+}
@@ -0,0 +1,42 @@
+package com.farmatodo.product;
+
+import com.farmatodo.id.TimeOrderedId;
+import jakarta.persistence.*;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Per-minute rollup of product searches for one minStock value. Replaces one
+ * {@link ProductSearchLog} row per search.
+ */
+@Entity
+@Table(name = "product_search_rollups",
+        uniqueConstraints = @UniqueConstraint(name = "uk_search_rollup_bucket", columnNames = {"bucket_start", "min_stock"}))
+public class ProductSearchRollup {
+
+    @Id
+    @TimeOrderedId
+    private UUID id;
+
+    @Column(nullable = false, name = "bucket_start")
+    private Instant bucketStart;
+
+    @Column(nullable = false, name = "min_stock")
+    private int minStock;
+
+    @Column(nullable = false, name = "search_count")
+    private long searchCount;
+
+    public ProductSearchRollup() {}
+
+    public ProductSearchRollup(Instant bucketStart, int minStock, long searchCount) {
+        this.bucketStart = bucketStart;
+        this.minStock = minStock;
+        this.searchCount = searchCount;
+    }
+
+    public UUID getId() { return id; }
+    public Instant getBucketStart() { return bucketStart; }
+    public int getMinStock() { return minStock; }
+    public long getSearchCount() { return searchCount; }
+}
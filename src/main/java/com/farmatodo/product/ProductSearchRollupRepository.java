@@ -0,0 +1,15 @@
+package com.farmatodo.product;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+public interface ProductSearchRollupRepository extends JpaRepository<ProductSearchRollup, UUID> {
+
+    @Query("SELECT r FROM ProductSearchRollup r WHERE r.bucketStart >= :from AND r.bucketStart < :to"
+            + " ORDER BY r.bucketStart ASC, r.minStock ASC")
+    List<ProductSearchRollup> findInRange(Instant from, Instant to);
+}
@@ -1,34 +1,90 @@
 package com.farmatodo.product;
 
 import com.farmatodo.config.TxFilter;
+import jakarta.persistence.EntityManager;
 import org.slf4j.MDC;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 @Service
 public class ProductService {
 
     private final ProductRepository repo;
+    private final ProductCatalog catalog;
     private final ApplicationEventPublisher eventPublisher;
+    private final EntityManager entityManager;
     private final int defaultMinStock;
+    private final boolean catalogEnabled;
+    private final int maxPageSize;
 
     public ProductService(ProductRepository repo,
+                          ProductCatalog catalog,
                           ApplicationEventPublisher eventPublisher,
-                          @Value("${app.product.min-stock-visible:0}") int defaultMinStock) {
+                          EntityManager entityManager,
+                          @Value("${app.product.min-stock-visible:0}") int defaultMinStock,
+                          @Value("${app.product.catalog.enabled:true}") boolean catalogEnabled,
+                          @Value("${app.product.page.max-size:200}") int maxPageSize) {
         this.repo = repo;
+        this.catalog = catalog;
         this.eventPublisher = eventPublisher;
+        this.entityManager = entityManager;
         this.defaultMinStock = defaultMinStock;
+        this.catalogEnabled = catalogEnabled;
+        this.maxPageSize = maxPageSize;
     }
 
     public List<Product> search(Integer minStockParam) {
+        int minStock = recordSearch(minStockParam);
+        if (catalogEnabled) {
+            return catalog.search(minStock);
+        }
+        return repo.findByStockGreaterThanEqualOrderByNameAscIdAsc(minStock);
+    }
+
+    /**
+     * Keyset page over the (name, id) ordering. {@code limit} is clamped to
+     * [1, app.product.page.max-size].
+     */
+    public Slice<Product> page(Integer minStockParam, ProductCursor after, int limit) {
+        int minStock = recordSearch(minStockParam);
+        int size = Math.max(1, Math.min(limit, maxPageSize));
+        if (catalogEnabled) {
+            return catalog.page(minStock, after, size);
+        }
+        var pageable = PageRequest.ofSize(size);
+        if (after == null) {
+            return repo.findByStockGreaterThanEqualOrderByNameAscIdAsc(minStock, pageable);
+        }
+        return repo.findPageAfter(minStock, after.name(), after.id(), pageable);
+    }
+
+    /**
+     * Streams every matching product to {@code sink} from a server-side cursor, detaching each
+     * entity once consumed so memory stays flat regardless of catalog size.
+     */
+    @Transactional(readOnly = true)
+    public void streamSearch(Integer minStockParam, Consumer<Product> sink) {
+        int minStock = recordSearch(minStockParam);
+        try (var products = repo.streamByMinStock(minStock)) {
+            products.forEach(p -> {
+                sink.accept(p);
+                entityManager.detach(p);
+            });
+        }
+    }
+
+    private int recordSearch(Integer minStockParam) {
         int minStock = minStockParam != null ? minStockParam : defaultMinStock;
         String tx = MDC.get(TxFilter.TX_ID);
 
         eventPublisher.publishEvent(new ProductSearchEvent(this, minStock, tx != null ? tx : "unknown"));
-
-        return repo.findByStockGreaterThanEqualOrderByNameAsc(minStock);
+        return minStock;
     }
 }
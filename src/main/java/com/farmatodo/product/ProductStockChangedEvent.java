@@ -0,0 +1,19 @@
+package com.farmatodo.product;
+
+import org.springframework.context.ApplicationEvent;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+public class ProductStockChangedEvent extends ApplicationEvent {
+
+    private final List<UUID> productIds;
+
+    public ProductStockChangedEvent(Object source, Collection<UUID> productIds) {
+        super(source);
+        this.productIds = List.copyOf(productIds);
+    }
+
+    public List<UUID> getProductIds() { return productIds; }
+}
@@ -0,0 +1,78 @@
+package com.farmatodo.product;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Applies all stock decrements of an order in one batched round trip of conditional
+ * {@code UPDATE}s, so concurrent orders for the same product can never oversell or lose an
+ * update: the database checks {@code stock >= qty} and subtracts under the row lock.
+ *
+ * <p>The operation is all-or-nothing. If any line lacks stock, the lines that were applied
+ * are restored in a second batch. Lines are merged per product and applied in id order,
+ * so two orders touching the same products always lock rows in the same order.
+ */
+@Component
+public class StockDecrementEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(StockDecrementEngine.class);
+
+    static final String DECREMENT_SQL = "UPDATE products SET stock = stock - ? WHERE id = ? AND stock >= ?";
+    static final String RESTORE_SQL = "UPDATE products SET stock = stock + ? WHERE id = ?";
+
+    private final JdbcTemplate jdbc;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public StockDecrementEngine(JdbcTemplate jdbc, ApplicationEventPublisher eventPublisher) {
+        this.jdbc = jdbc;
+        this.eventPublisher = eventPublisher;
+    }
+
+    public StockDecrementResult decrementAll(List<StockLine> lines) {
+        Map<UUID, Integer> merged = new TreeMap<>();
+        for (var line : lines) {
+            merged.merge(line.productId(), line.quantity(), Integer::sum);
+        }
+        if (merged.isEmpty()) {
+            return new StockDecrementResult(List.of());
+        }
+
+        var args = new ArrayList<Object[]>(merged.size());
+        merged.forEach((id, qty) -> args.add(new Object[]{qty, id, qty}));
+        int[] updated = jdbc.batchUpdate(DECREMENT_SQL, args);
+
+        var results = new ArrayList<StockDecrementResult.Line>(merged.size());
+        int i = 0;
+        for (var entry : merged.entrySet()) {
+            results.add(new StockDecrementResult.Line(entry.getKey(), entry.getValue(), updated[i++] > 0));
+        }
+        var result = new StockDecrementResult(List.copyOf(results));
+
+        if (result.allApplied()) {
+            eventPublisher.publishEvent(new ProductStockChangedEvent(this, merged.keySet()));
+        } else {
+            restore(results);
+            log.warn("Stock decrement rejected for products {}", result.rejectedProductIds());
+        }
+        return result;
+    }
+
+    private void restore(List<StockDecrementResult.Line> lines) {
+        var args = lines.stream()
+                .filter(StockDecrementResult.Line::applied)
+                .map(l -> new Object[]{l.quantity(), l.productId()})
+                .toList();
+        if (!args.isEmpty()) {
+            jdbc.batchUpdate(RESTORE_SQL, args);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.farmatodo.product;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Outcome of {@link StockDecrementEngine#decrementAll}. When {@link #allApplied()} is false
+ * no stock has been taken: lines that had enough stock were restored.
+ */
+public record StockDecrementResult(List<Line> lines) {
+
+    /** @param applied whether the product had enough stock for {@code quantity} */
+    public record Line(UUID productId, int quantity, boolean applied) {
+    }
+
+    public boolean allApplied() {
+        return lines.stream().allMatch(Line::applied);
+    }
+
+    public List<UUID> rejectedProductIds() {
+        return lines.stream().filter(l -> !l.applied()).map(Line::productId).toList();
+    }
+}
@@ -0,0 +1,7 @@
+package com.farmatodo.product;
+
+import java.util.UUID;
+
+/** One stock movement requested by an order line. */
+public record StockLine(UUID productId, int quantity) {
+}
@@ -0,0 +1,6 @@
+package com.farmatodo.product.dto;
+
+import java.util.List;
+
+public record ProductPage(List<ProductResponse> items, String nextCursor) {
+}
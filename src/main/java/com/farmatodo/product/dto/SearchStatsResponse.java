@@ -0,0 +1,6 @@
+package com.farmatodo.product.dto;
+
+import java.time.Instant;
+
+public record SearchStatsResponse(Instant bucketStart, int minStock, long searches) {
+}
@@ -0,0 +1,254 @@
+package com.farmatodo.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cluster-wide rate limit for {@code app.rate-limit.mode=cluster}: one token bucket per client in
+ * {@link RateLimitLeaseStore}, shared by every instance. An instance does not ask the database
+ * per request; it leases a batch of {@code app.rate-limit.cluster.lease-size} tokens, spends it
+ * locally, and leases the next batch in the background once half of it is used. A request only
+ * waits for the database when the local lease ran dry. When the shared bucket is empty the
+ * instance remembers until when, and denies locally until a token has refilled.
+ *
+ * <p>The cluster never admits more than the limit, since every admitted request spent a token
+ * taken from the shared bucket. The price is under-admission by the tokens an instance holds
+ * but has not used yet (at most about one and a half leases per instance and client); leases
+ * idle for {@code app.rate-limit.cluster.lease-idle} go back to the bucket. Publishes
+ * {@code rate_limit.decisions} tagged {@code result=local|leased|denied|unavailable}.
+ */
+@Component
+public class ClusterRateLimiter implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(ClusterRateLimiter.class);
+
+    /** Per-client tokens leased by this instance. */
+    private static final class Lease {
+        final String key;
+        final AtomicInteger tokens = new AtomicInteger();
+        final AtomicBoolean refilling = new AtomicBoolean();
+        /** Epoch millis before which the shared bucket is known to be empty. */
+        volatile long deniedUntil;
+
+        Lease(String key) {
+            this.key = key;
+        }
+    }
+
+    private final RateLimitLeaseStore store;
+    private final boolean enabled;
+    private final int capacity;
+    private final double ratePerSecond;
+    private final int leaseSize;
+    private final Clock clock;
+
+    private final Cache<String, Lease> leases;
+    private final ThreadPoolExecutor refills;
+
+    private final Counter localDecisions;
+    private final Counter leasedDecisions;
+    private final Counter denied;
+    private final Counter unavailable;
+
+    @Autowired
+    public ClusterRateLimiter(RateLimitLeaseStore store,
+                              MeterRegistry meterRegistry,
+                              @Value("${app.rate-limit.mode:local}") RateLimitMode mode,
+                              @Value("${app.rate-limit.requests-per-minute:60}") int requestsPerMinute,
+                              @Value("${app.rate-limit.cluster.lease-size:0}") int leaseSize,
+                              @Value("${app.rate-limit.cluster.lease-idle:10s}") Duration leaseIdle) {
+        this(store, meterRegistry, mode, requestsPerMinute, leaseSize, leaseIdle, Clock.systemUTC());
+    }
+
+    ClusterRateLimiter(RateLimitLeaseStore store, MeterRegistry meterRegistry, RateLimitMode mode,
+                       int requestsPerMinute, int leaseSize, Duration leaseIdle, Clock clock) {
+        if (requestsPerMinute < 1 || leaseSize < 0) {
+            throw new IllegalArgumentException("requests-per-minute must be positive and lease-size not negative");
+        }
+        this.store = store;
+        this.enabled = mode == RateLimitMode.CLUSTER;
+        this.capacity = requestsPerMinute;
+        this.ratePerSecond = requestsPerMinute / 60.0;
+        this.leaseSize = leaseSize > 0 ? Math.min(leaseSize, requestsPerMinute) : Math.max(1, requestsPerMinute / 20);
+        this.clock = clock;
+        this.leases = Caffeine.newBuilder()
+                .expireAfterAccess(leaseIdle)
+                .scheduler(Scheduler.systemScheduler())
+                .<String, Lease>removalListener((key, lease, cause) -> {
+                    if (lease != null && cause.wasEvicted()) {
+                        giveBack(lease);
+                    }
+                })
+                .build();
+        this.refills = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1024), r -> {
+            var t = new Thread(r, "rate-limit-lease");
+            t.setDaemon(true);
+            return t;
+        });
+        this.localDecisions = counter(meterRegistry, "local");
+        this.leasedDecisions = counter(meterRegistry, "leased");
+        this.denied = counter(meterRegistry, "denied");
+        this.unavailable = counter(meterRegistry, "unavailable");
+    }
+
+    private static Counter counter(MeterRegistry registry, String result) {
+        return Counter.builder("rate_limit.decisions").tag("result", result).register(registry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    int leaseSize() {
+        return leaseSize;
+    }
+
+    /**
+     * @return whether the client may make one more request
+     * @throws DataAccessException when this instance holds no tokens for the client and the
+     *         shared bucket cannot be reached; callers fall back to a local limit
+     */
+    public boolean tryAcquire(String key) {
+        var lease = leases.get(key, Lease::new);
+        if (take(lease)) {
+            localDecisions.increment();
+            return true;
+        }
+        if (clock.millis() < lease.deniedUntil) {
+            denied.increment();
+            return false;
+        }
+        // One lease at a time per client; the others wait for it instead of all going to the database.
+        synchronized (lease) {
+            if (take(lease)) {
+                localDecisions.increment();
+                return true;
+            }
+            if (clock.millis() < lease.deniedUntil) {
+                denied.increment();
+                return false;
+            }
+            RateLimitLeaseStore.Grant grant;
+            try {
+                grant = store.lease(key, leaseSize, capacity, ratePerSecond);
+            } catch (DataAccessException e) {
+                unavailable.increment();
+                throw e;
+            }
+            if (grant.granted() == 0) {
+                lease.deniedUntil = clock.millis() + millisUntilNextToken(grant.remaining());
+                denied.increment();
+                return false;
+            }
+            lease.tokens.addAndGet(grant.granted() - 1);
+            leasedDecisions.increment();
+            return true;
+        }
+    }
+
+    private boolean take(Lease lease) {
+        int tokens;
+        do {
+            tokens = lease.tokens.get();
+            if (tokens <= 0) {
+                return false;
+            }
+        } while (!lease.tokens.compareAndSet(tokens, tokens - 1));
+        if (tokens - 1 <= leaseSize / 2) {
+            refillInBackground(lease);
+        }
+        return true;
+    }
+
+    private void refillInBackground(Lease lease) {
+        if (clock.millis() < lease.deniedUntil || !lease.refilling.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            refills.execute(() -> {
+                // Same monitor as the synchronous lease: a request that ran dry waits for this
+                // batch instead of finding the shared bucket emptied by it and denying.
+                synchronized (lease) {
+                    try {
+                        if (lease.tokens.get() > leaseSize / 2) {
+                            return;
+                        }
+                        var grant = store.lease(lease.key, leaseSize, capacity, ratePerSecond);
+                        if (grant.granted() == 0) {
+                            lease.deniedUntil = clock.millis() + millisUntilNextToken(grant.remaining());
+                        } else {
+                            lease.tokens.addAndGet(grant.granted());
+                        }
+                    } catch (DataAccessException e) {
+                        log.debug("Background rate-limit lease for {} failed: {}", lease.key, e.getMessage());
+                    } finally {
+                        lease.refilling.set(false);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            lease.refilling.set(false);
+        }
+    }
+
+    private long millisUntilNextToken(double remaining) {
+        return Math.max(1, (long) Math.ceil((1 - remaining) / ratePerSecond * 1000));
+    }
+
+    private void giveBack(Lease lease) {
+        // Zeroed first, so a request still holding this lease cannot spend what was returned.
+        int unused = lease.tokens.getAndSet(0);
+        if (unused <= 0) {
+            return;
+        }
+        try {
+            store.giveBack(lease.key, unused, capacity);
+        } catch (DataAccessException e) {
+            log.debug("Could not return {} rate-limit tokens for {}: {}", unused, lease.key, e.getMessage());
+        }
+    }
+
+    /** A bucket untouched for a full refill period is full again; its row can go. */
+    @Scheduled(fixedDelayString = "${app.rate-limit.cluster.cleanup-interval:PT5M}")
+    public void deleteFullBuckets() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            int deleted = store.deleteFull(Duration.ofMillis((long) Math.ceil(capacity / ratePerSecond * 1000)));
+            if (deleted > 0) {
+                log.debug("Deleted {} full rate-limit buckets", deleted);
+            }
+        } catch (DataAccessException e) {
+            log.warn("Rate-limit bucket cleanup failed", e);
+        }
+    }
+
+    /** Hands every unused token back, so a shrinking cluster does not strand them. */
+    @Override
+    public void destroy() {
+        refills.shutdownNow();
+        leases.asMap().values().forEach(this::giveBack);
+        leases.invalidateAll();
+    }
+}
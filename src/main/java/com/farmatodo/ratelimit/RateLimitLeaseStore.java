@@ -0,0 +1,74 @@
+package com.farmatodo.ratelimit;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Shared token buckets in {@code rate_limit_buckets}. A bucket row holds the tokens left as of
+ * {@code updated_at}; refill is computed on the next lease from the elapsed database time, so
+ * no process has to tick the buckets and instance clocks do not matter. A missing row is a
+ * full bucket.
+ */
+@Component
+public class RateLimitLeaseStore {
+
+    /** Tokens in the bucket right now: what was left plus the refill since the last lease, capped. */
+    private static final String AVAILABLE =
+            "LEAST(:capacity, b.tokens + :rate * GREATEST(0, EXTRACT(EPOCH FROM now() - b.updated_at)))";
+
+    // Every SET expression sees the old row, hence AVAILABLE repeated rather than referenced.
+    private static final String LEASE = """
+            INSERT INTO rate_limit_buckets AS b (client_key, tokens, last_grant, updated_at)
+            VALUES (:key, :capacity - LEAST(:want, :capacity), LEAST(:want, :capacity), now())
+            ON CONFLICT (client_key) DO UPDATE SET
+                last_grant = LEAST(:want, floor(%1$s)),
+                tokens = %1$s - LEAST(:want, floor(%1$s)),
+                updated_at = GREATEST(b.updated_at, now())
+            RETURNING last_grant, tokens
+            """.formatted(AVAILABLE);
+
+    private static final String GIVE_BACK = """
+            UPDATE rate_limit_buckets SET tokens = LEAST(:capacity, tokens + :tokens) WHERE client_key = :key
+            """;
+
+    private static final String DELETE_FULL = """
+            DELETE FROM rate_limit_buckets WHERE updated_at < now() - make_interval(secs => :seconds)
+            """;
+
+    /** Tokens handed to the caller and tokens left in the shared bucket after the lease. */
+    public record Grant(int granted, double remaining) {
+    }
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    public RateLimitLeaseStore(JdbcTemplate jdbc) {
+        this.jdbc = new NamedParameterJdbcTemplate(jdbc);
+    }
+
+    /** Takes up to {@code want} whole tokens from the client's bucket in one statement. */
+    public Grant lease(String key, int want, int capacity, double ratePerSecond) {
+        var params = new MapSqlParameterSource()
+                .addValue("key", key)
+                .addValue("want", want)
+                .addValue("capacity", capacity)
+                .addValue("rate", ratePerSecond);
+        return jdbc.queryForObject(LEASE, params, (rs, i) -> new Grant(rs.getInt(1), rs.getDouble(2)));
+    }
+
+    /** Returns leased tokens that were never used. */
+    public void giveBack(String key, int tokens, int capacity) {
+        jdbc.update(GIVE_BACK, new MapSqlParameterSource()
+                .addValue("key", key)
+                .addValue("tokens", tokens)
+                .addValue("capacity", capacity));
+    }
+
+    /** Deletes buckets untouched for {@code refillTime}: they are full again, same as no row. */
+    public int deleteFull(Duration refillTime) {
+        return jdbc.update(DELETE_FULL, new MapSqlParameterSource("seconds", refillTime.toMillis() / 1000.0));
+    }
+}
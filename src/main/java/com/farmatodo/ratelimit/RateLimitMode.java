@@ -0,0 +1,11 @@
+package com.farmatodo.ratelimit;
+
+/**
+ * Where the rate-limit buckets live: {@code LOCAL} in each instance's memory (a client gets the
+ * limit once per instance), {@code CLUSTER} in Postgres, shared by every instance through
+ * {@link ClusterRateLimiter}.
+ */
+public enum RateLimitMode {
+    LOCAL,
+    CLUSTER
+}
@@ -0,0 +1,192 @@
+package com.farmatodo.schema;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Applies the versioned SQL scripts in {@code db/migration} ({@code V<n>__<description>.sql})
+ * before JPA starts, so Hibernate only validates the schema. Applied versions are recorded in
+ * {@code schema_migrations} with a SHA-256 of the script; a script that changed after it was
+ * applied stops startup. Each script runs in its own transaction, and instances starting
+ * together serialize on a Postgres advisory lock, so only one of them applies anything.
+ * Versions recorded in the table but unknown to this build (a newer instance migrated first)
+ * are left alone.
+ */
+@Component
+public class SchemaMigrator implements InitializingBean {
+
+    private static final Logger log = LoggerFactory.getLogger(SchemaMigrator.class);
+
+    static final String LOCATION = "classpath*:db/migration/*.sql";
+    private static final Pattern FILE_NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+    /** Arbitrary key shared by every instance of this application. */
+    private static final long LOCK_KEY = 0x6661726d61L;
+
+    private static final String CREATE_HISTORY = """
+            CREATE TABLE IF NOT EXISTS schema_migrations (
+                version     integer      NOT NULL PRIMARY KEY,
+                description varchar(200) NOT NULL,
+                checksum    varchar(64)  NOT NULL,
+                applied_at  timestamp(6) with time zone NOT NULL DEFAULT now()
+            )
+            """;
+
+    record Migration(int version, String description, String script, String checksum) {
+    }
+
+    private final DataSource dataSource;
+    private final ResourcePatternResolver resources;
+
+    @Autowired
+    public SchemaMigrator(DataSource dataSource) {
+        this(dataSource, new PathMatchingResourcePatternResolver());
+    }
+
+    SchemaMigrator(DataSource dataSource, ResourcePatternResolver resources) {
+        this.dataSource = dataSource;
+        this.resources = resources;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        migrate();
+    }
+
+    /** @return the migrations applied by this call, in order */
+    public List<Migration> migrate() {
+        var migrations = load();
+        var applied = new ArrayList<Migration>();
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(true);
+            execute(connection, "SELECT pg_advisory_lock(" + LOCK_KEY + ")");
+            try {
+                execute(connection, CREATE_HISTORY);
+                var history = history(connection);
+                for (var migration : migrations) {
+                    String checksum = history.get(migration.version());
+                    if (checksum == null) {
+                        apply(connection, migration);
+                        applied.add(migration);
+                    } else if (!checksum.equals(migration.checksum())) {
+                        throw new IllegalStateException("Migration V" + migration.version()
+                                + " was changed after it was applied; add a new version instead");
+                    }
+                }
+            } finally {
+                execute(connection, "SELECT pg_advisory_unlock(" + LOCK_KEY + ")");
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Schema migration failed", e);
+        }
+        if (applied.isEmpty()) {
+            log.info("Schema is up to date at V{}", migrations.isEmpty() ? 0 : migrations.get(migrations.size() - 1).version());
+        }
+        return applied;
+    }
+
+    private void apply(Connection connection, Migration migration) throws SQLException {
+        long start = System.nanoTime();
+        connection.setAutoCommit(false);
+        try {
+            execute(connection, migration.script());
+            try (var insert = connection.prepareStatement(
+                    "INSERT INTO schema_migrations (version, description, checksum) VALUES (?, ?, ?)")) {
+                insert.setInt(1, migration.version());
+                insert.setString(2, migration.description());
+                insert.setString(3, migration.checksum());
+                insert.executeUpdate();
+            }
+            connection.commit();
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw new IllegalStateException("Migration V" + migration.version() + " (" + migration.description() + ") failed", e);
+        } finally {
+            connection.setAutoCommit(true);
+        }
+        log.info("Applied migration V{} {} in {} ms", migration.version(), migration.description(),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static Map<Integer, String> history(Connection connection) throws SQLException {
+        var history = new HashMap<Integer, String>();
+        try (Statement statement = connection.createStatement();
+             var rs = statement.executeQuery("SELECT version, checksum FROM schema_migrations")) {
+            while (rs.next()) {
+                history.put(rs.getInt(1), rs.getString(2));
+            }
+        }
+        return history;
+    }
+
+    private static void execute(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    List<Migration> load() {
+        try {
+            var migrations = new ArrayList<Migration>();
+            for (Resource resource : resources.getResources(LOCATION)) {
+                migrations.add(parse(resource.getFilename(), resource.getContentAsString(StandardCharsets.UTF_8)));
+            }
+            return ordered(migrations);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read " + LOCATION, e);
+        }
+    }
+
+    static Migration parse(String fileName, String script) {
+        var matcher = FILE_NAME.matcher(fileName == null ? "" : fileName);
+        if (!matcher.matches()) {
+            throw new IllegalStateException("Migration file " + fileName + " is not named V<version>__<description>.sql");
+        }
+        return new Migration(Integer.parseInt(matcher.group(1)), matcher.group(2).replace('_', ' '), script,
+                checksum(script));
+    }
+
+    /** Sorts by version and rejects two scripts claiming the same one. */
+    static List<Migration> ordered(Collection<Migration> migrations) {
+        var sorted = new ArrayList<>(migrations);
+        sorted.sort(Comparator.comparingInt(Migration::version));
+        for (int i = 1; i < sorted.size(); i++) {
+            if (sorted.get(i).version() == sorted.get(i - 1).version()) {
+                throw new IllegalStateException("Duplicate migration version V" + sorted.get(i).version());
+            }
+        }
+        return sorted;
+    }
+
+    static String checksum(String script) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(script.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.farmatodo.schema;
+
+import org.springframework.boot.autoconfigure.orm.jpa.EntityManagerFactoryDependsOnPostProcessor;
+import org.springframework.stereotype.Component;
+
+/** Makes the JPA {@code EntityManagerFactory} wait for {@link SchemaMigrator}, so Hibernate validates a migrated schema. */
+@Component
+class SchemaMigratorDependsOnPostProcessor extends EntityManagerFactoryDependsOnPostProcessor {
+
+    SchemaMigratorDependsOnPostProcessor() {
+        super(SchemaMigrator.class);
+    }
+}
@@ -0,0 +1,208 @@
+package com.farmatodo.timer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hashed timer wheel: a single thread advances one slot every {@code tick} and runs the
+ * timeouts that fall due in that slot. Waiting timeouts are plain objects in a bucket, so
+ * thousands of them cost no threads; precision is one tick.
+ *
+ * <p>Tasks run on the wheel thread and must be short: hand real work to an executor.
+ * New timeouts go through a lock-free queue and are placed into buckets at the next tick.
+ */
+public class HashedWheelTimer implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(HashedWheelTimer.class);
+
+    private final long tickNanos;
+    private final List<Timeout>[] wheel;
+    private final int mask;
+    private final Queue<Timeout> incoming = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final long startNanos;
+    private final Thread worker;
+
+    private volatile boolean running = true;
+
+    @SuppressWarnings("unchecked")
+    public HashedWheelTimer(String name, Duration tick, int wheelSize) {
+        if (tick.isZero() || tick.isNegative() || wheelSize < 1) {
+            throw new IllegalArgumentException("tick and wheelSize must be positive");
+        }
+        int size = Integer.highestOneBit(wheelSize - 1) << 1;
+        size = Math.max(size, 1);
+        this.tickNanos = tick.toNanos();
+        this.wheel = new List[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new LinkedList<>();
+        }
+        this.mask = size - 1;
+        this.startNanos = System.nanoTime();
+        this.worker = new Thread(this::run, name + "-timer");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Runs {@code task} on the wheel thread once {@code delay} has elapsed (rounded up to the
+     * next tick).
+     *
+     * @throws IllegalStateException when the timer has been closed
+     */
+    public Timeout schedule(Runnable task, Duration delay) {
+        if (!running) {
+            throw new IllegalStateException("Timer is closed");
+        }
+        long deadline = System.nanoTime() - startNanos + Math.max(0, delay.toNanos());
+        var timeout = new Timeout(task, deadline);
+        pending.incrementAndGet();
+        incoming.add(timeout);
+        return timeout;
+    }
+
+    /** Timeouts scheduled and neither fired nor cancelled yet. */
+    public int pending() {
+        return pending.get();
+    }
+
+    private void run() {
+        long tick = 0;
+        while (running) {
+            long deadline = tickNanos * (tick + 1);
+            if (!awaitNanos(deadline)) {
+                break;
+            }
+            transferIncoming(tick);
+            expire(wheel[(int) (tick & mask)]);
+            tick++;
+        }
+    }
+
+    private boolean awaitNanos(long deadline) {
+        while (running) {
+            long sleep = deadline - (System.nanoTime() - startNanos);
+            if (sleep <= 0) {
+                return true;
+            }
+            LockSupport.parkNanos(this, sleep);
+        }
+        return false;
+    }
+
+    private void transferIncoming(long tick) {
+        Timeout timeout;
+        while ((timeout = incoming.poll()) != null) {
+            if (timeout.state.get() != Timeout.WAITING) {
+                continue;
+            }
+            long dueTick = timeout.deadline / tickNanos;
+            timeout.remainingRounds = (dueTick - tick) / wheel.length;
+            wheel[(int) (Math.max(dueTick, tick) & mask)].add(timeout);
+        }
+    }
+
+    private void expire(List<Timeout> bucket) {
+        Iterator<Timeout> it = bucket.iterator();
+        while (it.hasNext()) {
+            var timeout = it.next();
+            if (timeout.state.get() != Timeout.WAITING) {
+                it.remove();
+            } else if (timeout.remainingRounds <= 0) {
+                it.remove();
+                timeout.fire();
+            } else {
+                timeout.remainingRounds--;
+            }
+        }
+    }
+
+    /**
+     * Stops the wheel. Timeouts that have not fired are cancelled and returned so callers can
+     * decide what to do with the work they represent.
+     */
+    public List<Runnable> stop() {
+        running = false;
+        LockSupport.unpark(worker);
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        var unprocessed = new ArrayList<Runnable>();
+        for (var bucket : wheel) {
+            bucket.forEach(t -> { if (t.cancel()) unprocessed.add(t.task); });
+            bucket.clear();
+        }
+        Timeout timeout;
+        while ((timeout = incoming.poll()) != null) {
+            if (timeout.cancel()) {
+                unprocessed.add(timeout.task);
+            }
+        }
+        return unprocessed;
+    }
+
+    @Override
+    public void close() {
+        stop();
+    }
+
+    /** Handle to a scheduled task. */
+    public final class Timeout {
+
+        private static final int WAITING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final Runnable task;
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        private long remainingRounds;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /** @return false when the task already fired or was cancelled */
+        public boolean cancel() {
+            if (state.compareAndSet(WAITING, CANCELLED)) {
+                pending.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+
+        private void fire() {
+            if (!state.compareAndSet(WAITING, EXPIRED)) {
+                return;
+            }
+            pending.decrementAndGet();
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                log.warn("Timer task failed", e);
+            }
+        }
+    }
+}
@@ -2,27 +2,27 @@ package com.farmatodo.token;
 
 import jakarta.persistence.*;
 import java.time.Instant;
+import java.util.UUID;
 
+/**
+ * A tokenized card. The encrypted PAN is a single {@link CardTokenFormat} record; rows from
+ * before that format live in {@code card_tokens} until {@link CardTokenMigrator} moves them.
+ */
 @Entity
-@Table(name = "card_tokens")
+@Table(name = "card_token_records", indexes = @Index(name = "idx_card_token_records_created_at", columnList = "created_at"))
 public class CardToken {
 
     @Id
-    private String token;
-
-    @Column(nullable = false, length = 8192)
-    private String ciphertext;
-
-    @Column(nullable = false)
-    private String iv;
+    @Column(name = "token")
+    private UUID token;
 
     @Column(nullable = false)
-    private String authTag;
+    private byte[] sealed;
 
     @Column(nullable = false)
     private String maskedPan;
 
-    @Column(nullable = false)
+    @Column(nullable = false, name = "created_at")
     private Instant createdAt;
 
     @Column(nullable = true)
@@ -30,20 +30,16 @@ public class CardToken {
 
     public CardToken() {}
 
-    public CardToken(String token, String ciphertext, String iv, String authTag, String maskedPan, Instant createdAt, String txId) {
+    public CardToken(UUID token, byte[] sealed, String maskedPan, Instant createdAt, String txId) {
         this.token = token;
-        this.ciphertext = ciphertext;
-        this.iv = iv;
-        this.authTag = authTag;
+        this.sealed = sealed;
         this.maskedPan = maskedPan;
         this.createdAt = createdAt;
         this.txId = txId;
     }
 
-    public String getToken() { return token; }
-    public String getCiphertext() { return ciphertext; }
-    public String getIv() { return iv; }
-    public String getAuthTag() { return authTag; }
+    public UUID getToken() { return token; }
+    public byte[] getSealed() { return sealed; }
     public String getMaskedPan() { return maskedPan; }
     public Instant getCreatedAt() { return createdAt; }
     public String getTxId() { return txId; }
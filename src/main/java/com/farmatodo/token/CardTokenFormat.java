@@ -0,0 +1,71 @@
+package com.farmatodo.token;
+
+import com.farmatodo.crypto.EncryptionService;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Binary layout of a sealed card number: {@code version | iv | ciphertext | tag}, stored in one
+ * {@code bytea} column. Version 1 is AES-GCM with a 12-byte IV and a 16-byte tag; the version
+ * byte lets a later key or algorithm change coexist with rows written before it.
+ */
+public final class CardTokenFormat {
+
+    public static final byte VERSION_1 = 1;
+    static final int IV_BYTES = 12;
+    static final int TAG_BYTES = 16;
+
+    /** The pieces of a sealed record; {@code ciphertext} excludes the tag. */
+    public record Parts(byte version, byte[] iv, byte[] ciphertext, byte[] tag) {
+    }
+
+    private CardTokenFormat() {
+    }
+
+    /** Encrypts {@code pan} straight into a version-1 record, without intermediate arrays for ciphertext and tag. */
+    public static byte[] seal(EncryptionService encryption, String pan) {
+        if (encryption.ivLength() != IV_BYTES || encryption.tagLength() != TAG_BYTES) {
+            throw new IllegalStateException("Encryption parameters do not match card token format v" + VERSION_1);
+        }
+        byte[] plain = pan.getBytes(StandardCharsets.UTF_8);
+        byte[] iv = new byte[IV_BYTES];
+        byte[] sealed = new byte[1 + IV_BYTES + plain.length + TAG_BYTES];
+        sealed[0] = VERSION_1;
+        encryption.encrypt(plain, 0, plain.length, iv, sealed, 1 + IV_BYTES);
+        System.arraycopy(iv, 0, sealed, 1, IV_BYTES);
+        return sealed;
+    }
+
+    public static Parts parse(byte[] sealed) {
+        if (sealed == null || sealed.length < 1 + IV_BYTES + TAG_BYTES) {
+            throw new IllegalArgumentException("Sealed card record is truncated");
+        }
+        if (sealed[0] != VERSION_1) {
+            throw new IllegalArgumentException("Unsupported card record version " + sealed[0]);
+        }
+        int tagStart = sealed.length - TAG_BYTES;
+        return new Parts(sealed[0],
+                Arrays.copyOfRange(sealed, 1, 1 + IV_BYTES),
+                Arrays.copyOfRange(sealed, 1 + IV_BYTES, tagStart),
+                Arrays.copyOfRange(sealed, tagStart, sealed.length));
+    }
+
+    /** Builds the version-1 record for a row written in the legacy three-Base64-columns format. */
+    public static byte[] fromLegacy(String ciphertextB64, String ivB64, String authTagB64) {
+        var decoder = Base64.getDecoder();
+        byte[] ciphertext = decoder.decode(ciphertextB64);
+        byte[] iv = decoder.decode(ivB64);
+        byte[] tag = decoder.decode(authTagB64);
+        if (iv.length != IV_BYTES || tag.length != TAG_BYTES) {
+            throw new IllegalArgumentException("Legacy card token has unexpected IV or tag length");
+        }
+        byte[] sealed = new byte[1 + IV_BYTES + ciphertext.length + TAG_BYTES];
+        sealed[0] = VERSION_1;
+        System.arraycopy(iv, 0, sealed, 1, IV_BYTES);
+        System.arraycopy(ciphertext, 0, sealed, 1 + IV_BYTES, ciphertext.length);
+        System.arraycopy(tag, 0, sealed, sealed.length - TAG_BYTES, TAG_BYTES);
+        return sealed;
+    }
+}
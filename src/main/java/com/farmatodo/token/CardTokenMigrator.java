@@ -0,0 +1,123 @@
+package com.farmatodo.token;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Moves rows from the legacy {@code card_tokens} table into {@code card_token_records}, one
+ * batch per transaction: the batch is locked with {@code FOR UPDATE SKIP LOCKED}, each row is
+ * re-encoded as a {@link CardTokenFormat#VERSION_1} record, inserted and deleted from the
+ * legacy table, so concurrent instances split the work and a row is never visible in neither
+ * table. A row that cannot be re-encoded (bad Base64, wrong IV or tag length) keeps the reason
+ * in {@code migration_error} and is skipped from then on, so it never blocks the rest. Legacy
+ * ids that are not UUIDs stay where they are; both kinds keep being served by
+ * {@link CardTokenStore}. Publishes {@code card_tokens.migrated} and
+ * {@code card_tokens.migration_failed}.
+ */
+@Component
+public class CardTokenMigrator {
+
+    private static final Logger log = LoggerFactory.getLogger(CardTokenMigrator.class);
+
+    private static final String CLAIM_BATCH = """
+            SELECT token, ciphertext, iv, auth_tag, masked_pan, created_at, tx_id FROM card_tokens
+            WHERE migration_error IS NULL
+              AND token ~* '^[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}$'
+            LIMIT ? FOR UPDATE SKIP LOCKED
+            """;
+    private static final String INSERT_RECORD = """
+            INSERT INTO card_token_records (token, sealed, masked_pan, created_at, tx_id)
+            VALUES (?, ?, ?, ?, ?)
+            ON CONFLICT (token) DO NOTHING
+            """;
+    private static final String DELETE_LEGACY = "DELETE FROM card_tokens WHERE token = ?";
+    private static final String MARK_FAILED = "UPDATE card_tokens SET migration_error = ? WHERE token = ?";
+
+    private record LegacyRow(String token, String ciphertext, String iv, String authTag, String maskedPan,
+                             Timestamp createdAt, String txId) {
+    }
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+    private final Counter migrated;
+    private final Counter failed;
+
+    public CardTokenMigrator(JdbcTemplate jdbc,
+                             PlatformTransactionManager transactionManager,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.token.migration.batch-size:500}") int batchSize,
+                             @Value("${app.token.migration.max-batches-per-run:20}") int maxBatchesPerRun) {
+        this.jdbc = jdbc;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.migrated = Counter.builder("card_tokens.migrated").register(meterRegistry);
+        this.failed = Counter.builder("card_tokens.migration_failed").register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.token.migration.interval:PT30S}")
+    public void run() {
+        for (int i = 0; i < maxBatchesPerRun; i++) {
+            Integer claimed = transactionTemplate.execute(status -> migrateBatch());
+            if (claimed == null || claimed < batchSize) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Must run inside a transaction, which holds the batch's row locks.
+     *
+     * @return how many rows were claimed, moved or marked as failed
+     */
+    int migrateBatch() {
+        var batch = jdbc.query(CLAIM_BATCH, (rs, n) -> new LegacyRow(rs.getString(1), rs.getString(2),
+                rs.getString(3), rs.getString(4), rs.getString(5), rs.getTimestamp(6), rs.getString(7)), batchSize);
+        var records = new ArrayList<Object[]>(batch.size());
+        var moved = new ArrayList<Object[]>(batch.size());
+        var failures = new ArrayList<Object[]>();
+        for (LegacyRow row : batch) {
+            try {
+                byte[] sealed = CardTokenFormat.fromLegacy(row.ciphertext(), row.iv(), row.authTag());
+                records.add(new Object[]{UUID.fromString(row.token()), sealed, row.maskedPan(), row.createdAt(), row.txId()});
+                moved.add(new Object[]{row.token()});
+            } catch (IllegalArgumentException e) {
+                log.warn("Card token {} cannot be migrated: {}", row.token(), e.getMessage());
+                failures.add(new Object[]{truncate(e.getMessage()), row.token()});
+            }
+        }
+        if (!records.isEmpty()) {
+            jdbc.batchUpdate(INSERT_RECORD, records);
+            jdbc.batchUpdate(DELETE_LEGACY, moved);
+            migrated.increment(records.size());
+            log.info("Migrated {} card tokens to the binary format", records.size());
+        }
+        if (!failures.isEmpty()) {
+            jdbc.batchUpdate(MARK_FAILED, failures);
+            failed.increment(failures.size());
+        }
+        return batch.size();
+    }
+
+    private static String truncate(String message) {
+        if (message == null) {
+            return "invalid legacy record";
+        }
+        return message.length() > 1024 ? message.substring(0, 1024) : message;
+    }
+}
@@ -2,5 +2,7 @@ package com.farmatodo.token;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 
-public interface CardTokenRepository extends JpaRepository<CardToken, String> {
+import java.util.UUID;
+
+public interface CardTokenRepository extends JpaRepository<CardToken, UUID> {
 }
@@ -0,0 +1,101 @@
+package com.farmatodo.token;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Looks card tokens up in both storage formats while {@link CardTokenMigrator} drains the
+ * legacy table. The legacy table is only queried on a miss, so valid tokens cost one lookup;
+ * it is not skipped once empty because instances still on the old code may write to it during
+ * a rolling deploy. Existence checks go through {@link TokenExistenceCache} first, and new
+ * tokens are recorded there once their transaction commits.
+ */
+@Component
+public class CardTokenStore {
+
+    private static final String INSERT_PREFIX =
+            "INSERT INTO card_token_records (token, sealed, masked_pan, created_at, tx_id) VALUES ";
+    private static final String ROW = "(?, ?, ?, ?, ?)";
+    private static final int COLUMNS = 5;
+    /** Rows per statement; keeps the bind count far below the driver's 32767 limit. */
+    static final int ROWS_PER_INSERT = 500;
+
+    private final CardTokenRepository repo;
+    private final LegacyCardTokenRepository legacyRepo;
+    private final JdbcTemplate jdbc;
+    private final TokenExistenceCache existenceCache;
+
+    public CardTokenStore(CardTokenRepository repo, LegacyCardTokenRepository legacyRepo, JdbcTemplate jdbc,
+                          TokenExistenceCache existenceCache) {
+        this.repo = repo;
+        this.legacyRepo = legacyRepo;
+        this.jdbc = jdbc;
+        this.existenceCache = existenceCache;
+    }
+
+    public CardToken save(CardToken token) {
+        CardToken saved = repo.save(token);
+        existenceCache.recordCreated(token.getToken().toString());
+        return saved;
+    }
+
+    /** Inserts new tokens with one multi-row INSERT per {@value #ROWS_PER_INSERT} rows. */
+    public void insertAll(List<CardToken> tokens) {
+        for (int from = 0; from < tokens.size(); from += ROWS_PER_INSERT) {
+            var chunk = tokens.subList(from, Math.min(tokens.size(), from + ROWS_PER_INSERT));
+            var sql = new StringBuilder(INSERT_PREFIX.length() + chunk.size() * (ROW.length() + 2)).append(INSERT_PREFIX);
+            var args = new Object[chunk.size() * COLUMNS];
+            int i = 0;
+            for (CardToken token : chunk) {
+                if (i > 0) {
+                    sql.append(", ");
+                }
+                sql.append(ROW);
+                args[i++] = token.getToken();
+                args[i++] = token.getSealed();
+                args[i++] = token.getMaskedPan();
+                args[i++] = Timestamp.from(token.getCreatedAt());
+                args[i++] = token.getTxId();
+            }
+            jdbc.update(sql.toString(), args);
+        }
+        for (CardToken token : tokens) {
+            existenceCache.recordCreated(token.getToken().toString());
+        }
+    }
+
+    public boolean exists(String token) {
+        return existenceCache.exists(token, this::existsInDatabase);
+    }
+
+    private boolean existsInDatabase(String token) {
+        var id = parse(token);
+        if (id.isPresent() && repo.existsById(id.get())) {
+            return true;
+        }
+        return legacyRepo.existsById(token);
+    }
+
+    /** @return the sealed card in the current format, converting a legacy row on the fly */
+    public Optional<CardTokenFormat.Parts> findSealed(String token) {
+        var sealed = parse(token).flatMap(repo::findById).map(CardToken::getSealed);
+        if (sealed.isEmpty()) {
+            sealed = legacyRepo.findById(token)
+                    .map(l -> CardTokenFormat.fromLegacy(l.getCiphertext(), l.getIv(), l.getAuthTag()));
+        }
+        return sealed.map(CardTokenFormat::parse);
+    }
+
+    private static Optional<UUID> parse(String token) {
+        try {
+            return Optional.of(UUID.fromString(token));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.farmatodo.token;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/** Pre-{@link CardTokenFormat} row: Base64 ciphertext, IV and tag in separate text columns. Read-only. */
+@Entity
+@Table(name = "card_tokens")
+class LegacyCardToken {
+
+    @Id
+    private String token;
+
+    @Column(nullable = false, length = 8192)
+    private String ciphertext;
+
+    @Column(nullable = false)
+    private String iv;
+
+    @Column(nullable = false)
+    private String authTag;
+
+    @Column(nullable = false)
+    private String maskedPan;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    @Column(nullable = true)
+    private String txId;
+
+    protected LegacyCardToken() {}
+
+    LegacyCardToken(String token, String ciphertext, String iv, String authTag, String maskedPan, Instant createdAt, String txId) {
+        this.token = token;
+        this.ciphertext = ciphertext;
+        this.iv = iv;
+        this.authTag = authTag;
+        this.maskedPan = maskedPan;
+        this.createdAt = createdAt;
+        this.txId = txId;
+    }
+
+    String getToken() { return token; }
+    String getCiphertext() { return ciphertext; }
+    String getIv() { return iv; }
+    String getAuthTag() { return authTag; }
+    String getMaskedPan() { return maskedPan; }
+}
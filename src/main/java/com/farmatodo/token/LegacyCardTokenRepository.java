@@ -0,0 +1,6 @@
+package com.farmatodo.token;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+interface LegacyCardTokenRepository extends JpaRepository<LegacyCardToken, String> {
+}
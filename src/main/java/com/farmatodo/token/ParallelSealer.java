@@ -0,0 +1,77 @@
+package com.farmatodo.token;
+
+import com.farmatodo.crypto.EncryptionService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Seals many card numbers at once by splitting them into contiguous chunks, one per core. The
+ * calling thread works on the first chunk itself; the rest run on a fixed pool whose threads
+ * keep their per-thread ciphers warm between batches.
+ */
+@Component
+class ParallelSealer implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(ParallelSealer.class);
+
+    /** Below this many cards per chunk the hand-off costs more than the encryption. */
+    static final int MIN_CHUNK = 16;
+
+    private final EncryptionService encryption;
+    private final int parallelism;
+    private final ExecutorService pool;
+
+    ParallelSealer(EncryptionService encryption,
+                   @Value("${app.token.batch.parallelism:0}") int parallelism) {
+        this.encryption = encryption;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        var threads = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(Math.max(1, this.parallelism - 1), r -> {
+            var t = new Thread(r, "token-sealer-" + threads.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** @return one sealed record per card, in order; {@code null} where encryption failed */
+    List<byte[]> sealAll(List<String> pans) {
+        var sealed = new byte[pans.size()][];
+        int chunks = Math.max(1, Math.min(parallelism, pans.size() / MIN_CHUNK));
+        int chunkSize = (pans.size() + chunks - 1) / chunks;
+        var forked = new ArrayList<CompletableFuture<Void>>(chunks - 1);
+        for (int c = 1; c < chunks; c++) {
+            int from = c * chunkSize;
+            int to = Math.min(pans.size(), from + chunkSize);
+            forked.add(CompletableFuture.runAsync(() -> sealRange(pans, from, to, sealed), pool));
+        }
+        sealRange(pans, 0, Math.min(pans.size(), chunkSize), sealed);
+        forked.forEach(CompletableFuture::join);
+        return Arrays.asList(sealed);
+    }
+
+    private void sealRange(List<String> pans, int from, int to, byte[][] sealed) {
+        for (int i = from; i < to; i++) {
+            try {
+                sealed[i] = CardTokenFormat.seal(encryption, pans.get(i));
+            } catch (RuntimeException e) {
+                log.error("Encryption failed for batch item {}", i, e);
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,119 @@
+package com.farmatodo.token;
+
+import com.farmatodo.config.TxFilter;
+import com.farmatodo.log.LogService;
+import com.farmatodo.token.dto.BatchTokenResponse;
+import com.farmatodo.token.dto.BatchTokenResult;
+import com.farmatodo.token.dto.BatchTokenResult.Status;
+import com.farmatodo.token.dto.CreateTokenRequest;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Tokenizes many cards in one call: each card is validated on its own, the valid ones are
+ * encrypted in parallel ({@link ParallelSealer}), persisted with multi-row inserts and
+ * summarised in a single {@code token_batch_created} log entry. A bad card only fails its own
+ * result.
+ */
+@Service
+public class TokenBatchService {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenBatchService.class);
+
+    private final CardTokenStore tokenStore;
+    private final ParallelSealer sealer;
+    private final Validator validator;
+    private final LogService logService;
+    private final double rejectProbability;
+    private final Random random = new Random();
+
+    TokenBatchService(CardTokenStore tokenStore,
+                      ParallelSealer sealer,
+                      Validator validator,
+                      LogService logService,
+                      @Value("${app.token.reject-probability:0.0}") double rejectProbability) {
+        this.tokenStore = tokenStore;
+        this.sealer = sealer;
+        this.validator = validator;
+        this.logService = logService;
+        this.rejectProbability = rejectProbability;
+    }
+
+    @Transactional
+    public BatchTokenResponse createTokens(List<CreateTokenRequest> cards) {
+        String tx = MDC.get(TxFilter.TX_ID);
+        var results = new BatchTokenResult[cards.size()];
+        var accepted = new ArrayList<Integer>(cards.size());
+        for (int i = 0; i < cards.size(); i++) {
+            var card = cards.get(i);
+            String violations = violations(card);
+            if (violations != null) {
+                results[i] = new BatchTokenResult(i, Status.INVALID, null, null, violations);
+            } else if (random.nextDouble() < rejectProbability) {
+                results[i] = new BatchTokenResult(i, Status.REJECTED, null, null,
+                        "Tokenization rejected by configured probability");
+            } else {
+                accepted.add(i);
+            }
+        }
+
+        var sealed = sealer.sealAll(accepted.stream().map(i -> cards.get(i).getCardNumber()).toList());
+        var now = Instant.now();
+        var tokens = new ArrayList<CardToken>(accepted.size());
+        for (int k = 0; k < accepted.size(); k++) {
+            int i = accepted.get(k);
+            if (sealed.get(k) == null) {
+                results[i] = new BatchTokenResult(i, Status.FAILED, null, null, "Encryption failure");
+                continue;
+            }
+            var token = new CardToken(UUID.randomUUID(), sealed.get(k), TokenService.maskPan(cards.get(i).getCardNumber()), now, tx);
+            tokens.add(token);
+            results[i] = new BatchTokenResult(i, Status.CREATED, token.getToken().toString(), token.getMaskedPan(), null);
+        }
+        tokenStore.insertAll(tokens);
+
+        var counts = new EnumMap<Status, Integer>(Status.class);
+        for (var status : Status.values()) {
+            counts.put(status, 0);
+        }
+        for (var result : results) {
+            counts.merge(result.status(), 1, Integer::sum);
+        }
+        logService.log("token_batch_created", "INFO", "Batch tokenization completed",
+                Map.of("requested", cards.size(), "created", counts.get(Status.CREATED),
+                        "invalid", counts.get(Status.INVALID), "rejected", counts.get(Status.REJECTED),
+                        "failed", counts.get(Status.FAILED)));
+        log.info("Batch tokenization: {} of {} cards tokenized [tx={}]", counts.get(Status.CREATED), cards.size(), tx);
+        return new BatchTokenResponse(cards.size(), counts.get(Status.CREATED),
+                cards.size() - counts.get(Status.CREATED), Arrays.asList(results));
+    }
+
+    private String violations(CreateTokenRequest card) {
+        if (card == null) {
+            return "card is required";
+        }
+        var violations = validator.validate(card);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                .sorted()
+                .collect(Collectors.joining("; "));
+    }
+}
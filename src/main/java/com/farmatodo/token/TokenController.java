@@ -1,5 +1,7 @@
 package com.farmatodo.token;
 
+import com.farmatodo.token.dto.BatchTokenRequest;
+import com.farmatodo.token.dto.BatchTokenResponse;
 import com.farmatodo.token.dto.CreateTokenRequest;
 import com.farmatodo.token.dto.CreateTokenResponse;
 import jakarta.validation.Valid;
@@ -16,14 +18,22 @@ import org.springframework.web.bind.annotation.RestController;
 public class TokenController {
 
     private final TokenService tokenService;
+    private final TokenBatchService tokenBatchService;
 
-    public TokenController(TokenService tokenService) {
+    public TokenController(TokenService tokenService, TokenBatchService tokenBatchService) {
         this.tokenService = tokenService;
+        this.tokenBatchService = tokenBatchService;
     }
 
     @PostMapping
     public ResponseEntity<CreateTokenResponse> createToken(@Valid @RequestBody CreateTokenRequest req) {
         var entity = tokenService.createToken(req);
-        return ResponseEntity.ok(new CreateTokenResponse(entity.getToken(), entity.getMaskedPan()));
+        return ResponseEntity.ok(new CreateTokenResponse(entity.getToken().toString(), entity.getMaskedPan()));
+    }
+
+    /** Tokenizes up to {@value BatchTokenRequest#MAX_CARDS} cards; per-card outcomes are in the results. */
+    @PostMapping("/batch")
+    public ResponseEntity<BatchTokenResponse> createTokens(@Valid @RequestBody BatchTokenRequest req) {
+        return ResponseEntity.ok(tokenBatchService.createTokens(req.getCards()));
     }
 }
@@ -0,0 +1,180 @@
+package com.farmatodo.token;
+
+import com.farmatodo.bloom.TableBloomFilter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+/**
+ * Existence cache for card tokens, which never change once created. Known tokens (created here
+ * or confirmed by the database) are kept in a bounded cache; a {@link TableBloomFilter} of every
+ * token, built at startup and grown as tokens are created, answers "definitely not a token"
+ * without a primary-key lookup.
+ *
+ * <p>{@link #sync()} runs the filter's catch-up every {@code app.token.cache.sync-interval}; see
+ * {@link TableBloomFilter} for how stale it can be. Tokens are random (version 4) UUIDs and carry
+ * no creation time, so a token created on another instance can be rejected here for up to about
+ * one interval.
+ *
+ * <p>Publishes {@code token.existence} (tagged {@code result=cache_hit|bloom_reject|db_found|db_missing}),
+ * {@code token.bloom.insertions}, {@code token.bloom.stages} and {@code cache.*} meters tagged
+ * {@code cache=card-tokens}.
+ */
+@Component
+public class TokenExistenceCache {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenExistenceCache.class);
+
+    private static final String LOAD_ALL =
+            "SELECT token::text FROM card_token_records UNION ALL SELECT token FROM card_tokens";
+    private static final String LOAD_SINCE =
+            "SELECT token::text FROM card_token_records WHERE created_at >= ? "
+                    + "UNION ALL SELECT token FROM card_tokens WHERE created_at >= ?";
+
+    private final boolean enabled;
+    private final Cache<String, Boolean> known;
+    private final TableBloomFilter bloom;
+
+    private final Counter cacheHits;
+    private final Counter bloomRejects;
+    private final Counter dbFound;
+    private final Counter dbMissing;
+
+    @Autowired
+    public TokenExistenceCache(JdbcTemplate jdbc,
+                               MeterRegistry meterRegistry,
+                               @Value("${app.token.cache.enabled:true}") boolean enabled,
+                               @Value("${app.token.cache.max-size:100000}") long maxSize,
+                               @Value("${app.token.cache.expected-tokens:1000000}") long expectedTokens,
+                               @Value("${app.token.cache.false-positive-rate:0.01}") double falsePositiveRate,
+                               @Value("${app.token.cache.sync-interval:PT1S}") Duration syncInterval) {
+        this(jdbc, meterRegistry, enabled, maxSize, expectedTokens, falsePositiveRate, syncInterval, Clock.systemUTC());
+    }
+
+    TokenExistenceCache(JdbcTemplate jdbc, MeterRegistry meterRegistry, boolean enabled, long maxSize,
+                        long expectedTokens, double falsePositiveRate, Duration syncInterval, Clock clock) {
+        this.enabled = enabled;
+        this.bloom = new TableBloomFilter(jdbc, LOAD_ALL, LOAD_SINCE, TokenExistenceCache::key, key -> null,
+                expectedTokens, falsePositiveRate, syncInterval, clock);
+        this.known = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, known, "card-tokens");
+        Gauge.builder("token.bloom.insertions", bloom, TableBloomFilter::insertions).register(meterRegistry);
+        Gauge.builder("token.bloom.stages", bloom, TableBloomFilter::stageCount).register(meterRegistry);
+        this.cacheHits = counter(meterRegistry, "cache_hit");
+        this.bloomRejects = counter(meterRegistry, "bloom_reject");
+        this.dbFound = counter(meterRegistry, "db_found");
+        this.dbMissing = counter(meterRegistry, "db_missing");
+    }
+
+    private static Counter counter(MeterRegistry registry, String result) {
+        return Counter.builder("token.existence").tag("result", result).register(registry);
+    }
+
+    /**
+     * @param database the authoritative lookup, used when neither the cache nor the filter can answer
+     */
+    public boolean exists(String token, Predicate<String> database) {
+        if (!enabled) {
+            return database.test(token);
+        }
+        String key = key(token);
+        if (known.getIfPresent(key) != null) {
+            cacheHits.increment();
+            return true;
+        }
+        if (!bloom.mightContain(key)) {
+            bloomRejects.increment();
+            return false;
+        }
+        boolean found = database.test(token);
+        if (found) {
+            dbFound.increment();
+            known.put(key, Boolean.TRUE);
+        } else {
+            dbMissing.increment();
+        }
+        return found;
+    }
+
+    /** Records a new token once the surrounding transaction commits (immediately when there is none). */
+    public void recordCreated(String token) {
+        if (!enabled) {
+            return;
+        }
+        String key = key(token);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    add(key);
+                }
+            });
+        } else {
+            add(key);
+        }
+    }
+
+    private void add(String key) {
+        known.put(key, Boolean.TRUE);
+        bloom.put(key);
+    }
+
+    /** Builds the filter from both token tables; until it exists every lookup goes to the database. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            bloom.load();
+            log.info("Token existence filter built with {} tokens", bloom.insertions());
+        } catch (DataAccessException e) {
+            log.warn("Token existence filter could not be built; lookups go to the database", e);
+        }
+    }
+
+    /** Picks up tokens created on other instances, or builds the filter if the startup build failed. */
+    @Scheduled(fixedDelayString = "${app.token.cache.sync-interval:PT1S}")
+    public void sync() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            bloom.sync();
+        } catch (DataAccessException e) {
+            log.warn("Token existence catch-up failed; rejections go to the database until it succeeds", e);
+        }
+    }
+
+    /** Canonical form, so {@code UUID}-typed and text lookups agree on case. */
+    static String key(String token) {
+        try {
+            return UUID.fromString(token).toString();
+        } catch (IllegalArgumentException e) {
+            return token;
+        }
+    }
+}
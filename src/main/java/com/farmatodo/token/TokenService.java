@@ -1,7 +1,6 @@
 package com.farmatodo.token;
 
 import com.farmatodo.config.TxFilter;
-import com.farmatodo.crypto.EncryptionResult;
 import com.farmatodo.crypto.EncryptionService;
 import com.farmatodo.log.LogService;
 import com.farmatodo.token.dto.CreateTokenRequest;
@@ -13,7 +12,6 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
-import java.util.Base64;
 import java.util.Map;
 import java.util.Random;
 import java.util.UUID;
@@ -23,17 +21,17 @@ public class TokenService {
 
     private static final Logger log = LoggerFactory.getLogger(TokenService.class);
 
-    private final CardTokenRepository repo;
+    private final CardTokenStore tokenStore;
     private final LogService logService;
     private final EncryptionService encryptionService;
     private final double rejectProbability;
     private final Random random = new Random();
 
-    public TokenService(CardTokenRepository repo,
+    public TokenService(CardTokenStore tokenStore,
                         LogService logService,
                         EncryptionService encryptionService,
                         @Value("${app.token.reject-probability:0.0}") double rejectProbability) {
-        this.repo = repo;
+        this.tokenStore = tokenStore;
         this.logService = logService;
         this.encryptionService = encryptionService;
         this.rejectProbability = rejectProbability;
@@ -53,25 +51,17 @@ public class TokenService {
         }
 
         try {
-            EncryptionResult encrypted = encryptionService.encrypt(req.getCardNumber());
+            byte[] sealed = CardTokenFormat.seal(encryptionService, req.getCardNumber());
 
-            String token = UUID.randomUUID().toString();
+            UUID token = UUID.randomUUID();
             String masked = maskPan(req.getCardNumber());
 
-            CardToken entity = new CardToken(
-                    token,
-                    Base64.getEncoder().encodeToString(encrypted.ciphertext()),
-                    Base64.getEncoder().encodeToString(encrypted.iv()),
-                    Base64.getEncoder().encodeToString(encrypted.authTag()),
-                    masked,
-                    Instant.now(),
-                    tx
-            );
+            CardToken entity = new CardToken(token, sealed, masked, Instant.now(), tx);
 
-            repo.save(entity);
+            tokenStore.save(entity);
 
             logService.log("token_created", "INFO", "Token created successfully",
-                    Map.of("token", token, "maskedPan", masked));
+                    Map.of("token", token.toString(), "maskedPan", masked));
             log.info("Token created {} [tx={}]", token, tx);
             return entity;
         } catch (TokenRejectedException tre) {
@@ -82,7 +72,7 @@ public class TokenService {
         }
     }
 
-    private String maskPan(String pan) {
+    static String maskPan(String pan) {
         int len = pan.length();
         if (len <= 4) return pan;
         String last4 = pan.substring(len - 4);
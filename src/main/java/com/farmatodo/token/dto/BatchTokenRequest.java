@@ -0,0 +1,23 @@
+package com.farmatodo.token.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+/**
+ * Cards are deliberately not {@code @Valid}-cascaded: each one is validated on its own so a bad
+ * card is reported in its result instead of rejecting the whole batch.
+ */
+public class BatchTokenRequest {
+
+    public static final int MAX_CARDS = 1000;
+
+    @NotEmpty
+    @Size(max = MAX_CARDS, message = "at most " + MAX_CARDS + " cards per batch")
+    private List<CreateTokenRequest> cards;
+
+    public List<CreateTokenRequest> getCards() { return cards; }
+
+    public void setCards(List<CreateTokenRequest> cards) { this.cards = cards; }
+}
@@ -0,0 +1,6 @@
+package com.farmatodo.token.dto;
+
+import java.util.List;
+
+public record BatchTokenResponse(int requested, int created, int failed, List<BatchTokenResult> results) {
+}
@@ -0,0 +1,7 @@
+package com.farmatodo.token.dto;
+
+/** Outcome for the card at {@code index} of the request; {@code token} is set only when CREATED. */
+public record BatchTokenResult(int index, Status status, String token, String maskedPan, String error) {
+
+    public enum Status { CREATED, INVALID, REJECTED, FAILED }
+}
@@ -0,0 +1,155 @@
+-- Schema as Hibernate created it with ddl-auto=update. IF NOT EXISTS lets databases created that
+-- way adopt this baseline without changes.
+
+CREATE TABLE IF NOT EXISTS customers (
+    id         uuid         NOT NULL PRIMARY KEY,
+    name       varchar(255) NOT NULL,
+    email      varchar(255) NOT NULL,
+    phone      varchar(50)  NOT NULL,
+    address    varchar(500) NOT NULL,
+    created_at timestamp(6) with time zone NOT NULL,
+    tx_id      varchar(255),
+    CONSTRAINT uk_customer_email UNIQUE (email),
+    CONSTRAINT uk_customer_phone UNIQUE (phone)
+);
+
+CREATE TABLE IF NOT EXISTS products (
+    id          uuid          NOT NULL PRIMARY KEY,
+    name        varchar(255)  NOT NULL,
+    description varchar(1000),
+    price       numeric(19,2) NOT NULL,
+    stock       integer       NOT NULL,
+    created_at  timestamp(6) with time zone NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS carts (
+    id          uuid        NOT NULL PRIMARY KEY,
+    customer_id uuid        NOT NULL,
+    status      varchar(20) NOT NULL CHECK (status IN ('ACTIVE', 'ORDERED')),
+    created_at  timestamp(6) with time zone NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS cart_items (
+    id                  uuid          NOT NULL PRIMARY KEY,
+    cart_id             uuid          NOT NULL,
+    product_id          uuid          NOT NULL,
+    quantity            integer       NOT NULL,
+    unit_price_snapshot numeric(19,2) NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS orders (
+    id               uuid          NOT NULL PRIMARY KEY,
+    customer_id      uuid          NOT NULL,
+    cart_id          uuid          NOT NULL,
+    status           varchar(30)   NOT NULL
+        CHECK (status IN ('CREATED', 'PAYMENT_PENDING', 'PAID', 'PAYMENT_FAILED', 'CANCELLED')),
+    total_amount     numeric(19,2) NOT NULL,
+    delivery_address varchar(500)  NOT NULL,
+    token_id         varchar(255)  NOT NULL,
+    created_at       timestamp(6) with time zone NOT NULL,
+    tx_id            varchar(255)
+);
+
+CREATE TABLE IF NOT EXISTS order_items (
+    id                  uuid          NOT NULL PRIMARY KEY,
+    order_id            uuid          NOT NULL,
+    product_id          uuid          NOT NULL,
+    quantity            integer       NOT NULL,
+    unit_price_snapshot numeric(19,2) NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS payments (
+    id         uuid         NOT NULL PRIMARY KEY,
+    order_id   uuid         NOT NULL,
+    token_id   varchar(255) NOT NULL,
+    status     varchar(20)  NOT NULL CHECK (status IN ('INITIATED', 'SUCCESS', 'FAILED')),
+    attempts   integer      NOT NULL,
+    last_error varchar(1000),
+    created_at timestamp(6) with time zone NOT NULL,
+    tx_id      varchar(255)
+);
+
+CREATE TABLE IF NOT EXISTS card_token_records (
+    token      uuid         NOT NULL PRIMARY KEY,
+    sealed     bytea        NOT NULL,
+    masked_pan varchar(255) NOT NULL,
+    created_at timestamp(6) with time zone NOT NULL,
+    tx_id      varchar(255)
+);
+
+-- Pre-binary token format, drained by CardTokenMigrator.
+CREATE TABLE IF NOT EXISTS card_tokens (
+    token      varchar(255)  NOT NULL PRIMARY KEY,
+    ciphertext varchar(8192) NOT NULL,
+    iv         varchar(255)  NOT NULL,
+    auth_tag   varchar(255)  NOT NULL,
+    masked_pan varchar(255)  NOT NULL,
+    created_at timestamp(6) with time zone NOT NULL,
+    tx_id      varchar(255)
+);
+
+CREATE TABLE IF NOT EXISTS transaction_logs (
+    id         uuid          NOT NULL PRIMARY KEY,
+    tx_id      varchar(255)  NOT NULL,
+    event_type varchar(255)  NOT NULL,
+    level      varchar(16)   NOT NULL,
+    message    varchar(1024) NOT NULL,
+    payload    jsonb,
+    created_at timestamp(6) with time zone NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS outbox_events (
+    id           uuid        NOT NULL PRIMARY KEY,
+    type         varchar(64) NOT NULL CHECK (type IN ('PAYMENT_SUCCESS_EMAIL', 'PAYMENT_FAILED_EMAIL')),
+    status       varchar(20) NOT NULL CHECK (status IN ('PENDING', 'FAILED')),
+    payload      jsonb       NOT NULL,
+    attempts     integer     NOT NULL,
+    available_at timestamp(6) with time zone NOT NULL,
+    last_error   varchar(1024),
+    created_at   timestamp(6) with time zone NOT NULL,
+    tx_id        varchar(255)
+);
+
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+    idem_key     varchar(320) NOT NULL PRIMARY KEY,
+    request_hash varchar(64)  NOT NULL,
+    state        varchar(20)  NOT NULL CHECK (state IN ('IN_PROGRESS', 'COMPLETED')),
+    status       integer,
+    content_type varchar(255),
+    location     varchar(1024),
+    body         bytea,
+    created_at   timestamp(6) with time zone NOT NULL,
+    expires_at   timestamp(6) with time zone NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS product_search_logs (
+    id         uuid    NOT NULL PRIMARY KEY,
+    min_stock  integer NOT NULL,
+    created_at timestamp(6) with time zone NOT NULL,
+    tx_id      varchar(255)
+);
+
+CREATE TABLE IF NOT EXISTS product_search_rollups (
+    id           uuid    NOT NULL PRIMARY KEY,
+    bucket_start timestamp(6) with time zone NOT NULL,
+    min_stock    integer NOT NULL,
+    search_count bigint  NOT NULL,
+    distinct_tx  bigint  NOT NULL,
+    CONSTRAINT uk_search_rollup_bucket UNIQUE (bucket_start, min_stock)
+);
+
+CREATE INDEX IF NOT EXISTS idx_card_token_records_created_at ON card_token_records (created_at);
+CREATE INDEX IF NOT EXISTS idx_idempotency_expires_at ON idempotency_keys (expires_at);
+CREATE INDEX IF NOT EXISTS idx_outbox_status_available_at ON outbox_events (status, available_at);
+
+-- Foreign keys keep the names Hibernate generated, so existing databases are recognised.
+DO $$
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = 'fkpcttvuq4mxppo8sxggjtn5i2c') THEN
+        ALTER TABLE cart_items ADD CONSTRAINT fkpcttvuq4mxppo8sxggjtn5i2c FOREIGN KEY (cart_id) REFERENCES carts;
+    END IF;
+    IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = 'fkbioxgbv59vetrxe0ejfubep1w') THEN
+        ALTER TABLE order_items ADD CONSTRAINT fkbioxgbv59vetrxe0ejfubep1w FOREIGN KEY (order_id) REFERENCES orders;
+    END IF;
+END
+$$;
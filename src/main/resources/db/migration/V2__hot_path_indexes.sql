@@ -0,0 +1,24 @@
+-- Indexes for the lookups on the request path. Each one is covered by QueryPlanIntegrationTest.
+
+-- CartRepository.findByCustomerIdAndStatus(customerId, ACTIVE): every cart and checkout call.
+CREATE INDEX IF NOT EXISTS idx_carts_customer_active ON carts (customer_id) WHERE status = 'ACTIVE';
+
+-- CartItemRepository.findByCartIdAndProductId and findStockShortages (cart_id prefix).
+CREATE INDEX IF NOT EXISTS idx_cart_items_cart_product ON cart_items (cart_id, product_id);
+
+-- Order history pages: WHERE customer_id = ? ORDER BY created_at DESC, id DESC.
+CREATE INDEX IF NOT EXISTS idx_orders_customer_created ON orders (customer_id, created_at DESC, id DESC);
+
+-- Items of an order (entity-graph fetch of Order.items).
+CREATE INDEX IF NOT EXISTS idx_order_items_order ON order_items (order_id);
+
+-- PaymentRepository.countByOrderId.
+CREATE INDEX IF NOT EXISTS idx_payments_order ON payments (order_id);
+
+-- Product search: stock >= ? ORDER BY name, id. The first index serves selective minimums; the
+-- second lets a page over most of the catalogue read in name order and stop at the limit.
+CREATE INDEX IF NOT EXISTS idx_products_stock_name ON products (stock, name, id);
+CREATE INDEX IF NOT EXISTS idx_products_name ON products (name, id);
+
+-- Support lookups of everything logged for one request.
+CREATE INDEX IF NOT EXISTS idx_transaction_logs_tx ON transaction_logs (tx_id);
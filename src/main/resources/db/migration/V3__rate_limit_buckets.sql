@@ -0,0 +1,8 @@
+-- One token bucket per client for app.rate-limit.mode=cluster (RateLimitLeaseStore). UNLOGGED:
+-- the rows are rewritten on nearly every lease and losing them in a crash only resets limits.
+CREATE UNLOGGED TABLE IF NOT EXISTS rate_limit_buckets (
+    client_key text             NOT NULL PRIMARY KEY,
+    tokens     double precision NOT NULL,
+    last_grant integer          NOT NULL,
+    updated_at timestamp(6) with time zone NOT NULL
+);
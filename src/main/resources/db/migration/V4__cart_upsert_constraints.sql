@@ -0,0 +1,29 @@
+-- Unique keys the add-to-cart upsert (CartItemUpsert) relies on. Before them, two concurrent adds
+-- could create two active carts for one customer, or two lines for one product; fold those first.
+
+-- Duplicate active carts: move their lines to the newest cart and drop the others.
+CREATE TEMPORARY TABLE duplicate_carts ON COMMIT DROP AS
+SELECT id, keep
+FROM (SELECT id, first_value(id) OVER (PARTITION BY customer_id ORDER BY created_at DESC, id DESC) AS keep
+      FROM carts WHERE status = 'ACTIVE') ranked
+WHERE id <> keep;
+
+UPDATE cart_items i SET cart_id = d.keep FROM duplicate_carts d WHERE i.cart_id = d.id;
+DELETE FROM carts c USING duplicate_carts d WHERE c.id = d.id;
+
+-- Duplicate lines: keep the first, with the summed quantity.
+UPDATE cart_items i SET quantity = d.total
+FROM (SELECT id, row_number() OVER w AS rn, sum(quantity) OVER (PARTITION BY cart_id, product_id) AS total
+      FROM cart_items WINDOW w AS (PARTITION BY cart_id, product_id ORDER BY id)) d
+WHERE i.id = d.id AND d.rn = 1 AND d.total <> i.quantity;
+
+DELETE FROM cart_items i
+USING (SELECT id, row_number() OVER (PARTITION BY cart_id, product_id ORDER BY id) AS rn FROM cart_items) d
+WHERE i.id = d.id AND d.rn > 1;
+
+-- The unique indexes replace the plain V2 indexes on the same columns.
+CREATE UNIQUE INDEX IF NOT EXISTS uk_carts_customer_active ON carts (customer_id) WHERE status = 'ACTIVE';
+DROP INDEX IF EXISTS idx_carts_customer_active;
+
+ALTER TABLE cart_items ADD CONSTRAINT uk_cart_items_cart_product UNIQUE (cart_id, product_id);
+DROP INDEX IF EXISTS idx_cart_items_cart_product;
@@ -0,0 +1,45 @@
+-- Running cart total, so reading a cart (or checking it out) does not sum its lines. Every writer
+-- of cart_items (JPA batches, the add-to-cart upsert, the write-behind cart store) keeps it right
+-- through the statement triggers below: one UPDATE of carts per statement and cart, with the
+-- cart row locked, so concurrent changes to one cart add up instead of overwriting each other.
+
+ALTER TABLE carts ADD COLUMN total numeric(19,2) NOT NULL DEFAULT 0;
+
+UPDATE carts c SET total = l.total
+FROM (SELECT cart_id, sum(quantity * unit_price_snapshot) AS total FROM cart_items GROUP BY cart_id) l
+WHERE c.id = l.cart_id;
+
+CREATE FUNCTION cart_items_maintain_total() RETURNS trigger LANGUAGE plpgsql AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        UPDATE carts c SET total = c.total + d.amount
+        FROM (SELECT cart_id, sum(quantity * unit_price_snapshot) AS amount FROM new_lines GROUP BY cart_id) d
+        WHERE c.id = d.cart_id;
+    ELSIF TG_OP = 'UPDATE' THEN
+        UPDATE carts c SET total = c.total + d.amount
+        FROM (SELECT cart_id, sum(amount) AS amount
+              FROM (SELECT cart_id, quantity * unit_price_snapshot AS amount FROM new_lines
+                    UNION ALL
+                    SELECT cart_id, -(quantity * unit_price_snapshot) FROM old_lines) changed
+              GROUP BY cart_id) d
+        WHERE c.id = d.cart_id AND d.amount <> 0;
+    ELSE
+        UPDATE carts c SET total = c.total - d.amount
+        FROM (SELECT cart_id, sum(quantity * unit_price_snapshot) AS amount FROM old_lines GROUP BY cart_id) d
+        WHERE c.id = d.cart_id;
+    END IF;
+    RETURN NULL;
+END
+$$;
+
+CREATE TRIGGER cart_items_total_insert AFTER INSERT ON cart_items
+    REFERENCING NEW TABLE AS new_lines
+    FOR EACH STATEMENT EXECUTE FUNCTION cart_items_maintain_total();
+
+CREATE TRIGGER cart_items_total_update AFTER UPDATE ON cart_items
+    REFERENCING OLD TABLE AS old_lines NEW TABLE AS new_lines
+    FOR EACH STATEMENT EXECUTE FUNCTION cart_items_maintain_total();
+
+CREATE TRIGGER cart_items_total_delete AFTER DELETE ON cart_items
+    REFERENCING OLD TABLE AS old_lines
+    FOR EACH STATEMENT EXECUTE FUNCTION cart_items_maintain_total();
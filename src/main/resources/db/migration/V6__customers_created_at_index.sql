@@ -0,0 +1,3 @@
+-- CustomerLookup catch-up: the customers created in the last few seconds (created_at >= ?), so
+-- instances learn about each other's new customers with an index range scan.
+CREATE INDEX IF NOT EXISTS idx_customers_created_at ON customers (created_at);
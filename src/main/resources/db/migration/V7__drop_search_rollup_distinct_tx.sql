@@ -0,0 +1,2 @@
+-- Every product search has its own tx id, so distinct_tx always equaled search_count.
+ALTER TABLE product_search_rollups DROP COLUMN IF EXISTS distinct_tx;
@@ -0,0 +1,3 @@
+-- CardTokenMigrator: legacy rows that cannot be re-encoded (bad Base64, wrong IV or tag length)
+-- keep the reason here and are skipped by later batches instead of failing them.
+ALTER TABLE card_tokens ADD COLUMN IF NOT EXISTS migration_error varchar(1024);
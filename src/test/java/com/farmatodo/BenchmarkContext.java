@@ -0,0 +1,67 @@
+package com.farmatodo;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Boots the application (without the web layer) against a throwaway Postgres container
+ * so JMH benchmarks can measure real repository paths. Requires Docker.
+ */
+public final class BenchmarkContext implements AutoCloseable {
+
+    private final PostgreSQLContainer<?> postgres;
+    private final ConfigurableApplicationContext context;
+
+    private BenchmarkContext(PostgreSQLContainer<?> postgres, ConfigurableApplicationContext context) {
+        this.postgres = postgres;
+        this.context = context;
+    }
+
+    /**
+     * @param properties extra {@code key=value} properties for the application context
+     */
+    public static BenchmarkContext start(String... properties) {
+        PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15")
+                .withDatabaseName("farmatodo")
+                .withUsername("farmatodo")
+                .withPassword("farmatodo_pwd");
+        postgres.start();
+
+        List<String> props = new ArrayList<>(List.of(
+                "spring.datasource.url=" + postgres.getJdbcUrl(),
+                "spring.datasource.username=" + postgres.getUsername(),
+                "spring.datasource.password=" + postgres.getPassword(),
+                "ENCRYPTION_KEY=QmFja2VuZEVuY3J5cHRpb25LZXlGb3JERVZfMjU2X0dDTQ==",
+                "logging.level.com.farmatodo=WARN",
+                "logging.level.org.hibernate.SQL=WARN"
+        ));
+        props.addAll(List.of(properties));
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(Application.class)
+                .web(WebApplicationType.NONE)
+                .profiles("test")
+                .properties(props.toArray(String[]::new))
+                .run();
+        return new BenchmarkContext(postgres, context);
+    }
+
+    public <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    public JdbcTemplate jdbc() {
+        return context.getBean(JdbcTemplate.class);
+    }
+
+    @Override
+    public void close() {
+        context.close();
+        postgres.stop();
+    }
+}
@@ -0,0 +1,134 @@
+package com.farmatodo;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Wraps the application {@link DataSource} and, while recording, runs {@code EXPLAIN (FORMAT JSON)}
+ * for every {@code SELECT} executed through a {@link PreparedStatement}, on the same connection and
+ * with the same parameters. Only statements of the thread that called {@link #start()} are
+ * explained. Register with {@code @Import(QueryPlanRecorder.class)}.
+ */
+public class QueryPlanRecorder implements BeanPostProcessor {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    /** One explained statement; {@code plan} is the root plan node. */
+    public record Plan(String sql, JsonNode plan) {
+
+        /** Relations read with a sequential scan anywhere in the plan. */
+        public List<String> seqScans() {
+            var relations = new ArrayList<String>();
+            collect(plan, relations);
+            return relations;
+        }
+
+        private static void collect(JsonNode node, List<String> relations) {
+            if ("Seq Scan".equals(node.path("Node Type").asText())) {
+                relations.add(node.path("Relation Name").asText());
+            }
+            for (JsonNode child : node.path("Plans")) {
+                collect(child, relations);
+            }
+        }
+    }
+
+    private final List<Plan> plans = new CopyOnWriteArrayList<>();
+    private volatile Thread owner;
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource) {
+            return proxy(DataSource.class, dataSource, null);
+        }
+        return bean;
+    }
+
+    public void start() {
+        plans.clear();
+        owner = Thread.currentThread();
+    }
+
+    /** Stops recording and returns the plans seen since {@link #start()}. */
+    public List<Plan> stop() {
+        owner = null;
+        return List.copyOf(plans);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T proxy(Class<T> type, T target, Explainer explainer) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (p, method, args) -> {
+            if (explainer != null && Thread.currentThread() == owner) {
+                explainer.observe(method, args);
+            }
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (result instanceof Connection connection && !method.getName().equals("unwrap")) {
+                return proxy(Connection.class, connection, null);
+            }
+            if (result instanceof PreparedStatement statement && target instanceof Connection connection
+                    && method.getName().equals("prepareStatement")) {
+                return proxy(PreparedStatement.class, statement, new Explainer(connection, (String) args[0]));
+            }
+            return result;
+        });
+    }
+
+    /** Remembers the parameters bound to one statement and explains it when it runs. */
+    private final class Explainer {
+
+        private final Connection connection;
+        private final String sql;
+        private final Map<Integer, Object[]> parameters = new TreeMap<>();
+        private final Map<Integer, Method> setters = new TreeMap<>();
+
+        Explainer(Connection connection, String sql) {
+            this.connection = connection;
+            this.sql = sql;
+        }
+
+        void observe(Method method, Object[] args) throws Exception {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                setters.put(index, method);
+                parameters.put(index, args);
+            } else if (name.equals("clearParameters")) {
+                setters.clear();
+                parameters.clear();
+            } else if ((name.equals("executeQuery") || name.equals("execute")) && (args == null || args.length == 0)
+                    && sql.stripLeading().toLowerCase(Locale.ROOT).startsWith("select")) {
+                explain();
+            }
+        }
+
+        private void explain() throws Exception {
+            try (var explain = connection.prepareStatement("EXPLAIN (FORMAT JSON) " + sql)) {
+                for (var entry : setters.entrySet()) {
+                    entry.getValue().invoke(explain, parameters.get(entry.getKey()));
+                }
+                try (var rs = explain.executeQuery()) {
+                    rs.next();
+                    plans.add(new Plan(sql, JSON.readTree(rs.getString(1)).get(0).get("Plan")));
+                }
+            }
+        }
+    }
+}
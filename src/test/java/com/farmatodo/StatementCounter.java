@@ -0,0 +1,70 @@
+package com.farmatodo;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Wraps the application {@link DataSource} and counts JDBC round trips: every
+ * {@code execute*} call on a statement counts once, so a whole {@code executeBatch} is a
+ * single round trip. Only statements run by the thread that last called {@link #reset()} are
+ * counted, so background pollers do not leak into the measurement. Register with
+ * {@code @Import(StatementCounter.class)}.
+ */
+public class StatementCounter implements BeanPostProcessor {
+
+    private final AtomicInteger executions = new AtomicInteger();
+    private volatile Thread owner;
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource) {
+            return proxy(DataSource.class, dataSource);
+        }
+        return bean;
+    }
+
+    public void reset() {
+        owner = Thread.currentThread();
+        executions.set(0);
+    }
+
+    public int count() {
+        return executions.get();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T proxy(Class<T> type, T target) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (p, method, args) -> {
+            if (target instanceof Statement && method.getName().startsWith("execute") && Thread.currentThread() == owner) {
+                executions.incrementAndGet();
+            }
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (result instanceof Connection connection && !method.getName().equals("unwrap")) {
+                return proxy(Connection.class, connection);
+            }
+            if (result instanceof CallableStatement statement) {
+                return proxy(CallableStatement.class, statement);
+            }
+            if (result instanceof PreparedStatement statement) {
+                return proxy(PreparedStatement.class, statement);
+            }
+            if (result instanceof Statement statement && !method.getName().equals("unwrap")) {
+                return proxy(Statement.class, statement);
+            }
+            return result;
+        });
+    }
+}
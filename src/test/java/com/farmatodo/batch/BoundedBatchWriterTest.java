@@ -0,0 +1,148 @@
+package com.farmatodo.batch;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("BoundedBatchWriter")
+class BoundedBatchWriterTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private BoundedBatchWriter<Integer> writer;
+
+    @AfterEach
+    void tearDown() {
+        if (writer != null) {
+            writer.close();
+        }
+    }
+
+    private static BatchWriterSettings settings(int capacity, int batchSize, OverflowPolicy policy) {
+        return new BatchWriterSettings(capacity, batchSize, Duration.ofMillis(20), policy, 2, Duration.ofMillis(20));
+    }
+
+    @Test
+    @DisplayName("agrupa los items en lotes de hasta batchSize y los escribe al cerrar")
+    void writesInBatches() {
+        var batches = new CopyOnWriteArrayList<List<Integer>>();
+        writer = new BoundedBatchWriter<>("test", settings(100, 3, OverflowPolicy.DROP),
+                b -> batches.add(List.copyOf(b)), registry);
+
+        for (int i = 0; i < 7; i++) {
+            assertThat(writer.offer(i)).isTrue();
+        }
+        writer.close();
+
+        assertThat(batches).allSatisfy(b -> assertThat(b).hasSizeLessThanOrEqualTo(3));
+        assertThat(batches.stream().flatMap(List::stream)).containsExactly(0, 1, 2, 3, 4, 5, 6);
+        assertThat(registry.get("test.written").counter().count()).isEqualTo(7);
+    }
+
+    @Test
+    @DisplayName("DROP descarta cuando el buffer está lleno y lo cuenta en la métrica")
+    void dropPolicyDropsWhenFull() throws Exception {
+        var release = new CountDownLatch(1);
+        writer = new BoundedBatchWriter<>("test", settings(2, 1, OverflowPolicy.DROP), blockingSink(release), registry);
+
+        writer.offer(0);
+        awaitDepth(0);
+        assertThat(writer.offer(1)).isTrue();
+        assertThat(writer.offer(2)).isTrue();
+        assertThat(writer.offer(3)).isFalse();
+
+        assertThat(registry.get("test.queue.depth").gauge().value()).isEqualTo(2);
+        assertThat(registry.get("test.dropped").counter().count()).isEqualTo(1);
+        release.countDown();
+    }
+
+    @Test
+    @DisplayName("SAMPLE conserva 1 de cada N items a partir de la mitad del buffer")
+    void samplePolicyKeepsOneInN() throws Exception {
+        var release = new CountDownLatch(1);
+        writer = new BoundedBatchWriter<>("test", settings(4, 1, OverflowPolicy.SAMPLE), blockingSink(release), registry);
+
+        writer.offer(0);
+        awaitDepth(0);
+        assertThat(writer.offer(1)).isTrue();
+        assertThat(writer.offer(2)).isTrue();
+        // half full: sampleRate=2 keeps every second item
+        assertThat(writer.offer(3)).isFalse();
+        assertThat(writer.offer(4)).isTrue();
+
+        assertThat(registry.get("test.dropped").counter().count()).isEqualTo(1);
+        release.countDown();
+    }
+
+    @Test
+    @DisplayName("BLOCK espera hasta blockTimeout y luego descarta")
+    void blockPolicyWaitsThenDrops() throws Exception {
+        var release = new CountDownLatch(1);
+        writer = new BoundedBatchWriter<>("test", settings(1, 1, OverflowPolicy.BLOCK), blockingSink(release), registry);
+
+        writer.offer(0);
+        awaitDepth(0);
+        assertThat(writer.offer(1)).isTrue();
+        long start = System.nanoTime();
+        assertThat(writer.offer(2)).isFalse();
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(15));
+        release.countDown();
+    }
+
+    @Test
+    @DisplayName("un fallo del sink se cuenta y no detiene el writer")
+    void sinkFailureIsCountedAndWriterContinues() {
+        var batches = new CopyOnWriteArrayList<Integer>();
+        writer = new BoundedBatchWriter<>("test", settings(10, 1, OverflowPolicy.DROP), b -> {
+            if (b.get(0) == 0) {
+                throw new IllegalStateException("boom");
+            }
+            batches.addAll(b);
+        }, registry);
+
+        writer.offer(0);
+        writer.offer(1);
+        writer.close();
+
+        assertThat(batches).containsExactly(1);
+        assertThat(registry.get("test.failed").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("offer tras close descarta")
+    void offerAfterCloseDrops() {
+        writer = new BoundedBatchWriter<>("test", settings(10, 1, OverflowPolicy.DROP), b -> { }, registry);
+        writer.close();
+
+        assertThat(writer.offer(1)).isFalse();
+        assertThat(writer.depth()).isZero();
+    }
+
+    private static Consumer<List<Integer>> blockingSink(CountDownLatch release) {
+        return b -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+    }
+
+    private void awaitDepth(int depth) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (writer.depth() != depth && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        // give the drain thread time to enter the (blocking) sink with the polled item
+        Thread.sleep(20);
+    }
+}
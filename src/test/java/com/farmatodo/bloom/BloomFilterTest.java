@@ -0,0 +1,110 @@
+package com.farmatodo.bloom;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("BloomFilter")
+class BloomFilterTest {
+
+    @Test
+    @DisplayName("nunca da falso negativo y la tasa de falsos positivos queda cerca de la configurada")
+    void noFalseNegatives_andBoundedFalsePositives() {
+        var filter = new BloomFilter(10_000, 0.01);
+        var added = new ArrayList<String>();
+        for (int i = 0; i < 10_000; i++) {
+            String v = UUID.randomUUID().toString();
+            added.add(v);
+            filter.put(v);
+        }
+
+        assertThat(added).allMatch(filter::mightContain);
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain(UUID.randomUUID().toString())) {
+                falsePositives++;
+            }
+        }
+        assertThat(falsePositives / 100_000.0).isLessThan(0.02);
+        assertThat(filter.isSaturated()).isFalse();
+    }
+
+    @Test
+    @DisplayName("se marca saturado al superar la capacidad para la que se dimensionó")
+    void saturatedPastExpectedInsertions() {
+        var filter = new BloomFilter(2, 0.01);
+        filter.put("a");
+        filter.put("b");
+        assertThat(filter.isSaturated()).isFalse();
+
+        filter.put("c");
+        assertThat(filter.isSaturated()).isTrue();
+        assertThat(filter.insertions()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("un valor repetido no consume capacidad")
+    void repeatedPut_notCounted() {
+        var filter = new BloomFilter(2, 0.01);
+        assertThat(filter.put("a")).isTrue();
+        assertThat(filter.put("a")).isFalse();
+        filter.put("a");
+
+        assertThat(filter.insertions()).isEqualTo(1);
+        assertThat(filter.isSaturated()).isFalse();
+    }
+
+    @Test
+    @DisplayName("inserciones concurrentes no pierden bits")
+    void concurrentPuts_areAllVisible() throws Exception {
+        var filter = new BloomFilter(80_000, 0.01);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        var futures = new ArrayList<Future<?>>();
+        try {
+            for (int t = 0; t < 8; t++) {
+                int thread = t;
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        filter.put(thread + ":" + i);
+                    }
+                }));
+            }
+            for (var f : futures) {
+                f.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        for (int t = 0; t < 8; t++) {
+            for (int i = 0; i < 10_000; i++) {
+                assertThat(filter.mightContain(t + ":" + i)).isTrue();
+            }
+        }
+        // values the filter already reported (false positives at insert time) are not counted
+        assertThat(filter.insertions()).isBetween(79_000L, 80_000L);
+    }
+
+    @Test
+    @DisplayName("el hash coincide con MurmurHash3 x64 128 de referencia")
+    void hash_matchesReferenceMurmur3() {
+        // Reference values for seed 0 (same as Guava's Hashing.murmur3_128().hashBytes)
+        assertThat(BloomFilter.hash("")).containsExactly(0L, 0L);
+        assertThat(Long.toHexString(BloomFilter.hash("hello")[0])).isEqualTo("cbd8a7b341bd9b02");
+    }
+
+    @Test
+    @DisplayName("rechaza parámetros inválidos")
+    void rejectsInvalidParameters() {
+        assertThatThrownBy(() -> new BloomFilter(0, 0.01)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new BloomFilter(10, 1.0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,105 @@
+package com.farmatodo.bloom;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("ScalableBloomFilter")
+class ScalableBloomFilterTest {
+
+    @Test
+    @DisplayName("crece por etapas sin falsos negativos y mantiene la tasa de falsos positivos acotada")
+    void grows_withoutFalseNegatives_andBoundedFalsePositives() {
+        var filter = new ScalableBloomFilter(1_000, 0.01);
+        var added = new ArrayList<String>();
+        for (int i = 0; i < 50_000; i++) {
+            String v = UUID.randomUUID().toString();
+            added.add(v);
+            filter.put(v);
+        }
+
+        assertThat(added).allMatch(filter::mightContain);
+        assertThat(filter.stageCount()).isGreaterThan(1);
+        assertThat(filter.capacity()).isGreaterThanOrEqualTo(filter.insertions());
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain(UUID.randomUUID().toString())) {
+                falsePositives++;
+            }
+        }
+        assertThat(falsePositives / 100_000.0).isLessThan(0.015);
+    }
+
+    @Test
+    @DisplayName("un valor repetido no ocupa capacidad")
+    void duplicates_doNotUseCapacity() {
+        var filter = new ScalableBloomFilter(2, 0.01);
+
+        assertThat(filter.put("a")).isTrue();
+        assertThat(filter.put("a")).isFalse();
+        filter.put("b");
+        filter.put("b");
+
+        assertThat(filter.insertions()).isEqualTo(2);
+        assertThat(filter.stageCount()).isEqualTo(1);
+        filter.put("c");
+        assertThat(filter.stageCount()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("las tasas de las etapas suman como mucho la configurada")
+    void stageRates_addUpToConfiguredRate() {
+        var filter = new ScalableBloomFilter(10, 0.01);
+        double sum = 0;
+        for (int i = 0; i < 60; i++) {
+            sum += filter.stageRate(i);
+        }
+        assertThat(sum).isLessThanOrEqualTo(0.01);
+        assertThat(filter.stageRate(1)).isEqualTo(filter.stageRate(0) * ScalableBloomFilter.TIGHTENING);
+    }
+
+    @Test
+    @DisplayName("inserciones concurrentes mientras crece no pierden valores")
+    void concurrentPuts_whileGrowing_areAllVisible() throws Exception {
+        var filter = new ScalableBloomFilter(100, 0.01);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        var futures = new ArrayList<Future<?>>();
+        try {
+            for (int t = 0; t < 8; t++) {
+                int thread = t;
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < 5_000; i++) {
+                        filter.put(thread + ":" + i);
+                    }
+                }));
+            }
+            for (var f : futures) {
+                f.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        for (int t = 0; t < 8; t++) {
+            for (int i = 0; i < 5_000; i++) {
+                assertThat(filter.mightContain(t + ":" + i)).isTrue();
+            }
+        }
+        assertThat(filter.stageCount()).isGreaterThan(1);
+    }
+
+    @Test
+    @DisplayName("rechaza parámetros inválidos")
+    void rejectsInvalidParameters() {
+        assertThatThrownBy(() -> new ScalableBloomFilter(0, 0.01)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new ScalableBloomFilter(10, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
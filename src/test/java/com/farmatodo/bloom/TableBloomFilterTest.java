@@ -0,0 +1,157 @@
+package com.farmatodo.bloom;
+
+import com.farmatodo.MutableClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("TableBloomFilter")
+class TableBloomFilterTest {
+
+    private static final Duration SYNC_INTERVAL = Duration.ofSeconds(1);
+    private static final String LOAD_ALL = "SELECT k FROM t";
+    private static final String LOAD_SINCE = "SELECT k FROM t WHERE created_at >= ? UNION ALL SELECT k FROM u WHERE created_at >= ?";
+
+    @Mock
+    private JdbcTemplate jdbc;
+
+    private final List<String> table = new ArrayList<>();
+    private MutableClock clock;
+    private TableBloomFilter filter;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        clock = new MutableClock(Instant.parse("2026-01-01T00:00:00Z"));
+        filter = new TableBloomFilter(jdbc, LOAD_ALL, LOAD_SINCE, UnaryOperator.identity(), key -> null, 1_000, 0.01,
+                SYNC_INTERVAL, clock);
+        lenient().doAnswer(inv -> stream(inv.getArgument(1))).when(jdbc).query(eq(LOAD_ALL), any(RowCallbackHandler.class));
+        lenient().doAnswer(inv -> stream(inv.getArgument(1)))
+                .when(jdbc).query(eq(LOAD_SINCE), any(RowCallbackHandler.class), any(), any());
+    }
+
+    private Object stream(RowCallbackHandler handler) throws SQLException {
+        for (String key : List.copyOf(table)) {
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.getString(1)).thenReturn(key);
+            handler.processRow(rs);
+        }
+        return null;
+    }
+
+    @Test
+    @DisplayName("la consulta incremental vincula cada parámetro al último inicio de carga menos el solape")
+    void catchUp_bindsEveryParameter() {
+        filter.load();
+        clock.advance(SYNC_INTERVAL);
+        filter.sync();
+
+        var since = Timestamp.from(Instant.parse("2026-01-01T00:00:00Z").minus(TableBloomFilter.SYNC_OVERLAP));
+        verify(jdbc, times(2)).query(eq(LOAD_SINCE), any(RowCallbackHandler.class), eq(since), eq(since));
+    }
+
+    @Test
+    @DisplayName("solo rechaza mientras la última carga es reciente")
+    void rejectsOnlyWhileFresh() {
+        table.add("a");
+        filter.load();
+
+        assertThat(filter.mightContain("a")).isTrue();
+        assertThat(filter.mightContain("b")).isFalse();
+
+        clock.advance(SYNC_INTERVAL.multipliedBy(2).plusMillis(1));
+        assertThat(filter.mightContain("b")).isTrue();
+
+        filter.sync();
+        assertThat(filter.mightContain("b")).isFalse();
+    }
+
+    @Test
+    @DisplayName("si la consulta incremental de la carga falla no publica nada y sync lo reintenta")
+    void failedLoad_isNotPublished() {
+        table.add("a");
+        doThrow(new QueryTimeoutException("timeout"))
+                .doAnswer(inv -> stream(inv.getArgument(1)))
+                .when(jdbc).query(eq(LOAD_SINCE), any(RowCallbackHandler.class), any(), any());
+
+        assertThatThrownBy(filter::load).isInstanceOf(QueryTimeoutException.class);
+        assertThat(filter.isLoaded()).isFalse();
+        assertThat(filter.mightContain("b")).isTrue();
+
+        filter.sync();
+        assertThat(filter.isLoaded()).isTrue();
+        assertThat(filter.mightContain("b")).isFalse();
+    }
+
+    @Test
+    @DisplayName("una clave insertada en otra instancia se ve tras la consulta incremental")
+    void keyInsertedElsewhere_visibleAfterSync() {
+        filter.load();
+        table.add("a");
+        assertThat(filter.mightContain("a")).isFalse();
+
+        clock.advance(SYNC_INTERVAL);
+        filter.sync();
+
+        assertThat(filter.mightContain("a")).isTrue();
+        verify(jdbc, times(1)).query(eq(LOAD_ALL), any(RowCallbackHandler.class));
+    }
+
+    @Test
+    @DisplayName("crece por etapas con put y sync en lugar de recargarse")
+    void growsByStagesWithoutReload() {
+        filter = new TableBloomFilter(jdbc, LOAD_ALL, LOAD_SINCE, UnaryOperator.identity(), key -> null, 2, 0.01,
+                SYNC_INTERVAL, clock);
+        // Fixed keys: in a filter this small, random ones sometimes set no new bit and are not counted.
+        table.addAll(List.of("k0", "k1", "k2"));
+        filter.load();
+        filter.put("k3");
+        table.addAll(List.of("k4", "k5"));
+        filter.sync();
+
+        assertThat(filter.insertions()).isEqualTo(6);
+        assertThat(filter.stageCount()).isGreaterThan(1);
+        verify(jdbc, times(1)).query(eq(LOAD_ALL), any(RowCallbackHandler.class));
+    }
+
+    @Test
+    @DisplayName("no rechaza una clave creada dentro de la ventana que relee la próxima consulta incremental")
+    void keyCreatedSinceLastCatchUp_notRejected() {
+        // keys are their own creation time
+        filter = new TableBloomFilter(jdbc, LOAD_ALL, LOAD_SINCE, UnaryOperator.identity(), Instant::parse, 1_000,
+                0.01, SYNC_INTERVAL, clock);
+        filter.load();
+        clock.advance(Duration.ofMillis(500));
+
+        assertThat(filter.mightContain("2026-01-01T00:00:00.400Z")).isTrue();
+        assertThat(filter.mightContain("2025-12-31T23:59:56Z")).isTrue();
+        assertThat(filter.mightContain("2025-12-31T23:59:54Z")).isFalse();
+    }
+
+    @Test
+    @DisplayName("el sync-interval debe ser positivo")
+    void zeroInterval_rejected() {
+        assertThatThrownBy(() -> new TableBloomFilter(jdbc, LOAD_ALL, LOAD_SINCE, UnaryOperator.identity(), key -> null,
+                1_000, 0.01, Duration.ZERO, clock)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,84 @@
+package com.farmatodo.cart;
+
+import com.farmatodo.BenchmarkContext;
+import com.farmatodo.cart.dto.AddCartItemRequest;
+import com.farmatodo.cart.dto.CartResponse;
+import com.farmatodo.client.Customer;
+import com.farmatodo.client.CustomerRepository;
+import com.farmatodo.product.Product;
+import com.farmatodo.product.ProductRepository;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Add-to-cart latency ({@link CartService#addItem}) with the cart store in the database and in
+ * memory (write-behind), 8 threads adding to the carts of 1,000 customers. Sample time mode, so
+ * JMH reports p50/p90/p99 per mode. Run with {@code mvn -Pbenchmark test -Dbenchmark=CartAddItemBenchmark}
+ * (requires Docker).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(8)
+@Fork(1)
+public class CartAddItemBenchmark {
+
+    private static final int CUSTOMERS = 1_000;
+    private static final int PRODUCTS = 20;
+
+    @Param({"database", "memory"})
+    public String store;
+
+    private BenchmarkContext ctx;
+    private CartService cartService;
+    private List<UUID> customerIds;
+    private List<UUID> productIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ctx = BenchmarkContext.start("app.cart.store=" + store);
+        cartService = ctx.bean(CartService.class);
+        var customers = new ArrayList<Customer>(CUSTOMERS);
+        for (int i = 0; i < CUSTOMERS; i++) {
+            var unique = UUID.randomUUID().toString();
+            customers.add(new Customer("N", unique + "@bench.com", "+57" + unique, "A", Instant.now(), "tx"));
+        }
+        customerIds = ctx.bean(CustomerRepository.class).saveAll(customers).stream().map(Customer::getId).toList();
+        var productRepo = ctx.bean(ProductRepository.class);
+        productIds = new ArrayList<>(PRODUCTS);
+        for (int i = 0; i < PRODUCTS; i++) {
+            productIds.add(productRepo.save(new Product("P" + i, "D", BigDecimal.ONE, Integer.MAX_VALUE, Instant.now())).getId());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ctx.close();
+    }
+
+    @Benchmark
+    public CartResponse addItem() {
+        var random = ThreadLocalRandom.current();
+        var req = new AddCartItemRequest();
+        req.setCustomerId(customerIds.get(random.nextInt(customerIds.size())));
+        req.setProductId(productIds.get(random.nextInt(productIds.size())));
+        req.setQuantity(1);
+        return cartService.addItem(req);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CartAddItemBenchmark.class.getSimpleName()).build()).run();
+    }
+}
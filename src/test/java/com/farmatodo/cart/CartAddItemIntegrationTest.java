@@ -0,0 +1,182 @@
+package com.farmatodo.cart;
+
+import com.farmatodo.StatementCounter;
+import com.farmatodo.cart.dto.AddCartItemRequest;
+import com.farmatodo.cart.dto.CartItemResponse;
+import com.farmatodo.cart.dto.CartResponse;
+import com.farmatodo.client.Customer;
+import com.farmatodo.client.CustomerRepository;
+import com.farmatodo.product.Product;
+import com.farmatodo.product.ProductRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+@SpringBootTest
+@Testcontainers
+@ActiveProfiles("test")
+@Tag("integration")
+@Import(StatementCounter.class)
+@DisplayName("Carrito - Integración agregar producto")
+class CartAddItemIntegrationTest {
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15")
+            .withDatabaseName("farmatodo")
+            .withUsername("farmatodo")
+            .withPassword("farmatodo_pwd");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("ENCRYPTION_KEY", () -> "QmFja2VuZEVuY3J5cHRpb25LZXlGb3JERVZfMjU2X0dDTQ==");
+    }
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private CustomerRepository customerRepo;
+
+    @Autowired
+    private ProductRepository productRepo;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private StatementCounter statements;
+
+    private UUID customer() {
+        var unique = UUID.randomUUID().toString();
+        return customerRepo.save(new Customer("N", unique + "@test.com", "+57" + unique, "A", Instant.now(), "tx")).getId();
+    }
+
+    private UUID product(String price, int stock) {
+        return productRepo.save(new Product("P", "D", new BigDecimal(price), stock, Instant.now())).getId();
+    }
+
+    private static AddCartItemRequest request(UUID customerId, UUID productId, int quantity) {
+        var req = new AddCartItemRequest();
+        req.setCustomerId(customerId);
+        req.setProductId(productId);
+        req.setQuantity(quantity);
+        return req;
+    }
+
+    private int count(String sql, Object... args) {
+        return jdbc.queryForObject(sql, Integer.class, args);
+    }
+
+    @Test
+    @DisplayName("cada agregado es una sola sentencia y devuelve el carrito completo")
+    void eachAdd_isOneStatement() {
+        var customerId = customer();
+        var first = product("10.00", 5);
+        var second = product("2.50", 5);
+
+        statements.reset();
+        CartResponse created = cartService.addItem(request(customerId, first, 2));
+        assertThat(statements.count()).as("first add, new cart").isEqualTo(1);
+
+        statements.reset();
+        cartService.addItem(request(customerId, second, 1));
+        assertThat(statements.count()).as("second product").isEqualTo(1);
+
+        statements.reset();
+        CartResponse cart = cartService.addItem(request(customerId, first, 3));
+        assertThat(statements.count()).as("same product again").isEqualTo(1);
+
+        assertThat(cart.cartId()).isEqualTo(created.cartId());
+        assertThat(cart.items()).extracting(CartItemResponse::productId, CartItemResponse::quantity)
+                .containsExactly(tuple(first, 5), tuple(second, 1));
+        assertThat(cart.total()).isEqualByComparingTo("52.50");
+        assertThat(cart.items()).containsExactlyInAnyOrderElementsOf(cartService.getCart(customerId).items());
+    }
+
+    @Test
+    @DisplayName("sin stock para la cantidad total se rechaza en una sentencia y no deja carrito")
+    void insufficientStock_isOneStatementAndRollsBack() {
+        var customerId = customer();
+        var productId = product("1.00", 3);
+
+        statements.reset();
+        assertThatThrownBy(() -> cartService.addItem(request(customerId, productId, 4)))
+                .isInstanceOf(CartException.class)
+                .hasMessage("Insufficient stock: available 3");
+        assertThat(statements.count()).isEqualTo(1);
+        assertThat(count("SELECT count(*) FROM carts WHERE customer_id = ?", customerId)).isZero();
+
+        cartService.addItem(request(customerId, productId, 2));
+        assertThatThrownBy(() -> cartService.addItem(request(customerId, productId, 2)))
+                .hasMessage("Insufficient stock: available 3");
+        assertThat(cartService.getCart(customerId).items().get(0).quantity()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("reporta cliente y producto inexistentes y producto agotado")
+    void missingCustomerOrProduct() {
+        var customerId = customer();
+
+        assertThatThrownBy(() -> cartService.addItem(request(UUID.randomUUID(), product("1.00", 1), 1)))
+                .hasMessage("Customer not found");
+        assertThatThrownBy(() -> cartService.addItem(request(customerId, UUID.randomUUID(), 1)))
+                .hasMessage("Product not found");
+        assertThatThrownBy(() -> cartService.addItem(request(customerId, product("1.00", 0), 1)))
+                .hasMessage("Product out of stock");
+    }
+
+    @Test
+    @DisplayName("agregados concurrentes de un cliente nuevo crean un solo carrito y suman las cantidades")
+    void concurrentAdds_shareOneCartAndLine() throws Exception {
+        int threads = 8;
+        var customerId = customer();
+        var productId = product("1.00", 100);
+        var start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            var results = new ArrayList<Future<CartResponse>>();
+            for (int i = 0; i < threads; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return cartService.addItem(request(customerId, productId, 1));
+                }));
+            }
+            start.countDown();
+            for (var result : results) {
+                result.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        assertThat(count("SELECT count(*) FROM carts WHERE customer_id = ?", customerId)).isEqualTo(1);
+        var cart = cartService.getCart(customerId);
+        assertThat(cart.items()).singleElement().extracting(CartItemResponse::quantity).isEqualTo(threads);
+    }
+}
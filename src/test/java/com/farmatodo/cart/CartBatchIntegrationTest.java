@@ -0,0 +1,179 @@
+package com.farmatodo.cart;
+
+import com.farmatodo.StatementCounter;
+import com.farmatodo.cart.dto.AddCartItemRequest;
+import com.farmatodo.cart.dto.BatchCartItemsRequest;
+import com.farmatodo.cart.dto.CartItemChange;
+import com.farmatodo.cart.dto.CartItemChange.Operation;
+import com.farmatodo.cart.dto.CartItemResponse;
+import com.farmatodo.client.Customer;
+import com.farmatodo.client.CustomerRepository;
+import com.farmatodo.product.Product;
+import com.farmatodo.product.ProductRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+@SpringBootTest
+@Testcontainers
+@ActiveProfiles("test")
+@Tag("integration")
+@Import(StatementCounter.class)
+@DisplayName("Carrito - Integración cambios por lote")
+class CartBatchIntegrationTest {
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15")
+            .withDatabaseName("farmatodo")
+            .withUsername("farmatodo")
+            .withPassword("farmatodo_pwd");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("ENCRYPTION_KEY", () -> "QmFja2VuZEVuY3J5cHRpb25LZXlGb3JERVZfMjU2X0dDTQ==");
+    }
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private CustomerRepository customerRepo;
+
+    @Autowired
+    private ProductRepository productRepo;
+
+    @Autowired
+    private StatementCounter statements;
+
+    private UUID customer() {
+        var unique = UUID.randomUUID().toString();
+        return customerRepo.save(new Customer("N", unique + "@test.com", "+57" + unique, "A", Instant.now(), "tx")).getId();
+    }
+
+    private List<UUID> products(int count, int stock) {
+        var ids = new ArrayList<UUID>();
+        for (int i = 0; i < count; i++) {
+            ids.add(productRepo.save(new Product("P" + i, "D", BigDecimal.ONE, stock, Instant.now())).getId());
+        }
+        return ids;
+    }
+
+    private static BatchCartItemsRequest batch(UUID customerId, List<UUID> productIds, Operation operation, int quantity) {
+        var req = new BatchCartItemsRequest();
+        req.setCustomerId(customerId);
+        req.setItems(productIds.stream().map(id -> {
+            var change = new CartItemChange();
+            change.setProductId(id);
+            change.setOperation(operation);
+            change.setQuantity(quantity);
+            return change;
+        }).toList());
+        return req;
+    }
+
+    private int statementsFor(BatchCartItemsRequest req) {
+        statements.reset();
+        cartService.applyBatch(req);
+        return statements.count();
+    }
+
+    @Test
+    @DisplayName("el número de sentencias no crece con el número de líneas del lote")
+    void statementCount_isConstantInBatchSize() {
+        var customerId = customer();
+        cartService.applyBatch(batch(customerId, products(1, 10), Operation.ADD, 1));
+
+        int addOne = statementsFor(batch(customerId, products(1, 10), Operation.ADD, 1));
+        var twenty = products(20, 10);
+        int addTwenty = statementsFor(batch(customerId, twenty, Operation.ADD, 1));
+        assertThat(addTwenty).as("20 new lines vs 1").isEqualTo(addOne);
+
+        int setOne = statementsFor(batch(customerId, twenty.subList(0, 1), Operation.SET, 2));
+        int setTwenty = statementsFor(batch(customerId, twenty, Operation.SET, 3));
+        assertThat(setTwenty).as("20 changed lines vs 1").isEqualTo(setOne);
+
+        int removeOne = statementsFor(batch(customerId, twenty.subList(0, 1), Operation.REMOVE, 0));
+        int removeTen = statementsFor(batch(customerId, twenty.subList(10, 20), Operation.REMOVE, 0));
+        assertThat(removeTen).as("10 removed lines vs 1").isEqualTo(removeOne);
+
+        var cart = cartService.getCart(customerId);
+        assertThat(cart.items()).hasSize(11);
+        assertThat(cart.items()).filteredOn(i -> twenty.contains(i.productId()))
+                .extracting(CartItemResponse::quantity).containsOnly(3);
+    }
+
+    @Test
+    @DisplayName("devuelve el mismo carrito que una lectura posterior")
+    void response_matchesTheStoredCart() {
+        var customerId = customer();
+        var ids = products(5, 10);
+
+        var response = cartService.applyBatch(batch(customerId, ids, Operation.ADD, 2));
+
+        var stored = cartService.getCart(customerId);
+        assertThat(response.cartId()).isEqualTo(stored.cartId());
+        assertThat(response.items()).containsExactlyInAnyOrderElementsOf(stored.items());
+        assertThat(response.total()).isEqualByComparingTo(stored.total());
+    }
+
+    @Test
+    @DisplayName("un lote con faltantes no escribe nada")
+    void shortage_writesNothing() {
+        var customerId = customer();
+        var ids = products(3, 10);
+        cartService.applyBatch(batch(customerId, ids, Operation.ADD, 1));
+
+        var scarce = products(1, 1);
+        var req = batch(customerId, ids, Operation.SET, 5);
+        var items = new ArrayList<>(req.getItems());
+        items.addAll(batch(customerId, scarce, Operation.ADD, 2).getItems());
+        req.setItems(items);
+
+        assertThatThrownBy(() -> cartService.applyBatch(req))
+                .isInstanceOf(CartException.class)
+                .hasMessageContaining("required 2, available 1");
+        assertThat(cartService.getCart(customerId).items()).extracting(CartItemResponse::quantity).containsOnly(1);
+    }
+
+    @Test
+    @DisplayName("convive con el agregado individual sobre el mismo carrito")
+    void mixesWithSingleAdds() {
+        var customerId = customer();
+        var ids = products(2, 10);
+        var add = new AddCartItemRequest();
+        add.setCustomerId(customerId);
+        add.setProductId(ids.get(0));
+        add.setQuantity(2);
+        cartService.addItem(add);
+
+        cartService.applyBatch(batch(customerId, ids, Operation.ADD, 1));
+        var cart = cartService.addItem(add);
+
+        assertThat(cart.items()).extracting(CartItemResponse::productId, CartItemResponse::quantity)
+                .containsExactlyInAnyOrder(
+                        tuple(ids.get(0), 5),
+                        tuple(ids.get(1), 1));
+    }
+}
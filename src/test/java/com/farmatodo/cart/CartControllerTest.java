@@ -3,6 +3,7 @@ package com.farmatodo.cart;
 import com.farmatodo.TestUtils;
 import com.farmatodo.cart.dto.CartItemResponse;
 import com.farmatodo.cart.dto.CartResponse;
+import com.farmatodo.idempotency.IdempotencyService;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -16,7 +17,7 @@ import java.util.List;
 import java.util.UUID;
 
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -27,6 +28,9 @@ class CartControllerTest {
     @Autowired
     private MockMvc mvc;
 
+    @MockBean
+    private IdempotencyService idempotencyService;
+
     @MockBean
     private CartService cartService;
 
@@ -34,24 +38,71 @@ class CartControllerTest {
     @DisplayName("POST /carts/items retorna 201")
     void addItem_returns201() throws Exception {
         var cartId = UUID.randomUUID();
-        var cart = new com.farmatodo.cart.Cart(UUID.randomUUID(), com.farmatodo.cart.Cart.CartStatus.ACTIVE, java.time.Instant.now());
-        TestUtils.setId(cart, cartId);
-
-        var response = new CartResponse(cartId, cart.getCustomerId(), List.of(
+        var customerId = UUID.randomUUID();
+        var response = new CartResponse(cartId, customerId, List.of(
                 new CartItemResponse(UUID.randomUUID(), 2, BigDecimal.valueOf(100), BigDecimal.valueOf(200))
         ), BigDecimal.valueOf(200));
 
-        when(cartService.addItem(any())).thenReturn(cart);
-        when(cartService.getCart(any(UUID.class))).thenReturn(response);
+        when(cartService.addItem(any())).thenReturn(response);
 
         mvc.perform(post("/carts/items")
                         .header(TestUtils.API_KEY_HEADER, TestUtils.API_KEY_DEFAULT)
                         .contentType(MediaType.APPLICATION_JSON)
                         .content("""
                                 {"customerId":"%s","productId":"%s","quantity":2}
-                                """.formatted(cart.getCustomerId(), UUID.randomUUID())))
+                                """.formatted(customerId, UUID.randomUUID())))
                 .andExpect(status().isCreated())
+                .andExpect(header().string("Location", "/carts/" + cartId))
                 .andExpect(jsonPath("$.total").value(200));
+
+        verify(cartService, never()).getCart(any());
+    }
+
+    @Test
+    @DisplayName("POST /carts/items/batch retorna 200 con el carrito resultante")
+    void applyBatch_returns200() throws Exception {
+        var customerId = UUID.randomUUID();
+        var productId = UUID.randomUUID();
+        var response = new CartResponse(UUID.randomUUID(), customerId, List.of(
+                new CartItemResponse(productId, 3, BigDecimal.TEN, BigDecimal.valueOf(30))
+        ), BigDecimal.valueOf(30));
+        when(cartService.applyBatch(any())).thenReturn(response);
+
+        mvc.perform(post("/carts/items/batch")
+                        .header(TestUtils.API_KEY_HEADER, TestUtils.API_KEY_DEFAULT)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"customerId":"%s","items":[
+                                  {"productId":"%s","operation":"SET","quantity":3},
+                                  {"productId":"%s","operation":"REMOVE"}]}
+                                """.formatted(customerId, productId, UUID.randomUUID())))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].quantity").value(3))
+                .andExpect(jsonPath("$.total").value(30));
+    }
+
+    @Test
+    @DisplayName("POST /carts/items/batch rechaza agregar cantidad 0 o un lote vacío")
+    void applyBatch_rejectsInvalidItems() throws Exception {
+        var customerId = UUID.randomUUID();
+
+        mvc.perform(post("/carts/items/batch")
+                        .header(TestUtils.API_KEY_HEADER, TestUtils.API_KEY_DEFAULT)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"customerId":"%s","items":[{"productId":"%s","operation":"ADD","quantity":0}]}
+                                """.formatted(customerId, UUID.randomUUID())))
+                .andExpect(status().isBadRequest());
+
+        mvc.perform(post("/carts/items/batch")
+                        .header(TestUtils.API_KEY_HEADER, TestUtils.API_KEY_DEFAULT)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"customerId":"%s","items":[]}
+                                """.formatted(customerId)))
+                .andExpect(status().isBadRequest());
+
+        verify(cartService, never()).applyBatch(any());
     }
 
     @Test
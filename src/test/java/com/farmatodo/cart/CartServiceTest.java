@@ -2,8 +2,14 @@ package com.farmatodo.cart;
 
 import com.farmatodo.TestUtils;
 import com.farmatodo.cart.dto.AddCartItemRequest;
-import com.farmatodo.client.CustomerRepository;
+import com.farmatodo.cart.dto.BatchCartItemsRequest;
+import com.farmatodo.cart.dto.CartItemChange;
+import com.farmatodo.cart.dto.CartItemChange.Operation;
+import com.farmatodo.cart.dto.CartItemResponse;
+import com.farmatodo.client.CustomerLookup;
+import com.farmatodo.money.Money;
 import com.farmatodo.product.Product;
+import com.farmatodo.product.ProductCatalog;
 import com.farmatodo.product.ProductRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -14,12 +20,16 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -30,13 +40,19 @@ class CartServiceTest {
     private CartRepository cartRepo;
 
     @Mock
-    private CartItemRepository cartItemRepo;
+    private CartItemUpsert upsert;
 
     @Mock
     private ProductRepository productRepo;
 
     @Mock
-    private CustomerRepository customerRepo;
+    private CustomerLookup customers;
+
+    @Mock
+    private ProductCatalog catalog;
+
+    @Mock
+    private WriteBehindCartStore memoryStore;
 
     private CartService service;
 
@@ -45,20 +61,29 @@ class CartServiceTest {
 
     @BeforeEach
     void setUp() {
-        service = new CartService(cartRepo, cartItemRepo, productRepo, customerRepo);
+        var realService = new CartService(cartRepo, upsert, productRepo, customers, catalog, memoryStore, null);
+        service = new CartService(cartRepo, upsert, productRepo, customers, catalog, memoryStore, realService);
     }
 
-    @Test
-    @DisplayName("addItem lanza CartException cuando customer no existe")
-    void addItem_throwsWhenCustomerNotFound() {
-        when(customerRepo.existsById(customerId)).thenReturn(false);
-
+    private AddCartItemRequest request(int quantity) {
         var req = new AddCartItemRequest();
         req.setCustomerId(customerId);
         req.setProductId(productId);
-        req.setQuantity(1);
+        req.setQuantity(quantity);
+        return req;
+    }
 
-        assertThatThrownBy(() -> service.addItem(req))
+    private void notAdded(boolean customerFound, Integer stock) {
+        when(upsert.add(customerId, productId, 3))
+                .thenReturn(new CartItemUpsert.Result(customerFound, stock, null, List.of()));
+    }
+
+    @Test
+    @DisplayName("addItem lanza CartException cuando customer no existe")
+    void addItem_throwsWhenCustomerNotFound() {
+        notAdded(false, null);
+
+        assertThatThrownBy(() -> service.addItem(request(3)))
                 .isInstanceOf(CartException.class)
                 .hasMessageContaining("Customer not found");
     }
@@ -66,52 +91,162 @@ class CartServiceTest {
     @Test
     @DisplayName("addItem lanza CartException cuando product no existe")
     void addItem_throwsWhenProductNotFound() {
-        when(customerRepo.existsById(customerId)).thenReturn(true);
-        when(productRepo.findById(productId)).thenReturn(Optional.empty());
+        notAdded(true, null);
 
-        var req = new AddCartItemRequest();
-        req.setCustomerId(customerId);
-        req.setProductId(productId);
-        req.setQuantity(1);
-
-        assertThatThrownBy(() -> service.addItem(req))
+        assertThatThrownBy(() -> service.addItem(request(3)))
                 .isInstanceOf(CartException.class)
                 .hasMessageContaining("Product not found");
     }
 
     @Test
-    @DisplayName("addItem crea nuevo cart e item cuando no hay cart activo")
-    void addItem_createsNewCartAndItem() {
-        var product = new Product("Prod", "Desc", BigDecimal.valueOf(100), 10, Instant.now());
-        when(customerRepo.existsById(customerId)).thenReturn(true);
-        when(productRepo.findById(productId)).thenReturn(Optional.of(product));
-        when(cartRepo.findByCustomerIdAndStatus(customerId, Cart.CartStatus.ACTIVE)).thenReturn(Optional.empty());
-        when(cartItemRepo.findByCartIdAndProductId(any(), eq(productId))).thenReturn(Optional.empty());
-
-        var newCart = new Cart(customerId, Cart.CartStatus.ACTIVE, Instant.now());
-        var savedCartId = UUID.randomUUID();
-        when(cartRepo.save(any(Cart.class))).thenAnswer(inv -> {
-            Cart c = inv.getArgument(0);
-            TestUtils.setId(c, savedCartId);
-            return c;
-        });
-        when(cartRepo.findById(any(UUID.class))).thenAnswer(inv -> {
-            Cart c = new Cart(customerId, Cart.CartStatus.ACTIVE, Instant.now());
-            TestUtils.setId(c, savedCartId);
-            return Optional.of(c);
-        });
-        when(cartItemRepo.save(any(CartItem.class))).thenAnswer(inv -> inv.getArgument(0));
+    @DisplayName("addItem lanza CartException cuando el producto no tiene stock")
+    void addItem_throwsWhenOutOfStock() {
+        notAdded(true, 0);
 
-        var req = new AddCartItemRequest();
+        assertThatThrownBy(() -> service.addItem(request(3)))
+                .isInstanceOf(CartException.class)
+                .hasMessage("Product out of stock");
+    }
+
+    @Test
+    @DisplayName("addItem lanza CartException cuando el stock no cubre la cantidad del carrito")
+    void addItem_throwsWhenInsufficientStock() {
+        notAdded(true, 2);
+
+        assertThatThrownBy(() -> service.addItem(request(3)))
+                .isInstanceOf(CartException.class)
+                .hasMessage("Insufficient stock: available 2");
+    }
+
+    @Test
+    @DisplayName("addItem devuelve el carrito actualizado sin volver a leerlo")
+    void addItem_returnsUpdatedCart() {
+        var cartId = UUID.randomUUID();
+        var other = UUID.randomUUID();
+        when(upsert.add(customerId, productId, 2)).thenReturn(new CartItemUpsert.Result(true, 10, cartId, List.of(
+                new CartItemUpsert.Line(other, 1, Money.of(new BigDecimal("5.50"))),
+                new CartItemUpsert.Line(productId, 2, Money.of(new BigDecimal("100.00"))))));
+
+        var result = service.addItem(request(2));
+
+        assertThat(result.cartId()).isEqualTo(cartId);
+        assertThat(result.customerId()).isEqualTo(customerId);
+        assertThat(result.items()).extracting(CartItemResponse::productId).containsExactly(other, productId);
+        assertThat(result.items().get(1).subtotal()).isEqualByComparingTo("200");
+        assertThat(result.total()).isEqualByComparingTo("205.50");
+        verifyNoInteractions(cartRepo);
+    }
+
+    private Product product(String name, String price, int stock) {
+        var product = new Product(name, "D", new BigDecimal(price), stock, Instant.now());
+        TestUtils.setId(product, UUID.randomUUID());
+        return product;
+    }
+
+    private static CartItemChange change(Product product, Operation operation, int quantity) {
+        return change(product.getId(), operation, quantity);
+    }
+
+    private static CartItemChange change(UUID productId, Operation operation, int quantity) {
+        var change = new CartItemChange();
+        change.setProductId(productId);
+        change.setOperation(operation);
+        change.setQuantity(quantity);
+        return change;
+    }
+
+    private BatchCartItemsRequest batch(CartItemChange... changes) {
+        var req = new BatchCartItemsRequest();
         req.setCustomerId(customerId);
-        req.setProductId(productId);
-        req.setQuantity(2);
+        req.setItems(List.of(changes));
+        return req;
+    }
 
-        var result = service.addItem(req);
+    private Cart activeCart() {
+        var cart = new Cart(customerId, Cart.CartStatus.ACTIVE, Instant.now());
+        TestUtils.setId(cart, UUID.randomUUID());
+        when(cartRepo.findForUpdateByCustomerIdAndStatus(customerId, Cart.CartStatus.ACTIVE)).thenReturn(Optional.of(cart));
+        return cart;
+    }
 
-        assertThat(result).isNotNull();
+    @Test
+    @DisplayName("applyBatch agrega, fija y quita líneas con una sola consulta de productos")
+    void applyBatch_addsSetsAndRemovesLines() {
+        var kept = product("A", "1.00", 10);
+        var set = product("B", "2.00", 10);
+        var removed = product("C", "3.00", 10);
+        var added = product("D", "4.00", 10);
+        var cart = activeCart();
+        cart.addItem(kept.getId(), 1, Money.of(new BigDecimal("1.00")));
+        cart.addItem(set.getId(), 1, Money.of(new BigDecimal("1.50")));
+        cart.addItem(removed.getId(), 1, Money.of(new BigDecimal("3.00")));
+        when(productRepo.findAllById(any())).thenReturn(List.of(set, removed, added));
+
+        var result = service.applyBatch(batch(
+                change(set, Operation.SET, 3),
+                change(removed, Operation.REMOVE, 0),
+                change(added, Operation.ADD, 2)));
+
+        assertThat(result.items()).extracting(CartItemResponse::productId, CartItemResponse::quantity)
+                .containsExactly(tuple(kept.getId(), 1), tuple(set.getId(), 3), tuple(added.getId(), 2));
+        assertThat(result.items().get(1).unitPrice()).isEqualByComparingTo("2.00");
+        assertThat(result.total()).isEqualByComparingTo("15.00");
+        verify(productRepo, times(1)).findAllById(any());
+        verifyNoInteractions(customers);
+    }
+
+    @Test
+    @DisplayName("applyBatch aplica en orden los cambios de un mismo producto")
+    void applyBatch_appliesChangesToOneProductInOrder() {
+        var product = product("A", "1.00", 10);
+        var cart = activeCart();
+        cart.addItem(product.getId(), 4, Money.of(BigDecimal.ONE));
+        when(productRepo.findAllById(any())).thenReturn(List.of(product));
+
+        var result = service.applyBatch(batch(
+                change(product, Operation.ADD, 2),
+                change(product, Operation.SET, 1),
+                change(product, Operation.ADD, 5)));
+
+        assertThat(result.items()).singleElement().extracting(CartItemResponse::quantity).isEqualTo(6);
+    }
+
+    @Test
+    @DisplayName("applyBatch reporta todos los faltantes juntos y no modifica el carrito")
+    void applyBatch_reportsAllShortagesAndChangesNothing() {
+        var scarce = product("Escaso", "1.00", 2);
+        var missing = UUID.randomUUID();
+        var cart = activeCart();
+        cart.addItem(scarce.getId(), 1, Money.of(BigDecimal.ONE));
+        when(productRepo.findAllById(any())).thenReturn(List.of(scarce));
+
+        assertThatThrownBy(() -> service.applyBatch(batch(
+                change(scarce, Operation.ADD, 2),
+                change(missing, Operation.ADD, 1),
+                change(UUID.randomUUID(), Operation.REMOVE, 0))))
+                .isInstanceOf(CartException.class)
+                .hasMessage("Insufficient stock for product Escaso: required 3, available 2; Product not found: " + missing);
+        assertThat(cart.getItems()).singleElement().extracting(CartItem::getQuantity).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("applyBatch crea el carrito si no hay uno activo y valida el cliente")
+    void applyBatch_createsCartForKnownCustomerOnly() {
+        var product = product("A", "1.00", 10);
+        when(productRepo.findAllById(any())).thenReturn(List.of(product));
+        when(cartRepo.findForUpdateByCustomerIdAndStatus(customerId, Cart.CartStatus.ACTIVE)).thenReturn(Optional.empty());
+        when(customers.exists(customerId)).thenReturn(false, true);
+        when(cartRepo.save(any(Cart.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        assertThatThrownBy(() -> service.applyBatch(batch(change(product, Operation.ADD, 1))))
+                .isInstanceOf(CartException.class)
+                .hasMessage("Customer not found");
+
+        var result = service.applyBatch(batch(change(product, Operation.ADD, 1)));
+
+        assertThat(result.customerId()).isEqualTo(customerId);
+        assertThat(result.items()).hasSize(1);
         verify(cartRepo).save(any(Cart.class));
-        verify(cartItemRepo).save(any(CartItem.class));
     }
 
     @Test
@@ -131,8 +266,7 @@ class CartServiceTest {
         var cart = new Cart(customerId, Cart.CartStatus.ACTIVE, Instant.now());
         var cartId = UUID.randomUUID();
         TestUtils.setId(cart, cartId);
-        var item = new CartItem(cart, productId, 2, BigDecimal.valueOf(100));
-        cart.getItems().add(item);
+        var item = cart.addItem(productId, 2, Money.of(BigDecimal.valueOf(100)));
 
         when(cartRepo.findByCustomerIdAndStatus(customerId, Cart.CartStatus.ACTIVE))
                 .thenReturn(Optional.of(cart));
@@ -145,4 +279,88 @@ class CartServiceTest {
         assertThat(result.items().get(0).quantity()).isEqualTo(2);
         assertThat(result.total()).isEqualByComparingTo("200");
     }
+
+    /** Memory mode, with the store applying each change to {@code cart} as it would under its lock. */
+    private WriteBehindCartStore.MemoryCart inMemory() {
+        var cart = new WriteBehindCartStore.MemoryCart(UUID.randomUUID(), customerId, Instant.now(), true);
+        when(memoryStore.isEnabled()).thenReturn(true);
+        when(memoryStore.update(eq(customerId), any())).thenAnswer(inv -> {
+            inv.<Consumer<WriteBehindCartStore.MemoryCart>>getArgument(1).accept(cart);
+            return cart.toResponse();
+        });
+        return cart;
+    }
+
+    @Test
+    @DisplayName("en memoria addItem suma al carrito con el producto del catálogo, sin base de datos")
+    void addItem_inMemory_usesCatalogProduct() {
+        var product = product("A", "2.50", 5);
+        var cart = inMemory();
+        cart.put(product.getId(), 2, Money.of(new BigDecimal("2.00")));
+        when(catalog.find(product.getId())).thenReturn(Optional.of(product));
+        var req = request(3);
+        req.setProductId(product.getId());
+
+        var result = service.addItem(req);
+
+        assertThat(result.items()).singleElement().satisfies(line -> {
+            assertThat(line.quantity()).isEqualTo(5);
+            assertThat(line.unitPrice()).isEqualByComparingTo("2.50");
+        });
+        assertThatThrownBy(() -> service.addItem(req))
+                .isInstanceOf(CartException.class)
+                .hasMessage("Insufficient stock: available 5");
+        assertThat(cart.quantity(product.getId())).isEqualTo(5);
+        verifyNoInteractions(upsert, cartRepo, productRepo);
+    }
+
+    @Test
+    @DisplayName("en memoria addItem busca en la base de datos un producto que el catálogo no tiene")
+    void addItem_inMemory_fallsBackToRepositoryForUnknownProducts() {
+        inMemory();
+        when(catalog.find(productId)).thenReturn(Optional.empty());
+        when(productRepo.findById(productId)).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> service.addItem(request(1)))
+                .isInstanceOf(CartException.class)
+                .hasMessage("Product not found");
+    }
+
+    @Test
+    @DisplayName("en memoria applyBatch valida el stock de todas las líneas y aplica los cambios")
+    void applyBatch_inMemory_checksStockAndAppliesChanges() {
+        var listed = product("A", "1.00", 10);
+        var scarce = product("Escaso", "3.00", 1);
+        var created = product("B", "4.00", 10);
+        var cart = inMemory();
+        cart.put(listed.getId(), 1, Money.of(BigDecimal.ONE));
+        when(catalog.find(any())).thenAnswer(inv -> Optional.ofNullable(
+                List.of(listed, scarce).stream().filter(p -> p.getId().equals(inv.getArgument(0))).findFirst().orElse(null)));
+        when(productRepo.findAllById(List.of(created.getId()))).thenReturn(List.of(created));
+
+        assertThatThrownBy(() -> service.applyBatch(batch(change(scarce, Operation.ADD, 2))))
+                .isInstanceOf(CartException.class)
+                .hasMessage("Insufficient stock for product Escaso: required 2, available 1");
+
+        var result = service.applyBatch(batch(
+                change(listed, Operation.REMOVE, 0),
+                change(scarce, Operation.SET, 1),
+                change(created, Operation.ADD, 2)));
+
+        assertThat(result.items()).extracting(CartItemResponse::productId, CartItemResponse::quantity)
+                .containsExactly(tuple(scarce.getId(), 1), tuple(created.getId(), 2));
+        assertThat(result.total()).isEqualByComparingTo("11.00");
+        verifyNoInteractions(cartRepo);
+    }
+
+    @Test
+    @DisplayName("en memoria getCart lee del almacén en memoria")
+    void getCart_inMemory_readsFromStore() {
+        var cart = new WriteBehindCartStore.MemoryCart(UUID.randomUUID(), customerId, Instant.now(), true);
+        when(memoryStore.isEnabled()).thenReturn(true);
+        when(memoryStore.read(customerId)).thenReturn(cart.toResponse());
+
+        assertThat(service.getCart(customerId).cartId()).isEqualTo(cart.toResponse().cartId());
+        verifyNoInteractions(cartRepo);
+    }
 }
@@ -0,0 +1,172 @@
+package com.farmatodo.cart;
+
+import com.farmatodo.cart.dto.AddCartItemRequest;
+import com.farmatodo.cart.dto.BatchCartItemsRequest;
+import com.farmatodo.cart.dto.CartItemChange;
+import com.farmatodo.client.Customer;
+import com.farmatodo.client.CustomerRepository;
+import com.farmatodo.product.Product;
+import com.farmatodo.product.ProductRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** The running {@code carts.total} column (V5) against the sum of the lines, for each writer. */
+@SpringBootTest
+@Testcontainers
+@ActiveProfiles("test")
+@Tag("integration")
+@DisplayName("Carrito - Integración total acumulado")
+class CartTotalIntegrationTest {
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15")
+            .withDatabaseName("farmatodo")
+            .withUsername("farmatodo")
+            .withPassword("farmatodo_pwd");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("ENCRYPTION_KEY", () -> "QmFja2VuZEVuY3J5cHRpb25LZXlGb3JERVZfMjU2X0dDTQ==");
+    }
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private CustomerRepository customerRepo;
+
+    @Autowired
+    private ProductRepository productRepo;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    private UUID customer() {
+        var unique = UUID.randomUUID().toString();
+        return customerRepo.save(new Customer("N", unique + "@test.com", "+57" + unique, "A", Instant.now(), "tx")).getId();
+    }
+
+    private UUID product(String price) {
+        return productRepo.save(new Product("P", "D", new BigDecimal(price), 1_000, Instant.now())).getId();
+    }
+
+    private static AddCartItemRequest request(UUID customerId, UUID productId, int quantity) {
+        var req = new AddCartItemRequest();
+        req.setCustomerId(customerId);
+        req.setProductId(productId);
+        req.setQuantity(quantity);
+        return req;
+    }
+
+    /** The column and the sum it replaces, for the customer's active cart. */
+    private List<BigDecimal> storedTotalAndSum(UUID customerId) {
+        return jdbc.queryForObject("""
+                SELECT c.total, (SELECT coalesce(sum(i.quantity * i.unit_price_snapshot), 0) FROM cart_items i WHERE i.cart_id = c.id)
+                FROM carts c WHERE c.customer_id = ? AND c.status = 'ACTIVE'
+                """, (rs, n) -> List.of(rs.getBigDecimal(1), rs.getBigDecimal(2)), customerId);
+    }
+
+    @Test
+    @DisplayName("los agregados y el cambio de precio mantienen el total sin recorrer las líneas")
+    void upsert_keepsTheTotal() {
+        var customerId = customer();
+        var first = product("3500");
+        var second = product("4200");
+
+        cartService.addItem(request(customerId, first, 2));
+        cartService.addItem(request(customerId, second, 1));
+        jdbc.update("UPDATE products SET price = 3000 WHERE id = ?", first);
+        var cart = cartService.addItem(request(customerId, first, 1));
+
+        assertThat(cart.total()).isEqualByComparingTo("13200");
+        assertThat(storedTotalAndSum(customerId)).allSatisfy(total -> assertThat(total).isEqualByComparingTo("13200"));
+        assertThat(cartService.getCart(customerId).total()).isEqualByComparingTo("13200");
+    }
+
+    @Test
+    @DisplayName("agregados concurrentes de productos distintos suman todos al total")
+    void concurrentAdds_addUp() throws Exception {
+        int threads = 8;
+        var customerId = customer();
+        var products = new ArrayList<UUID>();
+        for (int i = 0; i < threads; i++) {
+            products.add(product((i + 1) + "00"));
+        }
+        var start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            var results = new ArrayList<Future<?>>();
+            for (var productId : products) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return cartService.addItem(request(customerId, productId, 2));
+                }));
+            }
+            start.countDown();
+            for (var result : results) {
+                result.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        // 2 x (100 + 200 + ... + 800)
+        assertThat(storedTotalAndSum(customerId)).allSatisfy(total -> assertThat(total).isEqualByComparingTo("7200"));
+    }
+
+    @Test
+    @DisplayName("un lote que agrega, fija y quita líneas deja el total igual a la suma")
+    void batch_keepsTheTotal() {
+        var customerId = customer();
+        var kept = product("100");
+        var set = product("200");
+        var removed = product("300");
+        cartService.addItem(request(customerId, kept, 1));
+        cartService.addItem(request(customerId, set, 1));
+        cartService.addItem(request(customerId, removed, 1));
+
+        var batch = new BatchCartItemsRequest();
+        batch.setCustomerId(customerId);
+        batch.setItems(List.of(
+                change(set, CartItemChange.Operation.SET, 4),
+                change(removed, CartItemChange.Operation.REMOVE, 0),
+                change(product("50"), CartItemChange.Operation.ADD, 2)));
+        var cart = cartService.applyBatch(batch);
+
+        assertThat(cart.total()).isEqualByComparingTo("1000");
+        assertThat(storedTotalAndSum(customerId)).allSatisfy(total -> assertThat(total).isEqualByComparingTo("1000"));
+    }
+
+    private static CartItemChange change(UUID productId, CartItemChange.Operation operation, int quantity) {
+        var change = new CartItemChange();
+        change.setProductId(productId);
+        change.setOperation(operation);
+        change.setQuantity(quantity);
+        return change;
+    }
+}
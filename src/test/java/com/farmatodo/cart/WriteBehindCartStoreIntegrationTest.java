@@ -0,0 +1,298 @@
+package com.farmatodo.cart;
+
+import com.farmatodo.StatementCounter;
+import com.farmatodo.cart.dto.AddCartItemRequest;
+import com.farmatodo.cart.dto.BatchCartItemsRequest;
+import com.farmatodo.cart.dto.CartItemChange;
+import com.farmatodo.cart.dto.CartItemResponse;
+import com.farmatodo.client.Customer;
+import com.farmatodo.client.CustomerRepository;
+import com.farmatodo.money.Money;
+import com.farmatodo.order.OrderItem;
+import com.farmatodo.order.OrderService;
+import com.farmatodo.order.dto.CreateOrderRequest;
+import com.farmatodo.product.Product;
+import com.farmatodo.product.ProductCatalog;
+import com.farmatodo.product.ProductRepository;
+import com.farmatodo.token.CardToken;
+import com.farmatodo.token.CardTokenStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+@SpringBootTest
+@Testcontainers
+@ActiveProfiles("test")
+@Tag("integration")
+@Import(StatementCounter.class)
+@DisplayName("Carrito en memoria (write-behind) - Integración")
+class WriteBehindCartStoreIntegrationTest {
+
+    private static final int MAX_CARTS = 4;
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15")
+            .withDatabaseName("farmatodo")
+            .withUsername("farmatodo")
+            .withPassword("farmatodo_pwd");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("ENCRYPTION_KEY", () -> "QmFja2VuZEVuY3J5cHRpb25LZXlGb3JERVZfMjU2X0dDTQ==");
+        registry.add("app.cart.store", () -> "memory");
+        registry.add("app.cart.memory.max-carts", () -> MAX_CARTS);
+        // the tests flush explicitly
+        registry.add("app.cart.memory.flush-interval", () -> "PT1H");
+        registry.add("payment.approve-probability", () -> 1.0);
+    }
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private WriteBehindCartStore store;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private CartRepository cartRepo;
+
+    @Autowired
+    private CustomerRepository customerRepo;
+
+    @Autowired
+    private ProductRepository productRepo;
+
+    @Autowired
+    private ProductCatalog catalog;
+
+    @Autowired
+    private CardTokenStore tokenStore;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private StatementCounter statements;
+
+    @AfterEach
+    void flushLeftovers() {
+        store.flushPending();
+    }
+
+    private UUID customer() {
+        var unique = UUID.randomUUID().toString();
+        return customerRepo.save(new Customer("N", unique + "@test.com", "+57" + unique, "A", Instant.now(), "tx")).getId();
+    }
+
+    private UUID product(String price) {
+        var id = productRepo.save(new Product("P", "D", new BigDecimal(price), 100, Instant.now())).getId();
+        catalog.invalidate();
+        return id;
+    }
+
+    private static AddCartItemRequest request(UUID customerId, UUID productId, int quantity) {
+        var req = new AddCartItemRequest();
+        req.setCustomerId(customerId);
+        req.setProductId(productId);
+        req.setQuantity(quantity);
+        return req;
+    }
+
+    private List<Integer> storedQuantities(UUID customerId) {
+        return jdbc.queryForList("""
+                SELECT i.quantity FROM cart_items i JOIN carts c ON c.id = i.cart_id
+                WHERE c.customer_id = ? AND c.status = 'ACTIVE' ORDER BY i.quantity
+                """, Integer.class, customerId);
+    }
+
+    @Test
+    @DisplayName("un carrito en caché se modifica sin sentencias y se escribe en el siguiente flush")
+    void cachedCart_changesWithoutStatementsUntilFlush() {
+        var customerId = customer();
+        var first = product("10.00");
+        var second = product("2.50");
+        var created = cartService.addItem(request(customerId, first, 1));
+
+        statements.reset();
+        cartService.addItem(request(customerId, first, 2));
+        var cart = cartService.addItem(request(customerId, second, 1));
+        assertThat(statements.count()).isZero();
+        assertThat(cart.cartId()).isEqualTo(created.cartId());
+        assertThat(cart.total()).isEqualByComparingTo("32.50");
+        assertThat(storedQuantities(customerId)).isEmpty();
+
+        store.flushPending();
+
+        assertThat(storedQuantities(customerId)).containsExactly(1, 3);
+        assertThat(jdbc.queryForObject("SELECT id FROM carts WHERE customer_id = ?", UUID.class, customerId))
+                .isEqualTo(created.cartId());
+        assertThat(jdbc.queryForObject("SELECT total FROM carts WHERE customer_id = ?", BigDecimal.class, customerId))
+                .isEqualByComparingTo("32.50");
+    }
+
+    @Test
+    @DisplayName("un carrito que no está en memoria se carga de la base de datos")
+    void miss_loadsTheActiveCart() {
+        var customerId = customer();
+        var productId = product("1.00");
+        var cart = new Cart(customerId, Cart.CartStatus.ACTIVE, Instant.now());
+        cart.addItem(productId, 2, Money.of(BigDecimal.ONE));
+        var cartId = cartRepo.save(cart).getId();
+
+        assertThat(cartService.getCart(customerId).items()).extracting(CartItemResponse::quantity).containsExactly(2);
+        var updated = cartService.addItem(request(customerId, productId, 3));
+        store.flushPending();
+
+        assertThat(updated.cartId()).isEqualTo(cartId);
+        assertThat(storedQuantities(customerId)).containsExactly(5);
+        assertThatThrownBy(() -> cartService.getCart(customer()))
+                .isInstanceOf(CartException.class)
+                .hasMessage("No active cart for customer");
+        assertThatThrownBy(() -> cartService.addItem(request(UUID.randomUUID(), productId, 1)))
+                .hasMessage("Customer not found");
+    }
+
+    @Test
+    @DisplayName("las líneas quitadas en memoria se borran al escribir")
+    void removedLines_areDeleted() {
+        var customerId = customer();
+        var kept = product("1.00");
+        var removed = product("1.00");
+        cartService.addItem(request(customerId, kept, 1));
+        cartService.addItem(request(customerId, removed, 2));
+        store.flushPending();
+
+        var change = new CartItemChange();
+        change.setProductId(removed);
+        change.setOperation(CartItemChange.Operation.REMOVE);
+        change.setQuantity(0);
+        var batch = new BatchCartItemsRequest();
+        batch.setCustomerId(customerId);
+        batch.setItems(List.of(change));
+        cartService.applyBatch(batch);
+        store.flushPending();
+
+        assertThat(storedQuantities(customerId)).containsExactly(1);
+    }
+
+    @Test
+    @DisplayName("el checkout escribe antes el carrito en memoria y el siguiente agregado abre uno nuevo")
+    void checkout_flushesTheCartFirst() {
+        var customerId = customer();
+        var first = product("3.00");
+        var second = product("4.00");
+        var cart = cartService.addItem(request(customerId, first, 2));
+        cartService.addItem(request(customerId, second, 1));
+
+        var token = UUID.randomUUID();
+        tokenStore.save(new CardToken(token, new byte[29], "************1111", Instant.now(), "tx"));
+        var req = new CreateOrderRequest();
+        req.setCustomerId(customerId);
+        req.setDeliveryAddress("Calle 1 #2-3");
+        req.setToken(token.toString());
+        var order = orderService.create(req);
+
+        assertThat(order.getCartId()).isEqualTo(cart.cartId());
+        assertThat(order.getItems()).extracting(OrderItem::getProductId, OrderItem::getQuantity)
+                .containsExactlyInAnyOrder(tuple(first, 2), tuple(second, 1));
+        assertThat(order.getTotalAmount().toBigDecimal()).isEqualByComparingTo("10.00");
+
+        var next = cartService.addItem(request(customerId, first, 1));
+        assertThat(next.cartId()).isNotEqualTo(cart.cartId());
+        assertThat(next.items()).singleElement().extracting(CartItemResponse::quantity).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("más carritos que el límite de la caché no pierden cambios")
+    void evictedCarts_keepTheirChanges() {
+        var productId = product("1.00");
+        var customers = new ArrayList<UUID>();
+        for (int i = 0; i < MAX_CARTS * 3; i++) {
+            var customerId = customer();
+            customers.add(customerId);
+            cartService.addItem(request(customerId, productId, 1));
+            cartService.addItem(request(customerId, productId, i + 1));
+        }
+        store.flushPending();
+
+        for (int i = 0; i < customers.size(); i++) {
+            assertThat(storedQuantities(customers.get(i))).containsExactly(i + 2);
+            assertThat(cartService.getCart(customers.get(i)).items())
+                    .singleElement().extracting(CartItemResponse::quantity).isEqualTo(i + 2);
+        }
+    }
+
+    @Test
+    @DisplayName("los cambios de un carrito cerrado en otra parte se descartan")
+    void cartClosedElsewhere_isDiscarded() {
+        var customerId = customer();
+        var productId = product("1.00");
+        cartService.addItem(request(customerId, productId, 1));
+        store.flushPending();
+        jdbc.update("UPDATE carts SET status = 'ORDERED' WHERE customer_id = ?", customerId);
+        double discarded = meterRegistry.get("cart.store.discarded").counter().count();
+
+        cartService.addItem(request(customerId, productId, 4));
+        store.flushPending();
+
+        assertThat(meterRegistry.get("cart.store.discarded").counter().count()).isEqualTo(discarded + 1);
+        assertThat(jdbc.queryForObject("""
+                SELECT i.quantity FROM cart_items i JOIN carts c ON c.id = i.cart_id WHERE c.customer_id = ?
+                """, Integer.class, customerId)).isEqualTo(1);
+        assertThatThrownBy(() -> cartService.getCart(customerId)).hasMessage("No active cart for customer");
+    }
+
+    @Test
+    @DisplayName("el checkout falla si el carrito en memoria fue reemplazado en otra parte, sin perder el aviso")
+    void checkout_ofSupersededCart_fails() {
+        var customerId = customer();
+        var productId = product("1.00");
+        cartService.addItem(request(customerId, productId, 1));
+        store.flushPending();
+        cartService.addItem(request(customerId, productId, 4));
+        jdbc.update("UPDATE carts SET status = 'ORDERED' WHERE customer_id = ?", customerId);
+        double discarded = meterRegistry.get("cart.store.discarded").counter().count();
+
+        var req = new CreateOrderRequest();
+        req.setCustomerId(customerId);
+        req.setDeliveryAddress("Calle 1 #2-3");
+        req.setToken(UUID.randomUUID().toString());
+        assertThatThrownBy(() -> orderService.create(req))
+                .isInstanceOf(CartException.class)
+                .hasMessage("Cart changed elsewhere; review it and retry the checkout");
+
+        assertThat(meterRegistry.get("cart.store.discarded").counter().count()).isEqualTo(discarded + 1);
+        assertThat(jdbc.queryForObject("SELECT count(*) FROM orders WHERE customer_id = ?", Integer.class, customerId))
+                .isZero();
+    }
+}
@@ -0,0 +1,145 @@
+package com.farmatodo.cart;
+
+import com.farmatodo.client.CustomerLookup;
+import com.farmatodo.money.Money;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("WriteBehindCartStore")
+class WriteBehindCartStoreTest {
+
+    private static final Money PRICE = Money.of(BigDecimal.ONE);
+
+    @Mock
+    private JdbcTemplate jdbc;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private CustomerLookup customers;
+
+    private SimpleMeterRegistry meterRegistry;
+    private WriteBehindCartStore store;
+    private final ExecutorService pool = Executors.newSingleThreadExecutor();
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        // one stripe: every customer shares the lock
+        store = new WriteBehindCartStore(jdbc, transactionManager, customers, meterRegistry, CartStoreMode.MEMORY,
+                100, 1, 500);
+        lenient().when(customers.exists(any())).thenReturn(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("la carga de un carrito no retiene el lock: otro cliente del mismo stripe avanza")
+    void load_runsOutsideTheStripeLock() throws Exception {
+        var slow = UUID.randomUUID();
+        var loading = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        when(jdbc.query(anyString(), any(ResultSetExtractor.class), eq(slow))).thenAnswer(inv -> {
+            loading.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        });
+
+        var blocked = pool.submit(() -> store.update(slow, cart -> cart.put(UUID.randomUUID(), 1, PRICE)));
+        assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+        try {
+            var other = store.update(UUID.randomUUID(), cart -> cart.put(UUID.randomUUID(), 2, PRICE));
+            assertThat(other.items()).hasSize(1);
+            assertThat(blocked).isNotDone();
+        } finally {
+            release.countDown();
+        }
+        assertThat(blocked.get(5, TimeUnit.SECONDS).items()).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("si dos hilos cargan el mismo carrito, se instala uno solo y ningún cambio se pierde")
+    void concurrentLoads_installOneCart() throws Exception {
+        var customerId = UUID.randomUUID();
+        var productId = UUID.randomUUID();
+        var loading = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        when(jdbc.query(anyString(), any(ResultSetExtractor.class), eq(customerId)))
+                .thenAnswer(inv -> {
+                    loading.countDown();
+                    release.await(5, TimeUnit.SECONDS);
+                    return null;
+                })
+                .thenReturn(null);
+
+        var late = pool.submit(() -> store.update(customerId,
+                cart -> cart.put(productId, cart.quantity(productId) + 1, PRICE)));
+        assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+        var first = store.update(customerId, cart -> cart.put(productId, cart.quantity(productId) + 1, PRICE));
+        release.countDown();
+        var second = late.get(5, TimeUnit.SECONDS);
+
+        assertThat(second.cartId()).isEqualTo(first.cartId());
+        assertThat(store.read(customerId).items()).singleElement()
+                .satisfies(line -> assertThat(line.quantity()).isEqualTo(2));
+    }
+
+    @Test
+    @DisplayName("flush antes del checkout falla si el carrito ya no estaba activo y lo recarga después")
+    void flush_ofSupersededCart_failsTheCheckout() {
+        var customerId = UUID.randomUUID();
+        var cart = store.update(customerId, c -> c.put(UUID.randomUUID(), 3, PRICE));
+        when(jdbc.query(any(PreparedStatementCreator.class), any(RowMapper.class))).thenReturn(List.of(cart.cartId()));
+
+        assertThatThrownBy(() -> store.flush(customerId))
+                .isInstanceOf(CartException.class)
+                .hasMessage("Cart changed elsewhere; review it and retry the checkout");
+        assertThat(meterRegistry.get("cart.store.discarded").counter().count()).isEqualTo(1);
+
+        assertThatThrownBy(() -> store.read(customerId)).hasMessage("No active cart for customer");
+        verify(jdbc, times(2)).query(anyString(), any(ResultSetExtractor.class), eq(customerId));
+    }
+
+    @Test
+    @DisplayName("flush de un carrito activo lo escribe y lo entrega a la base de datos")
+    void flush_ofActiveCart_writesIt() {
+        var customerId = UUID.randomUUID();
+        store.update(customerId, c -> c.put(UUID.randomUUID(), 3, PRICE));
+        when(jdbc.query(any(PreparedStatementCreator.class), any(RowMapper.class))).thenReturn(List.of());
+
+        store.flush(customerId);
+
+        verify(jdbc).batchUpdate(contains("INSERT INTO carts"), anyList());
+        verify(jdbc).batchUpdate(contains("INSERT INTO cart_items"), anyList());
+        assertThat(meterRegistry.get("cart.store.discarded").counter().count()).isZero();
+    }
+}
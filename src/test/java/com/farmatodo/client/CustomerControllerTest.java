@@ -3,6 +3,7 @@ package com.farmatodo.client;
 import com.farmatodo.TestUtils;
 import com.farmatodo.client.dto.CreateCustomerRequest;
 import com.farmatodo.client.dto.CreateCustomerResponse;
+import com.farmatodo.idempotency.IdempotencyService;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -26,6 +27,9 @@ class CustomerControllerTest {
     @Autowired
     private MockMvc mvc;
 
+    @MockBean
+    private IdempotencyService idempotencyService;
+
     @MockBean
     private CustomerService customerService;
 
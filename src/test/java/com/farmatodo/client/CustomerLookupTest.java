@@ -0,0 +1,197 @@
+package com.farmatodo.client;
+
+import com.farmatodo.MutableClock;
+import com.farmatodo.TestUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("CustomerLookup")
+class CustomerLookupTest {
+
+    private static final Duration SYNC_INTERVAL = Duration.ofSeconds(1);
+    private static final Duration TTL = Duration.ofMinutes(10);
+
+    @Mock
+    private JdbcTemplate jdbc;
+
+    private final Map<UUID, CustomerContact> table = new LinkedHashMap<>();
+    private final List<UUID> contactLoads = new ArrayList<>();
+
+    private MutableClock clock;
+    private SimpleMeterRegistry registry;
+    private CustomerLookup lookup;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2026-01-01T00:00:00Z"));
+        registry = new SimpleMeterRegistry();
+        lookup = new CustomerLookup(jdbc, registry, true, 1_000, TTL, 1_000, 0.01, SYNC_INTERVAL, clock);
+    }
+
+    /** Every id load (full or catch-up) streams the whole fake table; the filter ignores repeats. */
+    @SuppressWarnings("unchecked")
+    private void stubLoads() throws SQLException {
+        lenient().doAnswer(inv -> stream(inv.getArgument(1))).when(jdbc).query(anyString(), any(RowCallbackHandler.class));
+        lenient().doAnswer(inv -> stream(inv.getArgument(1)))
+                .when(jdbc).query(anyString(), any(RowCallbackHandler.class), any(Object.class));
+        lenient().when(jdbc.query(contains("email"), any(RowMapper.class), any(Object.class))).thenAnswer(inv -> {
+            UUID id = inv.getArgument(2);
+            contactLoads.add(id);
+            var contact = table.get(id);
+            return contact == null ? List.of() : List.of(contact);
+        });
+    }
+
+    private Object stream(RowCallbackHandler handler) throws SQLException {
+        for (UUID id : List.copyOf(table.keySet())) {
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.getString(1)).thenReturn(id.toString());
+            handler.processRow(rs);
+        }
+        return null;
+    }
+
+    private UUID addToTable() {
+        var id = UUID.randomUUID();
+        table.put(id, new CustomerContact(id, id + "@test.com", "N"));
+        return id;
+    }
+
+    private double count(String result) {
+        return registry.get("customer.existence").tag("result", result).counter().count();
+    }
+
+    @Test
+    @DisplayName("el contacto de un cliente existente se lee una vez y luego se sirve desde caché")
+    void existingCustomer_loadedOnceThenCached() throws Exception {
+        var id = addToTable();
+        stubLoads();
+        lookup.rebuild();
+
+        assertThat(lookup.exists(id)).isTrue();
+        assertThat(lookup.contact(id)).hasValue(table.get(id));
+        assertThat(lookup.exists(UUID.randomUUID())).isFalse();
+
+        assertThat(contactLoads).containsExactly(id);
+        assertThat(count("db_found")).isEqualTo(1);
+        assertThat(count("cache_hit")).isEqualTo(1);
+        assertThat(count("bloom_reject")).isEqualTo(1);
+        assertThat(registry.get("cache.gets").tag("cache", "customer-contacts").tag("result", "hit")
+                .functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("un cliente creado en otra instancia después de la última consulta incremental se busca en la BD")
+    void customerCreatedElsewhere_sinceLastCatchUp_checksDatabase() throws Exception {
+        stubLoads();
+        lookup.rebuild();
+        // version 7 ids carry their creation time
+        var recent = new UUID(clock.millis() << 16 | 0x7000, Long.MIN_VALUE | 1);
+        var old = new UUID(clock.millis() - 60_000 << 16 | 0x7000, Long.MIN_VALUE | 2);
+        table.put(recent, new CustomerContact(recent, "nuevo@test.com", "N"));
+        table.put(old, new CustomerContact(old, "viejo@test.com", "N"));
+
+        assertThat(lookup.exists(recent)).isTrue();
+        assertThat(lookup.exists(old)).isFalse();
+
+        assertThat(contactLoads).containsExactly(recent);
+    }
+
+    @Test
+    @DisplayName("el contacto en caché vence tras el ttl y se vuelve a leer de la BD")
+    void cachedContact_expiresAfterTtl() throws Exception {
+        var id = addToTable();
+        stubLoads();
+        lookup.rebuild();
+        lookup.contact(id);
+        table.put(id, new CustomerContact(id, "nuevo@test.com", "N"));
+
+        clock.advance(TTL.minusSeconds(1));
+        assertThat(lookup.contact(id)).get().extracting(CustomerContact::email).isEqualTo(id + "@test.com");
+
+        clock.advance(Duration.ofSeconds(1));
+        assertThat(lookup.contact(id)).get().extracting(CustomerContact::email).isEqualTo("nuevo@test.com");
+        assertThat(contactLoads).containsExactly(id, id);
+    }
+
+    @Test
+    @DisplayName("un cliente creado localmente se registra con su contacto solo tras el commit")
+    void recordCreated_waitsForCommit() throws Exception {
+        stubLoads();
+        lookup.rebuild();
+        var customer = new Customer("Ana", "ana@test.com", "+57300", "Calle 1", Instant.now(), "tx");
+        TestUtils.setId(customer);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            lookup.recordCreated(customer);
+            assertThat(lookup.exists(customer.getId())).isFalse();
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(lookup.contact(customer.getId()))
+                .hasValue(new CustomerContact(customer.getId(), "ana@test.com", "Ana"));
+        assertThat(contactLoads).isEmpty();
+    }
+
+    @Test
+    @DisplayName("invalidate descarta el contacto en caché y la siguiente lectura va a la BD")
+    void invalidate_dropsTheCachedContact() throws Exception {
+        var id = addToTable();
+        stubLoads();
+        lookup.rebuild();
+        lookup.contact(id);
+        table.put(id, new CustomerContact(id, "nuevo@test.com", "N"));
+
+        lookup.invalidate(id);
+
+        assertThat(lookup.contact(id)).get().extracting(CustomerContact::email).isEqualTo("nuevo@test.com");
+        assertThat(contactLoads).containsExactly(id, id);
+    }
+
+    @Test
+    @DisplayName("sin filtro construido o con la caché deshabilitada se consulta la BD")
+    void notBuiltOrDisabled_fallsBackToDatabase() throws Exception {
+        stubLoads();
+        var id = UUID.randomUUID();
+        assertThat(lookup.exists(id)).isFalse();
+
+        var disabled = new CustomerLookup(jdbc, new SimpleMeterRegistry(), false, 1_000, TTL, 1_000, 0.01,
+                SYNC_INTERVAL, clock);
+        disabled.rebuild();
+        table.put(id, new CustomerContact(id, "e@e.com", "N"));
+        assertThat(disabled.exists(id)).isTrue();
+        assertThat(disabled.contact(id)).isPresent();
+
+        assertThat(contactLoads).hasSize(3);
+        verify(jdbc, never()).query(anyString(), any(RowCallbackHandler.class));
+    }
+}
@@ -28,11 +28,14 @@ class CustomerServiceTest {
     @Mock
     private LogService logService;
 
+    @Mock
+    private CustomerLookup lookup;
+
     private CustomerService service;
 
     @BeforeEach
     void setUp() {
-        service = new CustomerService(repo, logService);
+        service = new CustomerService(repo, logService, lookup);
         MDC.put("tx_id", "test-tx");
     }
 
@@ -66,6 +69,7 @@ class CustomerServiceTest {
         verify(repo).existsByEmail("juan@test.com");
         verify(repo).existsByPhone("+573001234567");
         verify(repo).save(any(Customer.class));
+        verify(lookup).recordCreated(result);
     }
 
     @Test
@@ -79,6 +83,7 @@ class CustomerServiceTest {
 
         verify(repo).existsByEmail("juan@test.com");
         verify(repo, never()).save(any());
+        verifyNoInteractions(lookup);
     }
 
     @Test
@@ -0,0 +1,86 @@
+package com.farmatodo.crypto;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tokenization encrypt throughput at 1, 8 and 32 threads, for the {@link EncryptionResult} API
+ * and the caller-buffer API. Allocation rate comes from the GC profiler ({@code gc.alloc.rate.norm}
+ * is bytes per operation). Run with {@code mvn -Pbenchmark test -Dbenchmark=AesEncryptionBenchmark}
+ * (no Docker needed).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AesEncryptionBenchmark {
+
+    private static final String KEY = "QmFja2VuZEVuY3J5cHRpb25LZXlGb3JERVZfMjU2X0dDTQ==";
+    private static final String PAN = "4111111111111111";
+
+    private AesEncryptionService service;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        service = new AesEncryptionService(KEY);
+    }
+
+    /** Per-thread buffers for the allocation-free path. */
+    @State(Scope.Thread)
+    public static class Buffers {
+        final byte[] plain = PAN.getBytes(StandardCharsets.UTF_8);
+        final byte[] iv = new byte[12];
+        final byte[] out = new byte[plain.length + 16];
+    }
+
+    @Benchmark
+    @Threads(1)
+    public EncryptionResult encrypt_1t() {
+        return service.encrypt(PAN);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public EncryptionResult encrypt_8t() {
+        return service.encrypt(PAN);
+    }
+
+    @Benchmark
+    @Threads(32)
+    public EncryptionResult encrypt_32t() {
+        return service.encrypt(PAN);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public int encryptIntoBuffer_1t(Buffers b) {
+        return service.encrypt(b.plain, 0, b.plain.length, b.iv, b.out, 0);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public int encryptIntoBuffer_8t(Buffers b) {
+        return service.encrypt(b.plain, 0, b.plain.length, b.iv, b.out, 0);
+    }
+
+    @Benchmark
+    @Threads(32)
+    public int encryptIntoBuffer_32t(Buffers b) {
+        return service.encrypt(b.plain, 0, b.plain.length, b.iv, b.out, 0);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(AesEncryptionBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -3,9 +3,22 @@ package com.farmatodo.crypto;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @DisplayName("AesEncryptionService")
 class AesEncryptionServiceTest {
@@ -34,4 +47,70 @@ class AesEncryptionServiceTest {
         var result = service.encrypt("test");
         assertThat(result).isNotNull();
     }
+
+    @Test
+    @DisplayName("el resultado se descifra con la misma clave y el mismo IV")
+    void encrypt_roundTrips() throws Exception {
+        var service = new AesEncryptionService(VALID_KEY_B64);
+        var result = service.encrypt("4111111111111111");
+
+        assertThat(decrypt(result.iv(), concat(result.ciphertext(), result.authTag()))).isEqualTo("4111111111111111");
+    }
+
+    @Test
+    @DisplayName("la variante con buffers escribe ciphertext+tag en el buffer del llamador")
+    void encrypt_intoCallerBuffers() throws Exception {
+        var service = new AesEncryptionService(VALID_KEY_B64);
+        byte[] plain = "xx4111111111111111".getBytes(StandardCharsets.UTF_8);
+        byte[] iv = new byte[service.ivLength()];
+        byte[] out = new byte[4 + 16 + service.tagLength()];
+
+        int written = service.encrypt(plain, 2, 16, iv, out, 4);
+
+        assertThat(written).isEqualTo(16 + service.tagLength());
+        assertThat(decrypt(iv, Arrays.copyOfRange(out, 4, 4 + written))).isEqualTo("4111111111111111");
+        assertThatThrownBy(() -> service.encrypt(plain, 0, 16, new byte[8], out, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("bajo concurrencia cada cifrado usa un IV distinto y sigue siendo válido")
+    void encrypt_concurrent_uniqueIvs() throws Exception {
+        var service = new AesEncryptionService(VALID_KEY_B64);
+        Set<String> ivs = ConcurrentHashMap.newKeySet();
+        var pool = Executors.newFixedThreadPool(8);
+        try {
+            var runs = new ArrayList<Future<?>>();
+            for (int t = 0; t < 8; t++) {
+                runs.add(pool.submit(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        var pan = "41111111111" + String.format("%05d", i);
+                        var r = service.encrypt(pan);
+                        ivs.add(HexFormat.of().formatHex(r.iv()));
+                        assertThat(decrypt(r.iv(), concat(r.ciphertext(), r.authTag()))).isEqualTo(pan);
+                    }
+                    return null;
+                }));
+            }
+            for (var run : runs) {
+                run.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertThat(ivs).hasSize(4000);
+    }
+
+    private static String decrypt(byte[] iv, byte[] cipherWithTag) throws Exception {
+        var cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(Arrays.copyOf(Base64.getDecoder().decode(VALID_KEY_B64), 32), "AES"),
+                new GCMParameterSpec(128, iv));
+        return new String(cipher.doFinal(cipherWithTag), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] out = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, out, a.length, b.length);
+        return out;
+    }
 }
@@ -7,10 +7,12 @@ import com.farmatodo.cart.CartService;
 import com.farmatodo.client.CustomerConflictException;
 import com.farmatodo.client.CustomerController;
 import com.farmatodo.client.CustomerService;
+import com.farmatodo.idempotency.IdempotencyService;
 import com.farmatodo.order.OrderController;
 import com.farmatodo.order.OrderException;
 import com.farmatodo.order.OrderNotFoundException;
 import com.farmatodo.order.OrderService;
+import com.farmatodo.token.TokenBatchService;
 import com.farmatodo.token.TokenController;
 import com.farmatodo.token.TokenRejectedException;
 import com.farmatodo.token.TokenService;
@@ -39,9 +41,15 @@ class GlobalExceptionHandlerTest {
     @Autowired
     private MockMvc mvc;
 
+    @MockBean
+    private IdempotencyService idempotencyService;
+
     @MockBean
     private TokenService tokenService;
 
+    @MockBean
+    private TokenBatchService tokenBatchService;
+
     @MockBean
     private OrderService orderService;
 
@@ -1,9 +1,11 @@
 package com.farmatodo.health;
 
+import com.farmatodo.idempotency.IdempotencyService;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.web.servlet.MockMvc;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
@@ -16,6 +18,9 @@ class HealthControllerTest {
     @Autowired
     private MockMvc mvc;
 
+    @MockBean
+    private IdempotencyService idempotencyService;
+
     @Test
     @DisplayName("GET /ping retorna pong")
     void ping_returnsPong() throws Exception {
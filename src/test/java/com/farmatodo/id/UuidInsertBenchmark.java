@@ -0,0 +1,83 @@
+package com.farmatodo.id;
+
+import com.farmatodo.BenchmarkContext;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Insert throughput into a {@code transaction_logs}-shaped table keyed by v4 vs v7 UUIDs, with
+ * the primary-key index already holding 1M rows so random keys miss in shared buffers. Prints
+ * the index size at the end of each trial (random keys leave half-empty pages behind splits).
+ * Run with {@code mvn -Pbenchmark test -Dbenchmark=UuidInsertBenchmark} (requires Docker).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+@Threads(4)
+public class UuidInsertBenchmark {
+
+    private static final int PRELOAD = 1_000_000;
+    private static final int BATCH = 100;
+    private static final String INSERT =
+            "INSERT INTO id_bench (id, tx_id, event_type, payload, created_at) VALUES (?, ?, ?, ?, ?)";
+
+    @Param({"4", "7"})
+    public int version;
+
+    private BenchmarkContext ctx;
+    private JdbcTemplate jdbc;
+    private UuidGenerator generator;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ctx = BenchmarkContext.start("app.ids.uuid-version=" + version);
+        jdbc = ctx.jdbc();
+        generator = version == 7 ? new UuidV7Generator() : Ids.RANDOM;
+        jdbc.execute("CREATE TABLE id_bench (id uuid PRIMARY KEY, tx_id varchar(64), event_type varchar(64), "
+                + "payload text, created_at timestamptz NOT NULL)");
+        for (int done = 0; done < PRELOAD; done += 10_000) {
+            jdbc.batchUpdate(INSERT, rows(10_000));
+        }
+        jdbc.execute("VACUUM ANALYZE id_bench");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.out.printf("%nv%d: id_bench_pkey = %s%n", version,
+                jdbc.queryForObject("SELECT pg_size_pretty(pg_relation_size('id_bench_pkey'))", String.class));
+        ctx.close();
+    }
+
+    /** One round trip inserting {@value #BATCH} rows; throughput is batches per second. */
+    @Benchmark
+    public int[] insertBatch() {
+        return jdbc.batchUpdate(INSERT, rows(BATCH));
+    }
+
+    private List<Object[]> rows(int count) {
+        var now = Timestamp.from(Instant.now());
+        List<Object[]> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            UUID id = generator.next();
+            rows.add(new Object[]{id, id.toString(), "order_created", "{\"orderId\":\"" + id + "\"}", now});
+        }
+        return rows;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(UuidInsertBenchmark.class.getSimpleName()).build()).run();
+    }
+}
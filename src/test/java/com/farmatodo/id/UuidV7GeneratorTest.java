@@ -0,0 +1,112 @@
+package com.farmatodo.id;
+
+import com.farmatodo.MutableClock;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("UuidV7Generator")
+class UuidV7GeneratorTest {
+
+    private static final long NOW = Instant.parse("2026-01-01T00:00:00Z").toEpochMilli();
+
+    @AfterEach
+    void restoreDefault() {
+        new IdStrategy(7);
+    }
+
+    @Test
+    @DisplayName("genera UUID versión 7, variante RFC y con el timestamp del reloj")
+    void layout() {
+        var id = new UuidV7Generator(new MutableClock(Instant.ofEpochMilli(NOW))).next();
+
+        assertThat(id.version()).isEqualTo(7);
+        assertThat(id.variant()).isEqualTo(2);
+        assertThat(UuidV7Generator.timestamp(id)).isEqualTo(NOW);
+        assertThat(id.toString()).startsWith(String.format("%012x", NOW).substring(0, 8));
+    }
+
+    @Test
+    @DisplayName("los ids crecen estrictamente en el mismo milisegundo, al desbordar el contador y si el reloj retrocede")
+    void strictlyIncreasing() {
+        var clock = new MutableClock(Instant.ofEpochMilli(NOW));
+        var generator = new UuidV7Generator(clock);
+        var ids = new ArrayList<UUID>();
+        for (int i = 0; i < 5_000; i++) {
+            ids.add(generator.next());
+        }
+        clock.set(Instant.ofEpochMilli(NOW - 1_000));
+        ids.add(generator.next());
+
+        for (int i = 1; i < ids.size(); i++) {
+            assertThat(ids.get(i)).isGreaterThan(ids.get(i - 1));
+        }
+        assertThat(UuidV7Generator.timestamp(ids.get(4_095))).isEqualTo(NOW);
+        assertThat(UuidV7Generator.timestamp(ids.get(4_096))).isEqualTo(NOW + 1);
+
+        clock.set(Instant.ofEpochMilli(NOW + 10_000));
+        assertThat(UuidV7Generator.timestamp(generator.next())).isEqualTo(NOW + 10_000);
+    }
+
+    @Test
+    @DisplayName("hilos concurrentes obtienen ids únicos y cada hilo los ve crecientes")
+    void concurrentCallers() throws Exception {
+        var generator = new UuidV7Generator();
+        int threads = 8;
+        int perThread = 20_000;
+        var all = new ConcurrentLinkedQueue<UUID>();
+        var start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        var futures = new ArrayList<Future<Boolean>>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    UUID prev = null;
+                    boolean increasing = true;
+                    for (int i = 0; i < perThread; i++) {
+                        UUID id = generator.next();
+                        increasing &= prev == null || id.compareTo(prev) > 0;
+                        all.add(id);
+                        prev = id;
+                    }
+                    return increasing;
+                }));
+            }
+            start.countDown();
+            for (var f : futures) {
+                assertThat(f.get()).isTrue();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(new HashSet<>(all)).hasSize(threads * perThread);
+    }
+
+    @Test
+    @DisplayName("app.ids.uuid-version elige la estrategia de Ids")
+    void strategySelection() {
+        new IdStrategy(4);
+        assertThat(Ids.next().version()).isEqualTo(4);
+
+        new IdStrategy(7);
+        assertThat(Ids.next().version()).isEqualTo(7);
+
+        assertThatThrownBy(() -> new IdStrategy(1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> UuidV7Generator.timestamp(UUID.randomUUID())).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,111 @@
+package com.farmatodo.idempotency;
+
+import com.farmatodo.config.IdempotencyFilter;
+import com.farmatodo.token.CardTokenRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureMockMvc
+@Testcontainers
+@ActiveProfiles("test")
+@Tag("integration")
+@DisplayName("Idempotency-Key - Integración")
+class IdempotencyIntegrationTest {
+
+    private static final String API_KEY = "test-api-key-integration";
+    private static final String TOKEN_REQUEST = """
+            {"cardNumber":"4111111111111111","cvv":"123","expiryMonth":"12","expiryYear":"2028","cardHolderName":"JOHN DOE"}
+            """;
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15")
+            .withDatabaseName("farmatodo")
+            .withUsername("farmatodo")
+            .withPassword("farmatodo_pwd");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("ENCRYPTION_KEY", () -> "QmFja2VuZEVuY3J5cHRpb25LZXlGb3JERVZfMjU2X0dDTQ==");
+        registry.add("APP_API_KEY", () -> API_KEY);
+    }
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private CardTokenRepository cardTokenRepo;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private IdempotencyKeyStore store;
+
+    @Test
+    @DisplayName("POST /tokens repetido con la misma clave tokeniza una sola vez y reproduce la respuesta")
+    void retriedTokenRequest_runsOnce() throws Exception {
+        long before = cardTokenRepo.count();
+
+        var first = mvc.perform(post("/tokens")
+                        .header("X-API-KEY", API_KEY)
+                        .header(IdempotencyFilter.IDEMPOTENCY_KEY, "retry-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(TOKEN_REQUEST))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(IdempotencyFilter.REPLAYED))
+                .andReturn().getResponse().getContentAsString();
+
+        var second = mvc.perform(post("/tokens")
+                        .header("X-API-KEY", API_KEY)
+                        .header(IdempotencyFilter.IDEMPOTENCY_KEY, "retry-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(TOKEN_REQUEST))
+                .andExpect(status().isOk())
+                .andExpect(header().string(IdempotencyFilter.REPLAYED, "true"))
+                .andReturn().getResponse().getContentAsString();
+
+        assertThat(second).isEqualTo(first);
+        assertThat(cardTokenRepo.count()).isEqualTo(before + 1);
+        assertThat(jdbc.queryForObject("SELECT state FROM idempotency_keys WHERE idem_key = ?", String.class,
+                "POST /tokens:retry-1")).isEqualTo("COMPLETED");
+    }
+
+    @Test
+    @DisplayName("el store solo entrega una clave viva a un dueño y la recupera al expirar")
+    void claim_isExclusiveUntilExpiry() {
+        assertThat(store.claim("claim-1", "h1", Duration.ofMinutes(1))).isEmpty();
+        assertThat(store.claim("claim-1", "h1", Duration.ofMinutes(1)))
+                .hasValueSatisfying(e -> assertThat(e.response()).isNull());
+
+        store.complete("claim-1", new IdempotentResponse("h1", 201, "application/json", "/orders/1", "{}".getBytes()),
+                Duration.ofHours(1));
+        assertThat(store.claim("claim-1", "h1", Duration.ofMinutes(1)))
+                .hasValueSatisfying(e -> assertThat(e.response().location()).isEqualTo("/orders/1"));
+
+        jdbc.update("UPDATE idempotency_keys SET expires_at = now() - interval '1 second' WHERE idem_key = ?", "claim-1");
+        assertThat(store.claim("claim-1", "h2", Duration.ofMinutes(1))).isEmpty();
+    }
+}
@@ -0,0 +1,282 @@
+package com.farmatodo.idempotency;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("IdempotencyService")
+class IdempotencyServiceTest {
+
+    private static final Duration TTL = Duration.ofHours(24);
+    private static final Duration IN_PROGRESS_TTL = Duration.ofMinutes(1);
+    private static final Duration HEARTBEAT = Duration.ofSeconds(20);
+
+    @Mock
+    private IdempotencyKeyStore store;
+
+    private IdempotencyService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new IdempotencyService(store, TTL, IN_PROGRESS_TTL, HEARTBEAT, Duration.ofSeconds(5),
+                100, Duration.ofMinutes(10), new SimpleMeterRegistry());
+    }
+
+    private static IdempotentResponse response(int status) {
+        return new IdempotentResponse("h1", status, "application/json", "/orders/1", "{}".getBytes());
+    }
+
+    @Test
+    @DisplayName("la primera ejecución reclama la clave, ejecuta y guarda la respuesta")
+    void firstExecution_runsAndCompletes() throws Exception {
+        when(store.claim("k", "h1", IN_PROGRESS_TTL)).thenReturn(Optional.empty());
+
+        var outcome = service.execute("k", "h1", () -> response(201));
+
+        assertThat(outcome.replayed()).isFalse();
+        assertThat(outcome.response().status()).isEqualTo(201);
+        verify(store).complete(eq("k"), eq(outcome.response()), eq(TTL));
+    }
+
+    @Test
+    @DisplayName("un reintento en la misma instancia se responde desde memoria sin ejecutar ni consultar la BD")
+    void retry_replaysFromLocalTier() throws Exception {
+        when(store.claim("k", "h1", IN_PROGRESS_TTL)).thenReturn(Optional.empty());
+        var calls = new AtomicInteger();
+        Callable<IdempotentResponse> action = () -> {
+            calls.incrementAndGet();
+            return response(201);
+        };
+
+        service.execute("k", "h1", action);
+        var replay = service.execute("k", "h1", action);
+
+        assertThat(replay.replayed()).isTrue();
+        assertThat(calls).hasValue(1);
+        verify(store, times(1)).claim(any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("una respuesta guardada por otra instancia se reproduce sin ejecutar la acción")
+    void completedElsewhere_replaysFromStore() throws Exception {
+        when(store.claim("k", "h1", IN_PROGRESS_TTL))
+                .thenReturn(Optional.of(new IdempotencyKeyStore.Existing("h1", response(201))));
+
+        var outcome = service.execute("k", "h1", () -> {
+            throw new AssertionError("must not run");
+        });
+
+        assertThat(outcome.replayed()).isTrue();
+        assertThat(outcome.response().location()).isEqualTo("/orders/1");
+        verify(store, never()).complete(any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("la misma clave con otro cuerpo se rechaza como KEY_REUSED")
+    void differentRequest_isRejected() throws Exception {
+        when(store.claim("k", "h1", IN_PROGRESS_TTL)).thenReturn(Optional.empty());
+        service.execute("k", "h1", () -> response(201));
+
+        assertThatThrownBy(() -> service.execute("k", "h2", () -> response(201)))
+                .isInstanceOf(IdempotencyConflictException.class)
+                .extracting("reason").isEqualTo(IdempotencyConflictException.Reason.KEY_REUSED);
+    }
+
+    @Test
+    @DisplayName("una clave en curso en otra instancia se rechaza como IN_PROGRESS")
+    void inProgressElsewhere_isRejected() {
+        when(store.claim("k", "h1", IN_PROGRESS_TTL))
+                .thenReturn(Optional.of(new IdempotencyKeyStore.Existing("h1", null)));
+
+        assertThatThrownBy(() -> service.execute("k", "h1", () -> response(201)))
+                .isInstanceOf(IdempotencyConflictException.class)
+                .extracting("reason").isEqualTo(IdempotencyConflictException.Reason.IN_PROGRESS);
+    }
+
+    @Test
+    @DisplayName("una clave en curso en otra instancia con otro cuerpo se rechaza como KEY_REUSED, no IN_PROGRESS")
+    void inProgressElsewhere_differentRequest_isKeyReused() {
+        when(store.claim("k", "h2", IN_PROGRESS_TTL))
+                .thenReturn(Optional.of(new IdempotencyKeyStore.Existing("h1", null)));
+
+        assertThatThrownBy(() -> service.execute("k", "h2", () -> response(201)))
+                .isInstanceOf(IdempotencyConflictException.class)
+                .extracting("reason").isEqualTo(IdempotencyConflictException.Reason.KEY_REUSED);
+    }
+
+    @Test
+    @DisplayName("otro cuerpo con la clave en curso en esta instancia se rechaza como KEY_REUSED sin esperar")
+    void inProgressHere_differentRequest_isKeyReusedWithoutWaiting() throws Exception {
+        when(store.claim("k", "h1", IN_PROGRESS_TTL)).thenReturn(Optional.empty());
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+
+        var pool = Executors.newSingleThreadExecutor();
+        try {
+            var owner = pool.submit(() -> service.execute("k", "h1", () -> {
+                started.countDown();
+                release.await(5, TimeUnit.SECONDS);
+                return response(201);
+            }));
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+            assertThatThrownBy(() -> service.execute("k", "h2", () -> response(201)))
+                    .isInstanceOf(IdempotencyConflictException.class)
+                    .extracting("reason").isEqualTo(IdempotencyConflictException.Reason.KEY_REUSED);
+            release.countDown();
+            assertThat(owner.get(5, TimeUnit.SECONDS).replayed()).isFalse();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("el heartbeat extiende solo las claves que siguen en curso en esta instancia")
+    void heartbeat_extendsRunningClaims() throws Exception {
+        when(store.claim(any(), eq("h1"), eq(IN_PROGRESS_TTL))).thenReturn(Optional.empty());
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+
+        var pool = Executors.newSingleThreadExecutor();
+        try {
+            service.execute("done", "h1", () -> response(201));
+            var owner = pool.submit(() -> service.execute("slow", "h1", () -> {
+                started.countDown();
+                release.await(5, TimeUnit.SECONDS);
+                return response(201);
+            }));
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+            service.heartbeat();
+            verify(store).extend(List.of("slow"), IN_PROGRESS_TTL);
+
+            release.countDown();
+            owner.get(5, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+        service.heartbeat();
+        verify(store, times(1)).extend(any(), any());
+    }
+
+    @Test
+    @DisplayName("si no se puede guardar la respuesta, se entrega igual, la clave sigue reclamada y el heartbeat la guarda después")
+    void completeFails_keepsClaimAndRetries() throws Exception {
+        when(store.claim("k", "h1", IN_PROGRESS_TTL)).thenReturn(Optional.empty());
+        doThrow(new QueryTimeoutException("timeout")).doNothing().when(store).complete(eq("k"), any(), eq(TTL));
+        var calls = new AtomicInteger();
+        Callable<IdempotentResponse> action = () -> {
+            calls.incrementAndGet();
+            return response(201);
+        };
+
+        var outcome = service.execute("k", "h1", action);
+        var replay = assertTimeout(Duration.ofSeconds(1), () -> service.execute("k", "h1", action));
+
+        assertThat(outcome.response().status()).isEqualTo(201);
+        assertThat(replay.replayed()).isTrue();
+        assertThat(calls).hasValue(1);
+
+        service.heartbeat();
+        verify(store, times(2)).complete("k", outcome.response(), TTL);
+        verify(store, never()).extend(any(), any());
+        verify(store, never()).release(any());
+    }
+
+    @Test
+    @DisplayName("el heartbeat sigue extendiendo la clave mientras no se pueda guardar la respuesta")
+    void completeKeepsFailing_claimIsExtended() throws Exception {
+        when(store.claim("k", "h1", IN_PROGRESS_TTL)).thenReturn(Optional.empty());
+        doThrow(new QueryTimeoutException("timeout")).when(store).complete(eq("k"), any(), eq(TTL));
+
+        service.execute("k", "h1", () -> response(201));
+        service.heartbeat();
+
+        verify(store).extend(List.of("k"), IN_PROGRESS_TTL);
+    }
+
+    @Test
+    @DisplayName("el heartbeat debe ser más corto que el in-progress-ttl")
+    void heartbeatNotShorterThanTtl_rejected() {
+        assertThatThrownBy(() -> new IdempotencyService(store, TTL, IN_PROGRESS_TTL, IN_PROGRESS_TTL,
+                Duration.ofSeconds(5), 100, Duration.ofMinutes(10), new SimpleMeterRegistry()))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("respuestas 5xx y excepciones liberan la clave para que el reintento vuelva a ejecutar")
+    void failures_releaseKey() throws Exception {
+        when(store.claim("k", "h1", IN_PROGRESS_TTL)).thenReturn(Optional.empty());
+
+        var failed = service.execute("k", "h1", () -> response(500));
+        assertThat(failed.replayed()).isFalse();
+        assertThatThrownBy(() -> service.execute("k", "h1", () -> {
+            throw new IllegalStateException("boom");
+        })).isInstanceOf(IllegalStateException.class);
+        var retried = service.execute("k", "h1", () -> response(201));
+
+        assertThat(retried.replayed()).isFalse();
+        assertThat(retried.response().status()).isEqualTo(201);
+        verify(store, times(2)).release("k");
+        verify(store, times(1)).complete(any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("duplicados concurrentes esperan una única ejecución en curso")
+    void concurrentDuplicates_shareOneExecution() throws Exception {
+        when(store.claim("k", "h1", IN_PROGRESS_TTL)).thenReturn(Optional.empty());
+        var calls = new AtomicInteger();
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        Callable<IdempotentResponse> action = () -> {
+            calls.incrementAndGet();
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return response(201);
+        };
+
+        var pool = Executors.newFixedThreadPool(8);
+        try {
+            var owner = pool.submit(() -> service.execute("k", "h1", action));
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+            var duplicates = new ArrayList<Future<IdempotencyService.Outcome>>();
+            for (int i = 0; i < 7; i++) {
+                duplicates.add(pool.submit(() -> service.execute("k", "h1", action)));
+            }
+            release.countDown();
+
+            assertThat(owner.get(5, TimeUnit.SECONDS).replayed()).isFalse();
+            for (var d : duplicates) {
+                assertThat(d.get(5, TimeUnit.SECONDS).replayed()).isTrue();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertThat(calls).hasValue(1);
+        verify(store, times(1)).claim(any(), any(), any());
+    }
+}
@@ -1,6 +1,6 @@
 package com.farmatodo.log;
 
-import com.farmatodo.config.TxFilter;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -9,35 +9,57 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.slf4j.MDC;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 @DisplayName("LogService")
 class LogServiceTest {
 
     @Mock
-    private TransactionLogRepository repository;
+    private TransactionLogWriter writer;
 
     private LogService service;
 
     @BeforeEach
     void setUp() {
-        service = new LogService(repository);
+        service = new LogService(writer, LogDurability.FIRE_AND_FORGET, Duration.ofMillis(100));
         MDC.put("tx_id", "test-tx-123");
     }
 
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        LogFlushScope.close();
+        MDC.clear();
+    }
+
     @Test
-    @DisplayName("log con payload persiste TransactionLog")
+    @DisplayName("log con payload encola TransactionLog con el tx_id del MDC")
     void log_withPayload() {
+        when(writer.append(any())).thenReturn(new CompletableFuture<>());
+
         service.log("order_created", "INFO", "Order created", Map.of("orderId", "abc"));
 
         ArgumentCaptor<TransactionLog> captor = ArgumentCaptor.forClass(TransactionLog.class);
-        verify(repository).save(captor.capture());
+        verify(writer).append(captor.capture());
 
         TransactionLog log = captor.getValue();
         assertThat(log.getTxId()).isEqualTo("test-tx-123");
@@ -50,10 +72,82 @@ class LogServiceTest {
     @Test
     @DisplayName("log sin payload usa null")
     void log_withoutPayload() {
+        when(writer.append(any())).thenReturn(new CompletableFuture<>());
+
         service.log("event", "WARN", "msg");
 
         ArgumentCaptor<TransactionLog> captor = ArgumentCaptor.forClass(TransactionLog.class);
-        verify(repository).save(captor.capture());
+        verify(writer).append(captor.capture());
         assertThat(captor.getValue().getPayload()).isNull();
     }
+
+    @Test
+    @DisplayName("FLUSH_ON_COMMIT dentro de una transacción no bloquea y espera la escritura al cerrar la petición")
+    void flushOnCommit_inTransaction_waitsWhenRequestEnds() {
+        service = new LogService(writer, LogDurability.FLUSH_ON_COMMIT, Duration.ofSeconds(5));
+        var written = new CompletableFuture<Void>();
+        when(writer.append(any())).thenReturn(written);
+        LogFlushScope.open();
+        TransactionSynchronizationManager.initSynchronization();
+
+        assertTimeout(Duration.ofSeconds(1), () -> service.log("payment_success", "INFO", "ok"));
+        assertThat(TransactionSynchronizationManager.getSynchronizations()).isEmpty();
+        TransactionSynchronizationManager.clearSynchronization();
+
+        CompletableFuture.runAsync(() -> written.complete(null),
+                CompletableFuture.delayedExecutor(100, TimeUnit.MILLISECONDS));
+        LogFlushScope.close();
+        assertThat(written).isDone();
+    }
+
+    @Test
+    @DisplayName("FLUSH_ON_COMMIT dentro de una transacción fuera de una petición espera al completarse la transacción")
+    void flushOnCommit_inTransactionWithoutRequest_waitsOnCompletion() {
+        service = new LogService(writer, LogDurability.FLUSH_ON_COMMIT, Duration.ofSeconds(5));
+        var written = new CompletableFuture<Void>();
+        when(writer.append(any())).thenReturn(written);
+        var tx = new TransactionTemplate(new NoOpTransactionManager());
+        CompletableFuture.runAsync(() -> written.complete(null),
+                CompletableFuture.delayedExecutor(300, TimeUnit.MILLISECONDS));
+
+        tx.executeWithoutResult(status -> {
+            service.log("payment_success", "INFO", "ok");
+            assertThat(written).isNotDone();
+        });
+
+        assertThat(written).isDone();
+    }
+
+    /** Drives the synchronization lifecycle of a real transaction without a resource. */
+    private static final class NoOpTransactionManager extends AbstractPlatformTransactionManager {
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+
+    @Test
+    @DisplayName("FLUSH_ON_COMMIT sin transacción espera acotado y no propaga fallos de escritura")
+    void flushOnCommit_withoutTransaction_waitsBounded() {
+        service = new LogService(writer, LogDurability.FLUSH_ON_COMMIT, Duration.ofMillis(50));
+        when(writer.append(any()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("full")))
+                .thenReturn(new CompletableFuture<>());
+
+        assertThatCode(() -> service.log("event", "INFO", "dropped")).doesNotThrowAnyException();
+        assertThatCode(() -> service.log("event", "INFO", "slow")).doesNotThrowAnyException();
+        assertThat(TransactionSynchronizationManager.isSynchronizationActive()).isFalse();
+    }
 }
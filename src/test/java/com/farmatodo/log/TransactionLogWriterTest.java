@@ -0,0 +1,107 @@
+package com.farmatodo.log;
+
+import com.farmatodo.batch.OverflowPolicy;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("TransactionLogWriter")
+class TransactionLogWriterTest {
+
+    @Mock
+    private JdbcTemplate jdbc;
+
+    private SimpleMeterRegistry meterRegistry;
+    private TransactionLogWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        writer = new TransactionLogWriter(jdbc, new ObjectMapper(), meterRegistry, 100, 50,
+                Duration.ofMillis(10), OverflowPolicy.DROP, 10, Duration.ofMillis(10));
+    }
+
+    @AfterEach
+    void tearDown() {
+        writer.destroy();
+    }
+
+    private static TransactionLog entry(String txId, Map<String, Object> payload) {
+        return new TransactionLog(txId, "order_created", "INFO", "Order created", payload, Instant.now());
+    }
+
+    @Test
+    @DisplayName("insert escribe el lote con un único INSERT multi-fila y payload jsonb")
+    void insert_usesSingleMultiRowStatement() {
+        var first = new TransactionLogWriter.Entry(entry("tx-1", Map.of("orderId", "abc")), new CompletableFuture<>());
+        var second = new TransactionLogWriter.Entry(entry("tx-2", null), new CompletableFuture<>());
+
+        writer.insert(List.of(first, second));
+
+        var sql = ArgumentCaptor.forClass(String.class);
+        var args = ArgumentCaptor.forClass(Object[].class);
+        verify(jdbc).update(sql.capture(), args.capture());
+        assertThat(sql.getValue())
+                .startsWith("INSERT INTO transaction_logs (id, tx_id, event_type, level, message, payload, created_at) VALUES ")
+                .endsWith("(?, ?, ?, ?, ?, ?::jsonb, ?), (?, ?, ?, ?, ?, ?::jsonb, ?)");
+        assertThat(args.getValue()).hasSize(14);
+        assertThat(args.getValue()[1]).isEqualTo("tx-1");
+        assertThat(args.getValue()[5]).isEqualTo("{\"orderId\":\"abc\"}");
+        assertThat(args.getValue()[12]).isNull();
+        assertThat(first.written()).isCompleted();
+        assertThat(second.written()).isCompleted();
+        assertThat(meterRegistry.get("transaction_log.lag").timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("append completa el futuro cuando el drenado escribe el evento")
+    void append_completesWhenWritten() throws Exception {
+        var written = writer.append(entry("tx-1", null));
+
+        written.get(1, TimeUnit.SECONDS);
+        verify(jdbc).update(anyString(), any(Object[].class));
+    }
+
+    @Test
+    @DisplayName("si el lote falla, los futuros de sus eventos fallan y se cuenta en failed")
+    void append_failedBatchFailsFutures() {
+        when(jdbc.update(anyString(), any(Object[].class))).thenThrow(new DataAccessResourceFailureException("down"));
+
+        var written = writer.append(entry("tx-1", null));
+        writer.destroy();
+
+        assertThat(written).isCompletedExceptionally();
+        assertThat(meterRegistry.get("transaction_log.failed").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("con el writer cerrado el evento se descarta y su futuro falla")
+    void append_afterClose_isDropped() {
+        writer.destroy();
+
+        assertThat(writer.append(entry("tx-1", null))).isCompletedExceptionally();
+        assertThat(meterRegistry.get("transaction_log.dropped").counter().count()).isEqualTo(1);
+    }
+}
@@ -7,33 +7,39 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
+
+import java.util.concurrent.CompletableFuture;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 @DisplayName("EmailService")
 class EmailServiceTest {
 
     @Mock
-    private JavaMailSender mailSender;
+    private MailDeliveryPipeline pipeline;
 
     private EmailService service;
 
     @BeforeEach
     void setUp() {
-        service = new EmailService(mailSender);
+        service = new EmailService(pipeline, null);
     }
 
     @Test
     @DisplayName("sendPaymentFailed envía email con subject y texto correctos")
     void sendPaymentFailed() {
-        service.sendPaymentFailed("a@a.com", "order-123", "Card declined");
+        when(pipeline.submit(any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        assertThat(service.sendPaymentFailed("a@a.com", "order-123", "Card declined")).isCompleted();
 
         ArgumentCaptor<SimpleMailMessage> captor = ArgumentCaptor.forClass(SimpleMailMessage.class);
-        verify(mailSender).send(captor.capture());
+        verify(pipeline).submit(captor.capture());
 
         SimpleMailMessage msg = captor.getValue();
         assertThat(msg.getTo()).containsExactly("a@a.com");
@@ -44,14 +50,24 @@ class EmailServiceTest {
     @Test
     @DisplayName("sendPaymentSuccess envía email con total")
     void sendPaymentSuccess() {
+        when(pipeline.submit(any())).thenReturn(CompletableFuture.completedFuture(null));
+
         service.sendPaymentSuccess("b@b.com", "order-456", "150.00");
 
         ArgumentCaptor<SimpleMailMessage> captor = ArgumentCaptor.forClass(SimpleMailMessage.class);
-        verify(mailSender).send(captor.capture());
+        verify(pipeline).submit(captor.capture());
 
         SimpleMailMessage msg = captor.getValue();
         assertThat(msg.getTo()).containsExactly("b@b.com");
         assertThat(msg.getSubject()).isEqualTo("Pago exitoso - Pedido order-456");
         assertThat(msg.getText()).contains("150.00");
     }
+
+    @Test
+    @DisplayName("un envío fallido se propaga en el future")
+    void sendFailure_propagates() {
+        when(pipeline.submit(any())).thenReturn(CompletableFuture.failedFuture(new MailSendException("down")));
+
+        assertThat(service.sendPaymentFailed("a@a.com", "order-1", "x")).isCompletedExceptionally();
+    }
 }
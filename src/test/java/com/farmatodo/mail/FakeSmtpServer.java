@@ -0,0 +1,142 @@
+package com.farmatodo.mail;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal in-process SMTP server for tests: accepts every message, counts sessions, and can
+ * reject a recipient domain (550), drop sessions with a 421 after DATA, or slow DATA down to
+ * observe how many connections deliver to the same domain at once.
+ */
+class FakeSmtpServer implements AutoCloseable {
+
+    private final ServerSocket server;
+    private final Thread acceptor;
+
+    final AtomicInteger sessions = new AtomicInteger();
+    final List<String> delivered = new CopyOnWriteArrayList<>();
+    final Map<String, AtomicInteger> maxConcurrentByDomain = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> activeByDomain = new ConcurrentHashMap<>();
+    private final AtomicInteger failNextData = new AtomicInteger();
+    private volatile String rejectedDomain;
+    private volatile long dataDelayMillis;
+
+    FakeSmtpServer() throws IOException {
+        server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        acceptor = new Thread(this::accept, "fake-smtp");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    int port() {
+        return server.getLocalPort();
+    }
+
+    void rejectDomain(String domain) {
+        this.rejectedDomain = domain;
+    }
+
+    void failNextData(int times) {
+        failNextData.set(times);
+    }
+
+    void dataDelay(long millis) {
+        this.dataDelayMillis = millis;
+    }
+
+    private void accept() {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                sessions.incrementAndGet();
+                var t = new Thread(() -> session(socket), "fake-smtp-session");
+                t.setDaemon(true);
+                t.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void session(Socket socket) {
+        try (socket;
+             var in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+             var out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.US_ASCII)) {
+            reply(out, "220 fake ESMTP");
+            String recipient = null;
+            String line;
+            while ((line = in.readLine()) != null) {
+                String command = line.toUpperCase(Locale.ROOT);
+                if (command.startsWith("EHLO") || command.startsWith("HELO")) {
+                    reply(out, "250 fake");
+                } else if (command.startsWith("MAIL FROM")) {
+                    recipient = null;
+                    reply(out, "250 OK");
+                } else if (command.startsWith("RCPT TO")) {
+                    String address = line.substring(line.indexOf('<') + 1, line.lastIndexOf('>'));
+                    if (rejectedDomain != null && address.endsWith("@" + rejectedDomain)) {
+                        reply(out, "550 mailbox unavailable");
+                    } else {
+                        recipient = address;
+                        reply(out, "250 OK");
+                    }
+                } else if (command.equals("DATA")) {
+                    reply(out, "354 end with .");
+                    while (!".".equals(in.readLine())) {
+                        // discard the message body
+                    }
+                    if (failNextData.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                        reply(out, "421 service not available");
+                        return;
+                    }
+                    receive(recipient);
+                    reply(out, "250 queued");
+                } else if (command.equals("QUIT")) {
+                    reply(out, "221 bye");
+                    return;
+                } else {
+                    reply(out, "250 OK");
+                }
+            }
+        } catch (IOException | InterruptedException e) {
+            // client went away
+        }
+    }
+
+    private void receive(String recipient) throws InterruptedException {
+        String domain = recipient.substring(recipient.indexOf('@') + 1);
+        var active = activeByDomain.computeIfAbsent(domain, d -> new AtomicInteger());
+        int now = active.incrementAndGet();
+        maxConcurrentByDomain.computeIfAbsent(domain, d -> new AtomicInteger()).accumulateAndGet(now, Math::max);
+        try {
+            if (dataDelayMillis > 0) {
+                Thread.sleep(dataDelayMillis);
+            }
+            delivered.add(recipient);
+        } finally {
+            active.decrementAndGet();
+        }
+    }
+
+    private static void reply(PrintWriter out, String line) {
+        out.print(line + "\r\n");
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+    }
+}
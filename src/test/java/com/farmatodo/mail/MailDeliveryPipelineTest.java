@@ -0,0 +1,164 @@
+package com.farmatodo.mail;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.SendFailedException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("MailDeliveryPipeline")
+class MailDeliveryPipelineTest {
+
+    private FakeSmtpServer smtp;
+    private SimpleMeterRegistry meterRegistry;
+    private MailDeliveryPipeline pipeline;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        smtp = new FakeSmtpServer();
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (pipeline != null) {
+            pipeline.destroy();
+        }
+        smtp.close();
+    }
+
+    private MailDeliveryPipeline pipeline(int connections, int perDomain, int maxAttempts) {
+        var sender = new JavaMailSenderImpl();
+        sender.setHost("localhost");
+        sender.setPort(smtp.port());
+        var props = new Properties();
+        props.put("mail.smtp.timeout", "5000");
+        props.put("mail.smtp.connectiontimeout", "5000");
+        sender.setJavaMailProperties(props);
+        pipeline = new MailDeliveryPipeline(sender, meterRegistry, connections, 20, perDomain, maxAttempts,
+                Duration.ofMillis(20));
+        return pipeline;
+    }
+
+    private static SimpleMailMessage message(String to) {
+        var msg = new SimpleMailMessage();
+        msg.setFrom("noreply@farmatodo.com");
+        msg.setTo(to);
+        msg.setSubject("Pedido");
+        msg.setText("Hola");
+        return msg;
+    }
+
+    private static void awaitAll(List<CompletableFuture<Void>> sends) throws Exception {
+        CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    @DisplayName("envía muchos mensajes reutilizando unas pocas conexiones SMTP")
+    void submit_reusesPooledConnections() throws Exception {
+        pipeline(2, 2, 3);
+        var sends = new ArrayList<CompletableFuture<Void>>();
+        for (int i = 0; i < 60; i++) {
+            sends.add(pipeline.submit(message("user" + i + "@a.com")));
+        }
+
+        awaitAll(sends);
+
+        assertThat(smtp.delivered).hasSize(60);
+        assertThat(smtp.sessions.get()).isLessThanOrEqualTo(2);
+        assertThat(meterRegistry.get("mail.sent").counter().count()).isEqualTo(60);
+        assertThat(meterRegistry.get("mail.connections.opened").counter().count()).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("limita las conexiones simultáneas por dominio sin bloquear a los demás dominios")
+    void submit_respectsPerDomainConcurrency() throws Exception {
+        pipeline(4, 1, 3);
+        smtp.dataDelay(10);
+        var sends = new ArrayList<CompletableFuture<Void>>();
+        for (int i = 0; i < 45; i++) {
+            sends.add(pipeline.submit(message("user" + i + "@slow.com")));
+            sends.add(pipeline.submit(message("user" + i + "@other.com")));
+        }
+
+        awaitAll(sends);
+
+        assertThat(smtp.delivered).hasSize(90);
+        assertThat(smtp.maxConcurrentByDomain.get("slow.com").get()).isEqualTo(1);
+        assertThat(smtp.maxConcurrentByDomain.get("other.com").get()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("un destinatario rechazado (5xx) falla sin reintentos y no afecta al resto del lote")
+    void rejectedRecipient_failsWithoutRetry() throws Exception {
+        pipeline(1, 1, 3);
+        smtp.rejectDomain("bad.com");
+
+        var rejected = pipeline.submit(message("x@bad.com"));
+        var accepted = pipeline.submit(message("y@good.com"));
+
+        assertThatThrownBy(() -> rejected.get(10, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(SendFailedException.class);
+        accepted.get(10, TimeUnit.SECONDS);
+        assertThat(smtp.delivered).containsExactly("y@good.com");
+        assertThat(meterRegistry.get("mail.retried").counter().count()).isZero();
+        assertThat(meterRegistry.get("mail.failed").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("un fallo transitorio (421) reabre la conexión y reintenta el mensaje")
+    void transientFailure_isRetriedOnNewConnection() throws Exception {
+        pipeline(1, 1, 3);
+        smtp.failNextData(1);
+
+        pipeline.submit(message("a@a.com")).get(10, TimeUnit.SECONDS);
+
+        assertThat(smtp.delivered).containsExactly("a@a.com");
+        assertThat(smtp.sessions.get()).isEqualTo(2);
+        assertThat(meterRegistry.get("mail.retried").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("tras max-attempts fallos transitorios el mensaje falla")
+    void transientFailure_givesUpAfterMaxAttempts() {
+        pipeline(1, 1, 2);
+        smtp.failNextData(5);
+
+        var send = pipeline.submit(message("a@a.com"));
+
+        assertThatThrownBy(() -> send.get(10, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class);
+        assertThat(smtp.delivered).isEmpty();
+        assertThat(meterRegistry.get("mail.retried").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("mail.failed").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("al cerrarse rechaza los envíos nuevos")
+    void submit_afterDestroy_fails() {
+        pipeline(1, 1, 3).destroy();
+
+        assertThat(pipeline.submit(message("a@a.com"))).isCompletedExceptionally();
+    }
+
+    @Test
+    @DisplayName("agrupa por el dominio del primer destinatario, sin distinguir mayúsculas")
+    void domainOf_usesFirstRecipient() {
+        assertThat(MailDeliveryPipeline.domainOf(message("Juan@Ejemplo.COM"))).isEqualTo("ejemplo.com");
+        assertThat(MailDeliveryPipeline.domainOf(new SimpleMailMessage())).isEmpty();
+    }
+}
@@ -0,0 +1,80 @@
+package com.farmatodo.money;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Cart total of {@code lines} lines: the former {@link BigDecimal} stream (multiply and reduce per
+ * read), the same sum in {@link Money}, and reading the running total the cart now keeps.
+ * Allocation per operation comes from the GC profiler ({@code gc.alloc.rate.norm}). Run with
+ * {@code mvn -Pbenchmark test -Dbenchmark=MoneyBenchmark} (no Docker needed).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MoneyBenchmark {
+
+    @Param({"1", "10", "50"})
+    public int lines;
+
+    private BigDecimal[] decimalPrices;
+    private Money[] prices;
+    private int[] quantities;
+    private Money runningTotal;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        var random = ThreadLocalRandom.current();
+        decimalPrices = new BigDecimal[lines];
+        prices = new Money[lines];
+        quantities = new int[lines];
+        runningTotal = Money.ZERO;
+        for (int i = 0; i < lines; i++) {
+            // as loaded from numeric(19,2): whole pesos, scale 2
+            decimalPrices[i] = BigDecimal.valueOf(random.nextInt(1_000, 50_000)).setScale(Money.SCALE);
+            prices[i] = Money.of(decimalPrices[i]);
+            quantities[i] = random.nextInt(1, 5);
+            runningTotal = runningTotal.plus(prices[i].times(quantities[i]));
+        }
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimalSum() {
+        return IntStream.range(0, lines)
+                .mapToObj(i -> decimalPrices[i].multiply(BigDecimal.valueOf(quantities[i])))
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    @Benchmark
+    public Money moneySum() {
+        var total = Money.ZERO;
+        for (int i = 0; i < lines; i++) {
+            total = total.plus(prices[i].times(quantities[i]));
+        }
+        return total;
+    }
+
+    /** What a read does now: the total is a field, converted once for the response. */
+    @Benchmark
+    public BigDecimal runningTotal() {
+        return runningTotal.toBigDecimal();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(MoneyBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
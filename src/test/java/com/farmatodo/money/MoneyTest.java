@@ -0,0 +1,44 @@
+package com.farmatodo.money;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Money")
+class MoneyTest {
+
+    @Test
+    @DisplayName("convierte desde y hacia BigDecimal en centésimas sin perder valor")
+    void convertsToAndFromBigDecimal() {
+        assertThat(Money.of(new BigDecimal("3500")).minorUnits()).isEqualTo(350_000);
+        assertThat(Money.of(new BigDecimal("2.5")).minorUnits()).isEqualTo(250);
+        assertThat(Money.ofMinor(1).toBigDecimal()).isEqualTo(new BigDecimal("0.01"));
+        assertThat(Money.of(new BigDecimal("12500.00")).toString()).isEqualTo("12500.00");
+        assertThat(new MoneyConverter().convertToEntityAttribute(new MoneyConverter().convertToDatabaseColumn(Money.ofMinor(-75))))
+                .isEqualTo(Money.ofMinor(-75));
+        assertThat(new MoneyConverter().convertToDatabaseColumn(null)).isNull();
+        assertThat(new MoneyConverter().convertToEntityAttribute(null)).isNull();
+    }
+
+    @Test
+    @DisplayName("suma, resta y multiplica con aritmética entera")
+    void arithmetic() {
+        var price = Money.of(new BigDecimal("4200"));
+
+        assertThat(price.times(3)).isEqualTo(Money.of(new BigDecimal("12600")));
+        assertThat(price.plus(Money.ofMinor(50)).minus(price)).isEqualTo(Money.ofMinor(50));
+        assertThat(Money.ZERO.compareTo(price)).isNegative();
+    }
+
+    @Test
+    @DisplayName("rechaza fracciones de centavo y desbordamientos en lugar de redondear")
+    void rejectsLossOfPrecision() {
+        assertThatThrownBy(() -> Money.of(new BigDecimal("0.001"))).isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> Money.ofMinor(Long.MAX_VALUE).plus(Money.ofMinor(1))).isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> Money.ofMinor(Long.MAX_VALUE / 2).times(3)).isInstanceOf(ArithmeticException.class);
+    }
+}
@@ -0,0 +1,135 @@
+package com.farmatodo.order;
+
+import com.farmatodo.BenchmarkContext;
+import com.farmatodo.cart.Cart;
+import com.farmatodo.cart.CartItem;
+import com.farmatodo.cart.CartRepository;
+import com.farmatodo.money.Money;
+import com.farmatodo.order.dto.CreateOrderRequest;
+import com.farmatodo.product.Product;
+import com.farmatodo.product.ProductRepository;
+import com.farmatodo.token.TokenExistenceCache;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checkout ({@link OrderService#createOrderAndCart}) with the token existence cache on and off,
+ * against 100k stored tokens: a valid token, and an unknown one that the Bloom filter rejects.
+ * Run with {@code mvn -Pbenchmark test -Dbenchmark=CheckoutBenchmark} (requires Docker).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CheckoutBenchmark {
+
+    private static final int TOKENS = 100_000;
+    private static final int CART_LINES = 3;
+
+    @Param({"true", "false"})
+    public boolean tokenCache;
+
+    private BenchmarkContext ctx;
+    private OrderService orderService;
+    private CartRepository cartRepo;
+    private List<UUID> productIds;
+    private List<String> tokens;
+    private CreateOrderRequest unknownTokenRequest;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ctx = BenchmarkContext.start("app.token.cache.enabled=" + tokenCache);
+        orderService = ctx.bean(OrderService.class);
+        cartRepo = ctx.bean(CartRepository.class);
+        var productRepo = ctx.bean(ProductRepository.class);
+        productIds = new ArrayList<>();
+        for (int i = 0; i < CART_LINES; i++) {
+            productIds.add(productRepo.save(new Product("P" + i, "D", BigDecimal.ONE, Integer.MAX_VALUE, Instant.now())).getId());
+        }
+        seedTokens();
+        ctx.bean(TokenExistenceCache.class).rebuild();
+        unknownTokenRequest = request(newCart(), UUID.randomUUID().toString());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ctx.close();
+    }
+
+    /** A fresh active cart per call; checkout closes the cart it consumes. */
+    @State(Scope.Thread)
+    public static class Checkout {
+        CreateOrderRequest request;
+
+        @Setup(Level.Invocation)
+        public void prepare(CheckoutBenchmark bench) {
+            var token = bench.tokens.get(ThreadLocalRandom.current().nextInt(bench.tokens.size()));
+            request = bench.request(bench.newCart(), token);
+        }
+    }
+
+    @Benchmark
+    public Order validToken(Checkout checkout) {
+        return orderService.createOrderAndCart(checkout.request);
+    }
+
+    @Benchmark
+    public String unknownToken() {
+        unknownTokenRequest.setToken(UUID.randomUUID().toString());
+        try {
+            orderService.createOrderAndCart(unknownTokenRequest);
+            throw new IllegalStateException("unknown token was accepted");
+        } catch (OrderException e) {
+            return e.getMessage();
+        }
+    }
+
+    UUID newCart() {
+        var customerId = UUID.randomUUID();
+        var cart = new Cart(customerId, Cart.CartStatus.ACTIVE, Instant.now());
+        for (UUID productId : productIds) {
+            cart.addItem(productId, 1, Money.of(BigDecimal.ONE));
+        }
+        cartRepo.save(cart);
+        return customerId;
+    }
+
+    CreateOrderRequest request(UUID customerId, String token) {
+        var req = new CreateOrderRequest();
+        req.setCustomerId(customerId);
+        req.setDeliveryAddress("Calle 1 #2-3");
+        req.setToken(token);
+        return req;
+    }
+
+    private void seedTokens() {
+        var now = Timestamp.from(Instant.now());
+        tokens = new ArrayList<>(TOKENS);
+        List<Object[]> rows = new ArrayList<>(TOKENS);
+        for (int i = 0; i < TOKENS; i++) {
+            var token = UUID.randomUUID();
+            tokens.add(token.toString());
+            rows.add(new Object[]{token, new byte[45], "**** **** **** 1111", now});
+        }
+        ctx.jdbc().batchUpdate(
+                "INSERT INTO card_token_records (token, sealed, masked_pan, created_at) VALUES (?, ?, ?, ?)", rows);
+        ctx.jdbc().execute("ANALYZE card_token_records");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CheckoutBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,87 @@
+package com.farmatodo.order;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("CheckoutWorkerPool")
+class CheckoutWorkerPoolTest {
+
+    private CheckoutWorkerPool pool;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        MDC.clear();
+        pool.destroy();
+    }
+
+    @Test
+    @DisplayName("ejecuta en un hilo checkout-* propagando el MDC del request")
+    void submit_runsOnWorkerWithCallerMdc() throws Exception {
+        pool = new CheckoutWorkerPool(2, 10, new SimpleMeterRegistry());
+        MDC.put("tx_id", "tx-123");
+        var seen = new CompletableFuture<String>();
+
+        pool.submit(() -> seen.complete(Thread.currentThread().getName() + "|" + MDC.get("tx_id")));
+
+        assertThat(seen.get(5, TimeUnit.SECONDS)).startsWith("checkout-").endsWith("|tx-123");
+    }
+
+    @Test
+    @DisplayName("con la cola llena el hilo que envía ejecuta la tarea")
+    void submit_runsOnCallerWhenSaturated() throws Exception {
+        pool = new CheckoutWorkerPool(1, 1, new SimpleMeterRegistry());
+        var release = new CountDownLatch(1);
+        pool.submit(() -> await(release));
+        pool.submit(() -> await(release));
+
+        var ranOn = new String[1];
+        pool.submit(() -> ranOn[0] = Thread.currentThread().getName());
+        release.countDown();
+
+        assertThat(ranOn[0]).isEqualTo(Thread.currentThread().getName());
+    }
+
+    @Test
+    @DisplayName("trySubmit con la cola llena devuelve false sin ejecutar la tarea")
+    void trySubmit_refusesWhenSaturated() throws Exception {
+        pool = new CheckoutWorkerPool(1, 1, new SimpleMeterRegistry());
+        var release = new CountDownLatch(1);
+        pool.submit(() -> await(release));
+        pool.submit(() -> await(release));
+
+        var ran = new CompletableFuture<Boolean>();
+        assertThat(pool.trySubmit(() -> ran.complete(true))).isFalse();
+        release.countDown();
+
+        assertThat(ran).isNotDone();
+    }
+
+    @Test
+    @DisplayName("una tarea que falla no tumba al worker")
+    void submit_survivesFailingTask() throws Exception {
+        pool = new CheckoutWorkerPool(1, 10, new SimpleMeterRegistry());
+        var done = new CompletableFuture<Boolean>();
+
+        pool.submit(() -> { throw new IllegalStateException("boom"); });
+        pool.submit(() -> done.complete(true));
+
+        assertThat(done.get(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,7 +1,13 @@
 package com.farmatodo.order;
 
 import com.farmatodo.TestUtils;
+import com.farmatodo.config.IdempotencyFilter;
+import com.farmatodo.idempotency.IdempotencyConflictException;
+import com.farmatodo.idempotency.IdempotencyService;
+import com.farmatodo.idempotency.IdempotentResponse;
+import com.farmatodo.money.Money;
 import com.farmatodo.order.dto.CreateOrderRequest;
+import com.farmatodo.order.dto.OrderPage;
 import com.farmatodo.order.dto.OrderResponse;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -14,9 +20,14 @@ import org.springframework.test.web.servlet.MockMvc;
 import java.math.BigDecimal;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicReference;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.when;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -27,6 +38,9 @@ class OrderControllerTest {
     @Autowired
     private MockMvc mvc;
 
+    @MockBean
+    private IdempotencyService idempotencyService;
+
     @MockBean
     private OrderService orderService;
 
@@ -41,15 +55,15 @@ class OrderControllerTest {
         var order = new com.farmatodo.order.Order(
                 req.getCustomerId(), UUID.randomUUID(),
                 com.farmatodo.order.Order.OrderStatus.PAYMENT_PENDING,
-                BigDecimal.valueOf(100), "Calle 1 #2-3", req.getToken(),
+                Money.of(BigDecimal.valueOf(100)), "Calle 1 #2-3", req.getToken(),
                 java.time.Instant.now(), "tx"
         );
         TestUtils.setId(order);
 
         var response = new OrderResponse(
                 order.getId(), order.getCustomerId(), order.getCartId(),
-                order.getStatus(), List.of(), order.getTotalAmount(),
-                order.getDeliveryAddress(), order.getTokenId()
+                order.getStatus(), List.of(), order.getTotalAmount().toBigDecimal(),
+                order.getDeliveryAddress(), order.getTokenId(), order.getCreatedAt()
         );
 
         when(orderService.create(any())).thenReturn(order);
@@ -66,4 +80,158 @@ class OrderControllerTest {
                 .andExpect(jsonPath("$.orderId").exists())
                 .andExpect(jsonPath("$.status").value("PAYMENT_PENDING"));
     }
+
+    @Test
+    @DisplayName("POST /orders en modo async retorna 202 y Location para consultar el estado")
+    void create_async_returns202() throws Exception {
+        var order = new Order(UUID.randomUUID(), UUID.randomUUID(), Order.OrderStatus.PAYMENT_PENDING,
+                Money.of(BigDecimal.TEN), "Calle 1 #2-3", "tok", java.time.Instant.now(), "tx");
+        TestUtils.setId(order);
+        var response = new OrderResponse(order.getId(), order.getCustomerId(), order.getCartId(),
+                order.getStatus(), List.of(), order.getTotalAmount().toBigDecimal(), order.getDeliveryAddress(), order.getTokenId(),
+                order.getCreatedAt());
+
+        when(orderService.create(any())).thenReturn(order);
+        when(orderService.toResponse(any())).thenReturn(response);
+        when(orderService.checkoutMode()).thenReturn(CheckoutMode.ASYNC);
+
+        mvc.perform(post("/orders")
+                        .header(TestUtils.API_KEY_HEADER, TestUtils.API_KEY_DEFAULT)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"customerId":"%s","deliveryAddress":"Calle 1 #2-3","token":"tok"}
+                                """.formatted(order.getCustomerId())))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/orders/" + order.getId()))
+                .andExpect(jsonPath("$.status").value("PAYMENT_PENDING"));
+    }
+
+    @Test
+    @DisplayName("GET /orders/{id} retorna el estado actual y 404 si no existe")
+    void get_returnsOrderOr404() throws Exception {
+        var id = UUID.randomUUID();
+        var response = new OrderResponse(id, UUID.randomUUID(), UUID.randomUUID(), Order.OrderStatus.PAID,
+                List.of(), BigDecimal.TEN, "Calle 1", "tok", java.time.Instant.now());
+        when(orderService.get(id)).thenReturn(response);
+        var missing = UUID.randomUUID();
+        when(orderService.get(missing)).thenThrow(new OrderNotFoundException(missing));
+
+        mvc.perform(get("/orders/" + id).header(TestUtils.API_KEY_HEADER, TestUtils.API_KEY_DEFAULT))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("PAID"));
+        mvc.perform(get("/orders/" + missing).header(TestUtils.API_KEY_HEADER, TestUtils.API_KEY_DEFAULT))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("GET /orders?customerId= retorna la página del historial con nextCursor")
+    void history_returnsPage() throws Exception {
+        var customerId = UUID.randomUUID();
+        var cursor = new OrderCursor(java.time.Instant.parse("2026-01-01T00:00:00Z"), UUID.randomUUID());
+        var response = new OrderResponse(UUID.randomUUID(), customerId, UUID.randomUUID(), Order.OrderStatus.PAID,
+                List.of(), BigDecimal.TEN, "Calle 1", "tok", java.time.Instant.now());
+        when(orderService.history(customerId, cursor, 5))
+                .thenReturn(new OrderPage(List.of(response), "next-token"));
+
+        mvc.perform(get("/orders")
+                        .param("customerId", customerId.toString())
+                        .param("limit", "5")
+                        .param("after", cursor.encode())
+                        .header(TestUtils.API_KEY_HEADER, TestUtils.API_KEY_DEFAULT))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].status").value("PAID"))
+                .andExpect(jsonPath("$.nextCursor").value("next-token"));
+    }
+
+    @Test
+    @DisplayName("GET /orders?customerId= con cursor inválido retorna 400")
+    void history_invalidCursor_returns400() throws Exception {
+        mvc.perform(get("/orders")
+                        .param("customerId", UUID.randomUUID().toString())
+                        .param("after", "not-a-cursor")
+                        .header(TestUtils.API_KEY_HEADER, TestUtils.API_KEY_DEFAULT))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("POST /orders con Idempotency-Key ya completada reproduce la respuesta sin crear la orden")
+    void create_replaysStoredResponse() throws Exception {
+        var stored = new IdempotentResponse("hash", 201, "application/json", "/orders/abc",
+                "{\"status\":\"PAID\"}".getBytes());
+        when(idempotencyService.execute(eq("POST /orders:key-1"), any(), any()))
+                .thenReturn(new IdempotencyService.Outcome(stored, true));
+
+        mvc.perform(post("/orders")
+                        .header(TestUtils.API_KEY_HEADER, TestUtils.API_KEY_DEFAULT)
+                        .header(IdempotencyFilter.IDEMPOTENCY_KEY, "key-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{}"))
+                .andExpect(status().isCreated())
+                .andExpect(header().string(IdempotencyFilter.REPLAYED, "true"))
+                .andExpect(header().string("Location", "/orders/abc"))
+                .andExpect(jsonPath("$.status").value("PAID"));
+        verify(orderService, never()).create(any());
+    }
+
+    @Test
+    @DisplayName("POST /orders con Idempotency-Key nueva ejecuta la petición y captura la respuesta")
+    void create_firstExecution_capturesResponse() throws Exception {
+        var order = new Order(UUID.randomUUID(), UUID.randomUUID(), Order.OrderStatus.PAID,
+                Money.of(BigDecimal.TEN), "Calle 1 #2-3", "tok", java.time.Instant.now(), "tx");
+        TestUtils.setId(order);
+        var response = new OrderResponse(order.getId(), order.getCustomerId(), order.getCartId(),
+                order.getStatus(), List.of(), order.getTotalAmount().toBigDecimal(), order.getDeliveryAddress(), order.getTokenId(),
+                order.getCreatedAt());
+        when(orderService.create(any())).thenReturn(order);
+        when(orderService.toResponse(any())).thenReturn(response);
+        var captured = new AtomicReference<IdempotentResponse>();
+        when(idempotencyService.execute(any(), any(), any())).thenAnswer(inv -> {
+            Callable<IdempotentResponse> action = inv.getArgument(2);
+            captured.set(action.call());
+            return new IdempotencyService.Outcome(captured.get(), false);
+        });
+
+        mvc.perform(post("/orders")
+                        .header(TestUtils.API_KEY_HEADER, TestUtils.API_KEY_DEFAULT)
+                        .header(IdempotencyFilter.IDEMPOTENCY_KEY, "key-2")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"customerId":"%s","deliveryAddress":"Calle 1 #2-3","token":"tok"}
+                                """.formatted(order.getCustomerId())))
+                .andExpect(status().isCreated())
+                .andExpect(header().doesNotExist(IdempotencyFilter.REPLAYED))
+                .andExpect(jsonPath("$.status").value("PAID"));
+
+        assertThat(captured.get().status()).isEqualTo(201);
+        assertThat(captured.get().location()).isEqualTo("/orders/" + order.getId());
+        assertThat(new String(captured.get().body())).contains("\"PAID\"");
+    }
+
+    @Test
+    @DisplayName("POST /orders con Idempotency-Key reutilizada con otro cuerpo retorna 422")
+    void create_keyReused_returns422() throws Exception {
+        when(idempotencyService.execute(any(), any(), any())).thenThrow(new IdempotencyConflictException(
+                IdempotencyConflictException.Reason.KEY_REUSED, "different request"));
+
+        mvc.perform(post("/orders")
+                        .header(TestUtils.API_KEY_HEADER, TestUtils.API_KEY_DEFAULT)
+                        .header(IdempotencyFilter.IDEMPOTENCY_KEY, "key-3")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{}"))
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(jsonPath("$.detail").value("different request"));
+        verify(orderService, never()).create(any());
+    }
+
+    @Test
+    @DisplayName("POST /orders con Idempotency-Key demasiado larga retorna 400")
+    void create_keyTooLong_returns400() throws Exception {
+        mvc.perform(post("/orders")
+                        .header(TestUtils.API_KEY_HEADER, TestUtils.API_KEY_DEFAULT)
+                        .header(IdempotencyFilter.IDEMPOTENCY_KEY, "k".repeat(256))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{}"))
+                .andExpect(status().isBadRequest());
+        verifyNoInteractions(idempotencyService);
+    }
 }
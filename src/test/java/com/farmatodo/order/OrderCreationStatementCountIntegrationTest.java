@@ -0,0 +1,118 @@
+package com.farmatodo.order;
+
+import com.farmatodo.StatementCounter;
+import com.farmatodo.cart.Cart;
+import com.farmatodo.cart.CartItem;
+import com.farmatodo.cart.CartRepository;
+import com.farmatodo.money.Money;
+import com.farmatodo.order.dto.CreateOrderRequest;
+import com.farmatodo.product.Product;
+import com.farmatodo.product.ProductRepository;
+import com.farmatodo.token.CardToken;
+import com.farmatodo.token.CardTokenStore;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@Testcontainers
+@ActiveProfiles("test")
+@Tag("integration")
+@Import(StatementCounter.class)
+@DisplayName("Pedido - Integración número de sentencias SQL")
+class OrderCreationStatementCountIntegrationTest {
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15")
+            .withDatabaseName("farmatodo")
+            .withUsername("farmatodo")
+            .withPassword("farmatodo_pwd");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("ENCRYPTION_KEY", () -> "QmFja2VuZEVuY3J5cHRpb25LZXlGb3JERVZfMjU2X0dDTQ==");
+    }
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private CartRepository cartRepo;
+
+    @Autowired
+    private ProductRepository productRepo;
+
+    @Autowired
+    private CardTokenStore tokenStore;
+
+    @Autowired
+    private StatementCounter statements;
+
+    private CreateOrderRequest requestForCart(int lines, int stock) {
+        var customerId = UUID.randomUUID();
+        var cart = new Cart(customerId, Cart.CartStatus.ACTIVE, Instant.now());
+        for (int i = 0; i < lines; i++) {
+            var product = productRepo.save(new Product("P" + i, "D", BigDecimal.ONE, stock, Instant.now()));
+            cart.addItem(product.getId(), 2, Money.of(BigDecimal.ONE));
+        }
+        cartRepo.save(cart);
+
+        var token = UUID.randomUUID();
+        tokenStore.save(new CardToken(token, new byte[29], "************1111", Instant.now(), "tx"));
+
+        var req = new CreateOrderRequest();
+        req.setCustomerId(customerId);
+        req.setDeliveryAddress("Calle 1 #2-3");
+        req.setToken(token.toString());
+        return req;
+    }
+
+    private int statementsFor(CreateOrderRequest req) {
+        statements.reset();
+        orderService.createOrderAndCart(req);
+        return statements.count();
+    }
+
+    @Test
+    @DisplayName("el número de sentencias no crece con el tamaño del carrito")
+    void statementCount_isConstantInCartSize() {
+        int small = statementsFor(requestForCart(1, 10));
+        int large = statementsFor(requestForCart(40, 10));
+
+        assertThat(large).isEqualTo(small);
+    }
+
+    @Test
+    @DisplayName("un carrito grande sin stock se rechaza con una sola consulta de validación")
+    void shortage_reportsAllLinesAtOnce() {
+        var req = requestForCart(30, 1);
+
+        statements.reset();
+        assertThatThrownBy(() -> orderService.createOrderAndCart(req))
+                .isInstanceOf(OrderException.class)
+                .hasMessageContaining("P0")
+                .hasMessageContaining("P29");
+        int rejected = statements.count();
+
+        assertThat(rejected).isLessThanOrEqualTo(statementsFor(requestForCart(1, 10)));
+    }
+}
@@ -3,30 +3,40 @@ package com.farmatodo.order;
 import com.farmatodo.TestUtils;
 import com.farmatodo.cart.Cart;
 import com.farmatodo.cart.CartItem;
+import com.farmatodo.cart.CartItemRepository;
 import com.farmatodo.cart.CartRepository;
+import com.farmatodo.cart.CartStockShortage;
+import com.farmatodo.cart.WriteBehindCartStore;
 import com.farmatodo.log.LogService;
+import com.farmatodo.money.Money;
 import com.farmatodo.order.dto.CreateOrderRequest;
-import com.farmatodo.payment.PaymentService;
-import com.farmatodo.product.Product;
-import com.farmatodo.product.ProductRepository;
-import com.farmatodo.token.CardTokenRepository;
+import com.farmatodo.payment.PaymentRetryScheduler;
+import com.farmatodo.token.CardTokenStore;
+import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.slf4j.MDC;
+import org.springframework.data.domain.Pageable;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
@@ -38,22 +48,30 @@ class OrderServiceTest {
     private OrderRepository orderRepo;
 
     @Mock
-    private OrderItemRepository orderItemRepo;
+    private CartRepository cartRepo;
 
     @Mock
-    private CartRepository cartRepo;
+    private CartItemRepository cartItemRepo;
 
     @Mock
-    private ProductRepository productRepo;
+    private WriteBehindCartStore cartStore;
 
     @Mock
-    private CardTokenRepository tokenRepo;
+    private CardTokenStore tokenStore;
 
     @Mock
     private LogService logService;
 
     @Mock
-    private PaymentService paymentService;
+    private PaymentRetryScheduler paymentScheduler;
+
+    @Mock
+    private CheckoutWorkerPool checkoutPool;
+
+    @Mock
+    private EntityManager entityManager;
+
+    private final OrderReadCache readCache = new OrderReadCache(100, Duration.ofMinutes(5), new SimpleMeterRegistry());
 
     private OrderService service;
     private UUID customerId;
@@ -68,12 +86,14 @@ class OrderServiceTest {
         productId = UUID.randomUUID();
 
         OrderService realService = new OrderService(
-                orderRepo, orderItemRepo, cartRepo, productRepo,
-                tokenRepo, logService, paymentService, null
+                orderRepo, cartRepo, cartItemRepo, cartStore,
+                tokenStore, logService, paymentScheduler, checkoutPool, CheckoutMode.SYNC, readCache, entityManager, 100,
+                Duration.ofSeconds(10), null
         );
         service = new OrderService(
-                orderRepo, orderItemRepo, cartRepo, productRepo,
-                tokenRepo, logService, paymentService, realService
+                orderRepo, cartRepo, cartItemRepo, cartStore,
+                tokenStore, logService, paymentScheduler, checkoutPool, CheckoutMode.SYNC, readCache, entityManager, 100,
+                Duration.ofSeconds(10), realService
         );
     }
 
@@ -94,7 +114,7 @@ class OrderServiceTest {
         assertThatThrownBy(() -> service.createOrderAndCart(validRequest("token-123")))
                 .isInstanceOf(OrderException.class)
                 .hasMessageContaining("No active cart");
-        verify(tokenRepo, never()).existsById(any());
+        verify(tokenStore, never()).exists(any());
     }
 
     @Test
@@ -115,12 +135,11 @@ class OrderServiceTest {
     void createOrderAndCart_throwsWhenInvalidToken() {
         var cart = new Cart(customerId, Cart.CartStatus.ACTIVE, Instant.now());
         TestUtils.setId(cart, cartId);
-        var item = new CartItem(cart, productId, 1, BigDecimal.TEN);
-        cart.getItems().add(item);
+        var item = cart.addItem(productId, 1, Money.of(BigDecimal.TEN));
 
         when(cartRepo.findByCustomerIdAndStatus(customerId, Cart.CartStatus.ACTIVE))
                 .thenReturn(Optional.of(cart));
-        when(tokenRepo.existsById("token-123")).thenReturn(false);
+        when(tokenStore.exists("token-123")).thenReturn(false);
 
         assertThatThrownBy(() -> service.createOrderAndCart(validRequest("token-123")))
                 .isInstanceOf(OrderException.class)
@@ -132,13 +151,13 @@ class OrderServiceTest {
     void createOrderAndCart_throwsWhenProductNotFound() {
         var cart = new Cart(customerId, Cart.CartStatus.ACTIVE, Instant.now());
         TestUtils.setId(cart, cartId);
-        var item = new CartItem(cart, productId, 1, BigDecimal.TEN);
-        cart.getItems().add(item);
+        var item = cart.addItem(productId, 1, Money.of(BigDecimal.TEN));
 
         when(cartRepo.findByCustomerIdAndStatus(customerId, Cart.CartStatus.ACTIVE))
                 .thenReturn(Optional.of(cart));
-        when(tokenRepo.existsById("token-123")).thenReturn(true);
-        when(productRepo.findById(productId)).thenReturn(Optional.empty());
+        when(tokenStore.exists("token-123")).thenReturn(true);
+        when(cartItemRepo.findStockShortages(cartId)).thenReturn(List.of(
+                new CartStockShortage(productId, null, 1, null)));
 
         assertThatThrownBy(() -> service.createOrderAndCart(validRequest("token-123")))
                 .isInstanceOf(OrderException.class)
@@ -150,18 +169,40 @@ class OrderServiceTest {
     void createOrderAndCart_throwsWhenInsufficientStock() {
         var cart = new Cart(customerId, Cart.CartStatus.ACTIVE, Instant.now());
         TestUtils.setId(cart, cartId);
-        var item = new CartItem(cart, productId, 10, BigDecimal.TEN);
-        cart.getItems().add(item);
+        var item = cart.addItem(productId, 10, Money.of(BigDecimal.TEN));
 
-        var product = new Product("Prod", "Desc", BigDecimal.TEN, 5, Instant.now());
         when(cartRepo.findByCustomerIdAndStatus(customerId, Cart.CartStatus.ACTIVE))
                 .thenReturn(Optional.of(cart));
-        when(tokenRepo.existsById("token-123")).thenReturn(true);
-        when(productRepo.findById(productId)).thenReturn(Optional.of(product));
+        when(tokenStore.exists("token-123")).thenReturn(true);
+        when(cartItemRepo.findStockShortages(cartId)).thenReturn(List.of(
+                new CartStockShortage(productId, "Prod", 10, 5)));
 
         assertThatThrownBy(() -> service.createOrderAndCart(validRequest("token-123")))
                 .isInstanceOf(OrderException.class)
-                .hasMessageContaining("Insufficient stock");
+                .hasMessageContaining("Insufficient stock for product Prod: required 10, available 5");
+    }
+
+    @Test
+    @DisplayName("createOrderAndCart reporta todas las líneas sin stock en un solo error")
+    void createOrderAndCart_reportsEveryShortLine() {
+        var cart = new Cart(customerId, Cart.CartStatus.ACTIVE, Instant.now());
+        TestUtils.setId(cart, cartId);
+        var otherId = UUID.randomUUID();
+        cart.addItem(productId, 10, Money.of(BigDecimal.TEN));
+        cart.addItem(otherId, 1, Money.of(BigDecimal.TEN));
+
+        when(cartRepo.findByCustomerIdAndStatus(customerId, Cart.CartStatus.ACTIVE))
+                .thenReturn(Optional.of(cart));
+        when(tokenStore.exists("token-123")).thenReturn(true);
+        when(cartItemRepo.findStockShortages(cartId)).thenReturn(List.of(
+                new CartStockShortage(productId, "Prod", 10, 5),
+                new CartStockShortage(otherId, null, 1, null)));
+
+        assertThatThrownBy(() -> service.createOrderAndCart(validRequest("token-123")))
+                .isInstanceOf(OrderException.class)
+                .hasMessageContaining("Insufficient stock for product Prod")
+                .hasMessageContaining("Product not found: " + otherId);
+        verify(orderRepo, never()).save(any());
     }
 
     @Test
@@ -169,14 +210,12 @@ class OrderServiceTest {
     void createOrderAndCart_success() {
         var cart = new Cart(customerId, Cart.CartStatus.ACTIVE, Instant.now());
         TestUtils.setId(cart, cartId);
-        var item = new CartItem(cart, productId, 2, BigDecimal.valueOf(100));
-        cart.getItems().add(item);
+        var item = cart.addItem(productId, 2, Money.of(BigDecimal.valueOf(100)));
 
-        var product = new Product("Prod", "Desc", BigDecimal.valueOf(100), 10, Instant.now());
         when(cartRepo.findByCustomerIdAndStatus(customerId, Cart.CartStatus.ACTIVE))
                 .thenReturn(Optional.of(cart));
-        when(tokenRepo.existsById("token-123")).thenReturn(true);
-        when(productRepo.findById(productId)).thenReturn(Optional.of(product));
+        when(tokenStore.exists("token-123")).thenReturn(true);
+        when(cartItemRepo.findStockShortages(cartId)).thenReturn(List.of());
 
         var orderId = UUID.randomUUID();
         when(orderRepo.save(any(Order.class))).thenAnswer(inv -> {
@@ -184,14 +223,13 @@ class OrderServiceTest {
             TestUtils.setId(o, orderId);
             return o;
         });
-        when(orderItemRepo.save(any())).thenAnswer(inv -> inv.getArgument(0));
 
         var result = service.createOrderAndCart(validRequest("  token-123  "));
 
         assertThat(result).isNotNull();
         assertThat(result.getCustomerId()).isEqualTo(customerId);
         assertThat(result.getCartId()).isEqualTo(cartId);
-        assertThat(result.getTotalAmount()).isEqualByComparingTo("200");
+        assertThat(result.getTotalAmount().toBigDecimal()).isEqualByComparingTo("200");
         assertThat(result.getStatus()).isEqualTo(Order.OrderStatus.PAYMENT_PENDING);
         assertThat(result.getTokenId()).isEqualTo("token-123");
         assertThat(result.getItems()).hasSize(1);
@@ -205,9 +243,9 @@ class OrderServiceTest {
     void toResponse_mapsCorrectly() {
         var orderId = UUID.randomUUID();
         var order = new Order(customerId, cartId, Order.OrderStatus.PAID,
-                BigDecimal.valueOf(200), "Calle 1", "tok", Instant.now(), "tx");
+                Money.of(BigDecimal.valueOf(200)), "Calle 1", "tok", Instant.now(), "tx");
         TestUtils.setId(order, orderId);
-        var oi = new OrderItem(order, productId, 2, BigDecimal.valueOf(100));
+        var oi = new OrderItem(order, productId, 2, Money.of(BigDecimal.valueOf(100)));
         order.getItems().add(oi);
 
         var response = service.toResponse(order);
@@ -219,4 +257,160 @@ class OrderServiceTest {
         assertThat(response.items().get(0).quantity()).isEqualTo(2);
         assertThat(response.items().get(0).subtotal()).isEqualByComparingTo("200");
     }
+
+    private Order pendingOrder() {
+        var order = new Order(customerId, cartId, Order.OrderStatus.PAYMENT_PENDING,
+                Money.of(BigDecimal.TEN), "Calle 1", "tok", Instant.now(), "tx");
+        TestUtils.setId(order, UUID.randomUUID());
+        return order;
+    }
+
+    @Test
+    @DisplayName("create en modo sync escribe el carrito en memoria, procesa el pago en el hilo del request y retorna el estado final")
+    void create_syncProcessesPaymentInline() {
+        var self = mock(OrderService.class);
+        var sync = new OrderService(orderRepo, cartRepo, cartItemRepo, cartStore, tokenStore, logService,
+                paymentScheduler, checkoutPool, CheckoutMode.SYNC, readCache, entityManager, 100, Duration.ofSeconds(10), self);
+        var order = pendingOrder();
+        var paid = pendingOrder();
+        paid.setStatus(Order.OrderStatus.PAID);
+        when(self.createOrderAndCart(any())).thenReturn(order);
+        when(orderRepo.findWithItemsById(order.getId())).thenReturn(Optional.of(paid));
+        when(paymentScheduler.retryWindow()).thenReturn(Duration.ofSeconds(3));
+        when(paymentScheduler.process(order.getId())).thenReturn(CompletableFuture.completedFuture(null));
+
+        assertThat(sync.create(validRequest("tok")).getStatus()).isEqualTo(Order.OrderStatus.PAID);
+        var flushFirst = inOrder(cartStore, self);
+        flushFirst.verify(cartStore).flush(customerId);
+        flushFirst.verify(self).createOrderAndCart(any());
+        verify(paymentScheduler).process(order.getId());
+        verify(entityManager).detach(order);
+        verifyNoInteractions(checkoutPool);
+    }
+
+    @Test
+    @DisplayName("create en modo sync propaga la excepción original del pago")
+    void create_syncUnwrapsPaymentException() {
+        var self = mock(OrderService.class);
+        var sync = new OrderService(orderRepo, cartRepo, cartItemRepo, cartStore, tokenStore, logService,
+                paymentScheduler, checkoutPool, CheckoutMode.SYNC, readCache, entityManager, 100, Duration.ofSeconds(10), self);
+        var order = pendingOrder();
+        when(self.createOrderAndCart(any())).thenReturn(order);
+        when(paymentScheduler.retryWindow()).thenReturn(Duration.ofSeconds(3));
+        when(paymentScheduler.process(order.getId()))
+                .thenReturn(CompletableFuture.failedFuture(new OrderNotFoundException(order.getId())));
+
+        assertThatThrownBy(() -> sync.create(validRequest("tok"))).isInstanceOf(OrderNotFoundException.class);
+    }
+
+    @Test
+    @DisplayName("create en modo sync deja de esperar tras la ventana de reintentos y retorna la orden PAYMENT_PENDING")
+    void create_syncWaitIsBoundedByRetryWindow() {
+        var self = mock(OrderService.class);
+        var sync = new OrderService(orderRepo, cartRepo, cartItemRepo, cartStore, tokenStore, logService,
+                paymentScheduler, checkoutPool, CheckoutMode.SYNC, readCache, entityManager, 100, Duration.ofMillis(50), self);
+        var order = pendingOrder();
+        when(self.createOrderAndCart(any())).thenReturn(order);
+        when(orderRepo.findWithItemsById(order.getId())).thenReturn(Optional.of(order));
+        when(paymentScheduler.retryWindow()).thenReturn(Duration.ofMillis(50));
+        when(paymentScheduler.process(order.getId())).thenReturn(new CompletableFuture<>());
+
+        var result = assertTimeout(Duration.ofSeconds(5), () -> sync.create(validRequest("tok")));
+
+        assertThat(result.getStatus()).isEqualTo(Order.OrderStatus.PAYMENT_PENDING);
+        verify(entityManager).detach(order);
+    }
+
+    @Test
+    @DisplayName("create en modo async encola el pago y retorna la orden PAYMENT_PENDING")
+    void create_asyncHandsPaymentToPool() {
+        var self = mock(OrderService.class);
+        var async = new OrderService(orderRepo, cartRepo, cartItemRepo, cartStore, tokenStore, logService,
+                paymentScheduler, checkoutPool, CheckoutMode.ASYNC, readCache, entityManager, 100, Duration.ofSeconds(10), self);
+        var order = pendingOrder();
+        when(self.createOrderAndCart(any())).thenReturn(order);
+
+        var result = async.create(validRequest("tok"));
+
+        assertThat(result.getStatus()).isEqualTo(Order.OrderStatus.PAYMENT_PENDING);
+        var task = ArgumentCaptor.forClass(Runnable.class);
+        verify(checkoutPool).submit(task.capture());
+        verifyNoInteractions(paymentScheduler);
+
+        task.getValue().run();
+        verify(paymentScheduler).process(order.getId());
+        verify(orderRepo, never()).findWithItemsById(any());
+    }
+
+    @Test
+    @DisplayName("get carga la orden con sus items o lanza OrderNotFoundException")
+    void get_returnsOrThrows() {
+        var order = pendingOrder();
+        order.getItems().add(new OrderItem(order, productId, 2, Money.of(BigDecimal.ONE)));
+        when(orderRepo.findWithItemsById(order.getId())).thenReturn(Optional.of(order));
+        var missing = UUID.randomUUID();
+        when(orderRepo.findWithItemsById(missing)).thenReturn(Optional.empty());
+
+        var response = service.get(order.getId());
+        assertThat(response.status()).isEqualTo(Order.OrderStatus.PAYMENT_PENDING);
+        assertThat(response.items()).hasSize(1);
+        assertThatThrownBy(() -> service.get(missing)).isInstanceOf(OrderNotFoundException.class);
+    }
+
+    @Test
+    @DisplayName("get sirve desde caché solo las órdenes en estado terminal")
+    void get_cachesOnlyTerminalOrders() {
+        var pending = pendingOrder();
+        var paid = pendingOrder();
+        paid.setStatus(Order.OrderStatus.PAID);
+        when(orderRepo.findWithItemsById(pending.getId())).thenReturn(Optional.of(pending));
+        when(orderRepo.findWithItemsById(paid.getId())).thenReturn(Optional.of(paid));
+
+        service.get(pending.getId());
+        service.get(pending.getId());
+        service.get(paid.getId());
+        service.get(paid.getId());
+
+        verify(orderRepo, times(2)).findWithItemsById(pending.getId());
+        verify(orderRepo, times(1)).findWithItemsById(paid.getId());
+    }
+
+    @Test
+    @DisplayName("history pagina por keyset (createdAt, id) y carga los items en una sola consulta")
+    void history_pagesByKeysetAndLoadsGraphOnce() {
+        var newest = pendingOrder();
+        var middle = pendingOrder();
+        var oldest = pendingOrder();
+        when(orderRepo.findHistoryIds(eq(customerId), any(Pageable.class)))
+                .thenReturn(List.of(newest.getId(), middle.getId(), oldest.getId()));
+        when(orderRepo.findWithItemsByIdIn(List.of(newest.getId(), middle.getId())))
+                .thenReturn(List.of(middle, newest));
+
+        var page = service.history(customerId, null, 2);
+
+        assertThat(page.items()).extracting(r -> r.orderId()).containsExactly(newest.getId(), middle.getId());
+        assertThat(OrderCursor.decode(page.nextCursor())).isEqualTo(OrderCursor.of(middle));
+
+        var cursor = OrderCursor.of(middle);
+        when(orderRepo.findHistoryIdsAfter(eq(customerId), eq(cursor.createdAt()), eq(cursor.id()), any(Pageable.class)))
+                .thenReturn(List.of(oldest.getId()));
+        when(orderRepo.findWithItemsByIdIn(List.of(oldest.getId()))).thenReturn(List.of(oldest));
+
+        var last = service.history(customerId, cursor, 2);
+
+        assertThat(last.items()).extracting(r -> r.orderId()).containsExactly(oldest.getId());
+        assertThat(last.nextCursor()).isNull();
+    }
+
+    @Test
+    @DisplayName("history sin órdenes no consulta el entity graph y limita el tamaño de página")
+    void history_emptyAndClampsLimit() {
+        when(orderRepo.findHistoryIds(eq(customerId), argThat(p -> p.getPageSize() == 101))).thenReturn(List.of());
+
+        var page = service.history(customerId, null, 10_000);
+
+        assertThat(page.items()).isEmpty();
+        assertThat(page.nextCursor()).isNull();
+        verify(orderRepo, never()).findWithItemsByIdIn(any());
+    }
 }
@@ -0,0 +1,115 @@
+package com.farmatodo.outbox;
+
+import com.farmatodo.mail.EmailService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest
+@Testcontainers
+@ActiveProfiles("test")
+@Tag("integration")
+@DisplayName("OutboxRelay - Integración (varias instancias)")
+class OutboxRelayIntegrationTest {
+
+    private static final int EVENTS = 300;
+    private static final int RELAYS = 6;
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15")
+            .withDatabaseName("farmatodo")
+            .withUsername("farmatodo")
+            .withPassword("farmatodo_pwd");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("ENCRYPTION_KEY", () -> "QmFja2VuZEVuY3J5cHRpb25LZXlGb3JERVZfMjU2X0dDTQ==");
+        registry.add("app.outbox.poll-interval", () -> "PT1H");
+        registry.add("app.outbox.batch-size", () -> "10");
+    }
+
+    @Autowired
+    private Outbox outbox;
+
+    @Autowired
+    private OutboxRelay relay;
+
+    @Autowired
+    private OutboxEventRepository repository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @MockBean
+    private EmailService emailService;
+
+    @Test
+    @DisplayName("relays concurrentes con SKIP LOCKED entregan cada evento exactamente una vez")
+    void concurrentRelays_deliverEachEventOnce() throws Exception {
+        var tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(s -> {
+            for (int i = 0; i < EVENTS; i++) {
+                outbox.enqueue(OutboxEventType.PAYMENT_FAILED_EMAIL,
+                        Map.of("to", "e@e.com", "orderId", "order-" + i, "reason", "declined"));
+            }
+        });
+        var deliveries = new ConcurrentHashMap<String, AtomicInteger>();
+        when(emailService.sendPaymentFailed(anyString(), anyString(), anyString())).thenAnswer(inv -> {
+            deliveries.computeIfAbsent(inv.getArgument(1), k -> new AtomicInteger()).incrementAndGet();
+            return CompletableFuture.completedFuture(null);
+        });
+
+        var start = new CountDownLatch(1);
+        var pool = Executors.newFixedThreadPool(RELAYS);
+        try {
+            var runs = new ArrayList<Future<?>>();
+            for (int i = 0; i < RELAYS; i++) {
+                runs.add(pool.submit(() -> {
+                    start.await();
+                    while (repository.count() > 0) {
+                        relay.poll();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (var run : runs) {
+                run.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(deliveries).hasSize(EVENTS);
+        assertThat(deliveries.values()).allMatch(c -> c.get() == 1);
+        assertThat(repository.count()).isZero();
+    }
+}
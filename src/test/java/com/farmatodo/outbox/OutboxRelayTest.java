@@ -0,0 +1,162 @@
+package com.farmatodo.outbox;
+
+import com.farmatodo.log.LogService;
+import com.farmatodo.mail.EmailService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mail.MailSendException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("OutboxRelay")
+class OutboxRelayTest {
+
+    @Mock
+    private OutboxEventRepository repository;
+
+    @Mock
+    private EmailService emailService;
+
+    @Mock
+    private LogService logService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private static final CompletableFuture<Void> SENT = CompletableFuture.completedFuture(null);
+
+    private SimpleMeterRegistry meterRegistry;
+    private OutboxRelay relay;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        relay = new OutboxRelay(repository, emailService, logService, transactionManager, meterRegistry,
+                2, 10, 3, Duration.ofSeconds(10), Duration.ofSeconds(5));
+    }
+
+    private static OutboxEvent failedEmail(String orderId) {
+        return new OutboxEvent(OutboxEventType.PAYMENT_FAILED_EMAIL,
+                Map.of("to", "e@e.com", "orderId", orderId, "reason", "declined"), "tx-1", Instant.now());
+    }
+
+    @Test
+    @DisplayName("entrega los eventos reclamados, los borra y registra el envío")
+    void relayBatch_deliversAndDeletes() {
+        var success = new OutboxEvent(OutboxEventType.PAYMENT_SUCCESS_EMAIL,
+                Map.of("to", "e@e.com", "orderId", "o-1", "totalAmount", "100"), "tx-1", Instant.now());
+        var failure = failedEmail("o-2");
+        when(repository.claimDue(any(), eq(2))).thenReturn(List.of(success, failure));
+        when(emailService.sendPaymentSuccess("e@e.com", "o-1", "100")).thenReturn(SENT);
+        when(emailService.sendPaymentFailed("e@e.com", "o-2", "declined")).thenReturn(SENT);
+
+        assertThat(relay.relayBatch()).isEqualTo(2);
+
+        verify(repository).deleteAll(List.of(success, failure));
+        verify(logService).log(eq("email_sent_payment_success"), anyString(), anyString(), any());
+        verify(logService).log(eq("email_sent_payment_failed"), anyString(), anyString(), any());
+        assertThat(meterRegistry.get("outbox.delivered").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("un envío fallido se reprograma con backoff y tras max-attempts queda FAILED")
+    void relayBatch_failedDeliveryBacksOffThenGivesUp() {
+        var event = failedEmail("o-1");
+        when(repository.claimDue(any(), anyInt())).thenReturn(List.of(event));
+        when(emailService.sendPaymentFailed(anyString(), anyString(), anyString()))
+                .thenReturn(CompletableFuture.failedFuture(new MailSendException("connection refused")));
+
+        var before = Instant.now();
+        relay.relayBatch();
+        assertThat(event.getAttempts()).isEqualTo(1);
+        assertThat(event.getStatus()).isEqualTo(OutboxEvent.Status.PENDING);
+        assertThat(event.getAvailableAt()).isAfterOrEqualTo(before.plusSeconds(10));
+        assertThat(event.getLastError()).contains("not sent").contains("connection refused");
+
+        relay.relayBatch();
+        relay.relayBatch();
+
+        assertThat(event.getAttempts()).isEqualTo(3);
+        assertThat(event.getStatus()).isEqualTo(OutboxEvent.Status.FAILED);
+        verify(repository, times(3)).saveAll(List.of(event));
+        verify(repository, times(3)).deleteAll(List.of());
+        verifyNoInteractions(logService);
+        assertThat(meterRegistry.get("outbox.failed").counter().count()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("poll sigue reclamando lotes mientras vengan llenos")
+    void poll_drainsFullBatches() {
+        when(repository.claimDue(any(), anyInt()))
+                .thenReturn(List.of(failedEmail("o-1"), failedEmail("o-2")))
+                .thenReturn(List.of(failedEmail("o-3")))
+                .thenReturn(Collections.emptyList());
+        when(emailService.sendPaymentFailed(anyString(), anyString(), anyString())).thenReturn(SENT);
+
+        relay.poll();
+
+        verify(repository, times(2)).claimDue(any(), anyInt());
+        verify(repository, times(2)).deleteAll(any());
+    }
+
+    @Test
+    @DisplayName("reclama y arrienda en una transacción, envía sin ella y registra el resultado en otra")
+    void relayBatch_sendsOutsideTheClaimingTransaction() {
+        var event = failedEmail("o-1");
+        when(repository.claimDue(any(), anyInt())).thenReturn(List.of(event));
+        when(emailService.sendPaymentFailed(anyString(), anyString(), anyString())).thenReturn(SENT);
+
+        var before = Instant.now();
+        relay.relayBatch();
+
+        var order = inOrder(transactionManager, repository, emailService);
+        order.verify(transactionManager).getTransaction(any());
+        order.verify(repository).claimDue(any(), eq(2));
+        order.verify(repository).lease(argThat(ids -> ids.size() == 1), argThat(until -> !until.isBefore(before.plus(relay.lease()))));
+        order.verify(transactionManager).commit(any());
+        order.verify(emailService).sendPaymentFailed("e@e.com", "o-1", "declined");
+        order.verify(transactionManager).getTransaction(any());
+        order.verify(repository).deleteAll(List.of(event));
+        order.verify(transactionManager).commit(any());
+    }
+
+    @Test
+    @DisplayName("sin eventos pendientes no abre la transacción de registro")
+    void relayBatch_emptyClaimSkipsRecording() {
+        when(repository.claimDue(any(), anyInt())).thenReturn(List.of());
+
+        assertThat(relay.relayBatch()).isZero();
+
+        verify(repository, never()).lease(any(), any());
+        verify(transactionManager, times(1)).getTransaction(any());
+        verifyNoInteractions(emailService);
+    }
+
+    @Test
+    @DisplayName("el backoff se duplica por intento")
+    void backoff_isExponential() {
+        assertThat(relay.backoff(1)).isEqualTo(Duration.ofSeconds(10));
+        assertThat(relay.backoff(2)).isEqualTo(Duration.ofSeconds(20));
+        assertThat(relay.backoff(4)).isEqualTo(Duration.ofSeconds(80));
+    }
+}
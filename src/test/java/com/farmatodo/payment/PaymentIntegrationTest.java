@@ -4,6 +4,7 @@ import com.farmatodo.log.TransactionLogRepository;
 import com.farmatodo.mail.EmailService;
 import com.farmatodo.order.Order;
 import com.farmatodo.order.OrderRepository;
+import com.farmatodo.outbox.OutboxEventRepository;
 import com.farmatodo.product.ProductRepository;
 import com.jayway.jsonpath.JsonPath;
 import org.junit.jupiter.api.DisplayName;
@@ -23,11 +24,14 @@ import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -56,6 +60,7 @@ class PaymentIntegrationTest {
         registry.add("payment.retry.max-attempts", () -> "2");
         registry.add("payment.retry.delay", () -> "50");
         registry.add("payment.retry.multiplier", () -> "1");
+        registry.add("app.outbox.poll-interval", () -> "PT0.1S");
     }
 
     @Autowired
@@ -70,12 +75,16 @@ class PaymentIntegrationTest {
     @Autowired
     private TransactionLogRepository logRepo;
 
+    @Autowired
+    private OutboxEventRepository outboxRepo;
+
     @MockBean
     private EmailService emailService;
 
     @Test
     @DisplayName("Cuando el pago falla tras todos los reintentos: order PAYMENT_FAILED, email enviado, logs")
     void paymentFailure_afterRetries_setsOrderFailedAndSendsEmail() throws Exception {
+        when(emailService.sendPaymentFailed(anyString(), anyString(), anyString())).thenReturn(CompletableFuture.completedFuture(null));
         String customerJson = """
                 {"name":"Test User","email":"test@test.com","phone":"+573001234567","address":"Calle 1 #2-3"}
                 """;
@@ -129,7 +138,14 @@ class PaymentIntegrationTest {
         Order order = orderRepo.findById(orderId).orElseThrow();
         assertThat(order.getStatus()).isEqualTo(Order.OrderStatus.PAYMENT_FAILED);
 
-        verify(emailService).sendPaymentFailed(eq("test@test.com"), eq(orderId.toString()), anyString());
+        // the email is relayed from the outbox after the payment transaction commits
+        verify(emailService, timeout(10_000)).sendPaymentFailed(eq("test@test.com"), eq(orderId.toString()), anyString());
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (logRepo.findAll().stream().noneMatch(l -> "email_sent_payment_failed".equals(l.getEventType()))
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(outboxRepo.count()).isZero();
 
         assertThat(logRepo.findAll()).anyMatch(l ->
                 "payment_failed".equals(l.getEventType()) && orderId.toString().equals(
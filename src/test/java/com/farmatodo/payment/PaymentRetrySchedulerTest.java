@@ -0,0 +1,148 @@
+package com.farmatodo.payment;
+
+import com.farmatodo.order.CheckoutWorkerPool;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("PaymentRetryScheduler")
+class PaymentRetrySchedulerTest {
+
+    @Mock
+    private PaymentService paymentService;
+
+    private CheckoutWorkerPool workers;
+    private PaymentRetryScheduler scheduler;
+    private final UUID orderId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        workers = new CheckoutWorkerPool(2, 10, new SimpleMeterRegistry());
+        scheduler = new PaymentRetryScheduler(paymentService, workers, new SimpleMeterRegistry(),
+                3, 20, 2, Duration.ofMillis(5), 64);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        scheduler.destroy();
+        workers.destroy();
+    }
+
+    @Test
+    @DisplayName("un pago aprobado al primer intento no programa reintentos")
+    void process_successOnFirstAttempt() throws Exception {
+        scheduler.process(orderId).get(5, TimeUnit.SECONDS);
+
+        verify(paymentService, times(1)).process(orderId);
+        verify(paymentService, never()).recover(any(), any());
+    }
+
+    @Test
+    @DisplayName("reintenta tras fallos y termina cuando un intento aprueba")
+    void process_retriesUntilSuccess() throws Exception {
+        doThrow(new PaymentFailedException("rejected")).doNothing().when(paymentService).process(orderId);
+
+        scheduler.process(orderId).get(5, TimeUnit.SECONDS);
+
+        verify(paymentService, times(2)).process(orderId);
+        verify(paymentService, never()).recover(any(), any());
+    }
+
+    @Test
+    @DisplayName("agota max-attempts con backoff y ejecuta recover con el último error")
+    void process_recoversAfterLastAttempt() throws Exception {
+        var last = new PaymentFailedException("rejected 3");
+        doThrow(new PaymentFailedException("rejected 1"), new PaymentFailedException("rejected 2"), last)
+                .when(paymentService).process(orderId);
+        long start = System.nanoTime();
+
+        scheduler.process(orderId).get(5, TimeUnit.SECONDS);
+
+        verify(paymentService, times(3)).process(orderId);
+        verify(paymentService).recover(eq(last), eq(orderId));
+        // 20ms + 40ms of backoff
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThanOrEqualTo(Duration.ofMillis(60));
+    }
+
+    @Test
+    @DisplayName("errores que no son de pago completan el futuro con la excepción sin reintentar")
+    void process_propagatesOtherErrors() {
+        doThrow(new IllegalStateException("db down")).when(paymentService).process(orderId);
+
+        assertThatThrownBy(() -> scheduler.process(orderId).get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(IllegalStateException.class);
+        verify(paymentService, times(1)).process(orderId);
+    }
+
+    @Test
+    @DisplayName("con el pool lleno el reintento vuelve a la rueda en lugar de ejecutarse en el hilo del timer")
+    void process_requeuesRetryWhenPoolIsFull() throws Exception {
+        workers.destroy();
+        workers = new CheckoutWorkerPool(1, 1, new SimpleMeterRegistry());
+        scheduler.destroy();
+        scheduler = new PaymentRetryScheduler(paymentService, workers, new SimpleMeterRegistry(),
+                3, 20, 2, Duration.ofMillis(5), 64);
+        var release = new CountDownLatch(1);
+        workers.submit(() -> await(release));
+        workers.submit(() -> await(release));
+        var threads = new ArrayList<String>();
+        doAnswer(inv -> {
+            threads.add(Thread.currentThread().getName());
+            if (threads.size() == 1) {
+                throw new PaymentFailedException("rejected");
+            }
+            return null;
+        }).when(paymentService).process(orderId);
+
+        var result = scheduler.process(orderId);
+        Thread.sleep(PaymentRetryScheduler.REQUEUE_DELAY.toMillis() * 2);
+        assertThat(result).isNotDone();
+
+        release.countDown();
+        result.get(5, TimeUnit.SECONDS);
+
+        assertThat(threads).hasSize(2);
+        assertThat(threads.get(1)).startsWith("checkout-");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    @DisplayName("backoff = delay × multiplier^(intento-2)")
+    void backoff_isExponential() {
+        assertThat(scheduler.backoff(2)).isEqualTo(Duration.ofMillis(20));
+        assertThat(scheduler.backoff(3)).isEqualTo(Duration.ofMillis(40));
+        assertThat(scheduler.backoff(4)).isEqualTo(Duration.ofMillis(80));
+    }
+
+    @Test
+    @DisplayName("retryWindow suma los backoffs entre el primer y el último intento")
+    void retryWindow_sumsBackoffs() {
+        // max-attempts 3: 20ms + 40ms
+        assertThat(scheduler.retryWindow()).isEqualTo(Duration.ofMillis(60));
+    }
+}
@@ -1,16 +1,19 @@
 package com.farmatodo.payment;
 
 import com.farmatodo.TestUtils;
-import com.farmatodo.client.Customer;
-import com.farmatodo.client.CustomerRepository;
+import com.farmatodo.client.CustomerContact;
+import com.farmatodo.client.CustomerLookup;
 import com.farmatodo.log.LogService;
-import com.farmatodo.mail.EmailService;
+import com.farmatodo.money.Money;
 import com.farmatodo.order.Order;
 import com.farmatodo.order.OrderNotFoundException;
 import com.farmatodo.order.OrderItem;
 import com.farmatodo.order.OrderRepository;
-import com.farmatodo.product.Product;
-import com.farmatodo.product.ProductRepository;
+import com.farmatodo.outbox.Outbox;
+import com.farmatodo.outbox.OutboxEventType;
+import com.farmatodo.product.StockDecrementEngine;
+import com.farmatodo.product.StockDecrementResult;
+import com.farmatodo.product.StockLine;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -41,16 +44,16 @@ class PaymentServiceTest {
     private PaymentRepository paymentRepo;
 
     @Mock
-    private ProductRepository productRepo;
+    private StockDecrementEngine stockEngine;
 
     @Mock
-    private CustomerRepository customerRepo;
+    private CustomerLookup customers;
 
     @Mock
     private LogService logService;
 
     @Mock
-    private EmailService emailService;
+    private Outbox outbox;
 
     private PaymentService serviceSuccess;
     private PaymentService serviceFail;
@@ -62,20 +65,20 @@ class PaymentServiceTest {
         MDC.put("tx_id", "test-tx");
         orderId = UUID.randomUUID();
         order = new Order(UUID.randomUUID(), UUID.randomUUID(), Order.OrderStatus.PAYMENT_PENDING,
-                BigDecimal.valueOf(100), "Addr", "tok", Instant.now(), "tx");
+                Money.of(BigDecimal.valueOf(100)), "Addr", "tok", Instant.now(), "tx");
         TestUtils.setId(order, orderId);
-        var item = new OrderItem(order, UUID.randomUUID(), 2, BigDecimal.valueOf(50));
+        var item = new OrderItem(order, UUID.randomUUID(), 2, Money.of(BigDecimal.valueOf(50)));
         order.getItems().add(item);
 
         // approveProbability=1.0 -> always approve (random > 1.0 is always false)
         serviceSuccess = new PaymentService(
-                orderRepo, paymentRepo, productRepo, customerRepo,
-                logService, emailService, 1.0
+                orderRepo, paymentRepo, stockEngine, customers,
+                logService, outbox, 1.0
         );
         // approveProbability=-0.1 -> always fail (random > -0.1 is always true)
         serviceFail = new PaymentService(
-                orderRepo, paymentRepo, productRepo, customerRepo,
-                logService, emailService, -0.1
+                orderRepo, paymentRepo, stockEngine, customers,
+                logService, outbox, -0.1
         );
     }
 
@@ -108,32 +111,57 @@ class PaymentServiceTest {
         when(paymentRepo.countByOrderId(orderId)).thenReturn(0L);
         when(paymentRepo.save(any(Payment.class))).thenAnswer(inv -> inv.getArgument(0));
 
-        var product = new Product("P", "D", BigDecimal.valueOf(50), 10, Instant.now());
-        when(productRepo.findById(any(UUID.class))).thenReturn(Optional.of(product));
-        when(customerRepo.findById(any(UUID.class))).thenReturn(
-                Optional.of(new Customer("N", "e@e.com", "+57", "A", Instant.now(), "tx")));
+        var productId = order.getItems().get(0).getProductId();
+        when(stockEngine.decrementAll(List.of(new StockLine(productId, 2)))).thenReturn(
+                new StockDecrementResult(List.of(new StockDecrementResult.Line(productId, 2, true))));
+        when(customers.contact(any(UUID.class))).thenReturn(
+                Optional.of(new CustomerContact(UUID.randomUUID(), "e@e.com", "N")));
 
         serviceSuccess.process(orderId);
 
         verify(orderRepo).save(argThat(o -> o.getStatus() == Order.OrderStatus.PAID));
         verify(logService).log(eq("payment_success"), any(), any(), any());
-        verify(emailService).sendPaymentSuccess(eq("e@e.com"), eq(orderId.toString()), anyString());
+        verify(outbox).enqueue(eq(OutboxEventType.PAYMENT_SUCCESS_EMAIL),
+                argThat(p -> "e@e.com".equals(p.get("to")) && orderId.toString().equals(p.get("orderId"))));
     }
 
     @Test
-    @DisplayName("recover se ejecuta tras fallo y envía email")
+    @DisplayName("process falla la orden sin reintentar cuando no queda stock al aprobar")
+    void process_failsWithoutRetryWhenStockRejected() {
+        when(orderRepo.findById(orderId)).thenReturn(Optional.of(order));
+        when(paymentRepo.countByOrderId(orderId)).thenReturn(0L);
+        when(paymentRepo.save(any(Payment.class))).thenAnswer(inv -> inv.getArgument(0));
+        var productId = order.getItems().get(0).getProductId();
+        when(stockEngine.decrementAll(any())).thenReturn(
+                new StockDecrementResult(List.of(new StockDecrementResult.Line(productId, 2, false))));
+        when(customers.contact(any(UUID.class))).thenReturn(
+                Optional.of(new CustomerContact(UUID.randomUUID(), "e@e.com", "N")));
+
+        serviceSuccess.process(orderId);
+
+        verify(orderRepo).save(argThat(o -> o.getStatus() == Order.OrderStatus.PAYMENT_FAILED));
+        verify(paymentRepo, atLeastOnce()).save(argThat(p -> p.getStatus() == Payment.PaymentStatus.FAILED
+                && p.getLastError().contains(productId.toString())));
+        verify(outbox).enqueue(eq(OutboxEventType.PAYMENT_FAILED_EMAIL),
+                argThat(p -> "e@e.com".equals(p.get("to")) && p.get("reason").toString().contains("Insufficient stock")));
+        verify(outbox, never()).enqueue(eq(OutboxEventType.PAYMENT_SUCCESS_EMAIL), any());
+    }
+
+    @Test
+    @DisplayName("recover se ejecuta tras fallo y encola el email en el outbox")
     void recover_setsFailedAndSendsEmail() {
         when(orderRepo.findById(orderId)).thenReturn(Optional.of(order));
         when(paymentRepo.save(any(Payment.class))).thenAnswer(inv -> inv.getArgument(0));
-        when(customerRepo.findById(any(UUID.class))).thenReturn(
-                Optional.of(new Customer("N", "e@e.com", "+57", "A", Instant.now(), "tx")));
+        when(customers.contact(any(UUID.class))).thenReturn(
+                Optional.of(new CustomerContact(UUID.randomUUID(), "e@e.com", "N")));
 
         var ex = new PaymentFailedException("Payment rejected");
 
         serviceFail.recover(ex, orderId);
 
         verify(orderRepo).save(argThat(o -> o.getStatus() == Order.OrderStatus.PAYMENT_FAILED));
-        verify(logService, times(2)).log(anyString(), anyString(), anyString(), any());
-        verify(emailService).sendPaymentFailed(eq("e@e.com"), eq(orderId.toString()), eq("Payment rejected"));
+        verify(logService).log(eq("payment_failed"), anyString(), anyString(), any());
+        verify(outbox).enqueue(eq(OutboxEventType.PAYMENT_FAILED_EMAIL),
+                argThat(p -> orderId.toString().equals(p.get("orderId")) && "Payment rejected".equals(p.get("reason"))));
     }
 }
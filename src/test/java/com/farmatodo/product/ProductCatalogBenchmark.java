@@ -0,0 +1,82 @@
+package com.farmatodo.product;
+
+import com.farmatodo.BenchmarkContext;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GET /products read path on a 100k-product catalog: in-memory snapshot vs the JPA query.
+ * Run with {@code mvn -Pbenchmark test -Dbenchmark=ProductCatalogBenchmark} (requires Docker).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ProductCatalogBenchmark {
+
+    private static final int CATALOG_SIZE = 100_000;
+
+    /** Selectivity of the filter: 0 returns the whole catalog, 900 roughly 10%. */
+    @Param({"0", "900"})
+    public int minStock;
+
+    private BenchmarkContext ctx;
+    private ProductCatalog catalog;
+    private ProductRepository repo;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ctx = BenchmarkContext.start();
+        seed();
+        catalog = ctx.bean(ProductCatalog.class);
+        repo = ctx.bean(ProductRepository.class);
+        catalog.invalidate();
+        catalog.current();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ctx.close();
+    }
+
+    @Benchmark
+    public List<Product> inMemorySnapshot() {
+        return catalog.search(minStock);
+    }
+
+    @Benchmark
+    public List<Product> jpaQuery() {
+        return repo.findByStockGreaterThanEqualOrderByNameAscIdAsc(minStock);
+    }
+
+    private void seed() {
+        var now = Timestamp.from(Instant.now());
+        var rnd = ThreadLocalRandom.current();
+        List<Object[]> rows = new ArrayList<>(CATALOG_SIZE);
+        for (int i = 0; i < CATALOG_SIZE; i++) {
+            rows.add(new Object[]{UUID.randomUUID(), "Producto " + UUID.randomUUID(), "Descripción " + i,
+                    BigDecimal.valueOf(rnd.nextInt(1_000, 100_000)), rnd.nextInt(0, 1_000), now});
+        }
+        ctx.jdbc().batchUpdate(
+                "INSERT INTO products (id, name, description, price, stock, created_at) VALUES (?, ?, ?, ?, ?, ?)",
+                rows);
+        ctx.jdbc().execute("ANALYZE products");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ProductCatalogBenchmark.class.getSimpleName()).build()).run();
+    }
+}
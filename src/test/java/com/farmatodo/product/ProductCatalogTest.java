@@ -0,0 +1,187 @@
+package com.farmatodo.product;
+
+import com.farmatodo.MutableClock;
+import com.farmatodo.TestUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ProductCatalog")
+class ProductCatalogTest {
+
+    @Mock
+    private ProductRepository repo;
+
+    private MutableClock clock;
+    private ProductCatalog catalog;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2026-01-01T00:00:00Z"));
+        catalog = new ProductCatalog(repo, Duration.ofSeconds(30), clock);
+    }
+
+    private static Product product(String name, int stock) {
+        var p = new Product(name, "Desc", BigDecimal.TEN, stock, Instant.now());
+        TestUtils.setId(p, UUID.randomUUID());
+        return p;
+    }
+
+    @Test
+    @DisplayName("search filtra por stock y conserva el orden por nombre")
+    void search_filtersByStockKeepingNameOrder() {
+        when(repo.findAllByOrderByNameAscIdAsc()).thenReturn(List.of(
+                product("Amoxicilina", 30),
+                product("Dolex", 5),
+                product("Ibuprofeno", 80),
+                product("Loratadina", 0),
+                product("Paracetamol", 100)
+        ));
+
+        assertThat(catalog.search(0)).extracting(Product::getName)
+                .containsExactly("Amoxicilina", "Dolex", "Ibuprofeno", "Loratadina", "Paracetamol");
+        assertThat(catalog.search(30)).extracting(Product::getName)
+                .containsExactly("Amoxicilina", "Ibuprofeno", "Paracetamol");
+        assertThat(catalog.search(81)).extracting(Product::getName)
+                .containsExactly("Paracetamol");
+        assertThat(catalog.search(1000)).isEmpty();
+        verify(repo, times(1)).findAllByOrderByNameAscIdAsc();
+    }
+
+    @Test
+    @DisplayName("find busca por id en el snapshot actual")
+    void find_looksUpById() {
+        var dolex = product("Dolex", 5);
+        when(repo.findAllByOrderByNameAscIdAsc()).thenReturn(List.of(product("Amoxicilina", 30), dolex));
+
+        assertThat(catalog.find(dolex.getId())).get().extracting(Product::getName).isEqualTo("Dolex");
+        assertThat(catalog.find(UUID.randomUUID())).isEmpty();
+    }
+
+    @Test
+    @DisplayName("invalidate fuerza una nueva versión del snapshot")
+    void invalidate_reloadsWithNewVersion() {
+        when(repo.findAllByOrderByNameAscIdAsc()).thenReturn(List.of(product("A", 1)));
+
+        long first = catalog.current().version();
+        assertThat(catalog.current().version()).isEqualTo(first);
+
+        catalog.invalidate();
+
+        assertThat(catalog.current().version()).isEqualTo(first + 1);
+        verify(repo, times(2)).findAllByOrderByNameAscIdAsc();
+    }
+
+    @Test
+    @DisplayName("el snapshot se recarga al superar la cota de staleness")
+    void current_reloadsWhenOlderThanMaxStaleness() {
+        when(repo.findAllByOrderByNameAscIdAsc()).thenReturn(List.of(product("A", 1)));
+
+        long first = catalog.current().version();
+        clock.advance(Duration.ofSeconds(29));
+        assertThat(catalog.current().version()).isEqualTo(first);
+
+        clock.advance(Duration.ofSeconds(2));
+        assertThat(catalog.current().version()).isEqualTo(first + 1);
+    }
+
+    @Test
+    @DisplayName("onStockChanged invalida y recarga el snapshot")
+    void onStockChanged_refreshes() {
+        when(repo.findAllByOrderByNameAscIdAsc()).thenReturn(List.of(product("A", 1)));
+        long first = catalog.current().version();
+
+        catalog.onStockChanged(new ProductStockChangedEvent(this, List.of(UUID.randomUUID())));
+
+        assertThat(catalog.current().version()).isEqualTo(first + 1);
+        verify(repo, times(2)).findAllByOrderByNameAscIdAsc();
+    }
+
+    @Test
+    @DisplayName("page recorre el catálogo por keyset (name, id) aplicando minStock")
+    void page_walksKeysetWithMinStock() {
+        when(repo.findAllByOrderByNameAscIdAsc()).thenReturn(List.of(
+                product("Amoxicilina", 30),
+                product("Dolex", 5),
+                product("Ibuprofeno", 80),
+                product("Loratadina", 60),
+                product("Paracetamol", 100)
+        ));
+
+        var first = catalog.page(10, null, 2);
+        assertThat(first.getContent()).extracting(Product::getName).containsExactly("Amoxicilina", "Ibuprofeno");
+        assertThat(first.hasNext()).isTrue();
+
+        var second = catalog.page(10, ProductCursor.of(first.getContent().get(1)), 2);
+        assertThat(second.getContent()).extracting(Product::getName).containsExactly("Loratadina", "Paracetamol");
+        assertThat(second.hasNext()).isFalse();
+
+        var empty = catalog.page(10, ProductCursor.of(second.getContent().get(1)), 2);
+        assertThat(empty.getContent()).isEmpty();
+        assertThat(empty.hasNext()).isFalse();
+    }
+
+    @Test
+    @DisplayName("conserva el orden de la BD (colación del locale) y ubica el cursor por id")
+    void page_keepsDatabaseOrder() {
+        var low = product("Dolex", 1);
+        TestUtils.setId(low, UUID.fromString("7fffffff-ffff-ffff-ffff-ffffffffffff"));
+        var high = product("Dolex", 1);
+        TestUtils.setId(high, UUID.fromString("80000000-0000-0000-0000-000000000000"));
+        var loaded = List.of(product("amoxicilina", 1), product("Árnica", 1), low, high,
+                product("ibuprofeno", 1), product("Zinc", 1));
+        when(repo.findAllByOrderByNameAscIdAsc()).thenReturn(loaded);
+
+        assertThat(catalog.search(0)).extracting(Product::getId)
+                .containsExactlyElementsOf(loaded.stream().map(Product::getId).toList());
+
+        var walked = new ArrayList<UUID>();
+        ProductCursor cursor = null;
+        do {
+            var page = catalog.page(0, cursor, 1);
+            page.getContent().forEach(p -> walked.add(p.getId()));
+            cursor = page.hasNext() ? ProductCursor.decode(ProductCursor.of(page.getContent().get(0)).encode()) : null;
+        } while (cursor != null);
+        assertThat(walked).containsExactlyElementsOf(loaded.stream().map(Product::getId).toList());
+    }
+
+    @Test
+    @DisplayName("un cursor cuyo producto ya no está en el snapshot se ubica comparando nombres como el locale")
+    void page_afterMissingProduct_comparesNames() {
+        when(repo.findAllByOrderByNameAscIdAsc()).thenReturn(List.of(product("amoxicilina", 1), product("Árnica", 1),
+                product("Dolex", 1), product("Zinc", 1)));
+
+        var page = catalog.page(0, new ProductCursor("Aspirina", UUID.randomUUID()), 2);
+
+        assertThat(page.getContent()).extracting(Product::getName).containsExactly("Dolex", "Zinc");
+    }
+
+    @Test
+    @DisplayName("el snapshot entrega copias de solo lectura, no las entidades cargadas")
+    void snapshot_handsOutReadOnlyCopies() {
+        var dolex = product("Dolex", 5);
+        when(repo.findAllByOrderByNameAscIdAsc()).thenReturn(List.of(dolex));
+
+        var shared = catalog.find(dolex.getId()).orElseThrow();
+        assertThat(shared).isNotSameAs(dolex);
+        assertThatThrownBy(() -> shared.setStock(0)).isInstanceOf(UnsupportedOperationException.class);
+
+        dolex.setStock(0);
+        assertThat(catalog.search(1)).extracting(Product::getStock).containsExactly(5);
+    }
+}
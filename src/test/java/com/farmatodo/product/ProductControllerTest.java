@@ -1,20 +1,29 @@
 package com.farmatodo.product;
 
 import com.farmatodo.TestUtils;
+import com.farmatodo.idempotency.IdempotencyService;
 import com.farmatodo.product.dto.ProductResponse;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.math.BigDecimal;
 import java.time.Instant;
 import java.util.List;
 import java.util.UUID;
+import java.util.function.Consumer;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -25,9 +34,15 @@ class ProductControllerTest {
     @Autowired
     private MockMvc mvc;
 
+    @MockBean
+    private IdempotencyService idempotencyService;
+
     @MockBean
     private ProductService productService;
 
+    @MockBean
+    private ProductSearchAnalytics searchAnalytics;
+
     @Test
     @DisplayName("GET /products retorna lista")
     void search_returnsList() throws Exception {
@@ -53,4 +68,94 @@ class ProductControllerTest {
                 .andExpect(jsonPath("$").isArray())
                 .andExpect(jsonPath("$.length()").value(0));
     }
+
+    @Test
+    @DisplayName("GET /products?limit=1 retorna página con cursor siguiente")
+    void page_returnsItemsAndNextCursor() throws Exception {
+        var p = new Product("Prod", "Desc", BigDecimal.TEN, 5, Instant.now());
+        TestUtils.setId(p);
+        when(productService.page(null, null, 1))
+                .thenReturn(new SliceImpl<>(List.of(p), PageRequest.ofSize(1), true));
+
+        mvc.perform(get("/products").param("limit", "1").header(TestUtils.API_KEY_HEADER, TestUtils.API_KEY_DEFAULT))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].name").value("Prod"))
+                .andExpect(jsonPath("$.nextCursor").value(ProductCursor.of(p).encode()));
+    }
+
+    @Test
+    @DisplayName("GET /products?limit&after decodifica el cursor")
+    void page_decodesCursor() throws Exception {
+        var cursor = new ProductCursor("Ibuprofeno 400mg", UUID.randomUUID());
+        when(productService.page(2, cursor, 10))
+                .thenReturn(new SliceImpl<>(List.of(), PageRequest.ofSize(10), false));
+
+        mvc.perform(get("/products").param("limit", "10").param("minStock", "2").param("after", cursor.encode())
+                        .header(TestUtils.API_KEY_HEADER, TestUtils.API_KEY_DEFAULT))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(0))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    @Test
+    @DisplayName("GET /products con cursor inválido retorna 400")
+    void page_invalidCursor() throws Exception {
+        mvc.perform(get("/products").param("limit", "10").param("after", "not-a-cursor")
+                        .header(TestUtils.API_KEY_HEADER, TestUtils.API_KEY_DEFAULT))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("GET /products con Accept NDJSON transmite un producto por línea")
+    @SuppressWarnings("unchecked")
+    void stream_writesNdjson() throws Exception {
+        var p1 = new Product("A", "Desc", BigDecimal.TEN, 5, Instant.now());
+        var p2 = new Product("B", "Desc", BigDecimal.ONE, 7, Instant.now());
+        TestUtils.setId(p1);
+        TestUtils.setId(p2);
+        doAnswer(inv -> {
+            Consumer<Product> sink = inv.getArgument(1);
+            sink.accept(p1);
+            sink.accept(p2);
+            return null;
+        }).when(productService).streamSearch(eq(null), any(Consumer.class));
+
+        var result = mvc.perform(get("/products").accept("application/x-ndjson")
+                        .header(TestUtils.API_KEY_HEADER, TestUtils.API_KEY_DEFAULT))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        var body = mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString();
+        assertThat(body.lines()).hasSize(2);
+        assertThat(body.lines().findFirst().orElseThrow()).contains("\"name\":\"A\"");
+    }
+
+    @Test
+    @DisplayName("GET /products/search-stats retorna los agregados del rango")
+    void searchStats_returnsRollups() throws Exception {
+        var from = Instant.parse("2026-01-01T00:00:00Z");
+        var to = Instant.parse("2026-01-01T01:00:00Z");
+        when(searchAnalytics.rollups(from, to)).thenReturn(List.of(new ProductSearchRollup(from, 5, 42)));
+
+        mvc.perform(get("/products/search-stats")
+                        .param("from", from.toString())
+                        .param("to", to.toString())
+                        .header(TestUtils.API_KEY_HEADER, TestUtils.API_KEY_DEFAULT))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].minStock").value(5))
+                .andExpect(jsonPath("$[0].searches").value(42));
+    }
+
+    @Test
+    @DisplayName("GET /products/search-stats sin rango usa la última hora")
+    void searchStats_defaultsToLastHour() throws Exception {
+        when(searchAnalytics.rollups(any(Instant.class), any(Instant.class))).thenReturn(List.of());
+
+        mvc.perform(get("/products/search-stats").header(TestUtils.API_KEY_HEADER, TestUtils.API_KEY_DEFAULT))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$").isEmpty());
+    }
 }
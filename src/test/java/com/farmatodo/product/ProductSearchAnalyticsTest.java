@@ -0,0 +1,135 @@
+package com.farmatodo.product;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ProductSearchAnalytics")
+class ProductSearchAnalyticsTest {
+
+    private static final Instant NOW = Instant.parse("2026-01-01T10:05:30Z");
+
+    @Mock
+    private JdbcTemplate jdbc;
+
+    @Mock
+    private ProductSearchRollupRepository repository;
+
+    private ProductSearchAnalytics analytics;
+
+    @BeforeEach
+    void setUp() {
+        analytics = new ProductSearchAnalytics(jdbc, repository, Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object[]> flushedRows() {
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbc).batchUpdate(anyString(), rows.capture());
+        return rows.getValue().stream()
+                .sorted(Comparator.comparing((Object[] r) -> (Timestamp) r[1]).thenComparing(r -> (Integer) r[2]))
+                .toList();
+    }
+
+    @Test
+    @DisplayName("agrupa por minuto y minStock contando búsquedas")
+    void flush_rollsUpPerMinuteAndMinStock() {
+        var minute = Instant.parse("2026-01-01T10:00:00Z");
+        analytics.record(0, minute.plusSeconds(1));
+        analytics.record(0, minute.plusSeconds(20));
+        analytics.record(0, minute.plusSeconds(59));
+        analytics.record(5, minute.plusSeconds(30));
+        analytics.record(0, minute.plusSeconds(60));
+
+        assertThat(analytics.flushBefore(Long.MAX_VALUE)).isEqualTo(3);
+
+        var rows = flushedRows();
+        assertThat(rows.get(0)).containsSubsequence(Timestamp.from(minute), 0, 3L);
+        assertThat(rows.get(1)).containsSubsequence(Timestamp.from(minute), 5, 1L);
+        assertThat(rows.get(2)).containsSubsequence(Timestamp.from(minute.plusSeconds(60)), 0, 1L);
+    }
+
+    @Test
+    @DisplayName("el flush programado solo escribe minutos cerrados hace al menos un minuto")
+    void flushClosedBuckets_keepsRecentMinutesInMemory() {
+        analytics.record(1, Instant.parse("2026-01-01T10:03:59Z"));
+        analytics.record(1, Instant.parse("2026-01-01T10:04:10Z"));
+        analytics.record(1, NOW);
+
+        analytics.flushClosedBuckets();
+
+        var rows = flushedRows();
+        assertThat(rows).hasSize(1);
+        assertThat(rows.get(0)[1]).isEqualTo(Timestamp.from(Instant.parse("2026-01-01T10:03:00Z")));
+
+        clearInvocations(jdbc);
+        analytics.destroy();
+        assertThat(flushedRows()).hasSize(2);
+    }
+
+    @Test
+    @DisplayName("si el upsert falla los minutos vuelven a memoria y el siguiente flush los escribe sumados")
+    void flush_failedUpsertKeepsBuckets() {
+        var minute = Instant.parse("2026-01-01T10:00:00Z");
+        analytics.record(0, minute);
+        analytics.record(0, minute.plusSeconds(5));
+        when(jdbc.batchUpdate(anyString(), anyList())).thenThrow(new QueryTimeoutException("timeout"));
+
+        assertThatThrownBy(() -> analytics.flushBefore(Long.MAX_VALUE)).isInstanceOf(QueryTimeoutException.class);
+        analytics.record(0, minute.plusSeconds(10));
+
+        reset(jdbc);
+        assertThat(analytics.flushBefore(Long.MAX_VALUE)).isEqualTo(1);
+        assertThat(flushedRows().get(0)).containsSubsequence(Timestamp.from(minute), 0, 3L);
+    }
+
+    @Test
+    @DisplayName("sin búsquedas no se escribe nada")
+    void flush_withoutSearches_doesNothing() {
+        analytics.flushClosedBuckets();
+
+        verify(jdbc, never()).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    @DisplayName("el upsert suma en conflicto por (bucket_start, min_stock)")
+    void flush_usesAdditiveUpsert() {
+        analytics.record(2, Instant.parse("2026-01-01T09:00:00Z"));
+        analytics.flushBefore(Long.MAX_VALUE);
+
+        verify(jdbc).batchUpdate(argThat((String sql) -> sql.contains("ON CONFLICT (bucket_start, min_stock)")
+                && sql.contains("search_count = product_search_rollups.search_count + EXCLUDED.search_count")), anyList());
+    }
+
+    @Test
+    @DisplayName("rollups consulta el rango en el repositorio")
+    void rollups_delegatesToRepository() {
+        var from = Instant.parse("2026-01-01T09:00:00Z");
+        var rollup = new ProductSearchRollup(from, 0, 10);
+        when(repository.findInRange(from, NOW)).thenReturn(List.of(rollup));
+
+        assertThat(analytics.rollups(from, NOW)).containsExactly(rollup);
+        verify(repository).findInRange(eq(from), eq(NOW));
+    }
+}
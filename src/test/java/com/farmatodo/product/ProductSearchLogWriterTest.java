@@ -0,0 +1,86 @@
+package com.farmatodo.product;
+
+import com.farmatodo.batch.OverflowPolicy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ProductSearchLogWriter")
+class ProductSearchLogWriterTest {
+
+    @Mock
+    private JdbcTemplate jdbc;
+
+    private ProductSearchLogWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        writer = new ProductSearchLogWriter(jdbc, new SimpleMeterRegistry(), 100, 50,
+                Duration.ofMillis(10), OverflowPolicy.DROP, 10, Duration.ofMillis(10));
+    }
+
+    @AfterEach
+    void tearDown() {
+        writer.destroy();
+    }
+
+    @Test
+    @DisplayName("insert escribe el lote con un único INSERT multi-fila")
+    void insert_usesSingleMultiRowStatement() {
+        var now = Instant.now();
+        writer.insert(List.of(new ProductSearchLog(0, "tx-1", now), new ProductSearchLog(5, "tx-2", now)));
+
+        var sql = ArgumentCaptor.forClass(String.class);
+        var args = ArgumentCaptor.forClass(Object[].class);
+        verify(jdbc).update(sql.capture(), args.capture());
+        assertThat(sql.getValue())
+                .startsWith("INSERT INTO product_search_logs (id, min_stock, tx_id, created_at) VALUES ")
+                .endsWith("(?, ?, ?, ?), (?, ?, ?, ?)");
+        assertThat(args.getValue()).hasSize(8);
+        assertThat(args.getValue()[1]).isEqualTo(0);
+        assertThat(args.getValue()[6]).isEqualTo("tx-2");
+    }
+
+    @Test
+    @DisplayName("con raw-sample-rate=1 los eventos del listener llegan a la BD en lote al cerrar")
+    void listener_appendsAndFlushesOnDestroy() {
+        var listener = new ProductSearchEventListener(mock(ProductSearchAnalytics.class), writer, 1);
+
+        listener.onProductSearch(new ProductSearchEvent(this, 3, "tx-a"));
+        listener.onProductSearch(new ProductSearchEvent(this, 4, "tx-b"));
+        writer.destroy();
+
+        verify(jdbc, atLeastOnce()).update(anyString(), any(Object[].class));
+    }
+
+    @Test
+    @DisplayName("con raw-sample-rate=0 el listener solo agrega y no guarda filas crudas")
+    void listener_withoutRawSampling_onlyAggregates() {
+        var analytics = mock(ProductSearchAnalytics.class);
+        var listener = new ProductSearchEventListener(analytics, writer, 0);
+
+        listener.onProductSearch(new ProductSearchEvent(this, 3, "tx-a"));
+        writer.destroy();
+
+        verify(analytics).record(eq(3), any(Instant.class));
+        verifyNoInteractions(jdbc);
+    }
+}
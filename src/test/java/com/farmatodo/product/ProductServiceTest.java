@@ -1,5 +1,6 @@
 package com.farmatodo.product;
 
+import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -8,12 +9,16 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
 import org.slf4j.MDC;
 
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.*;
@@ -25,14 +30,20 @@ class ProductServiceTest {
     @Mock
     private ProductRepository repo;
 
+    @Mock
+    private ProductCatalog catalog;
+
     @Mock
     private ApplicationEventPublisher eventPublisher;
 
+    @Mock
+    private EntityManager entityManager;
+
     private ProductService service;
 
     @BeforeEach
     void setUp() {
-        service = new ProductService(repo, eventPublisher, 0);
+        service = new ProductService(repo, catalog, eventPublisher, entityManager, 0, false, 50);
         MDC.put("tx_id", "test-tx");
     }
 
@@ -42,7 +53,7 @@ class ProductServiceTest {
         var products = List.of(
                 new Product("Prod1", "Desc", BigDecimal.TEN, 5, Instant.now())
         );
-        when(repo.findByStockGreaterThanEqualOrderByNameAsc(0)).thenReturn(products);
+        when(repo.findByStockGreaterThanEqualOrderByNameAscIdAsc(0)).thenReturn(products);
 
         var result = service.search(null);
 
@@ -50,7 +61,7 @@ class ProductServiceTest {
             assertThat(p.getName()).isEqualTo("Prod1");
             assertThat(p.getStock()).isEqualTo(5);
         });
-        verify(repo).findByStockGreaterThanEqualOrderByNameAsc(0);
+        verify(repo).findByStockGreaterThanEqualOrderByNameAscIdAsc(0);
 
         var captor = ArgumentCaptor.forClass(ProductSearchEvent.class);
         verify(eventPublisher).publishEvent(captor.capture());
@@ -61,11 +72,73 @@ class ProductServiceTest {
     @Test
     @DisplayName("search con minStock usa el parámetro")
     void search_withMinStock() {
-        when(repo.findByStockGreaterThanEqualOrderByNameAsc(10)).thenReturn(List.of());
+        when(repo.findByStockGreaterThanEqualOrderByNameAscIdAsc(10)).thenReturn(List.of());
 
         var result = service.search(10);
 
         assertThat(result).isEmpty();
-        verify(repo).findByStockGreaterThanEqualOrderByNameAsc(10);
+        verify(repo).findByStockGreaterThanEqualOrderByNameAscIdAsc(10);
+    }
+
+    @Test
+    @DisplayName("search con catálogo habilitado responde desde memoria sin consultar el repo")
+    void search_usesCatalogWhenEnabled() {
+        var cached = new ProductService(repo, catalog, eventPublisher, entityManager, 3, true, 50);
+        var products = List.of(new Product("Prod1", "Desc", BigDecimal.TEN, 5, Instant.now()));
+        when(catalog.search(3)).thenReturn(products);
+
+        var result = cached.search(null);
+
+        assertThat(result).isSameAs(products);
+        verifyNoInteractions(repo);
+        verify(eventPublisher).publishEvent(any(ProductSearchEvent.class));
+    }
+
+    @Test
+    @DisplayName("page sin cursor usa la primera página del repo y limita el tamaño")
+    void page_firstPageFromRepoClampsLimit() {
+        var slice = new SliceImpl<Product>(List.of(), PageRequest.ofSize(50), false);
+        when(repo.findByStockGreaterThanEqualOrderByNameAscIdAsc(0, PageRequest.ofSize(50))).thenReturn(slice);
+
+        var result = service.page(null, null, 10_000);
+
+        assertThat(result).isSameAs(slice);
+        verify(eventPublisher).publishEvent(any(ProductSearchEvent.class));
+    }
+
+    @Test
+    @DisplayName("page con cursor consulta por keyset (name, id)")
+    void page_afterCursorUsesKeysetQuery() {
+        var cursor = new ProductCursor("Ibuprofeno", UUID.randomUUID());
+        var slice = new SliceImpl<Product>(List.of(), PageRequest.ofSize(1), false);
+        when(repo.findPageAfter(5, "Ibuprofeno", cursor.id(), PageRequest.ofSize(1))).thenReturn(slice);
+
+        assertThat(service.page(5, cursor, 0)).isSameAs(slice);
+    }
+
+    @Test
+    @DisplayName("page con catálogo habilitado pagina en memoria")
+    void page_usesCatalogWhenEnabled() {
+        var cached = new ProductService(repo, catalog, eventPublisher, entityManager, 0, true, 50);
+        var slice = new SliceImpl<Product>(List.of(), PageRequest.ofSize(20), false);
+        when(catalog.page(0, null, 20)).thenReturn(slice);
+
+        assertThat(cached.page(null, null, 20)).isSameAs(slice);
+        verifyNoInteractions(repo);
+    }
+
+    @Test
+    @DisplayName("streamSearch entrega cada producto y lo desacopla del contexto de persistencia")
+    void streamSearch_detachesEachProduct() {
+        var p1 = new Product("A", "Desc", BigDecimal.TEN, 5, Instant.now());
+        var p2 = new Product("B", "Desc", BigDecimal.TEN, 7, Instant.now());
+        when(repo.streamByMinStock(0)).thenReturn(Stream.of(p1, p2));
+
+        var seen = new ArrayList<Product>();
+        service.streamSearch(null, seen::add);
+
+        assertThat(seen).containsExactly(p1, p2);
+        verify(entityManager).detach(p1);
+        verify(entityManager).detach(p2);
     }
 }
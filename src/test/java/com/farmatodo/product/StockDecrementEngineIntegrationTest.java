@@ -0,0 +1,93 @@
+package com.farmatodo.product;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Testcontainers
+@ActiveProfiles("test")
+@Tag("integration")
+@DisplayName("Stock - Integración decremento concurrente")
+class StockDecrementEngineIntegrationTest {
+
+    private static final int THREADS = 32;
+    private static final int ATTEMPTS_PER_THREAD = 25;
+    private static final int INITIAL_STOCK = 500;
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15")
+            .withDatabaseName("farmatodo")
+            .withUsername("farmatodo")
+            .withPassword("farmatodo_pwd");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("spring.datasource.hikari.maximum-pool-size", () -> String.valueOf(THREADS));
+        registry.add("ENCRYPTION_KEY", () -> "QmFja2VuZEVuY3J5cHRpb25LZXlGb3JERVZfMjU2X0dDTQ==");
+    }
+
+    @Autowired
+    private StockDecrementEngine engine;
+
+    @Autowired
+    private ProductRepository productRepo;
+
+    @Test
+    @DisplayName("muchos hilos sobre un producto caliente: nunca sobrevende ni pierde actualizaciones")
+    void hotProduct_neverOversellsNorLosesUpdates() throws Exception {
+        var hot = productRepo.save(new Product("Hot", "D", BigDecimal.ONE, INITIAL_STOCK, Instant.now()));
+        var cold = productRepo.save(new Product("Cold", "D", BigDecimal.ONE, 1_000_000, Instant.now()));
+
+        var applied = new AtomicInteger();
+        var rejected = new AtomicInteger();
+        var start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < ATTEMPTS_PER_THREAD; i++) {
+                        var result = engine.decrementAll(List.of(
+                                new StockLine(cold.getId(), 1), new StockLine(hot.getId(), 1)));
+                        (result.allApplied() ? applied : rejected).incrementAndGet();
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+            pool.shutdown();
+            assertThat(pool.awaitTermination(60, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            pool.shutdownNow();
+        }
+
+        int total = THREADS * ATTEMPTS_PER_THREAD;
+        assertThat(applied.get()).isEqualTo(INITIAL_STOCK);
+        assertThat(rejected.get()).isEqualTo(total - INITIAL_STOCK);
+        assertThat(productRepo.findById(hot.getId()).orElseThrow().getStock()).isZero();
+        assertThat(productRepo.findById(cold.getId()).orElseThrow().getStock()).isEqualTo(1_000_000 - INITIAL_STOCK);
+    }
+}
@@ -0,0 +1,87 @@
+package com.farmatodo.product;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("StockDecrementEngine")
+class StockDecrementEngineTest {
+
+    private static final UUID A = UUID.fromString("00000000-0000-0000-0000-00000000000a");
+    private static final UUID B = UUID.fromString("00000000-0000-0000-0000-00000000000b");
+
+    @Mock
+    private JdbcTemplate jdbc;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private StockDecrementEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        engine = new StockDecrementEngine(jdbc, eventPublisher);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object[]> batchArgs(String sql) {
+        ArgumentCaptor<List<Object[]>> args = ArgumentCaptor.forClass(List.class);
+        verify(jdbc).batchUpdate(eq(sql), args.capture());
+        return args.getValue();
+    }
+
+    @Test
+    @DisplayName("aplica todas las líneas en un solo batch condicional, agrupadas y ordenadas por id")
+    void decrementAll_singleBatchMergedAndOrdered() {
+        when(jdbc.batchUpdate(eq(StockDecrementEngine.DECREMENT_SQL), anyList())).thenReturn(new int[]{1, 1});
+
+        var result = engine.decrementAll(List.of(new StockLine(B, 1), new StockLine(A, 2), new StockLine(B, 3)));
+
+        assertThat(result.allApplied()).isTrue();
+        assertThat(result.lines()).extracting(StockDecrementResult.Line::productId).containsExactly(A, B);
+        var args = batchArgs(StockDecrementEngine.DECREMENT_SQL);
+        assertThat(args.get(0)).containsExactly(2, A, 2);
+        assertThat(args.get(1)).containsExactly(4, B, 4);
+        verify(jdbc, never()).batchUpdate(eq(StockDecrementEngine.RESTORE_SQL), anyList());
+        verify(eventPublisher).publishEvent(any(ProductStockChangedEvent.class));
+    }
+
+    @Test
+    @DisplayName("si una línea no tiene stock, reporta el fallo y restaura las aplicadas")
+    void decrementAll_restoresAppliedLinesOnRejection() {
+        when(jdbc.batchUpdate(eq(StockDecrementEngine.DECREMENT_SQL), anyList())).thenReturn(new int[]{1, 0});
+
+        var result = engine.decrementAll(List.of(new StockLine(A, 2), new StockLine(B, 5)));
+
+        assertThat(result.allApplied()).isFalse();
+        assertThat(result.rejectedProductIds()).containsExactly(B);
+        var restored = batchArgs(StockDecrementEngine.RESTORE_SQL);
+        assertThat(restored).hasSize(1);
+        assertThat(restored.get(0)).containsExactly(2, A);
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    @DisplayName("sin líneas no toca la BD")
+    void decrementAll_emptyIsNoOp() {
+        assertThat(engine.decrementAll(List.of()).allApplied()).isTrue();
+
+        verifyNoInteractions(jdbc, eventPublisher);
+    }
+}
@@ -0,0 +1,177 @@
+package com.farmatodo.ratelimit;
+
+import com.farmatodo.schema.SchemaMigrator;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Several instances, each with its own connection pool and leases, sharing one database: the
+ * way the limiter runs on Cloud Run with more than one instance.
+ */
+@Testcontainers
+@Tag("integration")
+@DisplayName("Rate limit de clúster - Integración")
+class ClusterRateLimitIntegrationTest {
+
+    private static final int INSTANCES = 3;
+    private static final int THREADS_PER_INSTANCE = 4;
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15")
+            .withDatabaseName("farmatodo")
+            .withUsername("farmatodo")
+            .withPassword("farmatodo_pwd");
+
+    private final List<HikariDataSource> pools = new ArrayList<>();
+    private final List<ClusterRateLimiter> instances = new ArrayList<>();
+    private final AtomicInteger storeRoundTrips = new AtomicInteger();
+
+    @BeforeEach
+    void migrate() {
+        new SchemaMigrator(pool()).migrate();
+    }
+
+    @AfterEach
+    void stopInstances() {
+        instances.forEach(ClusterRateLimiter::destroy);
+        pools.forEach(HikariDataSource::close);
+    }
+
+    private HikariDataSource pool() {
+        var pool = new HikariDataSource();
+        pool.setJdbcUrl(postgres.getJdbcUrl());
+        pool.setUsername(postgres.getUsername());
+        pool.setPassword(postgres.getPassword());
+        pool.setMaximumPoolSize(THREADS_PER_INSTANCE);
+        pools.add(pool);
+        return pool;
+    }
+
+    /** A new application instance: own pool, own leases, counting its round trips to the shared bucket. */
+    private ClusterRateLimiter startInstance(int requestsPerMinute) {
+        var store = new RateLimitLeaseStore(new JdbcTemplate(pool())) {
+            @Override
+            public Grant lease(String key, int want, int capacity, double ratePerSecond) {
+                storeRoundTrips.incrementAndGet();
+                return super.lease(key, want, capacity, ratePerSecond);
+            }
+        };
+        var limiter = new ClusterRateLimiter(store, new SimpleMeterRegistry(), RateLimitMode.CLUSTER,
+                requestsPerMinute, 0, Duration.ofMinutes(1));
+        instances.add(limiter);
+        return limiter;
+    }
+
+    @Test
+    @DisplayName("varias instancias juntas no superan el límite y deciden casi todo localmente")
+    void instancesTogether_neverExceedTheLimit() throws Exception {
+        int perMinute = 600;
+        String client = "client-" + UUID.randomUUID();
+        var cluster = new ArrayList<ClusterRateLimiter>();
+        for (int i = 0; i < INSTANCES; i++) {
+            cluster.add(startInstance(perMinute));
+        }
+
+        var allowed = new AtomicInteger();
+        var latencies = new long[INSTANCES * THREADS_PER_INSTANCE][];
+        var start = new CountDownLatch(1);
+        var threads = new ArrayList<Thread>();
+        long runFor = Duration.ofSeconds(2).toNanos();
+        for (int t = 0; t < latencies.length; t++) {
+            var limiter = cluster.get(t % INSTANCES);
+            int slot = t;
+            var thread = new Thread(() -> {
+                var samples = new long[200_000];
+                int n = 0;
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long deadline = System.nanoTime() + runFor;
+                while (System.nanoTime() < deadline && n < samples.length) {
+                    long before = System.nanoTime();
+                    if (limiter.tryAcquire(client)) {
+                        allowed.incrementAndGet();
+                    }
+                    samples[n++] = System.nanoTime() - before;
+                }
+                latencies[slot] = Arrays.copyOf(samples, n);
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        long began = System.nanoTime();
+        start.countDown();
+        for (var thread : threads) {
+            thread.join();
+        }
+        double elapsedSeconds = (System.nanoTime() - began) / 1e9;
+
+        // Bucket starts full, then refills at 10 tokens per second.
+        int ceiling = perMinute + (int) Math.ceil(elapsedSeconds * perMinute / 60.0);
+        int stranded = INSTANCES * cluster.get(0).leaseSize() * 3 / 2;
+        assertThat(allowed.get()).isLessThanOrEqualTo(ceiling).isGreaterThanOrEqualTo(perMinute - stranded);
+
+        long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+        long p50 = all[all.length / 2];
+        long p99 = all[(int) (all.length * 0.99)];
+        assertThat(storeRoundTrips.get())
+                .as("round trips to the shared bucket for %d decisions (p50 %d ns, p99 %d ns)", all.length, p50, p99)
+                .isLessThan(all.length / 100);
+        assertThat(p50).as("median decision latency").isLessThan(Duration.ofMillis(1).toNanos());
+    }
+
+    @Test
+    @DisplayName("una instancia nueva no reinicia el límite de un cliente que ya lo agotó")
+    void newInstance_inheritsTheExhaustedBucket() {
+        String client = "client-" + UUID.randomUUID();
+        var first = startInstance(60);
+        int admitted = 0;
+        while (first.tryAcquire(client)) {
+            admitted++;
+        }
+        assertThat(admitted).isBetween(60, 62);
+
+        var scaledOut = startInstance(60);
+
+        assertThat(scaledOut.tryAcquire(client)).isFalse();
+    }
+
+    @Test
+    @DisplayName("los tokens sin usar de una instancia que se apaga vuelven al bucket compartido")
+    void stoppedInstance_returnsUnusedTokens() {
+        String client = "client-" + UUID.randomUUID();
+        var first = startInstance(60);
+        assertThat(first.tryAcquire(client)).isTrue();
+        first.destroy();
+
+        var second = startInstance(60);
+        int admitted = 0;
+        while (second.tryAcquire(client)) {
+            admitted++;
+        }
+
+        // 60 minus the one request served by the first instance, plus at most a token or two of refill.
+        assertThat(admitted).isBetween(59, 61);
+    }
+}
@@ -0,0 +1,134 @@
+package com.farmatodo.ratelimit;
+
+import com.farmatodo.MutableClock;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ClusterRateLimiter")
+class ClusterRateLimiterTest {
+
+    private static final String CLIENT = "10.0.0.1";
+    private static final int PER_MINUTE = 60;
+    private static final int LEASE = 6;
+
+    @Mock
+    private RateLimitLeaseStore store;
+
+    private MutableClock clock;
+    private SimpleMeterRegistry registry;
+    private ClusterRateLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2026-01-01T00:00:00Z"));
+        registry = new SimpleMeterRegistry();
+        limiter = new ClusterRateLimiter(store, registry, RateLimitMode.CLUSTER, PER_MINUTE, LEASE,
+                Duration.ofMinutes(1), clock);
+    }
+
+    @AfterEach
+    void tearDown() {
+        limiter.destroy();
+    }
+
+    private double decisions(String result) {
+        return registry.get("rate_limit.decisions").tag("result", result).counter().count();
+    }
+
+    @Test
+    @DisplayName("un lote arrendado se gasta localmente sin volver a la base de datos")
+    void leasedBatch_isSpentLocally() {
+        when(store.lease(CLIENT, LEASE, PER_MINUTE, 1.0)).thenReturn(new RateLimitLeaseStore.Grant(LEASE, 54));
+
+        assertThat(limiter.tryAcquire(CLIENT)).isTrue();
+        assertThat(limiter.tryAcquire(CLIENT)).isTrue();
+
+        verify(store, times(1)).lease(anyString(), anyInt(), anyInt(), anyDouble());
+        assertThat(decisions("leased")).isEqualTo(1);
+        assertThat(decisions("local")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("con medio lote gastado pide el siguiente en segundo plano")
+    void halfSpentLease_isRefilledInBackground() {
+        when(store.lease(CLIENT, LEASE, PER_MINUTE, 1.0)).thenReturn(new RateLimitLeaseStore.Grant(LEASE, 54));
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(limiter.tryAcquire(CLIENT)).isTrue();
+        }
+
+        verify(store, timeout(1_000).times(2)).lease(CLIENT, LEASE, PER_MINUTE, 1.0);
+        // 6 leased synchronously + 6 in the background, 3 spent: 9 more without a synchronous lease.
+        for (int i = 0; i < 9; i++) {
+            assertThat(limiter.tryAcquire(CLIENT)).isTrue();
+        }
+        assertThat(decisions("leased")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("con el bucket compartido vacío rechaza localmente hasta que se repone un token")
+    void emptyBucket_isRememberedUntilNextToken() {
+        when(store.lease(CLIENT, LEASE, PER_MINUTE, 1.0))
+                .thenReturn(new RateLimitLeaseStore.Grant(0, 0.5))
+                .thenReturn(new RateLimitLeaseStore.Grant(1, 0));
+
+        assertThat(limiter.tryAcquire(CLIENT)).isFalse();
+        clock.advance(Duration.ofMillis(499));
+        assertThat(limiter.tryAcquire(CLIENT)).isFalse();
+        verify(store, times(1)).lease(anyString(), anyInt(), anyInt(), anyDouble());
+
+        clock.advance(Duration.ofMillis(1));
+        assertThat(limiter.tryAcquire(CLIENT)).isTrue();
+        assertThat(decisions("denied")).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("si la base de datos no responde lo informa al llamador")
+    void storeFailure_propagates() {
+        when(store.lease(anyString(), anyInt(), anyInt(), anyDouble()))
+                .thenThrow(new DataAccessResourceFailureException("down"));
+
+        assertThatThrownBy(() -> limiter.tryAcquire(CLIENT)).isInstanceOf(DataAccessResourceFailureException.class);
+        assertThat(decisions("unavailable")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("al apagarse devuelve los tokens arrendados sin usar")
+    void destroy_givesBackUnusedTokens() {
+        when(store.lease(CLIENT, LEASE, PER_MINUTE, 1.0)).thenReturn(new RateLimitLeaseStore.Grant(LEASE, 54));
+        limiter.tryAcquire(CLIENT);
+
+        limiter.destroy();
+
+        verify(store).giveBack(CLIENT, LEASE - 1, PER_MINUTE);
+    }
+
+    @Test
+    @DisplayName("el tamaño del lote por defecto es 1/20 del límite y en modo local no limpia buckets")
+    void defaults() {
+        var local = new ClusterRateLimiter(store, new SimpleMeterRegistry(), RateLimitMode.LOCAL, 600, 0,
+                Duration.ofMinutes(1), clock);
+
+        assertThat(local.isEnabled()).isFalse();
+        assertThat(local.leaseSize()).isEqualTo(30);
+        local.deleteFullBuckets();
+        verifyNoInteractions(store);
+        local.destroy();
+    }
+}
@@ -0,0 +1,219 @@
+package com.farmatodo.schema;
+
+import com.farmatodo.QueryPlanRecorder;
+import com.farmatodo.cart.Cart;
+import com.farmatodo.cart.CartItemRepository;
+import com.farmatodo.cart.CartRepository;
+import com.farmatodo.client.CustomerRepository;
+import com.farmatodo.log.TransactionLogRepository;
+import com.farmatodo.order.OrderRepository;
+import com.farmatodo.outbox.OutboxEventRepository;
+import com.farmatodo.payment.PaymentRepository;
+import com.farmatodo.product.ProductRepository;
+import com.farmatodo.product.ProductSearchRollupRepository;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs every repository query against a seeded dataset and fails if Postgres plans a sequential
+ * scan for any of them. Parameters are selective, as on the request path; a query that has to
+ * read most of a table is not expected to use an index.
+ */
+@SpringBootTest
+@Testcontainers
+@ActiveProfiles("test")
+@Tag("integration")
+@Import(QueryPlanRecorder.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@DisplayName("Planes de consulta - Integración")
+class QueryPlanIntegrationTest {
+
+    private static final int ROWS = 20_000;
+    private static final PageRequest PAGE = PageRequest.of(0, 20);
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15")
+            .withDatabaseName("farmatodo")
+            .withUsername("farmatodo")
+            .withPassword("farmatodo_pwd");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("ENCRYPTION_KEY", () -> "QmFja2VuZEVuY3J5cHRpb25LZXlGb3JERVZfMjU2X0dDTQ==");
+        // keeps the relay from draining the seeded outbox rows between ANALYZE and claimDue
+        registry.add("app.outbox.poll-interval", () -> "PT1H");
+    }
+
+    @Autowired private QueryPlanRecorder recorder;
+    @Autowired private JdbcTemplate jdbc;
+    @Autowired private TransactionTemplate tx;
+    @Autowired private CartRepository cartRepo;
+    @Autowired private CartItemRepository cartItemRepo;
+    @Autowired private CustomerRepository customerRepo;
+    @Autowired private OrderRepository orderRepo;
+    @Autowired private PaymentRepository paymentRepo;
+    @Autowired private ProductRepository productRepo;
+    @Autowired private ProductSearchRollupRepository rollupRepo;
+    @Autowired private OutboxEventRepository outboxRepo;
+    @Autowired private TransactionLogRepository transactionLogRepo;
+
+    /** Deterministic customer ids, so carts and orders can be generated per customer in SQL. */
+    private static final String CUSTOMER_ID = "('00000000-0000-0000-0000-' || lpad(to_hex(%s), 12, '0'))::uuid";
+
+    @BeforeAll
+    void seed() {
+        jdbc.update("""
+                INSERT INTO products (id, name, description, price, stock, created_at)
+                SELECT gen_random_uuid(), 'Producto ' || lpad(g::text, 5, '0'), NULL, 1000, g % 1000, now()
+                FROM generate_series(1, ?) g
+                """, ROWS);
+        jdbc.update("""
+                INSERT INTO customers (id, name, email, phone, address, created_at)
+                SELECT %s, 'Cliente ' || g, 'cliente' || g || '@example.com', '300' || lpad(g::text, 7, '0'), 'Calle ' || g, now()
+                FROM generate_series(1, ?) g
+                """.formatted(CUSTOMER_ID.formatted("g")), ROWS);
+        // Four carts per customer, the newest one active.
+        jdbc.update("""
+                INSERT INTO carts (id, customer_id, status, created_at)
+                SELECT gen_random_uuid(), %s, CASE WHEN g %% 4 = 0 THEN 'ACTIVE' ELSE 'ORDERED' END, now()
+                FROM generate_series(1, ?) g
+                """.formatted(CUSTOMER_ID.formatted("(g + 3) / 4")), 4 * ROWS);
+        jdbc.update("""
+                INSERT INTO cart_items (id, cart_id, product_id, quantity, unit_price_snapshot)
+                SELECT gen_random_uuid(), c.id, p.id, 1, 1000
+                FROM (SELECT id, row_number() OVER () AS rn FROM carts) c
+                CROSS JOIN generate_series(0, 2) k
+                JOIN (SELECT id, row_number() OVER () AS rn FROM products) p ON p.rn = (c.rn * 3 + k) % ? + 1
+                """, ROWS);
+        jdbc.update("""
+                INSERT INTO orders (id, customer_id, cart_id, status, total_amount, delivery_address, token_id, created_at)
+                SELECT gen_random_uuid(), %s, gen_random_uuid(), 'PAID', 1000, 'Calle 1', 'tok', now() - g * interval '1 minute'
+                FROM generate_series(1, ?) g
+                """.formatted(CUSTOMER_ID.formatted("g % 500 + 1")), ROWS);
+        jdbc.update("""
+                INSERT INTO order_items (id, order_id, product_id, quantity, unit_price_snapshot)
+                SELECT gen_random_uuid(), o.id, gen_random_uuid(), 1, 1000 FROM orders o CROSS JOIN generate_series(1, 2)
+                """);
+        jdbc.update("""
+                INSERT INTO payments (id, order_id, token_id, status, attempts, created_at)
+                SELECT gen_random_uuid(), id, 'tok', 'SUCCESS', 1, created_at FROM orders
+                """);
+        jdbc.update("""
+                INSERT INTO transaction_logs (id, tx_id, event_type, level, message, created_at)
+                SELECT gen_random_uuid(), 'tx-' || (g / 3), 'event', 'INFO', 'message', now()
+                FROM generate_series(1, ?) g
+                """, 3 * ROWS);
+        jdbc.update("""
+                INSERT INTO outbox_events (id, type, status, payload, attempts, available_at, created_at)
+                SELECT gen_random_uuid(), 'PAYMENT_SUCCESS_EMAIL', CASE WHEN g % 100 = 0 THEN 'PENDING' ELSE 'FAILED' END,
+                       '{}'::jsonb, 0, now() - interval '1 minute', now()
+                FROM generate_series(1, ?) g
+                """, ROWS);
+        jdbc.update("""
+                INSERT INTO product_search_rollups (id, bucket_start, min_stock, search_count)
+                SELECT gen_random_uuid(), date_trunc('minute', now()) - g * interval '1 minute', 0, 1
+                FROM generate_series(1, ?) g
+                """, ROWS);
+        jdbc.execute("ANALYZE");
+    }
+
+    @Test
+    @DisplayName("carrito: carrito activo del cliente, línea del carrito y faltantes de stock usan índices")
+    void cartQueries() {
+        var customerId = jdbc.queryForObject("SELECT customer_id FROM carts WHERE status = 'ACTIVE' LIMIT 1", UUID.class);
+        var item = jdbc.queryForMap("SELECT cart_id, product_id FROM cart_items LIMIT 1");
+        var cartId = (UUID) item.get("cart_id");
+
+        assertNoSequentialScans(() -> {
+            assertThat(cartRepo.findByCustomerIdAndStatus(customerId, Cart.CartStatus.ACTIVE)).isPresent();
+            assertThat(cartItemRepo.findByCartIdAndProductId(cartId, (UUID) item.get("product_id"))).isPresent();
+            cartItemRepo.findStockShortages(cartId);
+        });
+    }
+
+    @Test
+    @DisplayName("pedidos: historial paginado, pedido con ítems y pagos por pedido usan índices")
+    void orderQueries() {
+        var customerId = jdbc.queryForObject("SELECT customer_id FROM orders LIMIT 1", UUID.class);
+
+        assertNoSequentialScans(() -> {
+            var ids = orderRepo.findHistoryIds(customerId, PAGE);
+            assertThat(ids).hasSize(PAGE.getPageSize());
+            var last = orderRepo.findWithItemsById(ids.get(ids.size() - 1)).orElseThrow();
+            assertThat(last.getItems()).hasSize(2);
+            orderRepo.findHistoryIdsAfter(customerId, last.getCreatedAt(), last.getId(), PAGE);
+            assertThat(orderRepo.findWithItemsByIdIn(ids)).hasSize(ids.size());
+            assertThat(paymentRepo.countByOrderId(last.getId())).isEqualTo(1);
+        });
+    }
+
+    @Test
+    @DisplayName("productos: búsqueda por stock mínimo y primera página del catálogo usan índices")
+    void productQueries() {
+        assertNoSequentialScans(() -> {
+            var page = productRepo.findByStockGreaterThanEqualOrderByNameAscIdAsc(995, PAGE);
+            var last = page.getContent().get(page.getNumberOfElements() - 1);
+            productRepo.findPageAfter(995, last.getName(), last.getId(), PAGE);
+            productRepo.findByStockGreaterThanEqualOrderByNameAscIdAsc(995);
+            tx.executeWithoutResult(s -> {
+                try (var products = productRepo.streamByMinStock(995)) {
+                    assertThat(products.count()).isPositive();
+                }
+            });
+            assertThat(productRepo.findByStockGreaterThanEqualOrderByNameAscIdAsc(0, PAGE).hasNext()).isTrue();
+        });
+    }
+
+    @Test
+    @DisplayName("clientes, outbox, analítica y logs: consultas de soporte usan índices")
+    void supportQueries() {
+        Instant now = Instant.now();
+
+        assertNoSequentialScans(() -> {
+            assertThat(customerRepo.existsByEmail("cliente42@example.com")).isTrue();
+            assertThat(customerRepo.existsByPhone("3000000042")).isTrue();
+            tx.executeWithoutResult(s -> assertThat(outboxRepo.claimDue(now, 10)).isNotEmpty());
+            assertThat(rollupRepo.findInRange(now.minus(30, ChronoUnit.MINUTES), now)).isNotEmpty();
+            assertThat(transactionLogRepo.findByTxIdOrderByCreatedAtAsc("tx-42")).hasSize(3);
+        });
+    }
+
+    private void assertNoSequentialScans(Runnable queries) {
+        List<QueryPlanRecorder.Plan> plans;
+        recorder.start();
+        try {
+            queries.run();
+        } finally {
+            plans = recorder.stop();
+        }
+        assertThat(plans).isNotEmpty();
+        assertThat(plans).allSatisfy(plan -> assertThat(plan.seqScans())
+                .as("sequential scan in plan of %s%n%s", plan.sql(), plan.plan().toPrettyString())
+                .isEmpty());
+    }
+}
@@ -0,0 +1,71 @@
+package com.farmatodo.schema;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@Testcontainers
+@ActiveProfiles("test")
+@Tag("integration")
+@DisplayName("Migraciones de esquema - Integración")
+class SchemaMigratorIntegrationTest {
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15")
+            .withDatabaseName("farmatodo")
+            .withUsername("farmatodo")
+            .withPassword("farmatodo_pwd");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("ENCRYPTION_KEY", () -> "QmFja2VuZEVuY3J5cHRpb25LZXlGb3JERVZfMjU2X0dDTQ==");
+    }
+
+    @Autowired
+    private SchemaMigrator migrator;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Test
+    @DisplayName("al arrancar aplica todas las versiones en orden y una segunda ejecución no aplica nada")
+    void startup_appliesEveryVersionOnce() {
+        var versions = migrator.load().stream().map(SchemaMigrator.Migration::version).toList();
+
+        assertThat(jdbc.queryForList("SELECT version FROM schema_migrations ORDER BY version", Integer.class))
+                .isEqualTo(versions);
+        assertThat(migrator.migrate()).isEmpty();
+        assertThat(jdbc.queryForObject("SELECT count(*) FROM pg_indexes WHERE indexname = 'uk_carts_customer_active'",
+                Integer.class)).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("un script modificado después de aplicarse detiene la migración")
+    void changedScript_isRejected() {
+        String original = jdbc.queryForObject("SELECT checksum FROM schema_migrations WHERE version = 1", String.class);
+        jdbc.update("UPDATE schema_migrations SET checksum = 'edited' WHERE version = 1");
+        try {
+            assertThatThrownBy(migrator::migrate)
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessageContaining("V1 was changed");
+        } finally {
+            jdbc.update("UPDATE schema_migrations SET checksum = ? WHERE version = 1", original);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.farmatodo.schema;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("SchemaMigrator - Tests unitarios")
+class SchemaMigratorTest {
+
+    @Test
+    @DisplayName("interpreta versión y descripción del nombre del archivo")
+    void parse_readsVersionAndDescription() {
+        var migration = SchemaMigrator.parse("V12__hot_path_indexes.sql", "SELECT 1;");
+
+        assertThat(migration.version()).isEqualTo(12);
+        assertThat(migration.description()).isEqualTo("hot path indexes");
+        assertThat(migration.checksum()).isEqualTo(SchemaMigrator.checksum("SELECT 1;")).hasSize(64);
+    }
+
+    @Test
+    @DisplayName("rechaza archivos que no siguen V<versión>__<descripción>.sql")
+    void parse_rejectsBadNames() {
+        assertThatThrownBy(() -> SchemaMigrator.parse("baseline.sql", ""))
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> SchemaMigrator.parse("V1_baseline.sql", ""))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    @DisplayName("ordena por versión numérica y rechaza versiones duplicadas")
+    void ordered_sortsNumericallyAndRejectsDuplicates() {
+        var v2 = SchemaMigrator.parse("V2__b.sql", "");
+        var v10 = SchemaMigrator.parse("V10__c.sql", "");
+        var v1 = SchemaMigrator.parse("V1__a.sql", "");
+
+        assertThat(SchemaMigrator.ordered(List.of(v10, v2, v1))).containsExactly(v1, v2, v10);
+        assertThatThrownBy(() -> SchemaMigrator.ordered(List.of(v1, SchemaMigrator.parse("V1__other.sql", ""))))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("V1");
+    }
+
+    @Test
+    @DisplayName("los scripts del classpath empiezan en V1 y no dejan huecos")
+    void classpathScripts_areContiguous() {
+        var versions = new SchemaMigrator(null).load().stream().map(SchemaMigrator.Migration::version).toList();
+
+        assertThat(versions).isNotEmpty();
+        for (int i = 0; i < versions.size(); i++) {
+            assertThat(versions.get(i)).isEqualTo(i + 1);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.farmatodo.timer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("HashedWheelTimer")
+class HashedWheelTimerTest {
+
+    private HashedWheelTimer timer;
+
+    @AfterEach
+    void tearDown() {
+        timer.stop();
+    }
+
+    @Test
+    @DisplayName("ejecuta las tareas en orden de vencimiento y no antes del delay")
+    void schedule_firesInDeadlineOrder() throws Exception {
+        timer = new HashedWheelTimer("test", Duration.ofMillis(5), 8);
+        var fired = new CopyOnWriteArrayList<String>();
+        var done = new CountDownLatch(3);
+        long start = System.nanoTime();
+
+        timer.schedule(() -> { fired.add("c"); done.countDown(); }, Duration.ofMillis(120));
+        timer.schedule(() -> { fired.add("a"); done.countDown(); }, Duration.ofMillis(10));
+        timer.schedule(() -> { fired.add("b"); done.countDown(); }, Duration.ofMillis(60));
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(fired).containsExactly("a", "b", "c");
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThanOrEqualTo(Duration.ofMillis(120));
+        assertThat(timer.pending()).isZero();
+    }
+
+    @Test
+    @DisplayName("cancel evita la ejecución")
+    void cancel_preventsFiring() throws Exception {
+        timer = new HashedWheelTimer("test", Duration.ofMillis(5), 8);
+        var fired = new CopyOnWriteArrayList<String>();
+        var sentinel = new CountDownLatch(1);
+
+        var timeout = timer.schedule(() -> fired.add("cancelled"), Duration.ofMillis(20));
+        timer.schedule(sentinel::countDown, Duration.ofMillis(60));
+        assertThat(timeout.cancel()).isTrue();
+
+        assertThat(sentinel.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(fired).isEmpty();
+        assertThat(timeout.isCancelled()).isTrue();
+        assertThat(timeout.cancel()).isFalse();
+    }
+
+    @Test
+    @DisplayName("miles de timeouts pendientes con un solo hilo, incluso más allá de una vuelta de la rueda")
+    void manyPendingTimeouts_singleThread() throws Exception {
+        timer = new HashedWheelTimer("test", Duration.ofMillis(1), 16);
+        int n = 5_000;
+        var done = new CountDownLatch(n);
+        var threads = new CopyOnWriteArrayList<String>();
+        for (int i = 0; i < n; i++) {
+            timer.schedule(() -> {
+                threads.addIfAbsent(Thread.currentThread().getName());
+                done.countDown();
+            }, Duration.ofMillis(20 + i % 80));
+        }
+
+        assertThat(timer.pending()).isLessThanOrEqualTo(n);
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(threads).containsExactly("test-timer");
+    }
+
+    @Test
+    @DisplayName("una tarea que falla no detiene la rueda")
+    void failingTask_doesNotStopWheel() throws Exception {
+        timer = new HashedWheelTimer("test", Duration.ofMillis(5), 8);
+        var done = new CountDownLatch(1);
+
+        timer.schedule(() -> { throw new IllegalStateException("boom"); }, Duration.ofMillis(5));
+        timer.schedule(done::countDown, Duration.ofMillis(30));
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    @DisplayName("stop devuelve las tareas no ejecutadas y rechaza nuevas")
+    void stop_returnsUnprocessedAndRejectsNew() {
+        timer = new HashedWheelTimer("test", Duration.ofMillis(5), 8);
+        Runnable task = () -> { };
+        timer.schedule(task, Duration.ofMinutes(10));
+
+        List<Runnable> unprocessed = timer.stop();
+
+        assertThat(unprocessed).containsExactly(task);
+        assertThat(timer.pending()).isZero();
+        assertThatThrownBy(() -> timer.schedule(task, Duration.ZERO)).isInstanceOf(IllegalStateException.class);
+    }
+}
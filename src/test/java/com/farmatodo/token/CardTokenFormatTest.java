@@ -0,0 +1,67 @@
+package com.farmatodo.token;
+
+import com.farmatodo.crypto.AesEncryptionService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("CardTokenFormat")
+class CardTokenFormatTest {
+
+    private static final String KEY_B64 = "QmFja2VuZEVuY3J5cHRpb25LZXlGb3JERVZfMjU2X0dDTQ==";
+    private final AesEncryptionService encryption = new AesEncryptionService(KEY_B64);
+
+    @Test
+    @DisplayName("seal produce version | iv | ciphertext | tag y se descifra")
+    void seal_roundTrips() throws Exception {
+        byte[] sealed = CardTokenFormat.seal(encryption, "4111111111111111");
+
+        assertThat(sealed).hasSize(1 + 12 + 16 + 16);
+        var parts = CardTokenFormat.parse(sealed);
+        assertThat(parts.version()).isEqualTo(CardTokenFormat.VERSION_1);
+        assertThat(decrypt(parts)).isEqualTo("4111111111111111");
+    }
+
+    @Test
+    @DisplayName("un registro legado en Base64 se convierte al mismo contenido binario")
+    void fromLegacy_matchesParts() throws Exception {
+        var legacy = encryption.encrypt("5500000000000004");
+        var b64 = Base64.getEncoder();
+
+        byte[] sealed = CardTokenFormat.fromLegacy(b64.encodeToString(legacy.ciphertext()),
+                b64.encodeToString(legacy.iv()), b64.encodeToString(legacy.authTag()));
+
+        var parts = CardTokenFormat.parse(sealed);
+        assertThat(parts.iv()).isEqualTo(legacy.iv());
+        assertThat(parts.ciphertext()).isEqualTo(legacy.ciphertext());
+        assertThat(parts.tag()).isEqualTo(legacy.authTag());
+        assertThat(decrypt(parts)).isEqualTo("5500000000000004");
+    }
+
+    @Test
+    @DisplayName("rechaza versiones desconocidas y registros truncados")
+    void parse_rejectsUnknownVersionAndTruncated() {
+        byte[] sealed = CardTokenFormat.seal(encryption, "4111111111111111");
+        sealed[0] = 9;
+
+        assertThatThrownBy(() -> CardTokenFormat.parse(sealed)).hasMessageContaining("version 9");
+        assertThatThrownBy(() -> CardTokenFormat.parse(new byte[10])).hasMessageContaining("truncated");
+    }
+
+    static String decrypt(CardTokenFormat.Parts parts) throws Exception {
+        var cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(Arrays.copyOf(Base64.getDecoder().decode(KEY_B64), 32), "AES"),
+                new GCMParameterSpec(128, parts.iv()));
+        cipher.update(parts.ciphertext());
+        return new String(cipher.doFinal(parts.tag()), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,111 @@
+package com.farmatodo.token;
+
+import com.farmatodo.crypto.EncryptionService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Testcontainers
+@ActiveProfiles("test")
+@Tag("integration")
+@DisplayName("Migración de card_tokens al formato binario - Integración")
+class CardTokenMigrationIntegrationTest {
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15")
+            .withDatabaseName("farmatodo")
+            .withUsername("farmatodo")
+            .withPassword("farmatodo_pwd");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("ENCRYPTION_KEY", () -> "QmFja2VuZEVuY3J5cHRpb25LZXlGb3JERVZfMjU2X0dDTQ==");
+        registry.add("APP_API_KEY", () -> "test-api-key-integration");
+        registry.add("app.token.migration.batch-size", () -> "2");
+        registry.add("app.token.migration.interval", () -> "PT1H");
+    }
+
+    @Autowired
+    private EncryptionService encryption;
+
+    @Autowired
+    private LegacyCardTokenRepository legacyRepo;
+
+    @Autowired
+    private CardTokenRepository repo;
+
+    @Autowired
+    private CardTokenStore store;
+
+    @Autowired
+    private CardTokenMigrator migrator;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Test
+    @DisplayName("migra por lotes las filas legadas, aparta las corruptas y los tokens siguen descifrándose igual")
+    void migratesLegacyRowsInBatches() throws Exception {
+        var b64 = Base64.getEncoder();
+        var pans = new HashMap<String, String>();
+        var legacy = new ArrayList<LegacyCardToken>();
+        for (int i = 0; i < 5; i++) {
+            var token = UUID.randomUUID().toString();
+            var pan = "411111111111000" + i;
+            var enc = encryption.encrypt(pan);
+            pans.put(token, pan);
+            legacy.add(new LegacyCardToken(token, b64.encodeToString(enc.ciphertext()), b64.encodeToString(enc.iv()),
+                    b64.encodeToString(enc.authTag()), "**** **** **** 000" + i, Instant.now(), "tx-" + i));
+        }
+        var enc = encryption.encrypt("4000000000000002");
+        legacy.add(new LegacyCardToken("tok-not-a-uuid", b64.encodeToString(enc.ciphertext()),
+                b64.encodeToString(enc.iv()), b64.encodeToString(enc.authTag()), "m", Instant.now(), "tx"));
+        var corrupt = UUID.randomUUID().toString();
+        legacy.add(0, new LegacyCardToken(corrupt, "not base64!", b64.encodeToString(enc.iv()),
+                b64.encodeToString(enc.authTag()), "m", Instant.now(), "tx"));
+        legacyRepo.saveAll(legacy);
+
+        for (var token : pans.keySet()) {
+            assertThat(store.exists(token)).isTrue();
+            assertThat(CardTokenFormatTest.decrypt(store.findSealed(token).orElseThrow())).isEqualTo(pans.get(token));
+        }
+
+        migrator.run();
+
+        assertThat(repo.count()).isEqualTo(5);
+        assertThat(legacyRepo.findAll()).extracting(LegacyCardToken::getToken)
+                .containsExactlyInAnyOrder("tok-not-a-uuid", corrupt);
+        assertThat(jdbc.queryForObject("SELECT migration_error FROM card_tokens WHERE token = ?", String.class, corrupt))
+                .isNotBlank();
+        assertThat(jdbc.queryForObject("SELECT migration_error FROM card_tokens WHERE token = ?", String.class,
+                "tok-not-a-uuid")).isNull();
+        for (var token : pans.keySet()) {
+            var migrated = repo.findById(UUID.fromString(token)).orElseThrow();
+            assertThat(migrated.getMaskedPan()).startsWith("**** **** **** 000");
+            assertThat(CardTokenFormatTest.decrypt(CardTokenFormat.parse(migrated.getSealed()))).isEqualTo(pans.get(token));
+        }
+        assertThat(store.exists("tok-not-a-uuid")).isTrue();
+        assertThat(CardTokenFormatTest.decrypt(store.findSealed("tok-not-a-uuid").orElseThrow())).isEqualTo("4000000000000002");
+    }
+}
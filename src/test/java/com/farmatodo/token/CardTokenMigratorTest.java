@@ -0,0 +1,134 @@
+package com.farmatodo.token;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("CardTokenMigrator")
+class CardTokenMigratorTest {
+
+    private static final Base64.Encoder B64 = Base64.getEncoder();
+
+    @Mock
+    private JdbcTemplate jdbc;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+    private CardTokenMigrator migrator;
+    private final List<String[]> legacy = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        migrator = new CardTokenMigrator(jdbc, transactionManager, meterRegistry, 2, 20);
+        lenient().when(jdbc.query(contains("FROM card_tokens"), any(RowMapper.class), eq(2))).thenAnswer(inv -> {
+            RowMapper<?> mapper = inv.getArgument(1);
+            var rows = new ArrayList<Object>();
+            for (String[] row : legacy.subList(0, Math.min(2, legacy.size()))) {
+                rows.add(mapper.mapRow(resultSet(row), rows.size()));
+            }
+            return rows;
+        });
+    }
+
+    private static ResultSet resultSet(String[] row) throws SQLException {
+        ResultSet rs = mock(ResultSet.class);
+        for (int i = 0; i < 5; i++) {
+            when(rs.getString(i + 1)).thenReturn(row[i]);
+        }
+        when(rs.getTimestamp(6)).thenReturn(Timestamp.from(Instant.parse("2026-01-01T00:00:00Z")));
+        when(rs.getString(7)).thenReturn("tx");
+        return rs;
+    }
+
+    private static String[] validRow(String token) {
+        return new String[]{token, B64.encodeToString(new byte[20]), B64.encodeToString(new byte[12]),
+                B64.encodeToString(new byte[16]), "**** **** **** 1111"};
+    }
+
+    @Test
+    @DisplayName("una fila con Base64 corrupto se marca con el error y el resto del lote se migra")
+    void corruptRow_isMarkedAndBatchMigrates() {
+        var good = UUID.randomUUID().toString();
+        var corrupt = UUID.randomUUID().toString();
+        legacy.add(validRow(good));
+        legacy.add(new String[]{corrupt, "not base64!", B64.encodeToString(new byte[12]),
+                B64.encodeToString(new byte[16]), "**** **** **** 2222"});
+
+        int claimed = migrator.migrateBatch();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Object[]>> args = ArgumentCaptor.forClass(List.class);
+        verify(jdbc).batchUpdate(startsWith("INSERT INTO card_token_records"), args.capture());
+        assertThat(args.getValue()).singleElement().satisfies(record -> {
+            assertThat(record[0]).isEqualTo(UUID.fromString(good));
+            assertThat(((byte[]) record[1])[0]).isEqualTo(CardTokenFormat.VERSION_1);
+        });
+        verify(jdbc).batchUpdate(startsWith("DELETE FROM card_tokens"), args.capture());
+        assertThat(args.getValue()).singleElement().satisfies(row -> assertThat(row[0]).isEqualTo(good));
+        verify(jdbc).batchUpdate(startsWith("UPDATE card_tokens SET migration_error"), args.capture());
+        assertThat(args.getValue()).singleElement().satisfies(row -> {
+            assertThat((String) row[0]).isNotBlank();
+            assertThat(row[1]).isEqualTo(corrupt);
+        });
+        assertThat(claimed).isEqualTo(2);
+        assertThat(meterRegistry.counter("card_tokens.migrated").count()).isEqualTo(1.0);
+        assertThat(meterRegistry.counter("card_tokens.migration_failed").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("un IV de longitud inesperada también se marca en vez de fallar el lote")
+    void wrongIvLength_isMarked() {
+        var token = UUID.randomUUID().toString();
+        var row = validRow(token);
+        row[2] = B64.encodeToString(new byte[8]);
+        legacy.add(row);
+
+        migrator.migrateBatch();
+
+        verify(jdbc, never()).batchUpdate(startsWith("INSERT"), anyList());
+        verify(jdbc).batchUpdate(startsWith("UPDATE card_tokens SET migration_error"), anyList());
+    }
+
+    @Test
+    @DisplayName("run sigue pidiendo lotes mientras vienen llenos, aunque sean filas corruptas")
+    void run_keepsGoingWhileBatchesAreFull() {
+        var calls = new int[1];
+        when(jdbc.query(contains("FROM card_tokens"), any(RowMapper.class), eq(2))).thenAnswer(inv -> {
+            RowMapper<?> mapper = inv.getArgument(1);
+            if (calls[0]++ > 0) {
+                return List.of();
+            }
+            var corrupt = new String[]{UUID.randomUUID().toString(), "%%%", "%%%", "%%%", "m"};
+            return List.of(mapper.mapRow(resultSet(corrupt), 0), mapper.mapRow(resultSet(corrupt), 1));
+        });
+
+        migrator.run();
+
+        verify(jdbc, times(2)).query(contains("FROM card_tokens"), any(RowMapper.class), eq(2));
+    }
+}
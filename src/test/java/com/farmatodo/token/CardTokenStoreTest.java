@@ -0,0 +1,101 @@
+package com.farmatodo.token;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("CardTokenStore")
+class CardTokenStoreTest {
+
+    @Mock
+    private CardTokenRepository repo;
+
+    @Mock
+    private LegacyCardTokenRepository legacyRepo;
+
+    @Mock
+    private JdbcTemplate jdbc;
+
+    private CardTokenStore store;
+
+    @BeforeEach
+    void setUp() {
+        var existenceCache = new TokenExistenceCache(jdbc, new SimpleMeterRegistry(), false, 10, 10, 0.01,
+                Duration.ofSeconds(1), Clock.systemUTC());
+        store = new CardTokenStore(repo, legacyRepo, jdbc, existenceCache);
+    }
+
+    @Test
+    @DisplayName("un token en formato binario se encuentra sin consultar la tabla legada")
+    void exists_inNewTable() {
+        var id = UUID.randomUUID();
+        when(repo.existsById(id)).thenReturn(true);
+
+        assertThat(store.exists(id.toString())).isTrue();
+        verifyNoInteractions(legacyRepo);
+    }
+
+    @Test
+    @DisplayName("durante la transición un token legado (incluso no-UUID) sigue siendo válido")
+    void exists_fallsBackToLegacy() {
+        var id = UUID.randomUUID().toString();
+        when(legacyRepo.existsById(id)).thenReturn(true);
+        when(legacyRepo.existsById("tok-legacy")).thenReturn(true);
+
+        assertThat(store.exists(id)).isTrue();
+        assertThat(store.exists("tok-legacy")).isTrue();
+    }
+
+    @Test
+    @DisplayName("findSealed lee ambos formatos")
+    void findSealed_readsBothFormats() {
+        var id = UUID.randomUUID();
+        byte[] sealed = new byte[1 + 12 + 4 + 16];
+        sealed[0] = CardTokenFormat.VERSION_1;
+        when(repo.findById(id)).thenReturn(Optional.of(new CardToken(id, sealed, "m", Instant.now(), "tx")));
+        var b64 = Base64.getEncoder();
+        when(legacyRepo.findById("tok-legacy")).thenReturn(Optional.of(new LegacyCardToken("tok-legacy",
+                b64.encodeToString(new byte[]{1, 2, 3}), b64.encodeToString(new byte[12]),
+                b64.encodeToString(new byte[16]), "m", Instant.now(), "tx")));
+
+        assertThat(store.findSealed(id.toString())).hasValueSatisfying(p -> assertThat(p.ciphertext()).hasSize(4));
+        assertThat(store.findSealed("tok-legacy")).hasValueSatisfying(p -> assertThat(p.ciphertext()).containsExactly(1, 2, 3));
+        verify(legacyRepo, never()).findById(id.toString());
+    }
+
+    @Test
+    @DisplayName("insertAll usa un INSERT multi-fila por bloque de ROWS_PER_INSERT")
+    void insertAll_chunksMultiRowInserts() {
+        var tokens = new ArrayList<CardToken>();
+        for (int i = 0; i < CardTokenStore.ROWS_PER_INSERT + 3; i++) {
+            tokens.add(new CardToken(UUID.randomUUID(), new byte[29], "m", Instant.now(), "tx"));
+        }
+
+        store.insertAll(tokens);
+
+        var sql = ArgumentCaptor.forClass(String.class);
+        verify(jdbc, times(2)).update(sql.capture(), any(Object[].class));
+        assertThat(sql.getAllValues()).allMatch(s -> s.startsWith("INSERT INTO card_token_records"));
+        assertThat(sql.getAllValues()).extracting(s -> s.split("\\(\\?").length - 1)
+                .containsExactly(CardTokenStore.ROWS_PER_INSERT, 3);
+    }
+}
@@ -0,0 +1,92 @@
+package com.farmatodo.token;
+
+import com.farmatodo.log.TransactionLog;
+import com.farmatodo.log.TransactionLogRepository;
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureMockMvc
+@Testcontainers
+@ActiveProfiles("test")
+@Tag("integration")
+@DisplayName("Tokenización por lotes - Integración")
+class TokenBatchIntegrationTest {
+
+    private static final int CARDS = 120;
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15")
+            .withDatabaseName("farmatodo")
+            .withUsername("farmatodo")
+            .withPassword("farmatodo_pwd");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("ENCRYPTION_KEY", () -> "QmFja2VuZEVuY3J5cHRpb25LZXlGb3JERVZfMjU2X0dDTQ==");
+        registry.add("APP_API_KEY", () -> "test-api-key-integration");
+    }
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private CardTokenRepository cardTokenRepo;
+
+    @Autowired
+    private TransactionLogRepository transactionLogRepo;
+
+    @Test
+    @DisplayName("POST /tokens/batch persiste las tarjetas válidas, reporta la inválida y escribe un solo log")
+    void batch_persistsValidCardsAndReportsInvalidOne() throws Exception {
+        var body = new StringBuilder("{\"cards\":[");
+        for (int i = 0; i < CARDS; i++) {
+            body.append(String.format(
+                    "{\"cardNumber\":\"4111111111%06d\",\"cvv\":\"123\",\"expiryMonth\":\"12\",\"expiryYear\":\"2099\",\"cardHolderName\":\"JOHN DOE\"},", i));
+        }
+        body.append("{\"cardNumber\":\"123\",\"cvv\":\"123\",\"expiryMonth\":\"12\",\"expiryYear\":\"2099\",\"cardHolderName\":\"JOHN DOE\"}]}");
+
+        var response = mvc.perform(post("/tokens/batch")
+                        .header("X-API-KEY", "test-api-key-integration")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.requested").value(CARDS + 1))
+                .andExpect(jsonPath("$.created").value(CARDS))
+                .andExpect(jsonPath("$.results[" + CARDS + "].status").value("INVALID"))
+                .andReturn();
+
+        String txId = response.getResponse().getHeader("X-Transaction-Id");
+        assertThat(cardTokenRepo.count()).isEqualTo(CARDS);
+        String first = JsonPath.read(response.getResponse().getContentAsString(), "$.results[0].token");
+        assertThat(cardTokenRepo.findById(UUID.fromString(first))).hasValueSatisfying(t -> {
+            assertThat(t.getMaskedPan()).isEqualTo("**** **** **** 0000");
+            assertThat(t.getTxId()).isEqualTo(txId);
+        });
+        assertThat(transactionLogRepo.findByTxIdOrderByCreatedAtAsc(txId))
+                .extracting(TransactionLog::getEventType)
+                .containsExactly("token_batch_created");
+    }
+}
@@ -0,0 +1,138 @@
+package com.farmatodo.token;
+
+import com.farmatodo.crypto.AesEncryptionService;
+import com.farmatodo.log.LogService;
+import com.farmatodo.token.dto.BatchTokenResult;
+import com.farmatodo.token.dto.CreateTokenRequest;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("TokenBatchService")
+class TokenBatchServiceTest {
+
+    private static final String KEY_B64 = "QmFja2VuZEVuY3J5cHRpb25LZXlGb3JERVZfMjU2X0dDTQ==";
+    private static Validator validator;
+
+    @Mock
+    private CardTokenStore tokenStore;
+
+    @Mock
+    private LogService logService;
+
+    private ParallelSealer sealer;
+
+    @BeforeAll
+    static void initValidator() {
+        validator = Validation.buildDefaultValidatorFactory().getValidator();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (sealer != null) {
+            sealer.destroy();
+        }
+    }
+
+    private TokenBatchService service(double rejectProbability) {
+        sealer = new ParallelSealer(new AesEncryptionService(KEY_B64), 4);
+        return new TokenBatchService(tokenStore, sealer, validator, logService, rejectProbability);
+    }
+
+    private static CreateTokenRequest card(String pan, String cvv) {
+        var req = new CreateTokenRequest();
+        req.setCardNumber(pan);
+        req.setCvv(cvv);
+        req.setExpiryMonth("12");
+        req.setExpiryYear("2099");
+        req.setCardHolderName("JOHN DOE");
+        return req;
+    }
+
+    @Test
+    @DisplayName("una tarjeta inválida no hace fallar el lote y cada resultado conserva su índice")
+    void invalidCard_onlyFailsItsOwnResult() {
+        var cards = Arrays.asList(card("4111111111111111", "123"), card("4111", "123"), null, card("5500000000000004", "1"));
+
+        var response = service(0.0).createTokens(cards);
+
+        assertThat(response.requested()).isEqualTo(4);
+        assertThat(response.created()).isEqualTo(1);
+        assertThat(response.failed()).isEqualTo(3);
+        assertThat(response.results()).extracting(BatchTokenResult::index).containsExactly(0, 1, 2, 3);
+        assertThat(response.results()).extracting(BatchTokenResult::status).containsExactly(
+                BatchTokenResult.Status.CREATED, BatchTokenResult.Status.INVALID,
+                BatchTokenResult.Status.INVALID, BatchTokenResult.Status.INVALID);
+        assertThat(response.results().get(0).maskedPan()).isEqualTo("**** **** **** 1111");
+        assertThat(response.results().get(1).error()).contains("cardNumber");
+        assertThat(response.results().get(3).error()).contains("cvv");
+    }
+
+    @Test
+    @DisplayName("cifra en paralelo, inserta todo de una vez y registra un único log resumen")
+    void largeBatch_insertsOnceAndLogsSummary() throws Exception {
+        var cards = new ArrayList<CreateTokenRequest>();
+        for (int i = 0; i < 200; i++) {
+            cards.add(card(String.format("4111111111%06d", i), "123"));
+        }
+
+        var response = service(0.0).createTokens(cards);
+
+        ArgumentCaptor<List<CardToken>> saved = ArgumentCaptor.forClass(List.class);
+        verify(tokenStore).insertAll(saved.capture());
+        assertThat(saved.getValue()).hasSize(200);
+        for (int i = 0; i < 200; i++) {
+            var token = saved.getValue().get(i);
+            assertThat(response.results().get(i).token()).isEqualTo(token.getToken().toString());
+            assertThat(CardTokenFormatTest.decrypt(CardTokenFormat.parse(token.getSealed())))
+                    .isEqualTo(cards.get(i).getCardNumber());
+        }
+        ArgumentCaptor<Map<String, Object>> summary = ArgumentCaptor.forClass(Map.class);
+        verify(logService, times(1)).log(eq("token_batch_created"), eq("INFO"), anyString(), summary.capture());
+        assertThat(summary.getValue()).containsEntry("requested", 200).containsEntry("created", 200);
+    }
+
+    @Test
+    @DisplayName("con rejectProbability = 1 todas las tarjetas quedan REJECTED y no se cifra nada")
+    void rejectProbability_rejectsPerCard() {
+        var response = service(1.0).createTokens(List.of(card("4111111111111111", "123")));
+
+        assertThat(response.results()).extracting(BatchTokenResult::status)
+                .containsExactly(BatchTokenResult.Status.REJECTED);
+        verify(tokenStore).insertAll(List.of());
+    }
+
+    @Test
+    @DisplayName("si el cifrado de una tarjeta falla queda FAILED y el resto se tokeniza")
+    void encryptionFailure_isPerItem() {
+        var failing = spy(new AesEncryptionService(KEY_B64));
+        sealer = new ParallelSealer(failing, 1);
+        var service = new TokenBatchService(tokenStore, sealer, validator, logService, 0.0);
+        doCallRealMethod().doThrow(new IllegalStateException("hsm down")).when(failing)
+                .encrypt(any(byte[].class), anyInt(), anyInt(), any(byte[].class), any(byte[].class), anyInt());
+
+        var response = service.createTokens(List.of(card("4111111111111111", "123"), card("5500000000000004", "123")));
+
+        assertThat(response.results()).extracting(BatchTokenResult::status)
+                .containsExactly(BatchTokenResult.Status.CREATED, BatchTokenResult.Status.FAILED);
+        verify(tokenStore).insertAll(anyList());
+    }
+}
@@ -1,6 +1,9 @@
 package com.farmatodo.token;
 
 import com.farmatodo.TestUtils;
+import com.farmatodo.idempotency.IdempotencyService;
+import com.farmatodo.token.dto.BatchTokenResponse;
+import com.farmatodo.token.dto.BatchTokenResult;
 import com.farmatodo.token.dto.CreateTokenRequest;
 import com.farmatodo.token.dto.CreateTokenResponse;
 import org.junit.jupiter.api.DisplayName;
@@ -12,6 +15,8 @@ import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -23,15 +28,21 @@ class TokenControllerTest {
     @Autowired
     private MockMvc mvc;
 
+    @MockBean
+    private IdempotencyService idempotencyService;
+
     @MockBean
     private TokenService tokenService;
 
+    @MockBean
+    private TokenBatchService tokenBatchService;
+
     @Test
     @DisplayName("POST /tokens retorna 200 con token y maskedPan")
     void createToken_returns200() throws Exception {
-        var tokenId = java.util.UUID.randomUUID().toString();
+        var tokenId = java.util.UUID.randomUUID();
         var entity = new com.farmatodo.token.CardToken(
-                tokenId, "ct", "iv", "tag", "**** **** **** 1111",
+                tokenId, new byte[29], "**** **** **** 1111",
                 java.time.Instant.now(), "tx"
         );
 
@@ -44,7 +55,7 @@ class TokenControllerTest {
                                 {"cardNumber":"4111111111111111","cvv":"123","expiryMonth":"12","expiryYear":"2028","cardHolderName":"JOHN DOE"}
                                 """))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.token").value(tokenId))
+                .andExpect(jsonPath("$.token").value(tokenId.toString()))
                 .andExpect(jsonPath("$.maskedPan").value("**** **** **** 1111"));
     }
 
@@ -60,4 +71,37 @@ class TokenControllerTest {
                 .andExpect(status().isBadRequest())
                 .andExpect(jsonPath("$.message").value("Validation Failed"));
     }
+
+    @Test
+    @DisplayName("POST /tokens/batch retorna 200 con un resultado por tarjeta")
+    void createTokens_returnsPerItemResults() throws Exception {
+        when(tokenBatchService.createTokens(anyList())).thenReturn(new BatchTokenResponse(2, 1, 1, java.util.List.of(
+                new BatchTokenResult(0, BatchTokenResult.Status.CREATED, "t-1", "**** **** **** 1111", null),
+                new BatchTokenResult(1, BatchTokenResult.Status.INVALID, null, null, "cvv: size must be between 3 and 4"))));
+
+        mvc.perform(post("/tokens/batch")
+                        .header(TestUtils.API_KEY_HEADER, TestUtils.API_KEY_DEFAULT)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"cards":[
+                                  {"cardNumber":"4111111111111111","cvv":"123","expiryMonth":"12","expiryYear":"2030","cardHolderName":"JOHN"},
+                                  {"cardNumber":"4111111111111111","cvv":"1","expiryMonth":"12","expiryYear":"2030","cardHolderName":"JOHN"}
+                                ]}
+                                """))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created").value(1))
+                .andExpect(jsonPath("$.results[0].status").value("CREATED"))
+                .andExpect(jsonPath("$.results[1].status").value("INVALID"));
+    }
+
+    @Test
+    @DisplayName("POST /tokens/batch vacío retorna 400")
+    void createTokens_empty_returns400() throws Exception {
+        mvc.perform(post("/tokens/batch")
+                        .header(TestUtils.API_KEY_HEADER, TestUtils.API_KEY_DEFAULT)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"cards\":[]}"))
+                .andExpect(status().isBadRequest());
+        verifyNoInteractions(tokenBatchService);
+    }
 }
@@ -0,0 +1,132 @@
+package com.farmatodo.token;
+
+import com.farmatodo.MutableClock;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("TokenExistenceCache")
+class TokenExistenceCacheTest {
+
+    private static final Duration SYNC_INTERVAL = Duration.ofSeconds(1);
+
+    @Mock
+    private JdbcTemplate jdbc;
+
+    private final List<String> table = new ArrayList<>();
+    private final List<String> databaseLookups = new ArrayList<>();
+    /** Matches UUID tokens regardless of case, as the {@code uuid} column does. */
+    private final Predicate<String> database = token -> {
+        databaseLookups.add(token);
+        return table.stream().anyMatch(t -> TokenExistenceCache.key(t).equals(TokenExistenceCache.key(token)));
+    };
+
+    private MutableClock clock;
+    private SimpleMeterRegistry registry;
+    private TokenExistenceCache cache;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2026-01-01T00:00:00Z"));
+        registry = new SimpleMeterRegistry();
+        cache = new TokenExistenceCache(jdbc, registry, true, 1_000, 1_000, 0.01, SYNC_INTERVAL, clock);
+    }
+
+    /** The full load streams the fake table; the catch-up finds nothing new. */
+    private void stubLoads() {
+        doAnswer(inv -> stream(inv.getArgument(1))).when(jdbc).query(anyString(), any(RowCallbackHandler.class));
+    }
+
+    private Object stream(RowCallbackHandler handler) throws SQLException {
+        for (String token : List.copyOf(table)) {
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.getString(1)).thenReturn(token);
+            handler.processRow(rs);
+        }
+        return null;
+    }
+
+    private double count(String result) {
+        return registry.get("token.existence").tag("result", result).counter().count();
+    }
+
+    @Test
+    @DisplayName("los tokens UUID se normalizan a minúsculas en caché y filtro; los heredados se usan tal cual")
+    void uuidTokens_areCanonicalised() throws Exception {
+        String token = UUID.randomUUID().toString();
+        table.add(token.toUpperCase());
+        table.add("Legacy-Tok");
+        stubLoads();
+        cache.rebuild();
+
+        assertThat(cache.exists(token, database)).isTrue();
+        assertThat(cache.exists(token.toUpperCase(), database)).isTrue();
+        assertThat(cache.exists("Legacy-Tok", database)).isTrue();
+        assertThat(cache.exists("legacy-tok", database)).isFalse();
+
+        assertThat(databaseLookups).containsExactly(token, "Legacy-Tok");
+        assertThat(count("db_found")).isEqualTo(2);
+        assertThat(count("cache_hit")).isEqualTo(1);
+        assertThat(count("bloom_reject")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("un token creado localmente solo se registra tras el commit")
+    void recordCreated_waitsForCommit() throws Exception {
+        stubLoads();
+        cache.rebuild();
+        String token = UUID.randomUUID().toString();
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            cache.recordCreated(token.toUpperCase());
+            assertThat(cache.exists(token, database)).isFalse();
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(cache.exists(token, database)).isTrue();
+        assertThat(databaseLookups).isEmpty();
+    }
+
+    @Test
+    @DisplayName("sin filtro construido o con la caché deshabilitada se consulta la BD")
+    void notBuiltOrDisabled_fallsBackToDatabase() {
+        String token = UUID.randomUUID().toString();
+        assertThat(cache.exists(token, database)).isFalse();
+
+        var disabled = new TokenExistenceCache(jdbc, new SimpleMeterRegistry(), false, 1_000, 1_000, 0.01,
+                SYNC_INTERVAL, clock);
+        disabled.rebuild();
+        table.add(token);
+        assertThat(disabled.exists(token, database)).isTrue();
+        assertThat(disabled.exists(token, database)).isTrue();
+
+        assertThat(databaseLookups).hasSize(3);
+        verifyNoInteractions(jdbc);
+    }
+}
@@ -63,7 +63,7 @@ class TokenIntegrationTest {
     private TransactionLogRepository transactionLogRepo;
 
     @Test
-    @DisplayName("POST /tokens retorna 200, persiste en card_tokens y transaction_logs")
+    @DisplayName("POST /tokens retorna 200, persiste en card_token_records y transaction_logs")
     void createToken_persistsAndReturns200() throws Exception {
         var response = mvc.perform(post("/tokens")
                         .header("X-API-KEY", "test-api-key-integration")
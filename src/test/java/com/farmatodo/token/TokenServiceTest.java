@@ -1,6 +1,5 @@
 package com.farmatodo.token;
 
-import com.farmatodo.crypto.EncryptionResult;
 import com.farmatodo.crypto.EncryptionService;
 import com.farmatodo.log.LogService;
 import com.farmatodo.token.dto.CreateTokenRequest;
@@ -14,12 +13,12 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.slf4j.MDC;
 
-import java.util.Base64;
 import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
@@ -27,12 +26,9 @@ import static org.mockito.Mockito.*;
 @DisplayName("TokenService")
 class TokenServiceTest {
 
-    private static final byte[] MOCK_CIPHERTEXT = "mock-ct".getBytes();
-    private static final byte[] MOCK_IV = new byte[12];
-    private static final byte[] MOCK_AUTH_TAG = new byte[16];
 
     @Mock
-    private CardTokenRepository repo;
+    private CardTokenStore tokenStore;
 
     @Mock
     private LogService logService;
@@ -40,6 +36,20 @@ class TokenServiceTest {
     @Mock
     private EncryptionService encryptionService;
 
+    /** Fake cipher: ciphertext is the plaintext as is, followed by a zero tag. */
+    private void stubEncryption() {
+        when(encryptionService.ivLength()).thenReturn(12);
+        when(encryptionService.tagLength()).thenReturn(16);
+        when(encryptionService.encrypt(any(byte[].class), anyInt(), anyInt(), any(byte[].class), any(byte[].class), anyInt()))
+                .thenAnswer(inv -> {
+                    byte[] plain = inv.getArgument(0);
+                    byte[] out = inv.getArgument(4);
+                    int outOffset = inv.getArgument(5);
+                    System.arraycopy(plain, 0, out, outOffset, plain.length);
+                    return plain.length + 16;
+                });
+    }
+
     private CreateTokenRequest validRequest() {
         var req = new CreateTokenRequest();
         req.setCardNumber("4111111111111111");
@@ -58,9 +68,8 @@ class TokenServiceTest {
 
         @BeforeEach
         void setUp() {
-            service = new TokenService(repo, logService, encryptionService, 0.0);
-            when(encryptionService.encrypt(anyString()))
-                    .thenReturn(new EncryptionResult(MOCK_CIPHERTEXT, MOCK_IV, MOCK_AUTH_TAG));
+            service = new TokenService(tokenStore, logService, encryptionService, 0.0);
+            stubEncryption();
         }
 
         @Test
@@ -70,7 +79,8 @@ class TokenServiceTest {
             try {
                 CardToken result = service.createToken(validRequest());
 
-                assertThat(result.getToken()).isNotNull().matches(
+                assertThat(result.getToken()).isNotNull();
+                assertThat(result.getToken().toString()).matches(
                         "^[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}$");
                 assertThat(result.getMaskedPan()).isEqualTo("**** **** **** 1111");
             } finally {
@@ -79,12 +89,12 @@ class TokenServiceTest {
         }
 
         @Test
-        @DisplayName("repository.save fue llamado")
-        void repositorySaveCalled() {
+        @DisplayName("tokenStore.save fue llamado")
+        void tokenStoreSaveCalled() {
             MDC.put("tx_id", "test-tx-2");
             try {
                 service.createToken(validRequest());
-                verify(repo).save(any(CardToken.class));
+                verify(tokenStore).save(any(CardToken.class));
             } finally {
                 MDC.clear();
             }
@@ -120,13 +130,27 @@ class TokenServiceTest {
             try {
                 ArgumentCaptor<CardToken> captor = ArgumentCaptor.forClass(CardToken.class);
                 service.createToken(validRequest());
-                verify(repo).save(captor.capture());
+                verify(tokenStore).save(captor.capture());
 
                 assertThat(captor.getValue().getTxId()).isEqualTo("my-trace-id-123");
             } finally {
                 MDC.clear();
             }
         }
+
+        @Test
+        @DisplayName("guarda un único registro binario version | iv | ciphertext | tag")
+        void savedEntityHasSealedRecord() {
+            ArgumentCaptor<CardToken> captor = ArgumentCaptor.forClass(CardToken.class);
+            service.createToken(validRequest());
+            verify(tokenStore).save(captor.capture());
+
+            var parts = CardTokenFormat.parse(captor.getValue().getSealed());
+            assertThat(parts.version()).isEqualTo(CardTokenFormat.VERSION_1);
+            assertThat(parts.iv()).hasSize(12);
+            assertThat(new String(parts.ciphertext())).isEqualTo("4111111111111111");
+            assertThat(parts.tag()).hasSize(16);
+        }
     }
 
     @Nested
@@ -137,7 +161,7 @@ class TokenServiceTest {
 
         @BeforeEach
         void setUp() {
-            service = new TokenService(repo, logService, encryptionService, 1.0);
+            service = new TokenService(tokenStore, logService, encryptionService, 1.0);
         }
 
         @Test
@@ -154,13 +178,13 @@ class TokenServiceTest {
         }
 
         @Test
-        @DisplayName("repository.save NO fue llamado")
-        void repositorySaveNotCalled() {
+        @DisplayName("tokenStore.save NO fue llamado")
+        void tokenStoreSaveNotCalled() {
             MDC.put("tx_id", "test-tx-reject");
             try {
                 assertThatThrownBy(() -> service.createToken(validRequest()))
                         .isInstanceOf(TokenRejectedException.class);
-                verify(repo, never()).save(any());
+                verify(tokenStore, never()).save(any());
             } finally {
                 MDC.clear();
             }
@@ -173,7 +197,7 @@ class TokenServiceTest {
             try {
                 assertThatThrownBy(() -> service.createToken(validRequest()))
                         .isInstanceOf(TokenRejectedException.class);
-                verify(encryptionService, never()).encrypt(anyString());
+                verify(encryptionService, never()).encrypt(any(), anyInt(), anyInt(), any(), any(), anyInt());
             } finally {
                 MDC.clear();
             }
@@ -205,9 +229,8 @@ class TokenServiceTest {
         @Test
         @DisplayName("4111111111111111 -> **** **** **** 1111")
         void masksCorrectly() {
-            TokenService service = new TokenService(repo, logService, encryptionService, 0.0);
-            when(encryptionService.encrypt(anyString()))
-                    .thenReturn(new EncryptionResult(MOCK_CIPHERTEXT, MOCK_IV, MOCK_AUTH_TAG));
+            TokenService service = new TokenService(tokenStore, logService, encryptionService, 0.0);
+            stubEncryption();
 
             MDC.put("tx_id", "test-tx-mask");
             try {